@@ -1,8 +1,10 @@
 package net.dryuf.netty.address;
 
+import io.netty.channel.local.LocalAddress;
 import io.netty.channel.unix.DomainSocketAddress;
 import lombok.Builder;
 import lombok.Value;
+import net.dryuf.netty.shm.ShmAddress;
 
 import java.net.Inet6Address;
 import java.net.InetSocketAddress;
@@ -24,15 +26,17 @@ public class AddressSpec
 	public static final String PROTO_UDP6 = "udp6";
 	public static final String PROTO_UNIX = "unix";
 	public static final String PROTO_DOMAIN = "domain";
+	public static final String PROTO_LOCAL = "local";
+	public static final String PROTO_SHM = "shm";
 
 	public static final String ANY_HOST = "*";
 
 	/**
-	 * Address family, one of tcp4, tcp6, unix, domain:
+	 * Address family, one of tcp4, tcp6, udp4, udp6, unix, domain, local, shm:
 	 */
 	String proto;
 	/**
-	 * Domain socket path:
+	 * Domain socket path (also for shm) or in-JVM local channel id:
 	 */
 	String path;
 	/**
@@ -52,6 +56,18 @@ public class AddressSpec
 				.path(((DomainSocketAddress) address).path())
 				.build();
 		}
+		else if (address instanceof LocalAddress) {
+			return AddressSpec.builder()
+				.proto(PROTO_LOCAL)
+				.path(((LocalAddress) address).id())
+				.build();
+		}
+		else if (address instanceof ShmAddress) {
+			return AddressSpec.builder()
+				.proto(PROTO_SHM)
+				.path(((ShmAddress) address).getPath())
+				.build();
+		}
 		else if (address instanceof InetSocketAddress) {
 			InetSocketAddress a = (InetSocketAddress) address;
 			return AddressSpec.builder()
@@ -65,12 +81,21 @@ public class AddressSpec
 		}
 	}
 
+	public static AddressSpec fromDatagramSocketAddress(InetSocketAddress address)
+	{
+		return AddressSpec.builder()
+			.proto(address.getAddress() instanceof Inet6Address ? PROTO_UDP6 : PROTO_UDP4)
+			.host(address.getHostString())
+			.port(address.getPort())
+			.build();
+	}
+
 	@Override
 	public String toString()
 	{
 		StringBuilder sb = new StringBuilder(proto);
 		sb.append("://");
-		if (proto.equals(PROTO_UNIX) || proto.equals(PROTO_DOMAIN)) {
+		if (proto.equals(PROTO_UNIX) || proto.equals(PROTO_DOMAIN) || proto.equals(PROTO_LOCAL) || proto.equals(PROTO_SHM)) {
 			sb.append(path);
 		}
 		else {
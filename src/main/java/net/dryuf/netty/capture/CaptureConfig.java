@@ -0,0 +1,41 @@
+package net.dryuf.netty.capture;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Configuration of traffic capture, see {@link CaptureHandler}.
+ */
+@Builder(builderClassName = "Builder", toBuilder = true)
+@Value
+public class CaptureConfig
+{
+	/** File to capture to, shared by all connections. */
+	CaptureFile file;
+
+	/** Fraction of connections to capture, from 0 to 1. */
+	@Builder.Default
+	double sampleRatio = 1.0;
+
+	/** Max number of bytes captured from single read or write. */
+	@Builder.Default
+	int maxPacketBytes = 256;
+
+	/** Max number of payload bytes captured per connection, further data are recorded with lengths only. */
+	@Builder.Default
+	long maxConnectionBytes = 64*1024;
+
+	/**
+	 * Decides whether new connection should be captured.
+	 *
+	 * @return
+	 * 	true if connection is sampled.
+	 */
+	public boolean sample()
+	{
+		return sampleRatio >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRatio;
+	}
+}
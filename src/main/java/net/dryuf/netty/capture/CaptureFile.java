@@ -0,0 +1,304 @@
+package net.dryuf.netty.capture;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Capture of connection events and payload slices into pre-allocated memory-mapped ring file.
+ *
+ * Format, all numbers little endian:
+ * <pre>
+ * header, {@link #HEADER_SIZE} bytes:
+ * 	0	8	magic "DNCAP001"
+ * 	8	8	capacity of the ring, in bytes, multiple of 8
+ * 	16	8	head, logical offset where next record will be written
+ * 	24	8	tail, logical offset of the oldest record
+ * 	32	8	time of creation, nanoseconds since epoch
+ * 	40	24	reserved
+ * ring, capacity bytes, record at logical offset is at HEADER_SIZE + offset % capacity:
+ * 	0	4	record length including this header, aligned to 8 bytes, 0 if the rest of ring is unused
+ * 	4	1	type, see {@link CaptureRecord.Type}
+ * 	5	1	flags, 1 if payload is truncated
+ * 	6	2	reserved
+ * 	8	8	timestamp, nanoseconds since epoch
+ * 	16	8	connection id
+ * 	24	4	original length of payload
+ * 	28	4	captured length of payload
+ * 	32	captured length	payload, for OPEN the UTF-8 description of connection
+ * </pre>
+ * The ring contains records from tail to head, a record never wraps around the end of ring, the rest is skipped
+ * instead.  Once full, the oldest records are overwritten.
+ *
+ * Appending is lock-free: space is reserved by CAS on atomic head and the record is copied into the mapping by the
+ * appending thread, in parallel with other appenders.  The head in file header is advanced in order of reservations,
+ * only once all records before it are complete.  No system call is involved.
+ */
+public class CaptureFile implements Closeable
+{
+	public static final int HEADER_SIZE = 64;
+
+	public static final int RECORD_HEADER_SIZE = 32;
+
+	static final byte[] MAGIC = "DNCAP001".getBytes(StandardCharsets.US_ASCII);
+
+	static final int CAPACITY_OFFSET = 8;
+
+	static final int HEAD_OFFSET = 16;
+
+	static final int TAIL_OFFSET = 24;
+
+	static final int CREATED_OFFSET = 32;
+
+	private static final AtomicLong CONNECTION_IDS = new AtomicLong();
+
+	private final Path path;
+
+	private final MappedByteBuffer buffer;
+
+	/** Views for copying payloads, per thread as they are stateful. */
+	private final FastThreadLocal<ByteBuffer> views = new FastThreadLocal<>()
+	{
+		@Override
+		protected ByteBuffer initialValue()
+		{
+			return buffer.duplicate();
+		}
+	};
+
+	private final long capacity;
+
+	private final long createdEpochNanos;
+
+	private final long createdNanoTime;
+
+	/** Logical offset where next record will be reserved. */
+	private final AtomicLong head = new AtomicLong();
+
+	/** Logical offset of the oldest record not overwritten yet. */
+	private final AtomicLong tail = new AtomicLong();
+
+	/** Logical offset up to which all records are complete, published as head in file header. */
+	private final AtomicLong committed = new AtomicLong();
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates new capture file, replacing existing one.
+	 *
+	 * @param path
+	 * 	path of file
+	 * @param size
+	 * 	total size of file, including header
+	 *
+	 * @throws IOException
+	 * 	when file cannot be created
+	 */
+	public CaptureFile(Path path, int size) throws IOException
+	{
+		if (size < HEADER_SIZE+1024) {
+			throw new IllegalArgumentException("Capture file too small: size="+size);
+		}
+		this.path = path;
+		this.capacity = (size-HEADER_SIZE)&~7L;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+			StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE+capacity);
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		this.createdNanoTime = System.nanoTime();
+		this.createdEpochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+		buffer.put(0, MAGIC);
+		buffer.putLong(CAPACITY_OFFSET, capacity);
+		buffer.putLong(CREATED_OFFSET, createdEpochNanos);
+		buffer.putLong(HEAD_OFFSET, 0);
+		buffer.putLong(TAIL_OFFSET, 0);
+	}
+
+	/**
+	 * Allocates new connection id, unique within the process.
+	 *
+	 * @return
+	 * 	new connection id.
+	 */
+	public static long nextConnectionId()
+	{
+		return CONNECTION_IDS.incrementAndGet();
+	}
+
+	public Path getPath()
+	{
+		return path;
+	}
+
+	/**
+	 * Appends record with payload.
+	 *
+	 * @param type
+	 * 	record type
+	 * @param connectionId
+	 * 	connection id
+	 * @param payload
+	 * 	payload, its readable bytes, not modified
+	 * @param maxLength
+	 * 	max number of bytes to capture
+	 */
+	public void append(CaptureRecord.Type type, long connectionId, ByteBuf payload, int maxLength)
+	{
+		int originalLength = payload == null ? 0 : payload.readableBytes();
+		int captured = Math.min(originalLength, maxLength);
+		long length = (RECORD_HEADER_SIZE+captured+7)&~7L;
+		if (closed || length > capacity) {
+			return;
+		}
+		long start = reserve(length);
+		long offset = recordOffset(start, length);
+		try {
+			int position = physical(offset);
+			writeHeader(position, type, connectionId, originalLength, captured);
+			if (captured > 0) {
+				ByteBuffer view = views.get();
+				view.limit(position+RECORD_HEADER_SIZE+captured).position(position+RECORD_HEADER_SIZE);
+				payload.getBytes(payload.readerIndex(), view);
+			}
+			buffer.putInt(position, (int) length);
+		}
+		finally {
+			commit(start, offset+length);
+		}
+	}
+
+	/**
+	 * Appends record with payload.
+	 *
+	 * @param type
+	 * 	record type
+	 * @param connectionId
+	 * 	connection id
+	 * @param payload
+	 * 	payload
+	 */
+	public void append(CaptureRecord.Type type, long connectionId, byte[] payload)
+	{
+		long length = (RECORD_HEADER_SIZE+payload.length+7)&~7L;
+		if (closed || length > capacity) {
+			return;
+		}
+		long start = reserve(length);
+		long offset = recordOffset(start, length);
+		try {
+			int position = physical(offset);
+			writeHeader(position, type, connectionId, payload.length, payload.length);
+			buffer.put(position+RECORD_HEADER_SIZE, payload);
+			buffer.putInt(position, (int) length);
+		}
+		finally {
+			commit(start, offset+length);
+		}
+	}
+
+	/**
+	 * Flushes the content to disk.
+	 */
+	public synchronized void force()
+	{
+		if (!closed) {
+			buffer.force();
+		}
+	}
+
+	@Override
+	public synchronized void close()
+	{
+		if (!closed) {
+			buffer.force();
+			closed = true;
+		}
+	}
+
+	/**
+	 * Reserves space for record, including the skipped rest of ring if the record does not fit, and evicts the oldest
+	 * records.
+	 *
+	 * @return
+	 * 	logical offset where the reservation starts.
+	 */
+	private long reserve(long length)
+	{
+		long start;
+		long end;
+		do {
+			start = head.get();
+			end = recordOffset(start, length)+length;
+		} while (!head.compareAndSet(start, end));
+		for (long oldest; end-(oldest = tail.get()) > capacity; ) {
+			// length is written last, unfinished or invalid record is skipped up to the end of ring, where the next
+			// record always starts; the space is overwritten only after tail passed it, so stale read fails the CAS:
+			int oldestLength = buffer.getInt(physical(oldest));
+			long remaining = capacity-oldest%capacity;
+			tail.compareAndSet(oldest, oldest+(oldestLength <= 0 || oldestLength > remaining ? remaining : oldestLength));
+		}
+		if (recordOffset(start, length) != start) {
+			// mark the rest of ring unused, the record starts at the beginning:
+			buffer.putInt(physical(start), 0);
+		}
+		return start;
+	}
+
+	/**
+	 * Gets logical offset of record reserved at start, wrapped to the beginning of ring if it does not fit.
+	 */
+	private long recordOffset(long start, long length)
+	{
+		long remaining = capacity-start%capacity;
+		return length > remaining ? start+remaining : start;
+	}
+
+	private void writeHeader(int position, CaptureRecord.Type type, long connectionId, int originalLength, int captured)
+	{
+		buffer.putInt(position, 0);
+		buffer.put(position+4, type.code());
+		buffer.put(position+5, (byte) (captured < originalLength ? CaptureRecord.FLAG_TRUNCATED : 0));
+		buffer.putShort(position+6, (short) 0);
+		buffer.putLong(position+8, createdEpochNanos+System.nanoTime()-createdNanoTime);
+		buffer.putLong(position+16, connectionId);
+		buffer.putInt(position+24, originalLength);
+		buffer.putInt(position+28, captured);
+	}
+
+	/**
+	 * Publishes completed record, once all records reserved before it are published.
+	 */
+	private void commit(long start, long end)
+	{
+		for (int spins = 0; committed.get() != start; ++spins) {
+			// predecessor only copies capped payload, unless it was preempted:
+			if (spins < 64) {
+				Thread.onSpinWait();
+			}
+			else {
+				Thread.yield();
+			}
+		}
+		buffer.putLong(TAIL_OFFSET, tail.get());
+		buffer.putLong(HEAD_OFFSET, end);
+		committed.set(end);
+	}
+
+	private int physical(long offset)
+	{
+		return (int) (HEADER_SIZE+offset%capacity);
+	}
+}
@@ -0,0 +1,113 @@
+package net.dryuf.netty.capture;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Captures traffic of client channel into {@link CaptureFile}, typically placed in front of
+ * {@link net.dryuf.netty.pipeline.ForwarderHandler}.  Data read from client are recorded as
+ * {@link CaptureRecord.Type#CLIENT_DATA}, data written to client as {@link CaptureRecord.Type#SERVER_DATA}.
+ *
+ * Only head of each packet is captured, up to {@link CaptureConfig#getMaxPacketBytes()}, and once the connection
+ * exceeds {@link CaptureConfig#getMaxConnectionBytes()}, only lengths are recorded.
+ */
+public class CaptureHandler extends ChannelDuplexHandler
+{
+	private final CaptureFile file;
+
+	private final int maxPacketBytes;
+
+	private final long connectionId = CaptureFile.nextConnectionId();
+
+	private long remainingBytes;
+
+	private boolean closed;
+
+	/**
+	 * Creates handler and records opening of connection.
+	 *
+	 * @param config
+	 * 	capture configuration
+	 * @param description
+	 * 	description of connection, such as client and backend addresses
+	 * @param initial
+	 * 	data already received from client, null if none, not modified nor released
+	 */
+	public CaptureHandler(CaptureConfig config, String description, ByteBuf initial)
+	{
+		this.file = config.getFile();
+		this.maxPacketBytes = config.getMaxPacketBytes();
+		this.remainingBytes = config.getMaxConnectionBytes();
+		file.append(CaptureRecord.Type.OPEN, connectionId, description.getBytes(StandardCharsets.UTF_8));
+		if (initial != null) {
+			capture(CaptureRecord.Type.CLIENT_DATA, initial);
+		}
+	}
+
+	public long getConnectionId()
+	{
+		return connectionId;
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception
+	{
+		if (msg instanceof ByteBuf) {
+			capture(CaptureRecord.Type.CLIENT_DATA, (ByteBuf) msg);
+		}
+		super.channelRead(ctx, msg);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception
+	{
+		if (msg instanceof ByteBuf && ((ByteBuf) msg).isReadable()) {
+			capture(CaptureRecord.Type.SERVER_DATA, (ByteBuf) msg);
+		}
+		super.write(ctx, msg, promise);
+	}
+
+	@Override
+	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception
+	{
+		if (evt instanceof ChannelInputShutdownEvent) {
+			file.append(CaptureRecord.Type.CLIENT_SHUTDOWN, connectionId, null, 0);
+		}
+		super.userEventTriggered(ctx, evt);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception
+	{
+		recordClose();
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception
+	{
+		recordClose();
+		super.handlerRemoved(ctx);
+	}
+
+	private void capture(CaptureRecord.Type type, ByteBuf data)
+	{
+		int captured = (int) Math.min(maxPacketBytes, Math.min(remainingBytes, data.readableBytes()));
+		remainingBytes -= captured;
+		file.append(type, connectionId, data, captured);
+	}
+
+	private void recordClose()
+	{
+		if (!closed) {
+			closed = true;
+			file.append(CaptureRecord.Type.CLOSE, connectionId, null, 0);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package net.dryuf.netty.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Reader of {@link CaptureFile}.  Can be run from command line to dump the capture as text.
+ *
+ * The file may be read while being captured to, the head is advanced only once record is complete, but the oldest
+ * records may be overwritten meanwhile, reported as corrupted file.
+ */
+public class CaptureReader
+{
+	/**
+	 * Reads all records of capture, from the oldest.
+	 *
+	 * @param path
+	 * 	path of capture file
+	 *
+	 * @return
+	 * 	list of records.
+	 *
+	 * @throws IOException
+	 * 	if file cannot be read or has invalid format
+	 */
+	public static List<CaptureRecord> read(Path path) throws IOException
+	{
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		byte[] magic = new byte[CaptureFile.MAGIC.length];
+		buffer.get(0, magic);
+		if (!Arrays.equals(magic, CaptureFile.MAGIC)) {
+			throw new IOException("Not a capture file: "+path);
+		}
+		long capacity = buffer.getLong(CaptureFile.CAPACITY_OFFSET);
+		long head = buffer.getLong(CaptureFile.HEAD_OFFSET);
+		long tail = buffer.getLong(CaptureFile.TAIL_OFFSET);
+		if (capacity <= 0 || CaptureFile.HEADER_SIZE+capacity > buffer.capacity() || head < tail || head-tail > capacity) {
+			throw new IOException("Corrupted capture file header: "+path);
+		}
+		List<CaptureRecord> records = new ArrayList<>();
+		for (long offset = tail; offset < head; ) {
+			int position = (int) (CaptureFile.HEADER_SIZE+offset%capacity);
+			int length = buffer.getInt(position);
+			if (length == 0) {
+				offset += capacity-offset%capacity;
+				continue;
+			}
+			int captured = buffer.getInt(position+28);
+			if (length < CaptureFile.RECORD_HEADER_SIZE+captured || offset%capacity+length > capacity) {
+				throw new IOException("Corrupted capture record: path="+path+" offset="+offset);
+			}
+			byte[] payload = new byte[captured];
+			buffer.get(position+CaptureFile.RECORD_HEADER_SIZE, payload);
+			records.add(CaptureRecord.builder()
+				.type(CaptureRecord.Type.fromCode(buffer.get(position+4)))
+				.timestamp(buffer.getLong(position+8))
+				.connectionId(buffer.getLong(position+16))
+				.originalLength(buffer.getInt(position+24))
+				.payload(payload)
+				.build());
+			offset += length;
+		}
+		return records;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length != 1) {
+			System.err.println("Usage: CaptureReader capture-file");
+			System.exit(122);
+		}
+		for (CaptureRecord record: read(Paths.get(args[0]))) {
+			Instant time = Instant.ofEpochSecond(0, record.getTimestamp());
+			if (record.getType() == CaptureRecord.Type.OPEN) {
+				System.out.printf("%s %d %s %s%n", time, record.getConnectionId(), record.getType(), record.getText());
+			}
+			else {
+				System.out.printf("%s %d %s length=%d%s%n", time, record.getConnectionId(), record.getType(),
+					record.getOriginalLength(), record.isTruncated() ? " truncated" : "");
+				dump(record.getPayload());
+			}
+		}
+	}
+
+	private static void dump(byte[] payload)
+	{
+		for (int i = 0; i < payload.length; i += 16) {
+			StringBuilder hex = new StringBuilder();
+			StringBuilder text = new StringBuilder();
+			for (int j = i; j < Math.min(i+16, payload.length); ++j) {
+				int b = payload[j]&0xff;
+				hex.append(String.format("%02x ", b));
+				text.append(b >= 32 && b < 127 ? (char) b : '.');
+			}
+			System.out.printf("\t%08x  %-48s %s%n", i, hex, text);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package net.dryuf.netty.capture;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Single record of {@link CaptureFile}, as read by {@link CaptureReader}.
+ */
+@Builder(builderClassName = "Builder")
+@Value
+public class CaptureRecord
+{
+	public static final int FLAG_TRUNCATED = 1;
+
+	/**
+	 * Type of record.
+	 */
+	public enum Type
+	{
+		/** Connection opened, payload contains description of client and backend. */
+		OPEN(1),
+		/** Data received from client. */
+		CLIENT_DATA(2),
+		/** Data sent to client. */
+		SERVER_DATA(3),
+		/** Client shut down its output. */
+		CLIENT_SHUTDOWN(4),
+		/** Connection closed. */
+		CLOSE(5),
+		;
+
+		private final byte code;
+
+		Type(int code)
+		{
+			this.code = (byte) code;
+		}
+
+		public byte code()
+		{
+			return code;
+		}
+
+		public static Type fromCode(int code)
+		{
+			for (Type type: values()) {
+				if (type.code == code) {
+					return type;
+				}
+			}
+			throw new IllegalArgumentException("Unknown capture record type: "+code);
+		}
+	}
+
+	/** Type of record. */
+	Type type;
+
+	/** Timestamp, in nanoseconds since epoch. */
+	long timestamp;
+
+	/** Connection id. */
+	long connectionId;
+
+	/** Length of original payload. */
+	int originalLength;
+
+	/** Captured part of payload. */
+	byte[] payload;
+
+	/**
+	 * Checks whether payload is truncated.
+	 *
+	 * @return
+	 * 	true if only part of original payload was captured.
+	 */
+	public boolean isTruncated()
+	{
+		return payload.length < originalLength;
+	}
+
+	/**
+	 * Gets payload as text, typically description of {@link Type#OPEN} record.
+	 *
+	 * @return
+	 * 	payload decoded as UTF-8.
+	 */
+	public String getText()
+	{
+		return new String(payload, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,210 @@
+package net.dryuf.netty.capture;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.test.ClientServerTester;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Replays client traffic of capture against server, through {@link ClientServerTester}.
+ *
+ * Each captured connection is opened to the target, captured client data are sent in order, followed by shutdown
+ * if the client shut down its output.  The connection completes once it receives as many bytes as captured server
+ * sent, or once the server closes or shuts it down.  Truncated packets are replayed only in their captured part.
+ */
+@Log4j2
+public class CaptureReplay
+{
+	/**
+	 * Replays captured client traffic.
+	 *
+	 * @param tester
+	 * 	tester to run the clients with
+	 * @param records
+	 * 	capture records, as read by {@link CaptureReader}
+	 * @param target
+	 * 	address of server to replay against
+	 *
+	 * @return
+	 * 	future with summary of replay.
+	 */
+	public static CompletableFuture<Result> replay(ClientServerTester tester, List<CaptureRecord> records, AddressSpec target)
+	{
+		Map<Long, Session> sessions = new LinkedHashMap<>();
+		for (CaptureRecord record: records) {
+			Session session = sessions.get(record.getConnectionId());
+			if (session == null) {
+				if (record.getType() != CaptureRecord.Type.OPEN) {
+					// beginning of connection overwritten in the ring:
+					continue;
+				}
+				sessions.put(record.getConnectionId(), session = new Session());
+			}
+			switch (record.getType()) {
+			case CLIENT_DATA:
+				session.data.add(record.getPayload());
+				session.truncated |= record.isTruncated();
+				break;
+
+			case SERVER_DATA:
+				session.expectedBytes += record.getOriginalLength();
+				break;
+
+			case CLIENT_SHUTDOWN:
+				session.shutdown = true;
+				break;
+
+			default:
+				break;
+			}
+		}
+		List<CompletableFuture<long[]>> futures = new ArrayList<>();
+		for (Session session: sessions.values()) {
+			futures.add(replaySession(tester, session, target));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+			.thenApply(v -> {
+				long sent = 0, received = 0, expected = 0;
+				int truncated = 0;
+				for (CompletableFuture<long[]> future: futures) {
+					long[] result = future.join();
+					sent += result[0];
+					received += result[1];
+				}
+				for (Session session: sessions.values()) {
+					expected += session.expectedBytes;
+					truncated += session.truncated ? 1 : 0;
+				}
+				return Result.builder()
+					.connections(sessions.size())
+					.truncatedConnections(truncated)
+					.sentBytes(sent)
+					.receivedBytes(received)
+					.expectedBytes(expected)
+					.build();
+			});
+	}
+
+	private static CompletableFuture<long[]> replaySession(ClientServerTester tester, Session session, AddressSpec target)
+	{
+		CompletableFuture<long[]> result = new CompletableFuture<>();
+		long sent = session.data.stream().mapToLong(d -> d.length).sum();
+		tester.nettyEngine().connect(target, new ChannelInboundHandlerAdapter()
+		{
+			long received;
+
+			@Override
+			public void channelActive(ChannelHandlerContext ctx)
+			{
+				ctx.channel().config().setAutoRead(true);
+				for (byte[] data: session.data) {
+					ctx.write(Unpooled.wrappedBuffer(data), ctx.voidPromise());
+				}
+				if (session.shutdown) {
+					tester.nettyEngine().shutdownOutput((DuplexChannel) ctx.channel());
+				}
+				else {
+					ctx.flush();
+				}
+				checkDone(ctx);
+			}
+
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg)
+			{
+				received += ((ByteBuf) msg).readableBytes();
+				((ByteBuf) msg).release();
+				checkDone(ctx);
+			}
+
+			@Override
+			public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+			{
+				if (evt instanceof ChannelInputShutdownEvent) {
+					finish(ctx);
+				}
+			}
+
+			@Override
+			public void channelInactive(ChannelHandlerContext ctx)
+			{
+				finish(ctx);
+			}
+
+			@Override
+			public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+			{
+				log.debug("Replayed connection failed: {}", ctx.channel(), cause);
+				finish(ctx);
+			}
+
+			private void checkDone(ChannelHandlerContext ctx)
+			{
+				if (received >= session.expectedBytes) {
+					finish(ctx);
+				}
+			}
+
+			private void finish(ChannelHandlerContext ctx)
+			{
+				if (result.complete(new long[]{ sent, received })) {
+					ctx.close();
+				}
+			}
+		}, null)
+			.whenComplete((channel, ex) -> {
+				if (ex != null) {
+					result.completeExceptionally(ex);
+				}
+			});
+		return result;
+	}
+
+	private static class Session
+	{
+		final List<byte[]> data = new ArrayList<>();
+
+		long expectedBytes;
+
+		boolean shutdown;
+
+		boolean truncated;
+	}
+
+	/**
+	 * Summary of replay.
+	 */
+	@Builder(builderClassName = "Builder")
+	@Value
+	public static class Result
+	{
+		/** Number of replayed connections. */
+		int connections;
+
+		/** Number of connections with truncated client data. */
+		int truncatedConnections;
+
+		/** Number of bytes sent to server. */
+		long sentBytes;
+
+		/** Number of bytes received from server. */
+		long receivedBytes;
+
+		/** Number of bytes captured server sent. */
+		long expectedBytes;
+	}
+}
@@ -0,0 +1,25 @@
+package net.dryuf.netty.core;
+
+import lombok.Builder;
+import lombok.Value;
+
+
+/**
+ * Options of connecting channels, applied by {@link NettyEngine} when connecting.
+ */
+@Builder(builderClassName = "Builder", toBuilder = true)
+@Value
+public class ConnectOptions
+{
+	/** Default options, connection served by engine worker group. */
+	public static final ConnectOptions DEFAULT = ConnectOptions.builder().build();
+
+	/**
+	 * Worker partition serving the connection, see {@link NettyEngine#definePartition(String, int)}, engine worker
+	 * group if null.
+	 */
+	String partition;
+
+	/** Low latency options of the connection, default if null. */
+	StreamOptions streamOptions;
+}
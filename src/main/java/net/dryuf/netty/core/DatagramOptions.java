@@ -0,0 +1,46 @@
+package net.dryuf.netty.core;
+
+import lombok.Builder;
+import lombok.Value;
+
+
+/**
+ * Options of datagram channels, applied by {@link NettyEngine} when binding or connecting.
+ *
+ * Options not supported by the provider are ignored, see {@link net.dryuf.netty.provider.ChannelProvider}.
+ */
+@Builder(builderClassName = "Builder", toBuilder = true)
+@Value
+public class DatagramOptions
+{
+	/** Default options, leaving everything on OS defaults. */
+	public static final DatagramOptions DEFAULT = DatagramOptions.builder().build();
+
+	/** Size of socket receive buffer, null for OS default. */
+	Integer receiveBufferSize;
+
+	/** Size of socket send buffer, null for OS default. */
+	Integer sendBufferSize;
+
+	/** Whether to set SO_REUSEPORT, allowing multiple sockets bound to the same address. */
+	boolean reusePort;
+
+	/** Whether to enable UDP Generic Receive Offload, coalescing received datagrams in kernel. */
+	boolean gro;
+
+	/**
+	 * Max number of datagrams received in single syscall (recvmmsg), into slices of single pooled buffer.  Single
+	 * datagram reads if 1 or less or if not supported by provider.
+	 */
+	int receiveBatch;
+
+	/** Max size of received datagram payload when receiving in batches, larger datagrams are truncated. */
+	@Builder.Default
+	int maxDatagramSize = 2048;
+
+	/**
+	 * Worker partition serving the channel, see {@link NettyEngine#definePartition(String, int)}, engine worker group
+	 * if null.
+	 */
+	String partition;
+}
@@ -0,0 +1,124 @@
+package net.dryuf.netty.core;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.MessageSizeEstimator;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.socket.DuplexChannelConfig;
+
+import java.util.Map;
+
+
+/**
+ * Channel config of non-socket {@link io.netty.channel.socket.DuplexChannel} implementations, supporting
+ * {@link ChannelOption#ALLOW_HALF_CLOSURE}.
+ */
+public class DefaultDuplexChannelConfig extends DefaultChannelConfig implements DuplexChannelConfig
+{
+	private volatile boolean allowHalfClosure;
+
+	public DefaultDuplexChannelConfig(Channel channel)
+	{
+		super(channel);
+	}
+
+	@Override
+	public Map<ChannelOption<?>, Object> getOptions()
+	{
+		return getOptions(super.getOptions(), ChannelOption.ALLOW_HALF_CLOSURE);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T getOption(ChannelOption<T> option)
+	{
+		if (option == ChannelOption.ALLOW_HALF_CLOSURE) {
+			return (T) Boolean.valueOf(isAllowHalfClosure());
+		}
+		return super.getOption(option);
+	}
+
+	@Override
+	public <T> boolean setOption(ChannelOption<T> option, T value)
+	{
+		validate(option, value);
+		if (option == ChannelOption.ALLOW_HALF_CLOSURE) {
+			setAllowHalfClosure((Boolean) value);
+			return true;
+		}
+		return super.setOption(option, value);
+	}
+
+	@Override
+	public boolean isAllowHalfClosure()
+	{
+		return allowHalfClosure;
+	}
+
+	@Override
+	public DefaultDuplexChannelConfig setAllowHalfClosure(boolean allowHalfClosure)
+	{
+		this.allowHalfClosure = allowHalfClosure;
+		return this;
+	}
+
+	@Override
+	@Deprecated
+	public DefaultDuplexChannelConfig setMaxMessagesPerRead(int maxMessagesPerRead)
+	{
+		super.setMaxMessagesPerRead(maxMessagesPerRead);
+		return this;
+	}
+
+	@Override
+	public DefaultDuplexChannelConfig setWriteSpinCount(int writeSpinCount)
+	{
+		super.setWriteSpinCount(writeSpinCount);
+		return this;
+	}
+
+	@Override
+	public DefaultDuplexChannelConfig setAllocator(ByteBufAllocator allocator)
+	{
+		super.setAllocator(allocator);
+		return this;
+	}
+
+	@Override
+	public DefaultDuplexChannelConfig setRecvByteBufAllocator(RecvByteBufAllocator allocator)
+	{
+		super.setRecvByteBufAllocator(allocator);
+		return this;
+	}
+
+	@Override
+	public DefaultDuplexChannelConfig setAutoRead(boolean autoRead)
+	{
+		super.setAutoRead(autoRead);
+		return this;
+	}
+
+	@Override
+	public DefaultDuplexChannelConfig setAutoClose(boolean autoClose)
+	{
+		super.setAutoClose(autoClose);
+		return this;
+	}
+
+	@Override
+	public DefaultDuplexChannelConfig setMessageSizeEstimator(MessageSizeEstimator estimator)
+	{
+		super.setMessageSizeEstimator(estimator);
+		return this;
+	}
+
+	@Override
+	public DefaultDuplexChannelConfig setWriteBufferWaterMark(WriteBufferWaterMark writeBufferWaterMark)
+	{
+		super.setWriteBufferWaterMark(writeBufferWaterMark);
+		return this;
+	}
+}
@@ -0,0 +1,255 @@
+package net.dryuf.netty.core;
+
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Monitor of event loops of {@link NettyEngine}, started by {@link NettyEngine#startEventLoopMonitor(Config)}.
+ *
+ * Every interval, the engine timer submits timestamped probe task to each existing loop, the delay until the task
+ * runs is the scheduling lag of the loop.  A probe not run by the next interval is reported with the time it waits
+ * so far, so stuck loop is visible too.  Along with that, pending tasks, registered channels and CPU time of loop
+ * thread are sampled.  At idle, the cost is single timer tick and one task per loop each interval.
+ *
+ * Netty loops do not account time spent on I/O and tasks separately, the configured ioRatio is reported instead,
+ * together with CPU utilization of the loop thread.
+ */
+@Log4j2
+public class EventLoopMonitor implements AutoCloseable
+{
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+	private final NettyEngine nettyEngine;
+
+	private final Config config;
+
+	private final Map<EventExecutor, LoopState> loops = new ConcurrentHashMap<>();
+
+	private volatile Timeout timeout;
+
+	private volatile boolean closed;
+
+	EventLoopMonitor(NettyEngine nettyEngine, Config config)
+	{
+		this.nettyEngine = nettyEngine;
+		this.config = config;
+	}
+
+	void start()
+	{
+		schedule();
+	}
+
+	/**
+	 * Gets current statistics of all existing loops.
+	 *
+	 * @return
+	 * 	statistics per loop, ordered by group.
+	 */
+	public List<EventLoopStats> getStats()
+	{
+		List<EventLoopStats> result = new ArrayList<>();
+		nettyEngine.listEventLoops().forEach((executor, group) -> {
+			LoopState state = loops.get(executor);
+			result.add(state != null ? state.stats() : new LoopState(group, executor).stats());
+		});
+		return result;
+	}
+
+	@Override
+	public void close()
+	{
+		closed = true;
+		Timeout timeout = this.timeout;
+		if (timeout != null) {
+			timeout.cancel();
+		}
+	}
+
+	private void schedule()
+	{
+		if (closed) {
+			return;
+		}
+		try {
+			timeout = nettyEngine.getTimer().newTimeout(t -> tick(), config.getInterval(), TimeUnit.MILLISECONDS);
+		}
+		catch (IllegalStateException ex) {
+			// engine or timer closed:
+			closed = true;
+		}
+	}
+
+	private void tick()
+	{
+		if (closed) {
+			return;
+		}
+		Map<EventExecutor, String> current = nettyEngine.listEventLoops();
+		loops.keySet().retainAll(current.keySet());
+		current.forEach((executor, group) -> {
+			LoopState state = loops.computeIfAbsent(executor, e -> new LoopState(group, e));
+			state.sampleCpu();
+			state.checkThresholds();
+			state.probe();
+		});
+		schedule();
+	}
+
+	/**
+	 * Monitor configuration.
+	 */
+	@Builder(builderClassName = "Builder", toBuilder = true)
+	@Value
+	public static class Config
+	{
+		public static final Config DEFAULT = Config.builder().build();
+
+		/** Interval of probing, in milliseconds. */
+		@Builder.Default
+		long interval = 1000;
+
+		/** Lag to log warning at, in milliseconds, no logging if 0. */
+		long lagThreshold;
+
+		/** Number of pending tasks to log warning at, no logging if 0. */
+		int pendingTasksThreshold;
+	}
+
+	private class LoopState
+	{
+		final String group;
+
+		final EventExecutor executor;
+
+		final int ioRatio;
+
+		/** Time when the outstanding probe was submitted, 0 if none. */
+		volatile long submitted;
+
+		volatile long lagNanos;
+
+		volatile long maxLagNanos;
+
+		volatile long threadId = -1;
+
+		volatile String threadName;
+
+		volatile double cpuUtilization = -1;
+
+		long lastCpuNanos = -1;
+
+		long lastSampled;
+
+		LoopState(String group, EventExecutor executor)
+		{
+			this.group = group;
+			this.executor = executor;
+			this.ioRatio = nettyEngine.getConfiguredIoRatio(group);
+		}
+
+		void probe()
+		{
+			long now = System.nanoTime();
+			long submitted = this.submitted;
+			if (submitted != 0) {
+				updateLag(now-submitted);
+				return;
+			}
+			this.submitted = now;
+			try {
+				executor.execute(this::probed);
+			}
+			catch (RejectedExecutionException ex) {
+				this.submitted = 0;
+			}
+		}
+
+		void probed()
+		{
+			updateLag(System.nanoTime()-submitted);
+			if (threadId < 0) {
+				threadName = Thread.currentThread().getName();
+				threadId = Thread.currentThread().getId();
+			}
+			submitted = 0;
+		}
+
+		void updateLag(long lag)
+		{
+			lagNanos = lag;
+			if (lag > maxLagNanos) {
+				maxLagNanos = lag;
+			}
+		}
+
+		void sampleCpu()
+		{
+			long id = threadId;
+			if (id < 0 || !THREAD_MX_BEAN.isThreadCpuTimeSupported()) {
+				return;
+			}
+			long now = System.nanoTime();
+			long cpu = THREAD_MX_BEAN.getThreadCpuTime(id);
+			if (lastCpuNanos >= 0 && cpu >= 0 && now > lastSampled) {
+				cpuUtilization = (double) (cpu-lastCpuNanos)/(now-lastSampled);
+			}
+			lastCpuNanos = cpu;
+			lastSampled = now;
+		}
+
+		void checkThresholds()
+		{
+			if (config.getLagThreshold() <= 0 && config.getPendingTasksThreshold() <= 0) {
+				return;
+			}
+			long lag = submitted != 0 ? System.nanoTime()-submitted : lagNanos;
+			int pendingTasks = pendingTasks();
+			if ((config.getLagThreshold() > 0 && lag >= TimeUnit.MILLISECONDS.toNanos(config.getLagThreshold())) ||
+				(config.getPendingTasksThreshold() > 0 && pendingTasks >= config.getPendingTasksThreshold())) {
+				log.warn("Event loop saturated: group={} thread={} lagMs={} pendingTasks={} registeredChannels={} cpu={}",
+					group, threadName, lag/1_000_000.0, pendingTasks, registeredChannels(), cpuUtilization);
+			}
+		}
+
+		int pendingTasks()
+		{
+			return executor instanceof SingleThreadEventExecutor ? ((SingleThreadEventExecutor) executor).pendingTasks() : 0;
+		}
+
+		int registeredChannels()
+		{
+			return executor instanceof SingleThreadEventLoop ? ((SingleThreadEventLoop) executor).registeredChannels() : -1;
+		}
+
+		EventLoopStats stats()
+		{
+			long submitted = this.submitted;
+			return EventLoopStats.builder()
+				.group(group)
+				.thread(threadName)
+				.lagNanos(submitted != 0 ? Math.max(lagNanos, System.nanoTime()-submitted) : lagNanos)
+				.maxLagNanos(maxLagNanos)
+				.pendingTasks(pendingTasks())
+				.registeredChannels(registeredChannels())
+				.cpuUtilization(cpuUtilization)
+				.ioRatio(ioRatio)
+				.build();
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package net.dryuf.netty.core;
+
+import lombok.Builder;
+import lombok.Value;
+
+
+/**
+ * Load of single event loop, see {@link EventLoopMonitor#getStats()}.
+ */
+@Builder(builderClassName = "Builder")
+@Value
+public class EventLoopStats
+{
+	/** Group of the loop, boss or name of worker partition. */
+	String group;
+
+	/** Name of loop thread, null until the first probe ran. */
+	String thread;
+
+	/**
+	 * Scheduling lag of the last probe, time between submitting task and its execution, in nanoseconds.  If the
+	 * probe is still waiting, the time it waits so far.
+	 */
+	long lagNanos;
+
+	/** Max scheduling lag since monitor start, in nanoseconds. */
+	long maxLagNanos;
+
+	/** Number of tasks waiting in loop queue. */
+	int pendingTasks;
+
+	/** Number of channels registered to the loop, -1 if not tracked by the loop implementation. */
+	int registeredChannels;
+
+	/** Fraction of wall time the loop thread spent on CPU during the last interval, -1 if not available. */
+	double cpuUtilization;
+
+	/** Configured percentage of time spent on I/O compared to tasks. */
+	int ioRatio;
+}
@@ -0,0 +1,44 @@
+package net.dryuf.netty.core;
+
+import lombok.Builder;
+import lombok.Value;
+
+
+/**
+ * Timeouts of forwarded connection pair, see {@link NettyEngine#forwardDuplex(io.netty.channel.socket.DuplexChannel,
+ * io.netty.channel.socket.DuplexChannel, ForwardTimeouts)}.  All in milliseconds, disabled if 0.  When any of them
+ * expires, both channels are closed.
+ */
+@Builder(builderClassName = "Builder", toBuilder = true)
+@Value
+public class ForwardTimeouts
+{
+	/** Default timeouts, all disabled. */
+	public static final ForwardTimeouts DEFAULT = ForwardTimeouts.builder().build();
+
+	/** Max time without data read from either side. */
+	long readIdle;
+
+	/**
+	 * Max time without data written to either side, like writer idle of {@link io.netty.handler.timeout.IdleStateHandler}
+	 * applied to the pair.  Steady transfer in single direction keeps the pair open.
+	 */
+	long writeIdle;
+
+	/** Max time the pair stays open after one side shut down its output. */
+	long halfClosedLinger;
+
+	/** Max time destination may keep forwarded data unflushed, not accepting more, before it is considered slow. */
+	long slowConsumer;
+
+	/**
+	 * Checks whether any timeout is enabled.
+	 *
+	 * @return
+	 * 	true if any timeout is enabled.
+	 */
+	public boolean isEnabled()
+	{
+		return readIdle > 0 || writeIdle > 0 || halfClosedLinger > 0 || slowConsumer > 0;
+	}
+}
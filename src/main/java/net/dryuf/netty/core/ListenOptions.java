@@ -0,0 +1,25 @@
+package net.dryuf.netty.core;
+
+import lombok.Builder;
+import lombok.Value;
+
+
+/**
+ * Options of listening channels, applied by {@link NettyEngine} when listening.
+ */
+@Builder(builderClassName = "Builder", toBuilder = true)
+@Value
+public class ListenOptions
+{
+	/** Default options, accepted connections served by engine worker group. */
+	public static final ListenOptions DEFAULT = ListenOptions.builder().build();
+
+	/**
+	 * Worker partition serving accepted connections, see {@link NettyEngine#definePartition(String, int)}, engine
+	 * worker group if null.
+	 */
+	String partition;
+
+	/** Low latency options of listener and accepted connections, default if null. */
+	StreamOptions streamOptions;
+}
@@ -0,0 +1,375 @@
+package net.dryuf.netty.core;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+
+/**
+ * Budget of memory buffered by handlers across all channels of {@link NettyEngine}, see
+ * {@link NettyEngine#getMemoryBudget()}.
+ *
+ * Cumulating and queuing handlers find the budget in {@link #ATTRIBUTE} of their channel, set for all channels
+ * created by the engine, and open an {@link Account}.  Data are acquired from the account before being buffered and
+ * released once consumed.  When the total usage crosses pause watermark, consumers holding more than average get
+ * their reads paused until the usage drops below resume watermark, then the reads continue.  Acquisition which would
+ * exceed the limit is rejected and the handler fails the connection instead of exhausting memory.
+ */
+@Log4j2
+public class MemoryBudget
+{
+	/** Channel attribute holding the budget the handlers account against. */
+	public static final AttributeKey<MemoryBudget> ATTRIBUTE = AttributeKey.valueOf(MemoryBudget.class, "memoryBudget");
+
+	private final AtomicLong usage = new AtomicLong();
+
+	private final LongAdder rejected = new LongAdder();
+
+	private final Set<Account> accounts = ConcurrentHashMap.newKeySet();
+
+	private volatile Config config;
+
+	private volatile long pauseWatermark;
+
+	private volatile long resumeWatermark;
+
+	/** Whether the usage crossed pause watermark and did not drop below resume watermark yet, guarded by this. */
+	private volatile boolean overloaded;
+
+	public MemoryBudget(Config config)
+	{
+		configure(config);
+	}
+
+	/**
+	 * Gets budget of channel.
+	 *
+	 * @param channel
+	 * 	channel to get budget for
+	 *
+	 * @return
+	 * 	budget of channel or null if channel does not account its memory.
+	 */
+	public static MemoryBudget of(Channel channel)
+	{
+		return channel.hasAttr(ATTRIBUTE) ? channel.attr(ATTRIBUTE).get() : null;
+	}
+
+	/**
+	 * Updates budget configuration.  Already buffered data are kept even if they exceed the new limit.
+	 *
+	 * @param config
+	 * 	new configuration
+	 */
+	public void configure(Config config)
+	{
+		if (config.getLimit() <= 0) {
+			throw new IllegalArgumentException("Limit must be positive: limit="+config.getLimit());
+		}
+		if (!(config.getResumeRatio() <= config.getPauseRatio() && config.getPauseRatio() <= 1)) {
+			throw new IllegalArgumentException("Expected resumeRatio <= pauseRatio <= 1: resumeRatio="+
+				config.getResumeRatio()+" pauseRatio="+config.getPauseRatio());
+		}
+		synchronized (this) {
+			this.config = config;
+			this.pauseWatermark = (long) (config.getLimit()*config.getPauseRatio());
+			this.resumeWatermark = (long) (config.getLimit()*config.getResumeRatio());
+		}
+		checkResume();
+	}
+
+	public Config getConfig()
+	{
+		return config;
+	}
+
+	/**
+	 * Checks whether the budget has finite limit.  Unlimited budget is not attached to channels at all, so their
+	 * handlers do not open accounts nor contend on shared usage.
+	 *
+	 * @return
+	 * 	true if the limit is finite.
+	 */
+	public boolean isLimited()
+	{
+		return config.getLimit() != Long.MAX_VALUE;
+	}
+
+	/**
+	 * Gets current usage.
+	 *
+	 * @return
+	 * 	number of bytes buffered across all accounts.
+	 */
+	public long getUsage()
+	{
+		return usage.get();
+	}
+
+	/**
+	 * Gets number of rejected acquisitions since start.
+	 *
+	 * @return
+	 * 	number of rejected acquisitions.
+	 */
+	public long getRejectedCount()
+	{
+		return rejected.sum();
+	}
+
+	/**
+	 * Gets consumers holding the most memory.
+	 *
+	 * @param count
+	 * 	max number of consumers to return
+	 *
+	 * @return
+	 * 	consumers ordered by usage, descending.
+	 */
+	public List<MemoryConsumer> getTopConsumers(int count)
+	{
+		return accounts.stream()
+			.map(Account::toConsumer)
+			.sorted(Comparator.comparingLong(MemoryConsumer::getUsage).reversed())
+			.limit(count)
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Opens account for handler buffering data.
+	 *
+	 * @param channel
+	 * 	channel the handler belongs to
+	 * @param owner
+	 * 	description of handler
+	 *
+	 * @return
+	 * 	new account, to be closed once handler is removed.
+	 */
+	public Account open(Channel channel, String owner)
+	{
+		Account account = new Account(channel, owner);
+		accounts.add(account);
+		return account;
+	}
+
+	private void checkOverload(Account account)
+	{
+		if (usage.get() <= pauseWatermark) {
+			return;
+		}
+		synchronized (this) {
+			long total = usage.get();
+			if (total <= pauseWatermark) {
+				return;
+			}
+			long average = total/Math.max(1, accounts.size());
+			if (!overloaded) {
+				overloaded = true;
+				int paused = 0;
+				for (Account a: accounts) {
+					if (a.usage > average) {
+						a.paused = true;
+						++paused;
+					}
+				}
+				log.warn("Memory budget overloaded, pausing largest consumers: usage={} limit={} paused={} top={}",
+					total, config.getLimit(), paused, getTopConsumers(3));
+			}
+			else if (account.usage > average) {
+				account.paused = true;
+			}
+		}
+	}
+
+	private void checkResume()
+	{
+		if (!overloaded || usage.get() > resumeWatermark) {
+			return;
+		}
+		List<Account> resumed;
+		synchronized (this) {
+			if (!overloaded || usage.get() > resumeWatermark) {
+				return;
+			}
+			overloaded = false;
+			resumed = accounts.stream()
+				.filter(a -> a.paused)
+				.collect(Collectors.toList());
+			resumed.forEach(a -> a.paused = false);
+		}
+		log.info("Memory budget recovered, resuming consumers: usage={} resumed={}", usage.get(), resumed.size());
+		resumed.forEach(Account::resume);
+	}
+
+	/**
+	 * Memory account of single handler.  Acquire and release are expected to be called from the channel event loop.
+	 */
+	public class Account implements AutoCloseable
+	{
+		private final Channel channel;
+
+		private final String owner;
+
+		private volatile long usage;
+
+		private volatile boolean paused;
+
+		private volatile Runnable resumeListener;
+
+		private Account(Channel channel, String owner)
+		{
+			this.channel = channel;
+			this.owner = owner;
+		}
+
+		/**
+		 * Acquires memory before buffering it.
+		 *
+		 * @param bytes
+		 * 	number of bytes to buffer
+		 *
+		 * @return
+		 * 	true if acquired, false if the budget limit would be exceeded.
+		 */
+		public boolean tryAcquire(long bytes)
+		{
+			long limit = config.getLimit();
+			for (;;) {
+				long current = MemoryBudget.this.usage.get();
+				if (current+bytes > limit) {
+					rejected.increment();
+					return false;
+				}
+				if (MemoryBudget.this.usage.compareAndSet(current, current+bytes)) {
+					break;
+				}
+			}
+			usage += bytes;
+			checkOverload(this);
+			return true;
+		}
+
+		/**
+		 * Releases consumed memory.
+		 *
+		 * @param bytes
+		 * 	number of bytes no longer buffered
+		 */
+		public void release(long bytes)
+		{
+			if (bytes == 0) {
+				return;
+			}
+			usage -= bytes;
+			MemoryBudget.this.usage.addAndGet(-bytes);
+			checkResume();
+		}
+
+		/**
+		 * Updates usage to the current amount of buffered data, releasing consumed memory.  Growth is accounted
+		 * without checking the limit.
+		 *
+		 * @param current
+		 * 	number of bytes currently buffered
+		 */
+		public void update(long current)
+		{
+			long delta = current-usage;
+			if (delta < 0) {
+				release(-delta);
+			}
+			else if (delta > 0) {
+				usage += delta;
+				MemoryBudget.this.usage.addAndGet(delta);
+				checkOverload(this);
+			}
+		}
+
+		/**
+		 * Checks whether reading should be paused.
+		 *
+		 * @return
+		 * 	true if the consumer is paused by the budget.
+		 */
+		public boolean isPaused()
+		{
+			return paused;
+		}
+
+		/**
+		 * Sets listener called once paused consumer is resumed, called from arbitrary thread.
+		 *
+		 * @param resumeListener
+		 * 	listener to call
+		 */
+		public void setResumeListener(Runnable resumeListener)
+		{
+			this.resumeListener = resumeListener;
+		}
+
+		public long getUsage()
+		{
+			return usage;
+		}
+
+		@Override
+		public void close()
+		{
+			if (accounts.remove(this)) {
+				paused = false;
+				release(usage);
+			}
+		}
+
+		private void resume()
+		{
+			Runnable listener = resumeListener;
+			if (listener != null) {
+				listener.run();
+			}
+		}
+
+		private MemoryConsumer toConsumer()
+		{
+			return MemoryConsumer.builder()
+				.channel(channel.toString())
+				.owner(owner)
+				.usage(usage)
+				.paused(paused)
+				.build();
+		}
+	}
+
+	/**
+	 * Budget configuration.
+	 */
+	@Builder(builderClassName = "Builder", toBuilder = true)
+	@Value
+	public static class Config
+	{
+		public static final Config DEFAULT = Config.builder().build();
+
+		/** Max number of buffered bytes, unlimited by default. */
+		@Builder.Default
+		long limit = Long.MAX_VALUE;
+
+		/** Fraction of limit at which the largest consumers get paused. */
+		@Builder.Default
+		double pauseRatio = 0.75;
+
+		/** Fraction of limit below which paused consumers are resumed. */
+		@Builder.Default
+		double resumeRatio = 0.5;
+	}
+}
@@ -0,0 +1,25 @@
+package net.dryuf.netty.core;
+
+import lombok.Builder;
+import lombok.Value;
+
+
+/**
+ * Consumer of buffered memory, see {@link MemoryBudget#getTopConsumers(int)}.
+ */
+@Builder(builderClassName = "Builder")
+@Value
+public class MemoryConsumer
+{
+	/** Description of the channel buffering the data. */
+	String channel;
+
+	/** Handler buffering the data. */
+	String owner;
+
+	/** Number of buffered bytes. */
+	long usage;
+
+	/** Whether reading is paused by the budget. */
+	boolean paused;
+}
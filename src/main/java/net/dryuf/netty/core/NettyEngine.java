@@ -4,27 +4,56 @@ import com.google.common.collect.ImmutableMap;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFactory;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.socket.DuplexChannel;
 import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.channel.unix.DomainSocketChannel;
+import io.netty.channel.unix.DomainSocketReadMode;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.SegmentedDatagramPacket;
+import io.netty.channel.unix.UnixChannel;
+import io.netty.channel.unix.UnixChannelOption;
 import io.netty.resolver.InetNameResolver;
 import io.netty.resolver.dns.DnsNameResolverBuilder;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.Future;
-import lombok.Getter;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
 import lombok.extern.log4j.Log4j2;
 import net.dryuf.base.concurrent.future.FutureUtil;
 import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.handoff.HandoffProtocol;
+import net.dryuf.netty.handoff.HandoffReceiverHandler;
+import net.dryuf.netty.jfr.ConnectEvent;
+import net.dryuf.netty.jfr.ListenEvent;
+import net.dryuf.netty.jfr.ResolveEvent;
+import net.dryuf.netty.jfr.WriteAndShutdownEvent;
+import net.dryuf.netty.pipeline.ForwardTimeoutTracker;
 import net.dryuf.netty.pipeline.ForwarderHandler;
 import net.dryuf.netty.provider.ChannelProvider;
 import net.dryuf.netty.provider.EpollChannelProvider;
 import net.dryuf.netty.provider.KqueueChannelProvider;
 import net.dryuf.netty.provider.NioChannelProvider;
+import net.dryuf.netty.provider.ThreadingConfig;
+import net.dryuf.netty.shm.ShmAddress;
 import net.dryuf.netty.util.NettyFutures;
 import org.apache.commons.lang3.SystemUtils;
 
@@ -42,11 +71,17 @@ import java.net.SocketAddress;
 import java.net.StandardProtocolFamily;
 import java.net.UnixDomainSocketAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 
 /**
@@ -65,27 +100,54 @@ public class NettyEngine implements Closeable
 		.put(AddressSpec.PROTO_TCP, InetAddress.class)
 		.build();
 
+	/** Max number of segments in single segmented datagram, limited by Linux UDP_MAX_SEGMENTS. */
+	public static final int MAX_DATAGRAM_SEGMENTS = 64;
+
+	/** Max total payload of single segmented datagram. */
+	public static final int MAX_SEGMENTED_DATAGRAM = 65_507;
+
+	/** Max number of pending TCP Fast Open requests on listening socket. */
+	public static final int TCP_FASTOPEN_QUEUE = 256;
+
+	/** Name of default partition, the engine worker group. */
+	public static final String DEFAULT_PARTITION = "default";
+
+	/** Name of boss group, as reported by {@link EventLoopMonitor}. */
+	public static final String BOSS_GROUP = "boss";
+
+	/** Netty default ioRatio of event loops. */
+	private static final int DEFAULT_IO_RATIO = 50;
+
 	private ChannelProvider channelProvider;
 
-	@Getter
-	private EventLoopGroup bossGroup;
-	@Getter
-	private EventLoopGroup workerGroup;
+	private volatile EventLoopGroup bossGroup;
+
+	private volatile EventLoopGroup workerGroup;
+
+	private volatile InetNameResolver inetNameResolver;
 
-	@Getter
-	private final InetNameResolver inetNameResolver;
+	private volatile Timer timer;
 
+	private EventLoopMonitor eventLoopMonitor;
+
+	private final MemoryBudget memoryBudget = new MemoryBudget(MemoryBudget.Config.DEFAULT);
+
+	/** Worker partitions by name, including the default one, guarded by this. */
+	private final Map<String, Partition> partitions = new LinkedHashMap<>();
+
+	private boolean closed;
+
+	/**
+	 * Creates engine.  The event loop groups, resolver and timer are created on first use, so constructing engine
+	 * which is used only partially (or not at all) is cheap.
+	 *
+	 * @param channelProvider
+	 * 	provider of channels and event loops
+	 */
 	public NettyEngine(ChannelProvider channelProvider)
 	{
 		this.channelProvider = channelProvider;
-
-		this.bossGroup = channelProvider.createBossEventLoopGroup();
-		this.workerGroup = channelProvider.createWorkerEventLoopGroup();
-
-		this.inetNameResolver = new DnsNameResolverBuilder()
-			.eventLoop(workerGroup.next())
-			.channelFactory(channelProvider.getDatagramChannel(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)))
-			.build();
+		this.partitions.put(DEFAULT_PARTITION, new Partition(DEFAULT_PARTITION, 0));
 	}
 
 	@Inject
@@ -94,6 +156,232 @@ public class NettyEngine implements Closeable
 		this(createChannelProvider());
 	}
 
+	/**
+	 * Gets event loop group accepting connections, created on first use.
+	 *
+	 * @return
+	 * 	boss event loop group.
+	 */
+	public EventLoopGroup getBossGroup()
+	{
+		EventLoopGroup group = bossGroup;
+		if (group == null) {
+			synchronized (this) {
+				checkOpen();
+				if ((group = bossGroup) == null) {
+					bossGroup = group = channelProvider.createBossEventLoopGroup();
+				}
+			}
+		}
+		return group;
+	}
+
+	/**
+	 * Gets event loop group serving connections, created on first use.
+	 *
+	 * @return
+	 * 	worker event loop group.
+	 */
+	public EventLoopGroup getWorkerGroup()
+	{
+		EventLoopGroup group = workerGroup;
+		if (group == null) {
+			synchronized (this) {
+				checkOpen();
+				if ((group = workerGroup) == null) {
+					workerGroup = group = channelProvider.createWorkerEventLoopGroup();
+				}
+			}
+		}
+		return group;
+	}
+
+	/**
+	 * Defines worker partition, separate event loop group serving channels which request it via {@link ListenOptions}
+	 * or {@link ConnectOptions}.  This isolates latency critical traffic from bulk traffic on the same engine.  The
+	 * group is created through {@link ChannelProvider} on first use.
+	 *
+	 * @param name
+	 * 	name of partition
+	 * @param threads
+	 * 	number of event loops in partition
+	 *
+	 * @throws IllegalArgumentException
+	 * 	if partition already exists or threads is not positive
+	 */
+	public synchronized void definePartition(String name, int threads)
+	{
+		checkOpen();
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: "+threads);
+		}
+		if (partitions.containsKey(name)) {
+			throw new IllegalArgumentException("Partition already defined: "+name);
+		}
+		partitions.put(name, new Partition(name, threads));
+	}
+
+	/**
+	 * Gets event loop group of worker partition, created on first use.
+	 *
+	 * @param name
+	 * 	name of partition, null for engine worker group
+	 *
+	 * @return
+	 * 	event loop group of the partition.
+	 *
+	 * @throws IllegalArgumentException
+	 * 	if partition is not defined
+	 */
+	public EventLoopGroup getPartitionGroup(String name)
+	{
+		return getPartition(name).group();
+	}
+
+	/**
+	 * Gets load metrics of all worker partitions, the default one first.
+	 *
+	 * @return
+	 * 	metrics per partition.
+	 */
+	public synchronized List<PartitionMetrics> getPartitionMetrics()
+	{
+		return partitions.values().stream()
+			.map(Partition::metrics)
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Starts monitoring of event loops, measuring their scheduling lag and load.
+	 *
+	 * @param config
+	 * 	monitor configuration
+	 *
+	 * @return
+	 * 	started monitor, closed with the engine.
+	 *
+	 * @throws IllegalStateException
+	 * 	if monitor is already running
+	 */
+	public synchronized EventLoopMonitor startEventLoopMonitor(EventLoopMonitor.Config config)
+	{
+		checkOpen();
+		if (eventLoopMonitor != null) {
+			throw new IllegalStateException("EventLoopMonitor already started");
+		}
+		eventLoopMonitor = new EventLoopMonitor(this, config);
+		eventLoopMonitor.start();
+		return eventLoopMonitor;
+	}
+
+	/**
+	 * Gets budget of memory buffered by handlers of all channels created by this engine.  Unlimited by default, the
+	 * limit can be set by {@link MemoryBudget#configure(MemoryBudget.Config)}.  Only channels created while the
+	 * budget is limited account their memory.
+	 *
+	 * @return
+	 * 	memory budget.
+	 */
+	public MemoryBudget getMemoryBudget()
+	{
+		return memoryBudget;
+	}
+
+	/**
+	 * Gets event loop monitor.
+	 *
+	 * @return
+	 * 	running monitor or null if not started.
+	 */
+	public synchronized EventLoopMonitor getEventLoopMonitor()
+	{
+		return eventLoopMonitor;
+	}
+
+	/**
+	 * Lists event loops of already created groups, without creating any.
+	 *
+	 * @return
+	 * 	map of event loops to their group name.
+	 */
+	synchronized Map<EventExecutor, String> listEventLoops()
+	{
+		Map<EventExecutor, String> result = new LinkedHashMap<>();
+		if (bossGroup != null) {
+			bossGroup.forEach(executor -> result.put(executor, BOSS_GROUP));
+		}
+		for (Partition partition: partitions.values()) {
+			EventLoopGroup group = partition.existingGroup();
+			if (group != null) {
+				group.forEach(executor -> result.put(executor, partition.name));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets ioRatio configured for event loops of the group.
+	 */
+	int getConfiguredIoRatio(String group)
+	{
+		Integer ioRatio = channelProvider.getThreadingConfig().getIoRatio();
+		return ioRatio == null || BOSS_GROUP.equals(group) ? DEFAULT_IO_RATIO : ioRatio;
+	}
+
+	private synchronized Partition getPartition(String name)
+	{
+		Partition partition = partitions.get(name == null ? DEFAULT_PARTITION : name);
+		if (partition == null) {
+			throw new IllegalArgumentException("Partition not defined: "+name);
+		}
+		return partition;
+	}
+
+	/**
+	 * Gets DNS resolver, created on first use.
+	 *
+	 * @return
+	 * 	DNS resolver.
+	 */
+	public InetNameResolver getInetNameResolver()
+	{
+		InetNameResolver resolver = inetNameResolver;
+		if (resolver == null) {
+			EventLoop eventLoop = getWorkerGroup().next();
+			synchronized (this) {
+				checkOpen();
+				if ((resolver = inetNameResolver) == null) {
+					inetNameResolver = resolver = new DnsNameResolverBuilder()
+						.eventLoop(eventLoop)
+						.channelFactory(channelProvider.getDatagramChannel(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)))
+						.build();
+				}
+			}
+		}
+		return resolver;
+	}
+
+	/**
+	 * Gets timer wheel for coarse grained timeouts, such as idle expiration of large number of sessions.  The timer
+	 * runs on its own thread, the tasks should be passed to the appropriate event loop.
+	 *
+	 * @return
+	 * 	shared timer, created on first use.
+	 */
+	public Timer getTimer()
+	{
+		Timer timer = this.timer;
+		if (timer == null) {
+			synchronized (this) {
+				checkOpen();
+				if ((timer = this.timer) == null) {
+					this.timer = timer = new HashedWheelTimer(new DefaultThreadFactory("netty-timer", true), 100, TimeUnit.MILLISECONDS);
+				}
+			}
+		}
+		return timer;
+	}
+
 	/**
 	 * Resolves DNS address.
 	 *
@@ -110,9 +398,11 @@ public class NettyEngine implements Closeable
 			if (address1.getHostString().equals("*")) {
 				return CompletableFuture.completedFuture(new InetSocketAddress(address1.getPort()));
 			}
+			ResolveEvent event = new ResolveEvent();
+			event.begin();
 			Future<InetAddress> future =
 				getInetNameResolver().resolve(((InetSocketAddress)address).getHostString());
-			return new CompletableFuture<SocketAddress>() {
+			CompletableFuture<SocketAddress> result = new CompletableFuture<SocketAddress>() {
 				{
 					future.addListener((f) -> {
 						try {
@@ -124,6 +414,10 @@ public class NettyEngine implements Closeable
 					});
 				}
 			};
+			if (event.isEnabled()) {
+				result.whenComplete((v, ex) -> event.finish(null, address1.getHostString(), v, ex));
+			}
+			return result;
 		}
 		else {
 			return CompletableFuture.completedFuture(address);
@@ -167,9 +461,11 @@ public class NettyEngine implements Closeable
 					return CompletableFuture.failedFuture(new UnknownHostException("Failed to resolve "+hostname+" : "+ex.getMessage()));
 				}
 			}
+			ResolveEvent event = new ResolveEvent();
+			event.begin();
 			Future<List<InetAddress>> future =
 				getInetNameResolver().resolveAll(hostname);
-			return new CompletableFuture<SocketAddress>() {
+			CompletableFuture<SocketAddress> result = new CompletableFuture<SocketAddress>() {
 				{
 					future.addListener((f) -> {
 						try {
@@ -190,6 +486,10 @@ public class NettyEngine implements Closeable
 					});
 				}
 			};
+			if (event.isEnabled()) {
+				result.whenComplete((v, ex) -> event.finish(proto, hostname, v, ex));
+			}
+			return result;
 		}
 		else {
 			return CompletableFuture.completedFuture(address);
@@ -208,9 +508,27 @@ public class NettyEngine implements Closeable
 	 * 	future with server channel.
 	 */
 	public CompletableFuture<ServerChannel> listen(AddressSpec addressSpec, ChannelInitializer<DuplexChannel> channelInitializer)
+	{
+		return listen(addressSpec, ListenOptions.DEFAULT, channelInitializer);
+	}
+
+	/**
+	 * Listens on specified address.
+	 *
+	 * @param addressSpec
+	 * 	address to listen on
+	 * @param options
+	 * 	listen options
+	 * @param channelInitializer
+	 * 	child channel initializer
+	 *
+	 * @return
+	 * 	future with server channel.
+	 */
+	public CompletableFuture<ServerChannel> listen(AddressSpec addressSpec, ListenOptions options, ChannelInitializer<DuplexChannel> channelInitializer)
 	{
 		try {
-			return listen(addressSpec.getProto(), getProtoAddress(addressSpec), channelInitializer);
+			return listen(addressSpec.getProto(), getProtoAddress(addressSpec), options, channelInitializer);
 		}
 		catch (Throwable ex) {
 			return FutureUtil.exception(ex);
@@ -232,24 +550,50 @@ public class NettyEngine implements Closeable
 	 */
 	public CompletableFuture<ServerChannel> listen(String proto, SocketAddress listen, ChannelInitializer<DuplexChannel> channelInitializer)
 	{
+		return listen(proto, listen, ListenOptions.DEFAULT, channelInitializer);
+	}
+
+	/**
+	 * Listens on specified address.
+	 *
+	 * @param proto
+	 * 	protocol to bind to
+	 * @param listen
+	 * 	address to listen on
+	 * @param options
+	 * 	listen options
+	 * @param channelInitializer
+	 * 	child channel initializer
+	 *
+	 * @return
+	 * 	future with server channel.
+	 */
+	public CompletableFuture<ServerChannel> listen(String proto, SocketAddress listen, ListenOptions options, ChannelInitializer<DuplexChannel> channelInitializer)
+	{
+		ListenEvent event = new ListenEvent();
+		event.begin();
 		try {
-			return new CompletableFuture<ServerChannel>() {
+			Partition partition = getPartition(options.getPartition());
+			CompletableFuture<ServerChannel> result = new CompletableFuture<ServerChannel>() {
 				ChannelFuture bindFuture;
 
 				private synchronized void stepBind(SocketAddress address)
 				{
-					ServerBootstrap b = new ServerBootstrap();
-					b.group(bossGroup, workerGroup)
-						.channelFactory(channelProvider.getServerChannel(address))
-						.option(ChannelOption.SO_BACKLOG, Integer.MAX_VALUE)
-						.childHandler(channelInitializer)
-						.childOption(ChannelOption.AUTO_READ, false)
-						.childOption(ChannelOption.ALLOW_HALF_CLOSURE, true);
-					if (!SystemUtils.IS_OS_MAC_OSX) {
-						b.childOption(ChannelOption.SO_KEEPALIVE, true);
+					boolean socket = !(address instanceof LocalAddress || address instanceof ShmAddress);
+					ServerBootstrap b = createServerBootstrap(channelProvider.getServerChannel(address), partition, channelInitializer, socket);
+					if (socket) {
+						b.option(ChannelOption.SO_BACKLOG, Integer.MAX_VALUE);
+					}
+					if (address instanceof InetSocketAddress && channelProvider.isTcpFastOpenListenSupported()) {
+						b.option(ChannelOption.TCP_FASTOPEN, TCP_FASTOPEN_QUEUE);
+					}
+
+					SocketAddress converted = channelProvider.convertAddress(address);
+					if (options.getStreamOptions() != null) {
+						channelProvider.configureStream(b, converted, options.getStreamOptions());
 					}
 
-					bindFuture = b.bind(channelProvider.convertAddress(address));
+					bindFuture = b.bind(converted);
 
 					bindFuture.addListener((f) -> {
 						try {
@@ -285,13 +629,114 @@ public class NettyEngine implements Closeable
 				@Override
 				public synchronized boolean cancel(boolean interrupt)
 				{
-					return bindFuture.cancel(interrupt);
+					if (bindFuture != null)
+						return bindFuture.cancel(interrupt);
+					return super.cancel(interrupt);
 				}
 			};
+			if (event.isEnabled()) {
+				result.whenComplete((v, ex) -> event.finish(proto, listen, options.getPartition(), v == null ? null : v.localAddress(), ex));
+			}
+			return result;
+		}
+		catch (Throwable ex) {
+			return FutureUtil.exception(ex);
+		}
+	}
+
+	/**
+	 * Adopts existing listening socket as server channel, typically received from another process.
+	 *
+	 * @param domain
+	 * 	whether the socket is domain socket, inet otherwise
+	 * @param fd
+	 * 	socket file descriptor, owned by the channel once this is called, closed if the channel cannot be created
+	 * @param channelInitializer
+	 * 	child channel initializer
+	 *
+	 * @return
+	 * 	future with server channel, accepting connections once completed.
+	 */
+	public CompletableFuture<ServerChannel> adoptServerChannel(boolean domain, int fd, ChannelInitializer<DuplexChannel> channelInitializer)
+	{
+		return adoptServerChannel(domain, fd, ListenOptions.DEFAULT, channelInitializer);
+	}
+
+	/**
+	 * Adopts existing listening socket as server channel, typically received from another process.
+	 *
+	 * @param domain
+	 * 	whether the socket is domain socket, inet otherwise
+	 * @param fd
+	 * 	socket file descriptor, owned by the channel once this is called, closed if the channel cannot be created
+	 * @param options
+	 * 	listen options, partition and stream options of accepted channels
+	 * @param channelInitializer
+	 * 	child channel initializer
+	 *
+	 * @return
+	 * 	future with server channel, accepting connections once completed.
+	 */
+	public CompletableFuture<ServerChannel> adoptServerChannel(boolean domain, int fd, ListenOptions options, ChannelInitializer<DuplexChannel> channelInitializer)
+	{
+		ChannelFactory<? extends ServerChannel> channelFactory;
+		Partition partition;
+		try {
+			partition = getPartition(options.getPartition());
+			channelFactory = channelProvider.getAdoptedServerChannel(domain, fd);
 		}
 		catch (Throwable ex) {
+			try {
+				new FileDescriptor(fd).close();
+			}
+			catch (IOException ex2) {
+				ex.addSuppressed(ex2);
+			}
 			return FutureUtil.exception(ex);
 		}
+		ServerBootstrap b = createServerBootstrap(channelFactory, partition, channelInitializer, true);
+		if (options.getStreamOptions() != null) {
+			// stream options depend on address family only, the actual address is not known before the channel exists:
+			SocketAddress family = domain ? new DomainSocketAddress("") : new InetSocketAddress(0);
+			channelProvider.configureStream(b, family, options.getStreamOptions());
+		}
+		ChannelFuture future = b.register();
+		return NettyFutures.toCompletable(future)
+			.thenApply(v -> (ServerChannel) future.channel());
+	}
+
+	/**
+	 * Closes server channel, leaving its socket file in place, typically for another process which took over the
+	 * listening socket.
+	 *
+	 * @param channel
+	 * 	server channel to close
+	 *
+	 * @return
+	 * 	future completing once the channel is closed.
+	 */
+	public CompletableFuture<Void> closeKeepingSocketFile(ServerChannel channel)
+	{
+		if (!channelProvider.detachSocketFile(channel)) {
+			return FutureUtil.exception(new UnsupportedOperationException("Detaching socket file not supported by: "+
+				channelProvider.getClass().getSimpleName()));
+		}
+		return NettyFutures.toCompletable(channel.close());
+	}
+
+	private ServerBootstrap createServerBootstrap(ChannelFactory<? extends ServerChannel> channelFactory, Partition partition,
+						      ChannelInitializer<DuplexChannel> channelInitializer, boolean socket)
+	{
+		ServerBootstrap b = new ServerBootstrap();
+		b.group(getBossGroup(), partition.group())
+			.channelFactory(channelFactory)
+			.childHandler(partition.track(channelInitializer))
+			.childOption(ChannelOption.AUTO_READ, false)
+			.childOption(ChannelOption.ALLOW_HALF_CLOSURE, true);
+		if (socket && !SystemUtils.IS_OS_MAC_OSX) {
+			b.childOption(ChannelOption.SO_KEEPALIVE, true);
+		}
+		return b;
 	}
 
 	/**
@@ -306,11 +751,55 @@ public class NettyEngine implements Closeable
 	 * 	future with client channel.
 	 */
 	public CompletableFuture<DuplexChannel> connect(AddressSpec addressSpec, ChannelHandler channelInitializer)
+	{
+		return connect(addressSpec, channelInitializer, null);
+	}
+
+	/**
+	 * Connects to specified address, sending the first payload together with connect.
+	 *
+	 * The payload is sent within SYN if TCP Fast Open is supported by provider, otherwise it is flushed immediately
+	 * after connection is established.
+	 *
+	 * @param addressSpec
+	 * 	address to connect to
+	 * @param channelInitializer
+	 * 	child channel initializer
+	 * @param firstPayload
+	 * 	data to send first, null if none, released by this method in all cases
+	 *
+	 * @return
+	 * 	future with client channel.
+	 */
+	public CompletableFuture<DuplexChannel> connect(AddressSpec addressSpec, ChannelHandler channelInitializer, ByteBuf firstPayload)
+	{
+		return connect(addressSpec, ConnectOptions.DEFAULT, channelInitializer, firstPayload);
+	}
+
+	/**
+	 * Connects to specified address, sending the first payload together with connect.
+	 *
+	 * @param addressSpec
+	 * 	address to connect to
+	 * @param options
+	 * 	connect options
+	 * @param channelInitializer
+	 * 	child channel initializer
+	 * @param firstPayload
+	 * 	data to send first, null if none, released by this method in all cases
+	 *
+	 * @return
+	 * 	future with client channel.
+	 *
+	 * @see #connect(AddressSpec, ChannelHandler, ByteBuf)
+	 */
+	public CompletableFuture<DuplexChannel> connect(AddressSpec addressSpec, ConnectOptions options, ChannelHandler channelInitializer, ByteBuf firstPayload)
 	{
 		try {
-			return connect(addressSpec.getProto(), getProtoAddress(addressSpec), channelInitializer);
+			return connect(addressSpec.getProto(), getProtoAddress(addressSpec), options, channelInitializer, firstPayload);
 		}
 		catch (Throwable ex) {
+			ReferenceCountUtil.release(firstPayload);
 			return FutureUtil.exception(ex);
 		}
 	}
@@ -330,58 +819,158 @@ public class NettyEngine implements Closeable
 	 */
 	public CompletableFuture<DuplexChannel> connect(String proto, SocketAddress address, ChannelHandler channelInitializer)
 	{
-		return new CompletableFuture<DuplexChannel>() {
-			private ChannelFuture future;
-
-			{
-				resolve(proto, address)
-					.whenComplete((v, ex) -> {
-						if (ex != null) {
-							completeExceptionally(ex);
-						}
-						else {
-							stepConnect(v);
-						}
-					});
-			}
-
-			private synchronized void stepConnect(SocketAddress resolved)
-			{
-				SocketAddress converted = channelProvider.convertAddress(resolved);
-				if (isDone())
-					return;
-				try {
-					Bootstrap b = new Bootstrap();
-					future = b.group(workerGroup)
-						.channelFactory(channelProvider.getStreamChannel(converted))
-						.option(ChannelOption.AUTO_READ, false)
-						.option(ChannelOption.ALLOW_HALF_CLOSURE, true)
-						.handler(channelInitializer)
-						.connect(converted);
+		return connect(proto, address, channelInitializer, null);
+	}
 
-					future.addListener((f) -> {
-						try {
-							try {
-								f.get();
-							}
-							catch (ExecutionException ex) {
-								throw ex.getCause();
-							}
-							complete((DuplexChannel)future.channel());
-						}
-						catch (IOException ex) {
-							completeExceptionally(new UncheckedIOException("Failed to connect to: "+address+" : "+ex.getMessage(), ex));
+	/**
+	 * Connects to specified address, sending the first payload together with connect.
+	 *
+	 * The payload is sent within SYN if TCP Fast Open is supported by provider, otherwise it is flushed immediately
+	 * after connection is established.
+	 *
+	 * @param proto
+	 * 	protocol to connect
+	 * @param address
+	 * 	address to connect to
+	 * @param channelInitializer
+	 * 	child channel initializer
+	 * @param firstPayload
+	 * 	data to send first, null if none, released by this method in all cases
+	 *
+	 * @return
+	 * 	future with client channel.
+	 */
+	public CompletableFuture<DuplexChannel> connect(String proto, SocketAddress address, ChannelHandler channelInitializer, ByteBuf firstPayload)
+	{
+		return connect(proto, address, ConnectOptions.DEFAULT, channelInitializer, firstPayload);
+	}
+
+	/**
+	 * Connects to specified address, sending the first payload together with connect.
+	 *
+	 * @param proto
+	 * 	protocol to connect
+	 * @param address
+	 * 	address to connect to
+	 * @param options
+	 * 	connect options
+	 * @param channelInitializer
+	 * 	child channel initializer
+	 * @param firstPayload
+	 * 	data to send first, null if none, released by this method in all cases
+	 *
+	 * @return
+	 * 	future with client channel.
+	 *
+	 * @see #connect(String, SocketAddress, ChannelHandler, ByteBuf)
+	 */
+	public CompletableFuture<DuplexChannel> connect(String proto, SocketAddress address, ConnectOptions options, ChannelHandler channelInitializer,
+							ByteBuf firstPayload)
+	{
+		Partition partition;
+		try {
+			partition = getPartition(options.getPartition());
+		}
+		catch (Throwable ex) {
+			ReferenceCountUtil.release(firstPayload);
+			return FutureUtil.exception(ex);
+		}
+		ConnectEvent event = new ConnectEvent();
+		event.begin();
+		CompletableFuture<DuplexChannel> result = new CompletableFuture<DuplexChannel>() {
+			private ChannelFuture future;
+
+			{
+				resolve(proto, address)
+					.whenComplete((v, ex) -> {
+						if (ex != null) {
+							ReferenceCountUtil.release(firstPayload);
+							completeExceptionally(ex);
 						}
-						catch (Throwable ex) {
-							completeExceptionally(new IOException("Failed to connect to: "+address, ex));
+						else {
+							stepConnect(v);
 						}
 					});
+			}
+
+			private synchronized void stepConnect(SocketAddress resolved)
+			{
+				SocketAddress converted = channelProvider.convertAddress(resolved);
+				if (isDone()) {
+					ReferenceCountUtil.release(firstPayload);
+					return;
+				}
+				try {
+					Bootstrap b = new Bootstrap();
+					b.group(partition.group())
+						.channelFactory(channelProvider.getStreamChannel(converted))
+						.option(ChannelOption.AUTO_READ, false)
+						.option(ChannelOption.ALLOW_HALF_CLOSURE, true)
+						.handler(partition.track(channelInitializer));
+					if (options.getStreamOptions() != null) {
+						channelProvider.configureStream(b, converted, options.getStreamOptions());
+					}
+					if (firstPayload == null) {
+						future = b.connect(converted);
+						future.addListener(this::stepConnected);
+					}
+					else {
+						if (converted instanceof InetSocketAddress && channelProvider.isTcpFastOpenConnectSupported()) {
+							b.option(ChannelOption.TCP_FASTOPEN_CONNECT, true);
+						}
+						future = b.register();
+						future.addListener((f) -> {
+							if (!f.isSuccess()) {
+								ReferenceCountUtil.release(firstPayload);
+								stepConnected(f);
+								return;
+							}
+							// only write, flush would fail on not yet connected channel:
+							future.channel().write(firstPayload);
+							stepPayloadConnect(converted);
+						});
+					}
 				}
 				catch (Throwable ex) {
+					ReferenceCountUtil.release(firstPayload);
 					completeExceptionally(ex);
 				}
 			}
 
+			private synchronized void stepPayloadConnect(SocketAddress converted)
+			{
+				if (isDone()) {
+					future.channel().close();
+					return;
+				}
+				future = future.channel().connect(converted);
+				future.addListener((f) -> {
+					if (f.isSuccess()) {
+						future.channel().flush();
+					}
+					stepConnected(f);
+				});
+			}
+
+			private void stepConnected(Future<?> f)
+			{
+				try {
+					try {
+						f.get();
+					}
+					catch (ExecutionException ex) {
+						throw ex.getCause();
+					}
+					complete((DuplexChannel)future.channel());
+				}
+				catch (IOException ex) {
+					completeExceptionally(new UncheckedIOException("Failed to connect to: "+address+" : "+ex.getMessage(), ex));
+				}
+				catch (Throwable ex) {
+					completeExceptionally(new IOException("Failed to connect to: "+address, ex));
+				}
+			}
+
 			@Override
 			public synchronized boolean cancel(boolean interrupt)
 			{
@@ -390,6 +979,445 @@ public class NettyEngine implements Closeable
 				return super.cancel(interrupt);
 			}
 		};
+		if (event.isEnabled()) {
+			result.whenComplete((v, ex) -> event.finish(proto, address, options.getPartition(), v == null ? null : v.localAddress(), ex));
+		}
+		return result;
+	}
+
+	/**
+	 * Adopts existing connected socket as channel, counted in the default partition like accepted channels.
+	 *
+	 * @param domain
+	 * 	whether the socket is domain socket, inet otherwise
+	 * @param fd
+	 * 	socket file descriptor, owned by the channel once this is called, closed if the channel cannot be created
+	 * @param channelInitializer
+	 * 	channel initializer
+	 *
+	 * @return
+	 * 	future with adopted channel.
+	 */
+	public CompletableFuture<DuplexChannel> adoptStreamChannel(boolean domain, int fd, ChannelHandler channelInitializer)
+	{
+		ChannelFactory<? extends DuplexChannel> channelFactory;
+		try {
+			channelFactory = channelProvider.getAdoptedStreamChannel(domain, fd);
+		}
+		catch (Throwable ex) {
+			try {
+				new FileDescriptor(fd).close();
+			}
+			catch (IOException ex2) {
+				ex.addSuppressed(ex2);
+			}
+			return FutureUtil.exception(ex);
+		}
+		Partition partition = getPartition(null);
+		ChannelFuture future = new Bootstrap()
+			.group(partition.group())
+			.channelFactory(channelFactory)
+			.option(ChannelOption.AUTO_READ, false)
+			.option(ChannelOption.ALLOW_HALF_CLOSURE, true)
+			.handler(partition.track(channelInitializer))
+			.register();
+		return NettyFutures.toCompletable(future)
+			.thenApply(v -> (DuplexChannel) future.channel());
+	}
+
+	/**
+	 * Hands off connected channel to another process, listening via {@link #listenHandoff(AddressSpec, ChannelHandler)}.
+	 * The channel is closed in this process once the descriptor is sent, see {@link HandoffProtocol}.
+	 *
+	 * @param receiver
+	 * 	domain socket address of receiver
+	 * @param channel
+	 * 	channel to hand off, must be native socket channel without any data pending in pipeline
+	 * @param header
+	 * 	routing header passed to receiver, null if none
+	 * @param initial
+	 * 	data already read from channel, to be processed by receiver first, null if none, released by this method
+	 *
+	 * @return
+	 * 	future completing once the channel is handed off.
+	 */
+	public CompletableFuture<Void> handoff(AddressSpec receiver, DuplexChannel channel, byte[] header, ByteBuf initial)
+	{
+		ByteBuf frame;
+		try {
+			if (!channelProvider.isDescriptorPassingSupported() || !(channel instanceof UnixChannel)) {
+				throw new UnsupportedOperationException("Descriptor passing not supported for channel: "+channel);
+			}
+			frame = HandoffProtocol.encodeFrame(channel.alloc(), channel instanceof DomainSocketChannel, header, initial);
+		}
+		catch (Throwable ex) {
+			ReferenceCountUtil.release(initial);
+			return FutureUtil.exception(ex);
+		}
+		return connect(receiver, new ChannelInboundHandlerAdapter())
+			.whenComplete((v, ex) -> {
+				if (ex != null) {
+					frame.release();
+				}
+			})
+			.thenCompose(handoffChannel -> new CompletableFuture<Void>() {
+				{
+					// stop polling the socket here before passing it, the registration would outlive the closed descriptor:
+					channel.deregister().addListener((f) -> {
+						if (!f.isSuccess()) {
+							frame.release();
+							handoffChannel.close();
+							completeExceptionally(f.cause());
+							return;
+						}
+						handoffChannel.write(new FileDescriptor(((UnixChannel) channel).fd().intValue()));
+						handoffChannel.writeAndFlush(frame).addListener((w) -> {
+							handoffChannel.close();
+							channel.close();
+							if (w.isSuccess()) {
+								complete(null);
+							}
+							else {
+								completeExceptionally(w.cause());
+							}
+						});
+					});
+				}
+			});
+	}
+
+	/**
+	 * Listens for sockets handed off by {@link #handoff(AddressSpec, DuplexChannel, byte[], ByteBuf)}.
+	 *
+	 * @param addressSpec
+	 * 	domain socket address to listen on
+	 * @param channelInitializer
+	 * 	initializer of adopted channels, the header is available in {@link HandoffProtocol#HEADER} attribute
+	 *
+	 * @return
+	 * 	future with server channel.
+	 */
+	public CompletableFuture<ServerChannel> listenHandoff(AddressSpec addressSpec, ChannelHandler channelInitializer)
+	{
+		if (!channelProvider.isDescriptorPassingSupported()) {
+			return FutureUtil.exception(new UnsupportedOperationException("Descriptor passing not supported by: "+
+				channelProvider.getClass().getSimpleName()));
+		}
+		return listen(addressSpec, new ChannelInitializer<DuplexChannel>()
+		{
+			@Override
+			protected void initChannel(DuplexChannel ch) throws Exception
+			{
+				ch.config().setOption(UnixChannelOption.DOMAIN_SOCKET_READ_MODE, DomainSocketReadMode.FILE_DESCRIPTORS);
+				ch.pipeline().addLast(new HandoffReceiverHandler(NettyEngine.this, channelInitializer));
+			}
+		});
+	}
+
+	/**
+	 * Binds datagram channel to specified address.
+	 *
+	 * @param addressSpec
+	 * 	address to bind to, udp, udp4 or udp6
+	 * @param channelInitializer
+	 * 	channel initializer
+	 *
+	 * @return
+	 * 	future with bound datagram channel.
+	 */
+	public CompletableFuture<DatagramChannel> bindDatagram(AddressSpec addressSpec, ChannelHandler channelInitializer)
+	{
+		return bindDatagram(addressSpec, DatagramOptions.DEFAULT, channelInitializer);
+	}
+
+	/**
+	 * Binds datagram channel to specified address.
+	 *
+	 * @param addressSpec
+	 * 	address to bind to, udp, udp4 or udp6
+	 * @param options
+	 * 	datagram options
+	 * @param channelInitializer
+	 * 	channel initializer
+	 *
+	 * @return
+	 * 	future with bound datagram channel.
+	 */
+	public CompletableFuture<DatagramChannel> bindDatagram(AddressSpec addressSpec, DatagramOptions options, ChannelHandler channelInitializer)
+	{
+		try {
+			checkDatagramProto(addressSpec.getProto());
+			SocketAddress address = getProtoAddress(addressSpec);
+			return resolve(addressSpec.getProto(), address)
+				.thenCompose(resolved -> bindDatagram(addressSpec.getProto(), resolved, options, channelInitializer));
+		}
+		catch (Throwable ex) {
+			return FutureUtil.exception(ex);
+		}
+	}
+
+	/**
+	 * Binds multiple datagram channels to the same address, using SO_REUSEPORT.  The kernel distributes the incoming
+	 * datagrams across the channels, which are registered to different event loops, as long as count does not exceed
+	 * the number of worker threads.
+	 *
+	 * If the provider does not support SO_REUSEPORT, single channel is bound.
+	 *
+	 * @param addressSpec
+	 * 	address to bind to, udp, udp4 or udp6, with port 0 all channels share the port allocated for the first one
+	 * @param options
+	 * 	datagram options
+	 * @param count
+	 * 	number of channels to bind
+	 * @param channelInitializer
+	 * 	channel initializer
+	 *
+	 * @return
+	 * 	future with list of bound datagram channels.
+	 */
+	public CompletableFuture<List<DatagramChannel>> bindDatagramFanOut(AddressSpec addressSpec, DatagramOptions options, int count, ChannelHandler channelInitializer)
+	{
+		try {
+			checkDatagramProto(addressSpec.getProto());
+			if (count < 1) {
+				throw new IllegalArgumentException("count must be positive: "+count);
+			}
+			int effective = channelProvider.isReusePortSupported() ? count : 1;
+			DatagramOptions shared = effective > 1 ? options.toBuilder().reusePort(true).build() : options;
+			SocketAddress address = getProtoAddress(addressSpec);
+			return resolve(addressSpec.getProto(), address)
+				.thenCompose(resolved -> bindDatagram(addressSpec.getProto(), resolved, shared, channelInitializer))
+				.thenCompose(first -> {
+					List<CompletableFuture<DatagramChannel>> futures = new ArrayList<>(effective);
+					futures.add(CompletableFuture.completedFuture(first));
+					for (int i = 1; i < effective; ++i) {
+						futures.add(bindDatagram(addressSpec.getProto(), first.localAddress(), shared, channelInitializer));
+					}
+					return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+						.handle((v, ex) -> {
+							if (ex != null) {
+								futures.forEach(f -> f.thenAccept(DatagramChannel::close));
+								throw new CompletionException(ex);
+							}
+							return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+						});
+				});
+		}
+		catch (Throwable ex) {
+			return FutureUtil.exception(ex);
+		}
+	}
+
+	private CompletableFuture<DatagramChannel> bindDatagram(String proto, SocketAddress resolved, DatagramOptions options, ChannelHandler channelInitializer)
+	{
+		try {
+			SocketAddress converted = channelProvider.convertAddress(resolved);
+			ChannelFuture future = createDatagramBootstrap(getPartitionGroup(options.getPartition()), proto, converted, options, channelInitializer)
+				.bind(converted);
+			return toDatagramFuture(future, "bind to", resolved);
+		}
+		catch (Throwable ex) {
+			return FutureUtil.exception(ex);
+		}
+	}
+
+	/**
+	 * Connects datagram channel to specified address, the channel is bound to ephemeral local port.
+	 *
+	 * @param addressSpec
+	 * 	address to connect to, udp, udp4 or udp6
+	 * @param channelInitializer
+	 * 	channel initializer
+	 *
+	 * @return
+	 * 	future with connected datagram channel.
+	 */
+	public CompletableFuture<DatagramChannel> connectDatagram(AddressSpec addressSpec, ChannelHandler channelInitializer)
+	{
+		return connectDatagram(addressSpec, DatagramOptions.DEFAULT, channelInitializer);
+	}
+
+	/**
+	 * Connects datagram channel to specified address, the channel is bound to ephemeral local port.
+	 *
+	 * @param addressSpec
+	 * 	address to connect to, udp, udp4 or udp6
+	 * @param options
+	 * 	datagram options
+	 * @param channelInitializer
+	 * 	channel initializer
+	 *
+	 * @return
+	 * 	future with connected datagram channel.
+	 */
+	public CompletableFuture<DatagramChannel> connectDatagram(AddressSpec addressSpec, DatagramOptions options, ChannelHandler channelInitializer)
+	{
+		try {
+			return connectDatagram(addressSpec, options, getPartitionGroup(options.getPartition()), channelInitializer);
+		}
+		catch (Throwable ex) {
+			return FutureUtil.exception(ex);
+		}
+	}
+
+	/**
+	 * Connects datagram channel to specified address, the channel is bound to ephemeral local port.
+	 *
+	 * @param addressSpec
+	 * 	address to connect to, udp, udp4 or udp6
+	 * @param options
+	 * 	datagram options
+	 * @param group
+	 * 	event loop group to register the channel with, typically event loop of related channel to avoid passing
+	 * 	data across threads
+	 * @param channelInitializer
+	 * 	channel initializer
+	 *
+	 * @return
+	 * 	future with connected datagram channel.
+	 */
+	public CompletableFuture<DatagramChannel> connectDatagram(AddressSpec addressSpec, DatagramOptions options, EventLoopGroup group, ChannelHandler channelInitializer)
+	{
+		try {
+			checkDatagramProto(addressSpec.getProto());
+			return resolve(addressSpec.getProto(), getProtoAddress(addressSpec))
+				.thenCompose(resolved -> {
+					SocketAddress converted = channelProvider.convertAddress(resolved);
+					ChannelFuture future = createDatagramBootstrap(group, addressSpec.getProto(), converted, options, channelInitializer)
+						.connect(converted);
+					return toDatagramFuture(future, "connect to", resolved);
+				});
+		}
+		catch (Throwable ex) {
+			return FutureUtil.exception(ex);
+		}
+	}
+
+	/**
+	 * Checks whether {@link #writeDatagrams(DatagramChannel, InetSocketAddress, List)} can send batch as single
+	 * segmented datagram (UDP GSO).
+	 *
+	 * @return
+	 * 	true if UDP segmentation offload is supported.
+	 */
+	public boolean isDatagramSegmentationSupported()
+	{
+		return channelProvider.isDatagramSegmentationSupported();
+	}
+
+	/**
+	 * Checks whether datagram channels can receive multiple datagrams per syscall, see
+	 * {@link DatagramOptions#getReceiveBatch()}.
+	 *
+	 * @return
+	 * 	true if batched receive is supported.
+	 */
+	public boolean isDatagramBatchReceiveSupported()
+	{
+		return channelProvider.isDatagramBatchReceiveSupported();
+	}
+
+	/**
+	 * Writes batch of datagrams to single recipient and flushes them together.
+	 *
+	 * With UDP segmentation offload, consecutive payloads of the same size (the last of the run may be shorter) are
+	 * sent as single segmented datagram, split by kernel or NIC.  Otherwise the datagrams are flushed at once, which
+	 * native transports turn into single sendmmsg call.
+	 *
+	 * @param channel
+	 * 	datagram channel
+	 * @param recipient
+	 * 	recipient address, null for connected channel
+	 * @param payloads
+	 * 	datagram payloads, released by this method
+	 *
+	 * @return
+	 * 	future of the last write.
+	 */
+	public ChannelFuture writeDatagrams(DatagramChannel channel, InetSocketAddress recipient, List<ByteBuf> payloads)
+	{
+		InetSocketAddress target = recipient != null ? recipient : channel.remoteAddress();
+		boolean segmentation = channelProvider.isDatagramSegmentationSupported() && target != null;
+		ChannelFuture last = null;
+		for (int i = 0; i < payloads.size(); ) {
+			int segmentSize = payloads.get(i).readableBytes();
+			int end = i+1;
+			if (segmentation && segmentSize > 0) {
+				int total = segmentSize;
+				while (end < payloads.size() && end-i < MAX_DATAGRAM_SEGMENTS) {
+					int size = payloads.get(end).readableBytes();
+					if (size > segmentSize || size == 0 || total+size > MAX_SEGMENTED_DATAGRAM) {
+						break;
+					}
+					total += size;
+					++end;
+					if (size < segmentSize) {
+						break;
+					}
+				}
+			}
+			Object message;
+			if (end-i > 1) {
+				CompositeByteBuf composite = channel.alloc().compositeDirectBuffer(end-i);
+				composite.addComponents(true, payloads.subList(i, end));
+				message = new SegmentedDatagramPacket(composite, segmentSize, target);
+			}
+			else if (recipient != null) {
+				message = new DatagramPacket(payloads.get(i), recipient);
+			}
+			else {
+				message = payloads.get(i);
+			}
+			i = end;
+			if (i < payloads.size()) {
+				channel.write(message, channel.voidPromise());
+			}
+			else {
+				last = channel.write(message);
+			}
+		}
+		channel.flush();
+		return last != null ? last : channel.newSucceededFuture();
+	}
+
+	private Bootstrap createDatagramBootstrap(EventLoopGroup group, String proto, SocketAddress address, DatagramOptions options, ChannelHandler channelInitializer)
+	{
+		Bootstrap b = new Bootstrap();
+		b.group(group)
+			.channelFactory(channelProvider.getDatagramChannel(proto, address))
+			.handler(channelInitializer);
+		channelProvider.configureDatagram(b, options);
+		return b;
+	}
+
+	private static CompletableFuture<DatagramChannel> toDatagramFuture(ChannelFuture future, String action, SocketAddress address)
+	{
+		CompletableFuture<DatagramChannel> result = new CompletableFuture<>();
+		future.addListener((f) -> {
+			if (f.isSuccess()) {
+				result.complete((DatagramChannel) future.channel());
+			}
+			else if (f.cause() instanceof IOException) {
+				result.completeExceptionally(new UncheckedIOException("Failed to "+action+": "+address+" : "+f.cause().getMessage(), (IOException) f.cause()));
+			}
+			else {
+				result.completeExceptionally(new IOException("Failed to "+action+": "+address, f.cause()));
+			}
+		});
+		return result;
+	}
+
+	private static void checkDatagramProto(String proto)
+	{
+		switch (proto) {
+		case AddressSpec.PROTO_UDP:
+		case AddressSpec.PROTO_UDP4:
+		case AddressSpec.PROTO_UDP6:
+			return;
+
+		default:
+			throw new IllegalArgumentException("Unsupported datagram proto: proto="+proto);
+		}
 	}
 
 	/**
@@ -419,7 +1447,10 @@ public class NettyEngine implements Closeable
 	 */
 	public CompletableFuture<Void> writeAndShutdown(DuplexChannel channel, ByteBuf buf)
 	{
-		return new CompletableFuture<Void>() {
+		WriteAndShutdownEvent event = new WriteAndShutdownEvent();
+		event.begin();
+		long bytes = buf.readableBytes();
+		CompletableFuture<Void> result = new CompletableFuture<Void>() {
 			{
 				CompletableFuture<Void> this0 = this;
 
@@ -439,6 +1470,10 @@ public class NettyEngine implements Closeable
 					});
 			}
 		};
+		if (event.isEnabled()) {
+			result.whenComplete((v, ex) -> event.finish(channel, bytes, ex));
+		}
+		return result;
 	}
 
 	/**
@@ -494,11 +1529,186 @@ public class NettyEngine implements Closeable
 		return FutureUtil.join(forwardUni(source, destination), forwardUni(destination, source), true);
 	}
 
+	/**
+	 * Forwards traffic between channels, closing both once any of timeouts expires.  The timeouts are checked by
+	 * single task per pair on the engine timer wheel.
+	 *
+	 * @param source
+	 * 	source channel
+	 * @param destination
+	 * 	destination channel
+	 * @param timeouts
+	 * 	idle and slow consumer timeouts
+	 *
+	 * @return
+	 * 	future completing once both channels are closed.
+	 */
+	public CompletableFuture<Void> forwardDuplex(DuplexChannel source, DuplexChannel destination, ForwardTimeouts timeouts)
+	{
+		if (!timeouts.isEnabled()) {
+			return forwardDuplex(source, destination);
+		}
+		ForwardTimeoutTracker tracker = new ForwardTimeoutTracker(getTimer(), timeouts, source, destination);
+		CompletableFuture<Void> sourcePromise = new CompletableFuture<>();
+		CompletableFuture<Void> destinationPromise = new CompletableFuture<>();
+		source.pipeline().addLast(new ForwarderHandler(this, source, destination, sourcePromise, tracker));
+		destination.pipeline().addLast(new ForwarderHandler(this, destination, source, destinationPromise, tracker));
+		tracker.start();
+		CompletableFuture<Void> result = FutureUtil.join(sourcePromise, destinationPromise, true);
+		result.whenComplete((v, ex) -> tracker.stop());
+		return result;
+	}
+
+	/**
+	 * Gets number of event loops created so far, in boss, worker and partition groups.  Zero until the groups are
+	 * used.
+	 *
+	 * @return
+	 * 	number of event loops.
+	 */
+	public int getEventLoopCount()
+	{
+		int count = countEventLoops(bossGroup);
+		synchronized (this) {
+			for (Partition partition: partitions.values()) {
+				count += countEventLoops(partition.existingGroup());
+			}
+		}
+		return count;
+	}
+
 	@Override
 	public void close() throws IOException
 	{
-		workerGroup.shutdownGracefully().syncUninterruptibly();
-		bossGroup.shutdownGracefully().syncUninterruptibly();
+		EventLoopGroup bossGroup;
+		List<EventLoopGroup> workerGroups = new ArrayList<>();
+		synchronized (this) {
+			closed = true;
+			if (eventLoopMonitor != null) {
+				eventLoopMonitor.close();
+			}
+			if (timer != null) {
+				timer.stop();
+			}
+			if (inetNameResolver != null) {
+				inetNameResolver.close();
+			}
+			bossGroup = this.bossGroup;
+			for (Partition partition: partitions.values()) {
+				Optional.ofNullable(partition.existingGroup()).ifPresent(workerGroups::add);
+			}
+		}
+		workerGroups.forEach(EventLoopGroup::shutdownGracefully);
+		for (EventLoopGroup workerGroup: workerGroups) {
+			workerGroup.terminationFuture().syncUninterruptibly();
+		}
+		if (bossGroup != null) {
+			bossGroup.shutdownGracefully().syncUninterruptibly();
+		}
+	}
+
+	private void checkOpen()
+	{
+		if (closed) {
+			throw new IllegalStateException("NettyEngine already closed");
+		}
+	}
+
+	private static int countEventLoops(EventLoopGroup group)
+	{
+		int count = 0;
+		if (group != null) {
+			for (EventExecutor ignored: group) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Worker partition, either the engine worker group or separate group created on first use.
+	 */
+	private class Partition
+	{
+		final String name;
+
+		/** Number of event loops, 0 for the default partition using worker group. */
+		final int threads;
+
+		final LongAdder channels = new LongAdder();
+
+		final LongAdder totalChannels = new LongAdder();
+
+		volatile EventLoopGroup group;
+
+		Partition(String name, int threads)
+		{
+			this.name = name;
+			this.threads = threads;
+		}
+
+		EventLoopGroup existingGroup()
+		{
+			return threads == 0 ? workerGroup : group;
+		}
+
+		EventLoopGroup group()
+		{
+			if (threads == 0) {
+				return getWorkerGroup();
+			}
+			EventLoopGroup group = this.group;
+			if (group == null) {
+				synchronized (NettyEngine.this) {
+					checkOpen();
+					if ((group = this.group) == null) {
+						this.group = group = channelProvider.createEventLoopGroup(threads);
+					}
+				}
+			}
+			return group;
+		}
+
+		/**
+		 * Wraps channel handler, counting the channels registered to this partition.
+		 */
+		ChannelHandler track(ChannelHandler handler)
+		{
+			return new ChannelInitializer<Channel>()
+			{
+				@Override
+				protected void initChannel(Channel ch)
+				{
+					channels.increment();
+					totalChannels.increment();
+					if (memoryBudget.isLimited()) {
+						ch.attr(MemoryBudget.ATTRIBUTE).set(memoryBudget);
+					}
+					ch.closeFuture().addListener(f -> channels.decrement());
+					ch.pipeline().addLast(handler);
+				}
+			};
+		}
+
+		PartitionMetrics metrics()
+		{
+			EventLoopGroup group = existingGroup();
+			long pendingTasks = 0;
+			if (group != null) {
+				for (EventExecutor executor: group) {
+					if (executor instanceof SingleThreadEventExecutor) {
+						pendingTasks += ((SingleThreadEventExecutor) executor).pendingTasks();
+					}
+				}
+			}
+			return PartitionMetrics.builder()
+				.name(name)
+				.eventLoopCount(countEventLoops(group))
+				.channelCount(channels.sum())
+				.totalChannelCount(totalChannels.sum())
+				.pendingTasks(pendingTasks)
+				.build();
+		}
 	}
 
 	public static ProtocolFamily getProtocolByAddress(InetAddress address)
@@ -512,19 +1722,33 @@ public class NettyEngine implements Closeable
 	}
 
 	public static ChannelProvider createChannelProvider()
+	{
+		return createChannelProvider(ThreadingConfig.DEFAULT);
+	}
+
+	/**
+	 * Creates the best channel provider for current platform.
+	 *
+	 * @param threadingConfig
+	 * 	threading configuration of event loop groups
+	 *
+	 * @return
+	 * 	native provider if available, Nio provider otherwise.
+	 */
+	public static ChannelProvider createChannelProvider(ThreadingConfig threadingConfig)
 	{
 		try {
 			if (SystemUtils.IS_OS_LINUX) {
-				return new EpollChannelProvider();
+				return new EpollChannelProvider(threadingConfig);
 			}
 			else if (SystemUtils.IS_OS_MAC_OSX || SystemUtils.IS_OS_FREE_BSD) {
-				return new KqueueChannelProvider();
+				return new KqueueChannelProvider(threadingConfig);
 			}
 		}
 		catch (Throwable ex) {
 			log.error("Cannot create expected ConfigAdapter, falling back to Nio", ex);
 		}
-		return new NioChannelProvider();
+		return new NioChannelProvider(threadingConfig);
 	}
 
 	/**
@@ -551,6 +1775,12 @@ public class NettyEngine implements Closeable
 		case AddressSpec.PROTO_UNIX:
 			return UnixDomainSocketAddress.of(addressSpec.getPath());
 
+		case AddressSpec.PROTO_LOCAL:
+			return addressSpec.getPath() == null ? LocalAddress.ANY : new LocalAddress(addressSpec.getPath());
+
+		case AddressSpec.PROTO_SHM:
+			return new ShmAddress(addressSpec.getPath());
+
 		default:
 			throw new IllegalArgumentException("Unsupported proto: proto=" + addressSpec.getProto());
 		}
@@ -575,6 +1805,8 @@ public class NettyEngine implements Closeable
 		case AddressSpec.PROTO_UDP:
 		case AddressSpec.PROTO_DOMAIN:
 		case AddressSpec.PROTO_UNIX:
+		case AddressSpec.PROTO_LOCAL:
+		case AddressSpec.PROTO_SHM:
 			return true;
 		case AddressSpec.PROTO_TCP4:
 		case AddressSpec.PROTO_TCP6:
@@ -0,0 +1,240 @@
+package net.dryuf.netty.core;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+
+/**
+ * Registry of shared {@link NettyEngine} instances.
+ *
+ * Components acquire reference counted {@link Handle} to engine identified by configuration name, all holders of
+ * the same name share one engine and therefore one set of event loops.  The engine is closed when the last handle
+ * is released, the next acquire creates a new one.  Components requiring isolated event loops acquire the engine
+ * under different name.
+ *
+ * Holders must not close the engine directly, they close their handle instead.
+ */
+@Log4j2
+public class NettyEngineRegistry
+{
+	/** Name of default configuration, engine with default channel provider. */
+	public static final String DEFAULT = "default";
+
+	private static final NettyEngineRegistry INSTANCE = new NettyEngineRegistry();
+
+	private static final ThreadFactory RELEASE_THREAD_FACTORY = new DefaultThreadFactory("netty-engine-release", true);
+
+	private final Map<String, Entry> engines = new LinkedHashMap<>();
+
+	/**
+	 * Gets process wide registry.
+	 *
+	 * @return
+	 * 	shared registry.
+	 */
+	public static NettyEngineRegistry getDefault()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * Acquires handle to default engine.
+	 *
+	 * @param owner
+	 * 	name of component holding the handle, for diagnostics
+	 *
+	 * @return
+	 * 	handle to engine, to be closed once not needed.
+	 */
+	public Handle acquire(String owner)
+	{
+		return acquire(DEFAULT, owner, NettyEngine::new);
+	}
+
+	/**
+	 * Acquires handle to engine, creating the engine if there is none for the configuration.
+	 *
+	 * @param name
+	 * 	name of configuration, identifying the shared engine
+	 * @param owner
+	 * 	name of component holding the handle, for diagnostics
+	 * @param factory
+	 * 	factory creating the engine if not yet existing
+	 *
+	 * @return
+	 * 	handle to engine, to be closed once not needed.
+	 */
+	public synchronized Handle acquire(String name, String owner, Supplier<NettyEngine> factory)
+	{
+		Entry entry = engines.get(name);
+		if (entry == null) {
+			entry = new Entry(name, Objects.requireNonNull(factory.get(), "factory returned null engine"));
+			engines.put(name, entry);
+			log.debug("Created shared NettyEngine: name={} owner={}", name, owner);
+		}
+		Handle handle = new Handle(entry, owner);
+		entry.handles.add(handle);
+		return handle;
+	}
+
+	/**
+	 * Lists currently existing engines.
+	 *
+	 * @return
+	 * 	snapshot of engines, their holders and event loop counts.
+	 */
+	public synchronized List<EngineInfo> getEngines()
+	{
+		List<EngineInfo> result = new ArrayList<>(engines.size());
+		for (Entry entry: engines.values()) {
+			List<String> owners = new ArrayList<>(entry.handles.size());
+			entry.handles.forEach(h -> owners.add(h.owner));
+			result.add(EngineInfo.builder()
+				.name(entry.name)
+				.owners(owners)
+				.eventLoopCount(entry.engine.getEventLoopCount())
+				.build());
+		}
+		return result;
+	}
+
+	/**
+	 * Gets total number of event loops across all engines.
+	 *
+	 * @return
+	 * 	number of event loops.
+	 */
+	public synchronized int getEventLoopCount()
+	{
+		return engines.values().stream().mapToInt(e -> e.engine.getEventLoopCount()).sum();
+	}
+
+	private CompletableFuture<Void> release(Handle handle)
+	{
+		Entry entry = handle.entry;
+		synchronized (this) {
+			if (!entry.handles.remove(handle)) {
+				return engines.get(entry.name) == entry ? CompletableFuture.completedFuture(null) : entry.closedFuture;
+			}
+			if (!entry.handles.isEmpty()) {
+				return CompletableFuture.completedFuture(null);
+			}
+			engines.remove(entry.name);
+		}
+		log.debug("Closing shared NettyEngine: name={}", entry.name);
+		// graceful shutdown waits for quiet period, so do not block the releasing component (or event loop):
+		RELEASE_THREAD_FACTORY.newThread(() -> {
+			try {
+				entry.engine.close();
+				entry.closedFuture.complete(null);
+			}
+			catch (Throwable ex) {
+				entry.closedFuture.completeExceptionally(ex);
+			}
+		}).start();
+		return entry.closedFuture;
+	}
+
+	/**
+	 * Reference to shared engine.
+	 */
+	public class Handle implements AutoCloseable
+	{
+		private final Entry entry;
+
+		private final String owner;
+
+		private Handle(Entry entry, String owner)
+		{
+			this.entry = entry;
+			this.owner = owner;
+		}
+
+		/**
+		 * Gets the engine.
+		 *
+		 * @return
+		 * 	shared engine.
+		 */
+		public NettyEngine engine()
+		{
+			return entry.engine;
+		}
+
+		/**
+		 * Gets name of component holding this handle.
+		 *
+		 * @return
+		 * 	owner name.
+		 */
+		public String owner()
+		{
+			return owner;
+		}
+
+		/**
+		 * Releases the handle, closing the engine if this was the last one.  Repeated calls have no effect.
+		 *
+		 * @return
+		 * 	future completing when the engine is closed or immediately if other handles still exist.
+		 */
+		public CompletableFuture<Void> release()
+		{
+			return NettyEngineRegistry.this.release(this);
+		}
+
+		/**
+		 * Releases the handle, without waiting for engine shutdown.
+		 */
+		@Override
+		public void close()
+		{
+			release();
+		}
+	}
+
+	/**
+	 * Information about shared engine.
+	 */
+	@Builder(builderClassName = "Builder")
+	@Value
+	public static class EngineInfo
+	{
+		/** Name of configuration. */
+		String name;
+
+		/** Owners of current handles, one per handle. */
+		List<String> owners;
+
+		/** Number of event loops created by the engine. */
+		int eventLoopCount;
+	}
+
+	private static class Entry
+	{
+		final String name;
+
+		final NettyEngine engine;
+
+		final List<Handle> handles = new ArrayList<>();
+
+		final CompletableFuture<Void> closedFuture = new CompletableFuture<>();
+
+		Entry(String name, NettyEngine engine)
+		{
+			this.name = name;
+			this.engine = engine;
+		}
+	}
+}
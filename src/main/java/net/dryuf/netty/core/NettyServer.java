@@ -1,6 +1,7 @@
 package net.dryuf.netty.core;
 
 import io.netty.channel.Channel;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import net.dryuf.netty.util.NettyFutures;
 
@@ -11,6 +12,7 @@ import java.util.concurrent.CompletableFuture;
 @RequiredArgsConstructor
 public class NettyServer implements Server
 {
+	@Getter
 	private final Channel channel;
 
 	@Override
@@ -0,0 +1,28 @@
+package net.dryuf.netty.core;
+
+import lombok.Builder;
+import lombok.Value;
+
+
+/**
+ * Load of worker partition, see {@link NettyEngine#getPartitionMetrics()}.
+ */
+@Builder(builderClassName = "Builder")
+@Value
+public class PartitionMetrics
+{
+	/** Name of partition, {@link NettyEngine#DEFAULT_PARTITION} for engine worker group. */
+	String name;
+
+	/** Number of event loops, zero if the group was not created yet. */
+	int eventLoopCount;
+
+	/** Number of open channels registered through the engine. */
+	long channelCount;
+
+	/** Total number of channels registered through the engine since start. */
+	long totalChannelCount;
+
+	/** Number of tasks waiting in event loop queues. */
+	long pendingTasks;
+}
@@ -0,0 +1,40 @@
+package net.dryuf.netty.core;
+
+import lombok.Builder;
+import lombok.Value;
+
+
+/**
+ * Low latency options of stream channels, applied by {@link NettyEngine} when listening or connecting.
+ *
+ * Options are supported by Epoll provider only and ignored by others, TCP options are applied to inet sockets only,
+ * see {@link net.dryuf.netty.provider.ChannelProvider#configureStream}.
+ */
+@Builder(builderClassName = "Builder", toBuilder = true)
+@Value
+public class StreamOptions
+{
+	/** Default options, leaving everything on OS and Netty defaults. */
+	public static final StreamOptions DEFAULT = StreamOptions.builder().build();
+
+	/** SO_BUSY_POLL, microseconds to busy poll device queue when no data are available, null for OS default. */
+	Integer busyPoll;
+
+	/** TCP_QUICKACK, whether to send ACKs immediately instead of delaying them, re-armed after every read. */
+	boolean quickAck;
+
+	/** TCP_NOTSENT_LOWAT, max bytes of unsent data in socket buffer before reporting writable, null for OS default. */
+	Long notSentLowAt;
+
+	/** TCP_USER_TIMEOUT, max time for transmitted data to stay unacknowledged, in milliseconds, null for OS default. */
+	Integer userTimeout;
+
+	/**
+	 * TCP_DEFER_ACCEPT, seconds to wait for the first data before accepting connection, null for none.  Applies to
+	 * listeners only.
+	 */
+	Integer deferAccept;
+
+	/** Whether to use edge triggered (Netty default) or level triggered epoll mode, null for default. */
+	Boolean edgeTriggered;
+}
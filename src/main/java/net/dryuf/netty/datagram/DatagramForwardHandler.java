@@ -0,0 +1,293 @@
+package net.dryuf.netty.datagram;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.Timeout;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.DatagramOptions;
+import net.dryuf.netty.core.NettyEngine;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+/**
+ * Forwards datagrams received on bound channel to backend, using separate connected backend channel per client
+ * address, so responses can be routed back.
+ *
+ * Sessions are kept in {@link DatagramSessionTable} and all their channels run on the event loop of bound channel,
+ * so no synchronization is needed.  Writes are flushed once per read batch, in both directions.  Idle sessions are
+ * evicted by the engine timer wheel, the timeout is not rescheduled per packet, it only checks the last activity
+ * when it fires.
+ */
+@Log4j2
+public class DatagramForwardHandler extends ChannelInboundHandlerAdapter
+{
+	/** Max number of datagrams queued while backend channel is being connected. */
+	public static final int MAX_PENDING = 64;
+
+	private final NettyEngine nettyEngine;
+
+	private final Supplier<AddressSpec> connectSupplier;
+
+	private final DatagramOptions connectOptions;
+
+	private final long idleTimeoutNs;
+
+	private final int maxSessions;
+
+	private final DatagramSessionTable<Session> sessions;
+
+	/** Sessions with unflushed writes to backend. */
+	private final List<Session> dirty = new ArrayList<>();
+
+	private Channel bound;
+
+	private boolean boundDirty;
+
+	/**
+	 * Creates handler.
+	 *
+	 * @param nettyEngine
+	 * 	netty engine
+	 * @param connectSupplier
+	 * 	supplier of backend address, consulted for every new session
+	 * @param connectOptions
+	 * 	options of backend channels
+	 * @param idleTimeoutMs
+	 * 	time after which idle session is evicted, in milliseconds
+	 * @param maxSessions
+	 * 	max number of sessions, datagrams from new clients are dropped when reached
+	 */
+	public DatagramForwardHandler(NettyEngine nettyEngine, Supplier<AddressSpec> connectSupplier, DatagramOptions connectOptions,
+				      long idleTimeoutMs, int maxSessions)
+	{
+		this.nettyEngine = nettyEngine;
+		this.connectSupplier = connectSupplier;
+		this.connectOptions = connectOptions;
+		this.idleTimeoutNs = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+		this.maxSessions = maxSessions;
+		this.sessions = new DatagramSessionTable<>(Math.min(maxSessions, 1024));
+	}
+
+	/**
+	 * Gets current number of sessions, must be called from the event loop.
+	 *
+	 * @return
+	 * 	number of sessions.
+	 */
+	public int getSessionCount()
+	{
+		return sessions.size();
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx)
+	{
+		bound = ctx.channel();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg)
+	{
+		if (!(msg instanceof DatagramPacket)) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+		DatagramPacket packet = (DatagramPacket) msg;
+		Session session = sessions.get(packet.sender());
+		if (session == null) {
+			if (sessions.size() >= maxSessions) {
+				log.debug("Too many datagram sessions, dropping packet from: {}", packet.sender());
+				packet.release();
+				return;
+			}
+			session = new Session(packet.sender());
+			sessions.put(session.client, session);
+			session.start(ctx);
+		}
+		session.lastActive = System.nanoTime();
+		session.forward(packet.content());
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx)
+	{
+		for (Session session: dirty) {
+			session.dirty = false;
+			session.backend.flush();
+		}
+		dirty.clear();
+		ctx.fireChannelReadComplete();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx)
+	{
+		for (Session session: sessions.values()) {
+			session.close();
+		}
+		ctx.fireChannelInactive();
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+	{
+		log.debug("Datagram error on bound channel: {}", ctx.channel(), cause);
+	}
+
+	private void writeToClient(Session session, ByteBuf content)
+	{
+		bound.write(new DatagramPacket(content, session.client), bound.voidPromise());
+		if (!boundDirty) {
+			boundDirty = true;
+			// flush once all backend channels processed their read batch in this event loop iteration:
+			bound.eventLoop().execute(() -> {
+				boundDirty = false;
+				bound.flush();
+			});
+		}
+	}
+
+	private class Session extends ChannelInboundHandlerAdapter
+	{
+		final InetSocketAddress client;
+
+		DatagramChannel backend;
+
+		ArrayDeque<ByteBuf> pending = new ArrayDeque<>();
+
+		long lastActive;
+
+		Timeout timeout;
+
+		boolean dirty;
+
+		boolean closed;
+
+		Session(InetSocketAddress client)
+		{
+			this.client = client;
+		}
+
+		void start(ChannelHandlerContext ctx)
+		{
+			scheduleIdle(idleTimeoutNs);
+			nettyEngine.connectDatagram(connectSupplier.get(), connectOptions, ctx.channel().eventLoop(), this)
+				.whenCompleteAsync((channel, ex) -> {
+					if (ex != null) {
+						log.error("Failed to connect datagram session for client: {}", client, ex);
+						close();
+					}
+					else if (closed) {
+						channel.close();
+					}
+					else {
+						backend = channel;
+						for (ByteBuf data; (data = pending.poll()) != null; ) {
+							backend.write(data, backend.voidPromise());
+						}
+						pending = null;
+						backend.flush();
+					}
+				}, ctx.channel().eventLoop());
+		}
+
+		void forward(ByteBuf content)
+		{
+			if (backend == null) {
+				if (pending == null || pending.size() >= MAX_PENDING) {
+					content.release();
+					return;
+				}
+				pending.add(content);
+				return;
+			}
+			backend.write(content, backend.voidPromise());
+			if (!dirty) {
+				dirty = true;
+				DatagramForwardHandler.this.dirty.add(this);
+			}
+		}
+
+		void scheduleIdle(long delayNs)
+		{
+			timeout = nettyEngine.getTimer().newTimeout(
+				(t) -> bound.eventLoop().execute(this::checkIdle),
+				delayNs,
+				TimeUnit.NANOSECONDS
+			);
+		}
+
+		void checkIdle()
+		{
+			if (closed) {
+				return;
+			}
+			long remaining = lastActive+idleTimeoutNs-System.nanoTime();
+			if (remaining <= 0) {
+				log.debug("Evicting idle datagram session: {}", client);
+				close();
+			}
+			else {
+				scheduleIdle(remaining);
+			}
+		}
+
+		void close()
+		{
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (sessions.get(client) == this) {
+				sessions.remove(client);
+			}
+			if (timeout != null) {
+				timeout.cancel();
+			}
+			if (pending != null) {
+				pending.forEach(ReferenceCountUtil::release);
+				pending = null;
+			}
+			if (backend != null) {
+				backend.close();
+			}
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg)
+		{
+			DatagramPacket packet = (DatagramPacket) msg;
+			if (closed) {
+				packet.release();
+				return;
+			}
+			lastActive = System.nanoTime();
+			writeToClient(this, packet.content());
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx)
+		{
+			close();
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+		{
+			// typically ICMP port unreachable reported on connected socket, the session stays until idle:
+			log.debug("Datagram error on session: {}", client, cause);
+		}
+	}
+}
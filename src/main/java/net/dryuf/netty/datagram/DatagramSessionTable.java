@@ -0,0 +1,222 @@
+package net.dryuf.netty.datagram;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Map of datagram sessions keyed by peer address.
+ *
+ * The table uses open addressing with linear probing in flat arrays, so lookups do not allocate and the memory
+ * overhead per session is few references.  It is not thread safe, it is expected to be accessed from single event
+ * loop.
+ *
+ * @param <S>
+ *      type of session
+ */
+public class DatagramSessionTable<S>
+{
+	private static final int MIN_CAPACITY = 16;
+
+	private InetSocketAddress[] keys;
+
+	private Object[] values;
+
+	private int[] hashes;
+
+	private int size;
+
+	private int resizeThreshold;
+
+	public DatagramSessionTable()
+	{
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Creates table.
+	 *
+	 * @param expectedSize
+	 * 	expected number of sessions, the table grows if exceeded
+	 */
+	public DatagramSessionTable(int expectedSize)
+	{
+		allocate(Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize*2-1))<<1);
+	}
+
+	/**
+	 * Gets number of sessions.
+	 *
+	 * @return
+	 * 	number of sessions.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Finds session.
+	 *
+	 * @param key
+	 * 	peer address
+	 *
+	 * @return
+	 * 	session or null if not found.
+	 */
+	public S get(InetSocketAddress key)
+	{
+		int hash = hash(key);
+		int mask = keys.length-1;
+		for (int i = hash&mask; ; i = (i+1)&mask) {
+			InetSocketAddress current = keys[i];
+			if (current == null) {
+				return null;
+			}
+			if (hashes[i] == hash && current.equals(key)) {
+				@SuppressWarnings("unchecked")
+				S value = (S) values[i];
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Puts session.
+	 *
+	 * @param key
+	 * 	peer address
+	 * @param value
+	 * 	session
+	 *
+	 * @return
+	 * 	previous session or null if none.
+	 */
+	public S put(InetSocketAddress key, S value)
+	{
+		if (size >= resizeThreshold) {
+			resize(keys.length<<1);
+		}
+		int hash = hash(key);
+		int mask = keys.length-1;
+		for (int i = hash&mask; ; i = (i+1)&mask) {
+			InetSocketAddress current = keys[i];
+			if (current == null) {
+				keys[i] = key;
+				values[i] = value;
+				hashes[i] = hash;
+				++size;
+				return null;
+			}
+			if (hashes[i] == hash && current.equals(key)) {
+				@SuppressWarnings("unchecked")
+				S old = (S) values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+	}
+
+	/**
+	 * Removes session.
+	 *
+	 * @param key
+	 * 	peer address
+	 *
+	 * @return
+	 * 	removed session or null if not found.
+	 */
+	public S remove(InetSocketAddress key)
+	{
+		int hash = hash(key);
+		int mask = keys.length-1;
+		for (int i = hash&mask; ; i = (i+1)&mask) {
+			InetSocketAddress current = keys[i];
+			if (current == null) {
+				return null;
+			}
+			if (hashes[i] == hash && current.equals(key)) {
+				@SuppressWarnings("unchecked")
+				S old = (S) values[i];
+				deleteSlot(i);
+				--size;
+				return old;
+			}
+		}
+	}
+
+	/**
+	 * Lists all sessions.
+	 *
+	 * @return
+	 * 	snapshot of current sessions.
+	 */
+	public List<S> values()
+	{
+		List<S> result = new ArrayList<>(size);
+		for (int i = 0; i < keys.length; ++i) {
+			if (keys[i] != null) {
+				@SuppressWarnings("unchecked")
+				S value = (S) values[i];
+				result.add(value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes slot and shifts back the following entries of the same probe sequence, so no tombstones are needed.
+	 */
+	private void deleteSlot(int slot)
+	{
+		int mask = keys.length-1;
+		for (int i = (slot+1)&mask; keys[i] != null; i = (i+1)&mask) {
+			int ideal = hashes[i]&mask;
+			// move entry if its ideal position is not between the hole and the entry (cyclically):
+			if (((i-ideal)&mask) >= ((i-slot)&mask)) {
+				keys[slot] = keys[i];
+				values[slot] = values[i];
+				hashes[slot] = hashes[i];
+				slot = i;
+			}
+		}
+		keys[slot] = null;
+		values[slot] = null;
+	}
+
+	private void resize(int capacity)
+	{
+		InetSocketAddress[] oldKeys = keys;
+		Object[] oldValues = values;
+		int[] oldHashes = hashes;
+		allocate(capacity);
+		int mask = capacity-1;
+		for (int j = 0; j < oldKeys.length; ++j) {
+			if (oldKeys[j] != null) {
+				int i = oldHashes[j]&mask;
+				while (keys[i] != null) {
+					i = (i+1)&mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+				hashes[i] = oldHashes[j];
+			}
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new InetSocketAddress[capacity];
+		values = new Object[capacity];
+		hashes = new int[capacity];
+		resizeThreshold = capacity/2;
+	}
+
+	private static int hash(InetSocketAddress key)
+	{
+		// InetSocketAddress.hashCode() is address hash plus port, spread it as the table uses low bits:
+		int h = key.hashCode()*0x9E3779B9;
+		return h^(h>>>16);
+	}
+}
@@ -0,0 +1,316 @@
+package net.dryuf.netty.forward;
+
+import io.netty.channel.ServerChannel;
+import io.netty.channel.unix.UnixChannel;
+import io.netty.channel.unix.FileDescriptor;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.base.concurrent.future.FutureUtil;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.NettyEngine;
+import net.dryuf.netty.core.NettyServer;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.forward.PortForwarderFactory.ForwardConfig;
+import net.dryuf.netty.handoff.HandedOverListener;
+import net.dryuf.netty.handoff.ListenerHandover;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+
+/**
+ * Managed set of running forwards, reconfigurable at runtime.
+ *
+ * Forwards are identified by their bind address.  Updating a forward with the same bind address atomically swaps the
+ * configuration without rebinding the listener.  Connections already established continue to the backend they were
+ * created with, only newly accepted connections use the new configuration.  Options of the listener itself
+ * (partition, stream and datagram options) are applied when binding only, changing them closes the listener and
+ * binds it again.  Removing a forward closes its listener but keeps the established connections running.  Tunnel
+ * connections of removed or changed forwards are closed once their streams finish.
+ *
+ * All operations only update the registry and return immediately, binding and closing happen asynchronously.
+ */
+@Log4j2
+public class ForwarderRegistry implements AutoCloseable
+{
+	private final NettyPortForwarderFactory forwarderFactory;
+
+	private final Map<AddressSpec, Entry> forwards = new LinkedHashMap<>();
+
+	/** Listeners being closed, new listener on the same address must wait for their completion. */
+	private final Map<AddressSpec, CompletableFuture<Void>> closing = new HashMap<>();
+
+	public ForwarderRegistry(NettyEngine nettyEngine)
+	{
+		this(new NettyPortForwarderFactory(nettyEngine));
+	}
+
+	public ForwarderRegistry(NettyPortForwarderFactory forwarderFactory)
+	{
+		this.forwarderFactory = forwarderFactory;
+	}
+
+	/**
+	 * Adds a new forward or updates existing one with the same bind address.  The existing listener is rebound if
+	 * its options changed.
+	 *
+	 * @param config
+	 * 	forward configuration
+	 *
+	 * @return
+	 * 	future completing once the forward is listening.
+	 */
+	public synchronized CompletableFuture<Server> update(ForwardConfig config)
+	{
+		try {
+			NettyPortForwarderFactory.validateForward(config);
+		}
+		catch (Throwable ex) {
+			return FutureUtil.exception(ex);
+		}
+		Entry existing = forwards.get(config.getBind());
+		if (existing != null) {
+			if (isSameListener(existing.config, config)) {
+				existing.config = config;
+				forwarderFactory.releaseForward(config.getBind(), config);
+				return existing.server;
+			}
+			// listener options are applied when binding only:
+			remove(config.getBind());
+		}
+		Entry entry = new Entry(config);
+		CompletableFuture<Void> previous = closing.getOrDefault(config.getBind(), CompletableFuture.completedFuture(null));
+		entry.server = previous
+			.handle((v, ex) -> null)
+			.thenCompose(v -> forwarderFactory.runForwarder(config.getBind(), () -> entry.config));
+		forwards.put(config.getBind(), entry);
+		entry.server.whenComplete((server, ex) -> {
+			if (ex != null) {
+				log.error("Failed to start forward: {}", config.getBind(), ex);
+				removeFailed(entry);
+			}
+		});
+		return entry.server;
+	}
+
+	/**
+	 * Removes forward.  The listener is closed, established connections continue.
+	 *
+	 * @param bind
+	 * 	bind address of forward
+	 *
+	 * @return
+	 * 	future completing once the listener is closed.
+	 */
+	public synchronized CompletableFuture<Void> remove(AddressSpec bind)
+	{
+		Entry entry = forwards.remove(bind);
+		if (entry == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		forwarderFactory.releaseForward(bind, null);
+		CompletableFuture<Void> closed = entry.server
+			.handle((server, ex) -> server)
+			.thenCompose(server -> server == null ? CompletableFuture.<Void>completedFuture(null) : server.cancel())
+			.handle((v, ex) -> null);
+		closing.put(bind, closed);
+		closed.whenComplete((v, ex) -> removeClosing(bind, closed));
+		return closed;
+	}
+
+	/**
+	 * Applies full configuration, adding new forwards, removing the missing ones and swapping configuration of those
+	 * which changed.  Forwards with unchanged configuration are not touched.
+	 *
+	 * @param configs
+	 * 	full list of forwards
+	 *
+	 * @return
+	 * 	future completing once all changes are applied.
+	 */
+	public synchronized CompletableFuture<Void> apply(List<ForwardConfig> configs)
+	{
+		Map<AddressSpec, ForwardConfig> wanted = new LinkedHashMap<>();
+		for (ForwardConfig config: configs) {
+			if (wanted.put(config.getBind(), config) != null) {
+				return FutureUtil.exception(new IllegalArgumentException("Duplicate bind address: "+config.getBind()));
+			}
+		}
+		List<CompletableFuture<?>> futures = new ArrayList<>();
+		for (AddressSpec bind: new ArrayList<>(forwards.keySet())) {
+			if (!wanted.containsKey(bind)) {
+				futures.add(remove(bind));
+			}
+		}
+		for (ForwardConfig config: wanted.values()) {
+			Entry existing = forwards.get(config.getBind());
+			if (existing == null || !existing.config.equals(config)) {
+				futures.add(update(config));
+			}
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+	}
+
+	/**
+	 * Serves handover of running listeners to another process, see {@link ListenerHandover}.  Once handed over, the
+	 * forwards are removed from this registry without closing the sockets, established connections continue.
+	 *
+	 * @param control
+	 * 	domain socket address to serve handover on
+	 *
+	 * @return
+	 * 	future with control server channel.
+	 */
+	public CompletableFuture<ServerChannel> serveHandover(AddressSpec control)
+	{
+		return ListenerHandover.serve(forwarderFactory.getNettyEngine(), control, this::getHandoverListeners, this::removeHandedOver);
+	}
+
+	/**
+	 * Takes over listeners from another process and applies full configuration.  Received listeners matching bind
+	 * address of configured forwards are adopted, others are closed.  Forwards not received are bound as usual.
+	 *
+	 * @param control
+	 * 	domain socket address where the previous owner serves handover
+	 * @param configs
+	 * 	full list of forwards
+	 *
+	 * @return
+	 * 	future completing once all forwards are running and previous owner stopped accepting.
+	 */
+	public CompletableFuture<Void> takeOver(AddressSpec control, List<ForwardConfig> configs)
+	{
+		Map<String, ForwardConfig> wanted = new HashMap<>();
+		try {
+			for (ForwardConfig config: configs) {
+				NettyPortForwarderFactory.validateForward(config);
+				if (wanted.put(config.getBind().toString(), config) != null) {
+					throw new IllegalArgumentException("Duplicate bind address: "+config.getBind());
+				}
+			}
+		}
+		catch (Throwable ex) {
+			return FutureUtil.exception(ex);
+		}
+		return ListenerHandover.receive(forwarderFactory.getNettyEngine(), control, listener -> adopt(wanted.get(listener.getKey()), listener))
+			.thenCompose(keys -> apply(configs));
+	}
+
+	/**
+	 * Gets currently configured forwards.
+	 *
+	 * @return
+	 * 	list of current forward configurations.
+	 */
+	public synchronized List<ForwardConfig> getForwards()
+	{
+		return forwards.values().stream().map(e -> e.config).collect(Collectors.toList());
+	}
+
+	/**
+	 * Closes all listeners.  Established connections are not affected.
+	 */
+	@Override
+	public void close()
+	{
+		List<CompletableFuture<Void>> futures;
+		synchronized (this) {
+			futures = new ArrayList<>(forwards.keySet()).stream().map(this::remove).collect(Collectors.toList());
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+	}
+
+	/**
+	 * Checks whether the options read once when creating listener are the same.
+	 */
+	private static boolean isSameListener(ForwardConfig old, ForwardConfig config)
+	{
+		return Objects.equals(old.getPartition(), config.getPartition()) &&
+			Objects.equals(old.getStreamOptions(), config.getStreamOptions()) &&
+			Objects.equals(old.getDatagramOptions(), config.getDatagramOptions()) &&
+			old.getDatagramIdleTimeout() == config.getDatagramIdleTimeout() &&
+			old.getDatagramMaxSessions() == config.getDatagramMaxSessions();
+	}
+
+	private synchronized Map<String, ServerChannel> getHandoverListeners()
+	{
+		Map<String, ServerChannel> listeners = new LinkedHashMap<>();
+		forwards.forEach((bind, entry) -> {
+			if (entry.server.isDone() && !entry.server.isCompletedExceptionally() &&
+				((NettyServer) entry.server.join()).getChannel() instanceof ServerChannel &&
+				((NettyServer) entry.server.join()).getChannel() instanceof UnixChannel) {
+				listeners.put(bind.toString(), (ServerChannel) ((NettyServer) entry.server.join()).getChannel());
+			}
+		});
+		return listeners;
+	}
+
+	private synchronized void removeHandedOver(List<String> keys)
+	{
+		Set<String> handedOver = new HashSet<>(keys);
+		forwards.keySet().removeIf(bind -> {
+			if (!handedOver.contains(bind.toString())) {
+				return false;
+			}
+			forwarderFactory.releaseForward(bind, null);
+			return true;
+		});
+	}
+
+	private synchronized CompletableFuture<?> adopt(ForwardConfig config, HandedOverListener listener)
+	{
+		if (config == null || forwards.containsKey(config.getBind())) {
+			log.info("Closing handed over listener not configured: {}", listener.getKey());
+			try {
+				new FileDescriptor(listener.getFd()).close();
+			}
+			catch (IOException ex) {
+				log.warn("Failed to close handed over listener: {}", listener.getKey(), ex);
+			}
+			return CompletableFuture.completedFuture(null);
+		}
+		Entry entry = new Entry(config);
+		entry.server = forwarderFactory.runForwarder(config.getBind(), () -> entry.config, listener);
+		forwards.put(config.getBind(), entry);
+		entry.server.whenComplete((server, ex) -> {
+			if (ex != null) {
+				log.error("Failed to adopt forward: {}", config.getBind(), ex);
+				removeFailed(entry);
+			}
+		});
+		return entry.server;
+	}
+
+	private synchronized void removeFailed(Entry entry)
+	{
+		forwards.remove(entry.bind, entry);
+	}
+
+	private synchronized void removeClosing(AddressSpec bind, CompletableFuture<Void> closed)
+	{
+		closing.remove(bind, closed);
+	}
+
+	private static class Entry
+	{
+		final AddressSpec bind;
+
+		volatile ForwardConfig config;
+
+		CompletableFuture<Server> server;
+
+		Entry(ForwardConfig config)
+		{
+			this.bind = config.getBind();
+			this.config = config;
+		}
+	}
+}
@@ -1,28 +1,68 @@
 package net.dryuf.netty.forward;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ServerChannel;
 import io.netty.channel.socket.DuplexChannel;
 import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.ReferenceCountUtil;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import net.dryuf.base.concurrent.future.FutureUtil;
 import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.capture.CaptureHandler;
+import net.dryuf.netty.core.ConnectOptions;
+import net.dryuf.netty.core.DatagramOptions;
+import net.dryuf.netty.core.ForwardTimeouts;
+import net.dryuf.netty.core.ListenOptions;
 import net.dryuf.netty.core.NettyEngine;
 import net.dryuf.netty.core.NettyServer;
 import net.dryuf.netty.core.Server;
+import net.dryuf.netty.datagram.DatagramForwardHandler;
+import net.dryuf.netty.handoff.HandedOverListener;
+import net.dryuf.netty.pipeline.CompressionDecoder;
+import net.dryuf.netty.pipeline.CompressionEncoder;
+import net.dryuf.netty.pipeline.CompressionMetrics;
+import net.dryuf.netty.pipeline.CumulatingByteBufHandler;
+import net.dryuf.netty.pipeline.FirstPayloadHandler;
 import net.dryuf.netty.pipeline.FullFlowControlHandler;
+import net.dryuf.netty.pipeline.MirrorHandler;
+import net.dryuf.netty.pipeline.MirrorMetrics;
+import net.dryuf.netty.pipeline.ProtocolSignatures;
+import net.dryuf.netty.pipeline.ProtocolSniffingHandler;
+import net.dryuf.netty.tls.SniPeekHandler;
+import net.dryuf.netty.tls.TlsContextFactory;
+import net.dryuf.netty.tunnel.TunnelClient;
+import net.dryuf.netty.tunnel.TunnelOptions;
+import net.dryuf.netty.tunnel.TunnelSession;
 import net.dryuf.netty.util.NettyFutures;
+import net.dryuf.netty.util.PrefixTrie;
+import net.dryuf.netty.util.ServerNameMatcher;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 /**
@@ -33,8 +73,21 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor(onConstructor = @__(@Inject))
 public class NettyPortForwarderFactory implements PortForwarderFactory
 {
+	@Getter(AccessLevel.PACKAGE)
 	private final NettyEngine nettyEngine;
 
+	private final TlsContextFactory tlsContextFactory = new TlsContextFactory();
+
+	private final LoadingCache<SniffConfig, PrefixTrie<AddressSpec>> sniffTries = CacheBuilder.newBuilder()
+		.weakKeys()
+		.build(CacheLoader.from(NettyPortForwarderFactory::compileSniff));
+
+	private final LoadingCache<SniConfig, ServerNameMatcher<AddressSpec>> sniMatchers = CacheBuilder.newBuilder()
+		.weakKeys()
+		.build(CacheLoader.from(NettyPortForwarderFactory::compileSni));
+
+	private final Map<List<Object>, TunnelClient> tunnelClients = new ConcurrentHashMap<>();
+
 	@Override
 	public List<CompletableFuture<Server>> runForwards(List<ForwardConfig> forwards)
 	{
@@ -46,47 +99,271 @@ public class NettyPortForwarderFactory implements PortForwarderFactory
 	public CompletableFuture<Server> runForward(ForwardConfig forward)
 	{
 		try {
-			Preconditions.checkArgument(forward.getBind() != null, "bind must be specified");
-			switch (Optional.ofNullable(forward.getBind().getProto()).orElse("")) {
-			case "tcp4":
-			case "tcp6":
-				break;
+			validateForward(forward);
+		}
+		catch (Throwable ex) {
+			return FutureUtil.exception(ex);
+		}
+		return runForwarder(forward.getBind(), () -> forward);
 
-			case "unix":
-			case "domain":
-				Preconditions.checkArgument(forward.getBind().getPath() != null, "path not specified");
-				break;
+	}
+
+	/**
+	 * Validates forward configuration.
+	 *
+	 * @param forward
+	 * 	forward configuration
+	 *
+	 * @throws IllegalArgumentException
+	 * 	when configuration is invalid
+	 */
+	static void validateForward(ForwardConfig forward)
+	{
+		Preconditions.checkArgument(forward.getBind() != null, "bind must be specified");
+		switch (Optional.ofNullable(forward.getBind().getProto()).orElse("")) {
+		case "tcp4":
+		case "tcp6":
+			break;
+
+		case "udp4":
+		case "udp6":
+			validateDatagramForward(forward);
+			return;
+
+		case "unix":
+		case "domain":
+		case "shm":
+			Preconditions.checkArgument(forward.getBind().getPath() != null, "path not specified");
+			break;
 
-			default:
-				throw new IllegalArgumentException("Unknown bind.proto: "+forward.getBind().getProto());
+		case "local":
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unknown bind.proto: "+forward.getBind().getProto());
+		}
+
+		Preconditions.checkArgument(!forward.isAlpnPassthrough() || forward.getBindTls() != null && forward.getConnectTls() != null,
+			"alpnPassthrough requires bindTls and connectTls");
+
+		Preconditions.checkArgument(forward.getConnect() != null, "connect must be specified");
+		validateConnect(forward.getConnect(), "connect");
+
+		if (forward.getSni() != null) {
+			Preconditions.checkArgument(forward.getBindTls() == null, "sni and bindTls are mutually exclusive");
+			Preconditions.checkArgument(forward.getSni().getRoutes() != null, "sni.routes must be specified");
+			forward.getSni().getRoutes().forEach((host, connect) -> validateConnect(connect, "sni.routes["+host+"]"));
+			compileSni(forward.getSni());
+		}
+
+		if (forward.getSniff() != null) {
+			Preconditions.checkArgument(forward.getBindTls() == null, "sniff and bindTls are mutually exclusive");
+			Preconditions.checkArgument(forward.getSni() == null, "sniff and sni are mutually exclusive");
+			Preconditions.checkArgument(forward.getSniff().getRoutes() != null, "sniff.routes must be specified");
+			for (int i = 0; i < forward.getSniff().getRoutes().size(); ++i) {
+				SniffRoute route = forward.getSniff().getRoutes().get(i);
+				Preconditions.checkArgument(route.getProtocol() != null || route.getMagic() != null && route.getMagic().length != 0,
+					"sniff.routes["+i+"] requires protocol or magic");
+				Preconditions.checkArgument(route.getConnect() != null, "sniff.routes["+i+"].connect must be specified");
+				validateConnect(route.getConnect(), "sniff.routes["+i+"].connect");
 			}
+			if (forward.getSniff().getTimeoutConnect() != null) {
+				validateConnect(forward.getSniff().getTimeoutConnect(), "sniff.timeoutConnect");
+			}
+			compileSniff(forward.getSniff());
+			int longestSignature = forward.getSniff().getRoutes().stream()
+				.flatMap(route -> route.getProtocol() != null ?
+					ProtocolSignatures.forProtocol(route.getProtocol()).stream() :
+					Stream.of(route.getMagic()))
+				.mapToInt(signature -> signature.length)
+				.max()
+				.orElse(0);
+			Preconditions.checkArgument(forward.getSniff().getMaxPeekLength() >= longestSignature,
+				"sniff.maxPeekLength must be at least the length of longest signature: "+longestSignature);
+		}
 
-			Preconditions.checkArgument(forward.getConnect() != null, "connect must be specified");
-			switch (Optional.ofNullable(forward.getConnect().getProto()).orElse("")) {
-			case "tcp4":
-			case "tcp6":
-				Preconditions.checkArgument(forward.getConnect().getPort() != 0, "port not specified");
-				Preconditions.checkArgument(forward.getConnect().getHost() != null, "host not specified");
-				break;
+		if (forward.isHandoff()) {
+			Preconditions.checkArgument(!AddressSpec.PROTO_LOCAL.equals(forward.getBind().getProto()) &&
+					!AddressSpec.PROTO_SHM.equals(forward.getBind().getProto()),
+				"handoff requires socket bind, not local or shm");
+			Preconditions.checkArgument(forward.getBindTls() == null && forward.getConnectTls() == null,
+				"handoff is mutually exclusive with bindTls and connectTls");
+			validateHandoffConnect(forward.getConnect(), "connect");
+			if (forward.getSni() != null) {
+				forward.getSni().getRoutes().forEach((host, connect) -> validateHandoffConnect(connect, "sni.routes["+host+"]"));
+			}
+			if (forward.getSniff() != null) {
+				forward.getSniff().getRoutes().forEach(route -> validateHandoffConnect(route.getConnect(), "sniff.routes.connect"));
+				if (forward.getSniff().getTimeoutConnect() != null) {
+					validateHandoffConnect(forward.getSniff().getTimeoutConnect(), "sniff.timeoutConnect");
+				}
+			}
+		}
 
-			case "unix":
-			case "domain":
-				Preconditions.checkArgument(forward.getConnect().getPath() != null, "path not specified");
-				break;
+		if (forward.getTunnel() != null) {
+			Preconditions.checkArgument(forward.getTunnel().getMode() != null, "tunnel.mode must be specified");
+			Preconditions.checkArgument(!forward.isHandoff() && forward.getConnectTls() == null && !forward.isAlpnPassthrough(),
+				"tunnel is mutually exclusive with handoff, connectTls and alpnPassthrough");
+			if (forward.getTunnel().getMode() == TunnelConfig.Mode.EXIT) {
+				Preconditions.checkArgument(forward.getSni() == null && forward.getSniff() == null && !forward.isLazyConnect() &&
+						forward.getMirror() == null && forward.getCapture() == null,
+					"tunnel exit supports only plain connect");
+			}
+			TunnelOptions options = Optional.ofNullable(forward.getTunnel().getOptions()).orElse(TunnelOptions.DEFAULT);
+			Preconditions.checkArgument(options.getConnections() > 0, "tunnel.options.connections must be positive");
+			Preconditions.checkArgument(options.getStreamWindow() > 0, "tunnel.options.streamWindow must be positive");
+			Preconditions.checkArgument(options.getMaxFrameLength() > 0, "tunnel.options.maxFrameLength must be positive");
+		}
 
-			default:
-				throw new IllegalArgumentException("Unknown connect.proto: "+forward.getConnect().getProto());
+		if (forward.getCompression() != null) {
+			CompressionConfig compression = forward.getCompression();
+			Preconditions.checkArgument(compression.getSide() != null, "compression.side must be specified");
+			Preconditions.checkArgument(!forward.isHandoff() && forward.getTunnel() == null,
+				"compression is mutually exclusive with handoff and tunnel");
+			Preconditions.checkArgument(compression.getSide() != CompressionConfig.Side.BIND ||
+					forward.getSni() == null && forward.getSniff() == null,
+				"compression on bind side is mutually exclusive with sni and sniff");
+			Preconditions.checkArgument(compression.getLevel() >= 1 && compression.getLevel() <= 9,
+				"compression.level must be between 1 and 9");
+			Preconditions.checkArgument(compression.getSampleBytes() > 0, "compression.sampleBytes must be positive");
+		}
+	}
+
+	private static void validateDatagramForward(ForwardConfig forward)
+	{
+		Preconditions.checkArgument(forward.getConnect() != null, "connect must be specified");
+		switch (Optional.ofNullable(forward.getConnect().getProto()).orElse("")) {
+		case "udp4":
+		case "udp6":
+			Preconditions.checkArgument(forward.getConnect().getPort() != 0, "port not specified");
+			Preconditions.checkArgument(forward.getConnect().getHost() != null, "host not specified");
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unsupported connect.proto for udp bind: "+forward.getConnect().getProto());
+		}
+		Preconditions.checkArgument(forward.getBindTls() == null && forward.getConnectTls() == null && forward.getSni() == null &&
+				forward.getSniff() == null && !forward.isLazyConnect() && !forward.isHandoff(),
+			"udp bind supports only plain connect");
+		Preconditions.checkArgument(forward.getDatagramIdleTimeout() > 0, "datagramIdleTimeout must be positive");
+		Preconditions.checkArgument(forward.getDatagramMaxSessions() > 0, "datagramMaxSessions must be positive");
+	}
+
+	private static boolean isDatagram(AddressSpec bind)
+	{
+		return AddressSpec.PROTO_UDP4.equals(bind.getProto()) || AddressSpec.PROTO_UDP6.equals(bind.getProto());
+	}
+
+	private static void validateHandoffConnect(AddressSpec connect, String name)
+	{
+		Preconditions.checkArgument(AddressSpec.PROTO_UNIX.equals(connect.getProto()) || AddressSpec.PROTO_DOMAIN.equals(connect.getProto()),
+			"handoff requires unix or domain "+name+".proto: "+connect.getProto());
+	}
+
+	/**
+	 * Compiles SNI routes into server name matcher.
+	 *
+	 * @param sni
+	 * 	SNI configuration
+	 *
+	 * @return
+	 * 	compiled matcher.
+	 *
+	 * @throws IllegalArgumentException
+	 * 	when server name is empty or duplicate
+	 */
+	static ServerNameMatcher<AddressSpec> compileSni(SniConfig sni)
+	{
+		ServerNameMatcher.Builder<AddressSpec> builder = ServerNameMatcher.builder();
+		sni.getRoutes().forEach(builder::add);
+		return builder.build();
+	}
+
+	/**
+	 * Compiles sniffing routes into prefix trie.
+	 *
+	 * @param sniff
+	 * 	sniffing configuration
+	 *
+	 * @return
+	 * 	compiled trie.
+	 *
+	 * @throws IllegalArgumentException
+	 * 	when protocol is unknown or signatures conflict
+	 */
+	static PrefixTrie<AddressSpec> compileSniff(SniffConfig sniff)
+	{
+		PrefixTrie.Builder<AddressSpec> builder = PrefixTrie.builder();
+		for (SniffRoute route: sniff.getRoutes()) {
+			List<byte[]> signatures = route.getProtocol() != null ?
+				ProtocolSignatures.forProtocol(route.getProtocol()) :
+				Collections.singletonList(route.getMagic());
+			for (byte[] signature: signatures) {
+				builder.add(signature, route.getConnect());
 			}
 		}
-		catch (Throwable ex) {
-			return FutureUtil.exception(ex);
+		return builder.build();
+	}
+
+	private static void validateConnect(AddressSpec connect, String name)
+	{
+		switch (Optional.ofNullable(connect.getProto()).orElse("")) {
+		case "tcp4":
+		case "tcp6":
+			Preconditions.checkArgument(connect.getPort() != 0, "port not specified");
+			Preconditions.checkArgument(connect.getHost() != null, "host not specified");
+			break;
+
+		case "unix":
+		case "domain":
+		case "local":
+		case "shm":
+			Preconditions.checkArgument(connect.getPath() != null, "path not specified");
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unknown "+name+".proto: "+connect.getProto());
 		}
-		return runForwarder(forward);
+	}
 
+	/**
+	 * Runs forwarder listening on bind address, reading the current configuration for every accepted connection.
+	 *
+	 * @param bind
+	 * 	address to listen on
+	 * @param configSupplier
+	 * 	supplier of current configuration, consulted once per accepted connection
+	 *
+	 * @return
+	 * 	future completing once the port forwarding is successfully setup.
+	 */
+	CompletableFuture<Server> runForwarder(AddressSpec bind, Supplier<ForwardConfig> configSupplier)
+	{
+		return runForwarder(bind, configSupplier, null);
 	}
 
-	private CompletableFuture<Server> runForwarder(ForwardConfig config)
+	/**
+	 * Runs forwarder listening on bind address or adopted listener, reading the current configuration for every
+	 * accepted connection.
+	 *
+	 * @param bind
+	 * 	address to listen on
+	 * @param configSupplier
+	 * 	supplier of current configuration, consulted once per accepted connection
+	 * @param adopted
+	 * 	listener handed over from another process, listening on bind address, null to bind new listener
+	 *
+	 * @return
+	 * 	future completing once the port forwarding is successfully setup.
+	 */
+	CompletableFuture<Server> runForwarder(AddressSpec bind, Supplier<ForwardConfig> configSupplier, HandedOverListener adopted)
 	{
+		if (isDatagram(bind)) {
+			if (adopted != null) {
+				return FutureUtil.exception(new UnsupportedOperationException("Adopting datagram forward not supported: "+bind));
+			}
+			return runDatagramForwarder(bind, configSupplier);
+		}
 		return new CompletableFuture<Server>() {
 			private CompletableFuture<ServerChannel> initFuture;
 			private ServerChannel listener;
@@ -95,7 +372,8 @@ public class NettyPortForwarderFactory implements PortForwarderFactory
 			public synchronized boolean cancel(boolean interrupt) {
 				if (listener != null)
 					listener.close();
-				initFuture.cancel(interrupt);
+				if (initFuture != null)
+					initFuture.cancel(interrupt);
 				return super.cancel(interrupt);
 			}
 
@@ -114,47 +392,177 @@ public class NettyPortForwarderFactory implements PortForwarderFactory
 				completeExceptionally(ex);
 			}
 
-			private void connectForward(DuplexChannel client, AddressSpec connect)
+			private void connectForward(DuplexChannel client, ForwardConfig config, AddressSpec connect, String applicationProtocol, ByteBuf initial)
 			{
+				if (config.isHandoff()) {
+					nettyEngine.handoff(connect, client, config.getHandoffHeader(), initial)
+						.whenComplete((v, ex) -> {
+							if (ex != null) {
+								log.error("Failed to hand off to: {}", connect, ex);
+								client.close();
+							}
+						});
+					return;
+				}
+				if (config.getCapture() != null && config.getCapture().sample()) {
+					client.pipeline().addLast(new CaptureHandler(config.getCapture(), "client="+client.remoteAddress()+" connect="+connect, initial));
+				}
+				if (config.getTunnel() != null) {
+					if (config.getMirror() != null) {
+						client.pipeline().addLast(createMirrorHandler(config, initial != null ? initial.retainedDuplicate() : null));
+					}
+					getTunnelClient(config, connect).openStream(client, initial)
+						.whenComplete((v, ex) -> {
+							if (ex != null) {
+								log.error("Failed to open tunnel stream to: {}", connect, ex);
+							}
+							client.close();
+						});
+					return;
+				}
+				// connect consumes initial, keep duplicate for mirror:
+				ByteBuf mirrorInitial = config.getMirror() != null && initial != null ? initial.retainedDuplicate() : null;
 				nettyEngine.connect(
 						connect,
+						getConnectOptions(config),
 						new ChannelInitializer<DuplexChannel>()
 						{
 							@Override
 							public void initChannel(DuplexChannel server) throws Exception
 							{
 								server.config().setAutoRead(false);
+								if (config.getCompression() != null &&
+										config.getCompression().getSide() == CompressionConfig.Side.CONNECT) {
+									addCompression(server, config.getCompression());
+								}
 								server.pipeline().addLast(new FullFlowControlHandler());
+								if (config.getConnectTls() != null) {
+									server.pipeline().addFirst(tlsContextFactory.newClientHandler(
+										config.getConnectTls(),
+										applicationProtocol,
+										server.alloc(),
+										connect
+									));
+								}
 							}
-						}
+						},
+						initial
 					)
 					.whenComplete((server, ex) -> {
 						if (ex == null) {
-							nettyEngine.forwardDuplex(client, server)
+							if (config.getMirror() != null) {
+								client.pipeline().addLast(createMirrorHandler(config, mirrorInitial));
+							}
+							nettyEngine.forwardDuplex(client, server,
+									config.getTimeouts() != null ? config.getTimeouts() : ForwardTimeouts.DEFAULT)
 								.whenComplete((v, ex2) -> {
 									NettyFutures.join(client.close(), server.close());
 								});
 						}
 						else {
 							log.error("Failed to connect to: {}", connect, ex);
+							ReferenceCountUtil.release(mirrorInitial);
 							client.close();
 						}
 					});
 			}
 
+			private MirrorHandler createMirrorHandler(ForwardConfig config, ByteBuf initial)
+			{
+				PortForwarderFactory.MirrorConfig mirror = config.getMirror();
+				return new MirrorHandler(
+					nettyEngine,
+					mirror.getConnect(),
+					ConnectOptions.builder()
+						.partition(config.getPartition())
+						.build(),
+					mirror.getMaxBuffered(),
+					mirror.getOverflowPolicy(),
+					mirror.getMetrics() != null ? mirror.getMetrics() : new MirrorMetrics(),
+					initial
+				);
+			}
+
+			private void initClient(DuplexChannel client, ForwardConfig config)
+			{
+				client.config().setAutoRead(false);
+				client.pipeline().addFirst(new FullFlowControlHandler());
+				if (config.getCompression() != null && config.getCompression().getSide() == CompressionConfig.Side.BIND) {
+					addCompression(client, config.getCompression());
+				}
+				if (config.getSni() != null) {
+					client.pipeline().addLast(
+						new CumulatingByteBufHandler(config.getSni().getMaxPeekLength()),
+						new SniPeekHandler<>(
+							sniMatchers.getUnchecked(config.getSni()),
+							config.getSni().getPeekTimeout(),
+							config.getSni().getMaxPeekLength(),
+							(ctx, route, peeked) -> connectForward(client, config, Optional.ofNullable(route).orElse(config.getConnect()), null, peeked)
+						)
+					);
+					return;
+				}
+				if (config.getSniff() != null) {
+					client.pipeline().addLast(
+						new CumulatingByteBufHandler(config.getSniff().getMaxPeekLength()),
+						new ProtocolSniffingHandler<>(
+							sniffTries.getUnchecked(config.getSniff()),
+							config.getSniff().getPeekTimeout(),
+							config.getConnect(),
+							config.getSniff().getTimeoutConnect(),
+							(ctx, connect, peeked) -> connectForward(client, config, connect, null, peeked)
+						)
+					);
+					return;
+				}
+				if (config.getBindTls() != null) {
+					SslHandler sslHandler = tlsContextFactory.newServerHandler(config.getBindTls(), client.alloc());
+					client.pipeline().addFirst(sslHandler);
+					if (config.isAlpnPassthrough()) {
+						sslHandler.handshakeFuture().addListener((f) -> {
+							if (f.isSuccess()) {
+								connectForward(client, config, config.getConnect(), sslHandler.applicationProtocol(), null);
+							}
+							else {
+								log.debug("TLS handshake failed: {}", client, f.cause());
+								client.close();
+							}
+						});
+						client.read();
+						return;
+					}
+				}
+				if (config.getTunnel() != null && config.getTunnel().getMode() == TunnelConfig.Mode.EXIT) {
+					new TunnelSession(nettyEngine, getTunnelOptions(config), (handler) ->
+						nettyEngine.connect(config.getConnect(), getConnectOptions(config), handler, null)
+					).install(client);
+					return;
+				}
+				if (config.isLazyConnect()) {
+					client.pipeline().addLast(new FirstPayloadHandler(config.getLazyConnectTimeout(), (ctx, payload) -> {
+						connectForward(client, config, config.getConnect(), null, payload);
+					}));
+					return;
+				}
+				connectForward(client, config, config.getConnect(), null, null);
+			}
+
 			private void createListener(AddressSpec address) throws InterruptedException
 			{
-				initFuture = nettyEngine.listen(
-					address,
-					new ChannelInitializer<DuplexChannel>() {
-						@Override
-						public void initChannel(DuplexChannel client) throws Exception {
-							client.config().setAutoRead(false);
-							client.pipeline().addFirst(new FullFlowControlHandler());
-							connectForward(client, config.getConnect());
-						}
+				ForwardConfig initial = configSupplier.get();
+				ChannelInitializer<DuplexChannel> initializer = new ChannelInitializer<DuplexChannel>() {
+					@Override
+					public void initChannel(DuplexChannel client) throws Exception {
+						initClient(client, configSupplier.get());
 					}
-				);
+				};
+				ListenOptions listenOptions = ListenOptions.builder()
+					.partition(initial.getPartition())
+					.streamOptions(initial.getStreamOptions())
+					.build();
+				initFuture = adopted != null ?
+					nettyEngine.adoptServerChannel(adopted.isDomain(), adopted.getFd(), listenOptions, initializer) :
+					nettyEngine.listen(address, listenOptions, initializer);
 				initFuture.whenComplete((channel, ex) -> {
 					if (ex != null) {
 						fail(ex);
@@ -180,7 +588,7 @@ public class NettyPortForwarderFactory implements PortForwarderFactory
 
 			{
 				try {
-					createListener(config.getBind());
+					createListener(bind);
 				}
 				catch (Throwable ex) {
 					fail(ex);
@@ -189,6 +597,120 @@ public class NettyPortForwarderFactory implements PortForwarderFactory
 		};
 	}
 
+	/**
+	 * Adds compression codec in front of pipeline, only TLS added later goes before it.
+	 */
+	private static void addCompression(DuplexChannel channel, CompressionConfig compression)
+	{
+		CompressionMetrics metrics = compression.getMetrics() != null ? compression.getMetrics() : new CompressionMetrics();
+		channel.pipeline().addFirst(
+			new CompressionDecoder(metrics),
+			new CompressionEncoder(
+				compression.getLevel(),
+				compression.getMinLength(),
+				compression.getBypassRatio(),
+				compression.getSampleBytes(),
+				compression.getBypassBytes(),
+				metrics
+			)
+		);
+	}
+
+	private TunnelClient getTunnelClient(ForwardConfig config, AddressSpec connect)
+	{
+		TunnelOptions options = getTunnelOptions(config);
+		return tunnelClients.computeIfAbsent(getTunnelKey(config, connect),
+			key -> new TunnelClient(nettyEngine, connect, getConnectOptions(config), options));
+	}
+
+	private static List<Object> getTunnelKey(ForwardConfig config, AddressSpec connect)
+	{
+		return Arrays.asList(config.getBind(), connect, getTunnelOptions(config), config.getPartition(), config.getStreamOptions());
+	}
+
+	/**
+	 * Releases resources of forward which were created for its previous configuration.  Tunnel clients not matching
+	 * current configuration are evicted and closed once their streams finish, so established connections continue.
+	 *
+	 * @param bind
+	 * 	bind address of forward
+	 * @param current
+	 * 	current configuration of forward, null if removed
+	 */
+	void releaseForward(AddressSpec bind, ForwardConfig current)
+	{
+		Set<List<Object>> kept = new HashSet<>();
+		if (current != null && current.getTunnel() != null && current.getTunnel().getMode() == TunnelConfig.Mode.ENTRY) {
+			getConnects(current).forEach(connect -> kept.add(getTunnelKey(current, connect)));
+		}
+		tunnelClients.entrySet().removeIf(entry -> {
+			if (!entry.getKey().get(0).equals(bind) || kept.contains(entry.getKey())) {
+				return false;
+			}
+			entry.getValue().closeGracefully();
+			return true;
+		});
+	}
+
+	/**
+	 * Gets number of tunnel clients currently used.
+	 *
+	 * @return
+	 * 	number of tunnel clients.
+	 */
+	int getTunnelClientCount()
+	{
+		return tunnelClients.size();
+	}
+
+	private static Stream<AddressSpec> getConnects(ForwardConfig config)
+	{
+		Stream<AddressSpec> connects = Stream.of(config.getConnect());
+		if (config.getSni() != null) {
+			connects = Stream.concat(connects, config.getSni().getRoutes().values().stream());
+		}
+		if (config.getSniff() != null) {
+			connects = Stream.concat(connects, Stream.concat(
+				config.getSniff().getRoutes().stream().map(SniffRoute::getConnect),
+				Stream.of(config.getSniff().getTimeoutConnect())
+			));
+		}
+		return connects.filter(Objects::nonNull);
+	}
+
+	private static TunnelOptions getTunnelOptions(ForwardConfig config)
+	{
+		return Optional.ofNullable(config.getTunnel().getOptions()).orElse(TunnelOptions.DEFAULT);
+	}
+
+	private static ConnectOptions getConnectOptions(ForwardConfig config)
+	{
+		return ConnectOptions.builder()
+			.partition(config.getPartition())
+			.streamOptions(config.getStreamOptions())
+			.build();
+	}
+
+	/**
+	 * Runs datagram forwarder, reading the current configuration for every new client session.
+	 */
+	private CompletableFuture<Server> runDatagramForwarder(AddressSpec bind, Supplier<ForwardConfig> configSupplier)
+	{
+		ForwardConfig initial = configSupplier.get();
+		DatagramOptions options = Optional.ofNullable(initial.getDatagramOptions()).orElse(DatagramOptions.DEFAULT);
+		if (initial.getPartition() != null) {
+			options = options.toBuilder().partition(initial.getPartition()).build();
+		}
+		return nettyEngine.bindDatagram(bind, options, new DatagramForwardHandler(
+				nettyEngine,
+				() -> configSupplier.get().getConnect(),
+				options,
+				initial.getDatagramIdleTimeout(),
+				initial.getDatagramMaxSessions()
+			))
+			.thenApply(NettyServer::new);
+	}
+
 	private SocketAddress createAddress(AddressSpec addressSpec)
 	{
 		switch (addressSpec.getProto()) {
@@ -208,5 +730,7 @@ public class NettyPortForwarderFactory implements PortForwarderFactory
 	@Override
 	public void close()
 	{
+		tunnelClients.values().forEach(TunnelClient::close);
+		tunnelClients.clear();
 	}
 }
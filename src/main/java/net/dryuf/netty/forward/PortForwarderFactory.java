@@ -3,10 +3,21 @@ package net.dryuf.netty.forward;
 import lombok.Builder;
 import lombok.Value;
 import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.capture.CaptureConfig;
+import net.dryuf.netty.core.DatagramOptions;
+import net.dryuf.netty.core.ForwardTimeouts;
 import net.dryuf.netty.core.Server;
+import net.dryuf.netty.core.StreamOptions;
+import net.dryuf.netty.pipeline.CompressionMetrics;
+import net.dryuf.netty.pipeline.MirrorHandler;
+import net.dryuf.netty.pipeline.MirrorMetrics;
+import net.dryuf.netty.tls.TlsConfig;
+import net.dryuf.netty.tunnel.TunnelOptions;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.zip.Deflater;
 
 
 /**
@@ -36,11 +47,166 @@ public interface PortForwarderFactory extends AutoCloseable
 	 */
 	CompletableFuture<Server> runForward(ForwardConfig forward);
 
-	@Builder(builderClassName = "Builder")
+	@Builder(builderClassName = "Builder", toBuilder = true)
 	@Value
 	class ForwardConfig
 	{
+		/** Address to listen on. */
 		AddressSpec bind;
+		/** Address to connect to. */
+		AddressSpec connect;
+		/** TLS terminated on bind side, plain if null. */
+		TlsConfig bindTls;
+		/** TLS originated on connect side, plain if null. */
+		TlsConfig connectTls;
+		/** Offers ALPN protocol negotiated with client to backend.  Requires both bindTls and connectTls. */
+		boolean alpnPassthrough;
+		/** Routes by SNI server name without terminating TLS, unmatched connections go to connect. */
+		SniConfig sni;
+		/** Routes by protocol signature, unmatched connections go to connect. */
+		SniffConfig sniff;
+		/** Defers backend connect until the first client data arrive, sending them with connect. */
+		boolean lazyConnect;
+		/** Max time to wait for first client data with lazyConnect, in milliseconds, no limit if 0. */
+		@Builder.Default
+		long lazyConnectTimeout = 30_000;
+		/** Hands off accepted client socket to receiver listening on domain socket connect address, Epoll only. */
+		boolean handoff;
+		/** Routing header passed to handoff receiver. */
+		byte[] handoffHeader;
+		/** Time after which idle datagram session is evicted, in milliseconds, for udp forwards. */
+		@Builder.Default
+		long datagramIdleTimeout = 60_000;
+		/** Max number of datagram sessions, for udp forwards. */
+		@Builder.Default
+		int datagramMaxSessions = 262_144;
+		/** Options of bound and backend datagram channels, for udp forwards, default if null. */
+		DatagramOptions datagramOptions;
+		/** Engine worker partition serving accepted and backend connections, engine worker group if null. */
+		String partition;
+		/** Low latency options of listener, accepted and backend connections, default if null. */
+		StreamOptions streamOptions;
+		/** Idle and slow consumer timeouts of forwarded connections, none if null. */
+		ForwardTimeouts timeouts;
+		/** Mirrors client to backend traffic to shadow backend, none if null. */
+		MirrorConfig mirror;
+		/** Captures sampled forwarded connections, none if null. */
+		CaptureConfig capture;
+		/** Multiplexes forwarded connections over persistent tunnel connections, connection per client if null. */
+		TunnelConfig tunnel;
+		/** Compresses link to peer forwarder, which must be configured with the opposite side, none if null. */
+		CompressionConfig compression;
+	}
+
+	@Builder(builderClassName = "Builder", toBuilder = true)
+	@Value
+	class CompressionConfig
+	{
+		/** Side of this forward facing the peer forwarder. */
+		Side side;
+		/** Deflate level, from 1 for fastest to 9 for best. */
+		@Builder.Default
+		int level = Deflater.BEST_SPEED;
+		/** Min length of data to compress, shorter are sent raw. */
+		@Builder.Default
+		int minLength = 64;
+		/** Ratio of compressed to original size above which compression is bypassed. */
+		@Builder.Default
+		double bypassRatio = 0.9;
+		/** Number of compressed bytes over which the ratio is evaluated. */
+		@Builder.Default
+		long sampleBytes = 256*1024;
+		/** Number of bytes sent raw once the ratio is poor, before compression is tried again. */
+		@Builder.Default
+		long bypassBytes = 4*1024*1024;
+		/** Counters of compressed bytes and time, shared by all connections of the forward, none if null. */
+		CompressionMetrics metrics;
+
+		public enum Side
+		{
+			/** Accepted connections come from peer forwarder. */
+			BIND,
+			/** Backend connections go to peer forwarder. */
+			CONNECT,
+		}
+	}
+
+	@Builder(builderClassName = "Builder", toBuilder = true)
+	@Value
+	class TunnelConfig
+	{
+		/** Side of the tunnel this forward runs. */
+		Mode mode;
+		/** Tunnel options, default if null. */
+		TunnelOptions options;
+
+		public enum Mode
+		{
+			/** Accepts clients and multiplexes them as streams over tunnel connections to connect address. */
+			ENTRY,
+			/** Accepts tunnel connections and connects each of their streams to connect address. */
+			EXIT,
+		}
+	}
+
+	@Builder(builderClassName = "Builder", toBuilder = true)
+	@Value
+	class MirrorConfig
+	{
+		/** Address of shadow backend, receiving copy of client data, its responses are discarded. */
+		AddressSpec connect;
+		/** Max number of bytes waiting to be written to shadow, per connection. */
+		@Builder.Default
+		long maxBuffered = 4*1024*1024;
+		/** Action once shadow falls behind. */
+		@Builder.Default
+		MirrorHandler.OverflowPolicy overflowPolicy = MirrorHandler.OverflowPolicy.DISCONNECT;
+		/** Counters of mirrored and dropped bytes, shared by all connections of the forward, none if null. */
+		MirrorMetrics metrics;
+	}
+
+	@Builder(builderClassName = "Builder", toBuilder = true)
+	@Value
+	class SniConfig
+	{
+		/**
+		 * Routes by server name, either exact host or wildcard *.domain matching any of its subdomains.  Exact match is
+		 * preferred, then the most specific wildcard.
+		 */
+		Map<String, AddressSpec> routes;
+		/** Max length of peeked data, longer ClientHello is routed to default connect. */
+		@Builder.Default
+		int maxPeekLength = 16*1024+5;
+		/** Max time to wait for ClientHello, in milliseconds. */
+		@Builder.Default
+		long peekTimeout = 5_000;
+	}
+
+	@Builder(builderClassName = "Builder", toBuilder = true)
+	@Value
+	class SniffConfig
+	{
+		/** Routes by protocol signature, the longest matching signature wins. */
+		List<SniffRoute> routes;
+		/** Address to connect to if client does not send any data within peekTimeout, close if null. */
+		AddressSpec timeoutConnect;
+		/** Max length of peeked data, must be at least the length of longest signature. */
+		@Builder.Default
+		int maxPeekLength = 1024;
+		/** Max time to wait for data, in milliseconds. */
+		@Builder.Default
+		long peekTimeout = 1_000;
+	}
+
+	@Builder(builderClassName = "Builder", toBuilder = true)
+	@Value
+	class SniffRoute
+	{
+		/** Well known protocol, see {@link net.dryuf.netty.pipeline.ProtocolSignatures#forProtocol(String)}. */
+		String protocol;
+		/** Custom magic bytes, used if protocol is null. */
+		byte[] magic;
+		/** Address to connect to. */
 		AddressSpec connect;
 	}
 }
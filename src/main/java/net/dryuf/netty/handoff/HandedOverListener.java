@@ -0,0 +1,20 @@
+package net.dryuf.netty.handoff;
+
+import lombok.Value;
+
+
+/**
+ * Listening socket received from another process by {@link ListenerHandover}.
+ */
+@Value
+public class HandedOverListener
+{
+	/** Key identifying the listener, as provided by the previous owner. */
+	String key;
+
+	/** Whether the socket is domain socket, inet otherwise. */
+	boolean domain;
+
+	/** Socket file descriptor, owned by the receiver. */
+	int fd;
+}
@@ -0,0 +1,141 @@
+package net.dryuf.netty.handoff;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import lombok.Value;
+
+
+/**
+ * Protocol for handing off connected sockets to another process over domain socket.
+ *
+ * For each handed off socket, sender opens new domain socket connection to receiver and sends the socket descriptor
+ * (SCM_RIGHTS), followed by frame:
+ * <pre>
+ * u8 magic 'H'
+ * u8 socket type: 0 inet, 1 domain
+ * u16 header length
+ * u32 initial data length
+ * header bytes
+ * initial data bytes
+ * </pre>
+ * All numbers are big endian.  Header is opaque routing information for receiver, initial data are the bytes
+ * already read from socket by sender, to be processed by receiver before any data read from socket.  The sender
+ * closes its copy of socket once the frame is sent, receiver closes the connection once frame is received.
+ */
+public class HandoffProtocol
+{
+	/** Channel attribute containing header received with handed off socket. */
+	public static final AttributeKey<byte[]> HEADER = AttributeKey.valueOf(HandoffProtocol.class, "header");
+
+	public static final int MAGIC = 'H';
+
+	public static final int TYPE_INET = 0;
+
+	public static final int TYPE_DOMAIN = 1;
+
+	public static final int PREFIX_LENGTH = 8;
+
+	public static final int MAX_HEADER_LENGTH = 0xffff;
+
+	public static final int MAX_INITIAL_LENGTH = 1<<20;
+
+	/**
+	 * Encodes frame.
+	 *
+	 * @param alloc
+	 * 	allocator
+	 * @param domain
+	 * 	whether handed off socket is domain socket
+	 * @param header
+	 * 	routing header, null if none
+	 * @param initial
+	 * 	initial data, null if none, released by this method
+	 *
+	 * @return
+	 * 	encoded frame.
+	 */
+	public static ByteBuf encodeFrame(ByteBufAllocator alloc, boolean domain, byte[] header, ByteBuf initial)
+	{
+		try {
+			int headerLength = header == null ? 0 : header.length;
+			int initialLength = initial == null ? 0 : initial.readableBytes();
+			if (headerLength > MAX_HEADER_LENGTH) {
+				throw new IllegalArgumentException("Handoff header too long: length="+headerLength);
+			}
+			if (initialLength > MAX_INITIAL_LENGTH) {
+				throw new IllegalArgumentException("Handoff initial data too long: length="+initialLength);
+			}
+			ByteBuf frame = alloc.buffer(PREFIX_LENGTH+headerLength+initialLength);
+			frame.writeByte(MAGIC);
+			frame.writeByte(domain ? TYPE_DOMAIN : TYPE_INET);
+			frame.writeShort(headerLength);
+			frame.writeInt(initialLength);
+			if (header != null) {
+				frame.writeBytes(header);
+			}
+			if (initial != null) {
+				frame.writeBytes(initial);
+			}
+			return frame;
+		}
+		finally {
+			ReferenceCountUtil.release(initial);
+		}
+	}
+
+	/**
+	 * Decodes frame.
+	 *
+	 * @param input
+	 * 	input data, consumed only if the frame is complete
+	 *
+	 * @return
+	 * 	decoded frame or null if more data are needed.
+	 *
+	 * @throws IllegalArgumentException
+	 * 	if the frame is invalid
+	 */
+	public static Frame decodeFrame(ByteBuf input)
+	{
+		if (input.readableBytes() < PREFIX_LENGTH) {
+			return null;
+		}
+		int start = input.readerIndex();
+		if (input.getUnsignedByte(start) != MAGIC) {
+			throw new IllegalArgumentException("Invalid handoff frame magic: "+input.getUnsignedByte(start));
+		}
+		int type = input.getUnsignedByte(start+1);
+		if (type != TYPE_INET && type != TYPE_DOMAIN) {
+			throw new IllegalArgumentException("Invalid handoff socket type: "+type);
+		}
+		int headerLength = input.getUnsignedShort(start+2);
+		long initialLength = input.getUnsignedInt(start+4);
+		if (initialLength > MAX_INITIAL_LENGTH) {
+			throw new IllegalArgumentException("Handoff initial data too long: length="+initialLength);
+		}
+		if (input.readableBytes() < PREFIX_LENGTH+headerLength+initialLength) {
+			return null;
+		}
+		input.skipBytes(PREFIX_LENGTH);
+		byte[] header = new byte[headerLength];
+		input.readBytes(header);
+		ByteBuf initial = input.readRetainedSlice((int) initialLength);
+		return new Frame(type == TYPE_DOMAIN, header, initial);
+	}
+
+	/**
+	 * Decoded frame.
+	 */
+	@Value
+	public static class Frame
+	{
+		/** Whether handed off socket is domain socket. */
+		boolean domain;
+		/** Routing header. */
+		byte[] header;
+		/** Initial data, to be released by the owner. */
+		ByteBuf initial;
+	}
+}
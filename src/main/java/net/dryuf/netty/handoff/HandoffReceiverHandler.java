@@ -0,0 +1,175 @@
+package net.dryuf.netty.handoff;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.DomainSocketReadMode;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.UnixChannelOption;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.core.NettyEngine;
+
+
+/**
+ * Handler receiving handed off socket, see {@link HandoffProtocol}.
+ *
+ * The channel must be domain socket channel initially set to {@link DomainSocketReadMode#FILE_DESCRIPTORS} mode and
+ * without autoRead.  Once the descriptor and frame are received, the socket is adopted as new channel, initialized
+ * by provided initializer, with header available in {@link HandoffProtocol#HEADER} attribute and initial data
+ * delivered as first read after channel becomes active.
+ */
+@Log4j2
+public class HandoffReceiverHandler extends ChannelInboundHandlerAdapter
+{
+	private final NettyEngine nettyEngine;
+
+	private final ChannelHandler channelInitializer;
+
+	private FileDescriptor descriptor;
+
+	private ByteBuf accumulator;
+
+	public HandoffReceiverHandler(NettyEngine nettyEngine, ChannelHandler channelInitializer)
+	{
+		this.nettyEngine = nettyEngine;
+		this.channelInitializer = channelInitializer;
+	}
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception
+	{
+		ctx.read();
+		super.channelActive(ctx);
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception
+	{
+		if (msg instanceof FileDescriptor) {
+			if (descriptor != null) {
+				((FileDescriptor) msg).close();
+				throw new IllegalStateException("Received multiple descriptors on handoff channel: "+ctx.channel());
+			}
+			descriptor = (FileDescriptor) msg;
+			// switch to bytes mode before reading the frame, descriptor mode would fail on plain data:
+			ctx.channel().config().setOption(UnixChannelOption.DOMAIN_SOCKET_READ_MODE, DomainSocketReadMode.BYTES);
+			readAfterModeSwitch(ctx);
+			return;
+		}
+		ByteBuf input = (ByteBuf) msg;
+		try {
+			if (descriptor == null) {
+				throw new IllegalStateException("Received data before descriptor on handoff channel: "+ctx.channel());
+			}
+			if (accumulator == null) {
+				accumulator = ctx.alloc().buffer();
+			}
+			accumulator.writeBytes(input);
+		}
+		finally {
+			input.release();
+		}
+		HandoffProtocol.Frame frame = HandoffProtocol.decodeFrame(accumulator);
+		if (frame == null) {
+			ctx.read();
+			return;
+		}
+		FileDescriptor adopted = descriptor;
+		descriptor = null;
+		ctx.close();
+		nettyEngine.adoptStreamChannel(frame.isDomain(), adopted.intValue(), new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch) throws Exception
+				{
+					ch.attr(HandoffProtocol.HEADER).set(frame.getHeader());
+					ch.pipeline().addLast(channelInitializer);
+					if (frame.getInitial().isReadable()) {
+						ch.pipeline().addFirst(new InitialDataHandler(frame.getInitial()));
+					}
+					else {
+						frame.getInitial().release();
+					}
+				}
+			})
+			.whenComplete((channel, ex) -> {
+				if (ex != null) {
+					log.error("Failed to adopt handed off socket: fd={}", adopted.intValue(), ex);
+					if (frame.getInitial().refCnt() > 0) {
+						frame.getInitial().release();
+					}
+				}
+			});
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception
+	{
+		if (descriptor != null) {
+			descriptor.close();
+			descriptor = null;
+		}
+		if (accumulator != null) {
+			accumulator.release();
+			accumulator = null;
+		}
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception
+	{
+		log.error("Failed to receive handed off socket: {}", ctx.channel(), cause);
+		ctx.close();
+	}
+
+	/**
+	 * Requests read after switching read mode from within the read loop.  The data following the descriptor may have
+	 * arrived already and in edge triggered mode they would be noticed only if read is requested after the current
+	 * read loop finishes.
+	 *
+	 * @param ctx
+	 * 	channel context
+	 */
+	static void readAfterModeSwitch(ChannelHandlerContext ctx)
+	{
+		ctx.executor().execute(ctx::read);
+	}
+
+	/**
+	 * Delivers initial data once the channel becomes active, before any data are read from socket.
+	 */
+	private static class InitialDataHandler extends ChannelInboundHandlerAdapter
+	{
+		private ByteBuf initial;
+
+		public InitialDataHandler(ByteBuf initial)
+		{
+			this.initial = initial;
+		}
+
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) throws Exception
+		{
+			super.channelActive(ctx);
+			ByteBuf data = initial;
+			initial = null;
+			ctx.pipeline().remove(this);
+			ctx.fireChannelRead(data);
+			ctx.fireChannelReadComplete();
+		}
+
+		@Override
+		public void handlerRemoved(ChannelHandlerContext ctx) throws Exception
+		{
+			if (initial != null) {
+				initial.release();
+				initial = null;
+			}
+			super.handlerRemoved(ctx);
+		}
+	}
+}
@@ -0,0 +1,404 @@
+package net.dryuf.netty.handoff;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.DomainSocketReadMode;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.ServerDomainSocketChannel;
+import io.netty.channel.unix.UnixChannel;
+import io.netty.channel.unix.UnixChannelOption;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.base.concurrent.future.FutureUtil;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.NettyEngine;
+import net.dryuf.netty.util.NettyFutures;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+
+/**
+ * Handover of listening sockets between processes, allowing restart without refusing connections.
+ *
+ * The previous owner serves the handover on domain socket, the new process connects to it and runs lock-step
+ * protocol, each command is single byte:
+ * <pre>
+ * new: 'L'                         request the list
+ * old: u16 count
+ * repeat count times:
+ *   new: 'N'                       request next listener, receiver is in descriptor mode now
+ *   old: descriptor (SCM_RIGHTS)
+ *   old: u8 type (0 inet, 1 domain), u16 key length, key (UTF-8)
+ * new: 'D'                         all listeners are accepting in new process, or 'A' to abort
+ * old: 'K'                         old process stopped accepting
+ * </pre>
+ * Both processes accept on the same sockets for a short time, so no connection is refused.  After 'D', the previous
+ * owner deregisters its listeners and closes its copies of the descriptors, while established connections continue
+ * to be served until they finish.  Socket files of domain listeners are preserved for the new owner.
+ */
+@Log4j2
+public class ListenerHandover
+{
+	public static final int CMD_LIST = 'L';
+	public static final int CMD_NEXT = 'N';
+	public static final int CMD_DONE = 'D';
+	public static final int CMD_ABORT = 'A';
+	public static final int CMD_ACK = 'K';
+
+	/**
+	 * Serves handover of listeners to another process.
+	 *
+	 * @param nettyEngine
+	 * 	engine
+	 * @param control
+	 * 	domain socket address to listen on
+	 * @param listeners
+	 * 	supplier of current listeners, by key
+	 * @param onHandedOver
+	 * 	called with keys of listeners which were handed over and stopped accepting in this process
+	 *
+	 * @return
+	 * 	future with control server channel.
+	 */
+	public static CompletableFuture<ServerChannel> serve(
+		NettyEngine nettyEngine,
+		AddressSpec control,
+		Supplier<Map<String, ServerChannel>> listeners,
+		Consumer<List<String>> onHandedOver
+	)
+	{
+		return nettyEngine.listen(control, new ChannelInitializer<DuplexChannel>()
+		{
+			@Override
+			protected void initChannel(DuplexChannel ch) throws Exception
+			{
+				ch.pipeline().addLast(new SenderHandler(nettyEngine, listeners, onHandedOver));
+			}
+		});
+	}
+
+	/**
+	 * Receives listeners from another process.
+	 *
+	 * @param nettyEngine
+	 * 	engine
+	 * @param control
+	 * 	domain socket address of previous owner
+	 * @param adopter
+	 * 	function adopting the received listener, returning future completing once it accepts connections, the
+	 * 	descriptor is closed if the function throws
+	 *
+	 * @return
+	 * 	future with keys of received listeners, completing once the previous owner stopped accepting.
+	 */
+	public static CompletableFuture<List<String>> receive(
+		NettyEngine nettyEngine,
+		AddressSpec control,
+		Function<HandedOverListener, CompletableFuture<?>> adopter
+	)
+	{
+		CompletableFuture<List<String>> result = new CompletableFuture<>();
+		nettyEngine.connect(control, new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch) throws Exception
+				{
+					ch.pipeline().addLast(new ReceiverHandler(adopter, result));
+				}
+			})
+			.whenComplete((channel, ex) -> {
+				if (ex != null) {
+					result.completeExceptionally(ex);
+				}
+				else {
+					result.whenComplete((v, ex2) -> channel.close());
+				}
+			});
+		return result;
+	}
+
+	private static class SenderHandler extends ChannelInboundHandlerAdapter
+	{
+		private final NettyEngine nettyEngine;
+
+		private final Supplier<Map<String, ServerChannel>> listeners;
+
+		private final Consumer<List<String>> onHandedOver;
+
+		private List<Map.Entry<String, ServerChannel>> snapshot;
+
+		private int next;
+
+		public SenderHandler(NettyEngine nettyEngine, Supplier<Map<String, ServerChannel>> listeners, Consumer<List<String>> onHandedOver)
+		{
+			this.nettyEngine = nettyEngine;
+			this.listeners = listeners;
+			this.onHandedOver = onHandedOver;
+		}
+
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) throws Exception
+		{
+			ctx.read();
+			super.channelActive(ctx);
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception
+		{
+			ByteBuf input = (ByteBuf) msg;
+			try {
+				while (input.isReadable()) {
+					processCommand(ctx, input.readUnsignedByte());
+				}
+			}
+			finally {
+				input.release();
+			}
+			ctx.read();
+		}
+
+		private void processCommand(ChannelHandlerContext ctx, int command) throws IOException
+		{
+			switch (command) {
+			case CMD_LIST:
+				snapshot = new ArrayList<>(listeners.get().entrySet());
+				ctx.writeAndFlush(ctx.alloc().buffer(2).writeShort(snapshot.size()));
+				break;
+
+			case CMD_NEXT:
+				if (snapshot == null || next >= snapshot.size()) {
+					throw new IllegalStateException("Unexpected handover next request: "+ctx.channel());
+				}
+				Map.Entry<String, ServerChannel> entry = snapshot.get(next++);
+				byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				ctx.write(new FileDescriptor(((UnixChannel) entry.getValue()).fd().intValue()));
+				ctx.writeAndFlush(ctx.alloc().buffer(3+key.length)
+					.writeByte(entry.getValue() instanceof ServerDomainSocketChannel ? HandoffProtocol.TYPE_DOMAIN : HandoffProtocol.TYPE_INET)
+					.writeShort(key.length)
+					.writeBytes(key));
+				break;
+
+			case CMD_DONE:
+				if (snapshot == null || next != snapshot.size()) {
+					throw new IllegalStateException("Unexpected handover done: "+ctx.channel());
+				}
+				stopAccepting(snapshot.stream().map(Map.Entry::getValue).collect(Collectors.toList()))
+					.whenComplete((v, ex) -> {
+						if (ex != null) {
+							log.error("Failed to stop handed over listeners", ex);
+						}
+						onHandedOver.accept(snapshot.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+						ctx.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{ CMD_ACK }))
+							.addListener(ChannelFutureListener.CLOSE);
+					});
+				break;
+
+			case CMD_ABORT:
+				log.warn("Listener handover aborted by receiver: {}", ctx.channel());
+				ctx.close();
+				break;
+
+			default:
+				throw new IllegalStateException("Unexpected handover command: "+command);
+			}
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception
+		{
+			log.error("Listener handover failed: {}", ctx.channel(), cause);
+			ctx.close();
+		}
+
+		private CompletableFuture<Void> stopAccepting(List<ServerChannel> channels)
+		{
+			// the new owner listens on the same socket files, keep them in place:
+			return CompletableFuture.allOf(channels.stream()
+				.map(channel -> NettyFutures.toCompletable(channel.deregister())
+					.thenCompose(v -> nettyEngine.closeKeepingSocketFile(channel))
+				)
+				.toArray(CompletableFuture[]::new)
+			);
+		}
+	}
+
+	private static class ReceiverHandler extends ChannelInboundHandlerAdapter
+	{
+		private static final int STATE_COUNT = 0;
+		private static final int STATE_DESCRIPTOR = 1;
+		private static final int STATE_FRAME = 2;
+		private static final int STATE_ACK = 3;
+
+		private final Function<HandedOverListener, CompletableFuture<?>> adopter;
+
+		private final CompletableFuture<List<String>> result;
+
+		private final Map<String, CompletableFuture<?>> adopted = new LinkedHashMap<>();
+
+		private ByteBuf accumulator;
+
+		private int state = STATE_COUNT;
+
+		private int count;
+
+		private FileDescriptor descriptor;
+
+		public ReceiverHandler(Function<HandedOverListener, CompletableFuture<?>> adopter, CompletableFuture<List<String>> result)
+		{
+			this.adopter = adopter;
+			this.result = result;
+		}
+
+		@Override
+		public void handlerAdded(ChannelHandlerContext ctx)
+		{
+			accumulator = ctx.alloc().buffer();
+		}
+
+		@Override
+		public void handlerRemoved(ChannelHandlerContext ctx)
+		{
+			accumulator.release();
+			accumulator = null;
+		}
+
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) throws Exception
+		{
+			ctx.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{ CMD_LIST }));
+			ctx.read();
+			super.channelActive(ctx);
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception
+		{
+			if (msg instanceof FileDescriptor) {
+				if (state != STATE_DESCRIPTOR) {
+					((FileDescriptor) msg).close();
+					throw new IllegalStateException("Unexpected descriptor in handover: "+ctx.channel());
+				}
+				descriptor = (FileDescriptor) msg;
+				state = STATE_FRAME;
+				ctx.channel().config().setOption(UnixChannelOption.DOMAIN_SOCKET_READ_MODE, DomainSocketReadMode.BYTES);
+				HandoffReceiverHandler.readAfterModeSwitch(ctx);
+				return;
+			}
+			ByteBuf input = (ByteBuf) msg;
+			try {
+				accumulator.writeBytes(input);
+			}
+			finally {
+				input.release();
+			}
+			switch (state) {
+			case STATE_COUNT:
+				if (accumulator.readableBytes() < 2) {
+					break;
+				}
+				count = accumulator.readUnsignedShort();
+				requestNext(ctx);
+				return;
+
+			case STATE_FRAME:
+				if (accumulator.readableBytes() < 3 ||
+					accumulator.readableBytes() < 3+accumulator.getUnsignedShort(accumulator.readerIndex()+1)) {
+					break;
+				}
+				boolean domain = accumulator.readUnsignedByte() == HandoffProtocol.TYPE_DOMAIN;
+				String key = accumulator.readCharSequence(accumulator.readUnsignedShort(), StandardCharsets.UTF_8).toString();
+				FileDescriptor fd = descriptor;
+				descriptor = null;
+				CompletableFuture<?> future;
+				try {
+					future = adopter.apply(new HandedOverListener(key, domain, fd.intValue()));
+				}
+				catch (Throwable ex) {
+					try {
+						fd.close();
+					}
+					catch (IOException ex2) {
+						ex.addSuppressed(ex2);
+					}
+					future = FutureUtil.exception(ex);
+				}
+				adopted.put(key, future);
+				requestNext(ctx);
+				return;
+
+			case STATE_ACK:
+				if (!accumulator.isReadable()) {
+					break;
+				}
+				if (accumulator.readUnsignedByte() != CMD_ACK) {
+					throw new IllegalStateException("Unexpected handover acknowledgement: "+ctx.channel());
+				}
+				result.complete(new ArrayList<>(adopted.keySet()));
+				ctx.close();
+				return;
+
+			default:
+				throw new IllegalStateException("Unexpected data in handover state "+state+": "+ctx.channel());
+			}
+			ctx.read();
+		}
+
+		private void requestNext(ChannelHandlerContext ctx)
+		{
+			if (adopted.size() < count) {
+				state = STATE_DESCRIPTOR;
+				ctx.channel().config().setOption(UnixChannelOption.DOMAIN_SOCKET_READ_MODE, DomainSocketReadMode.FILE_DESCRIPTORS);
+				ctx.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{ CMD_NEXT }));
+				ctx.read();
+				return;
+			}
+			CompletableFuture.allOf(adopted.values().toArray(new CompletableFuture[0]))
+				.whenComplete((v, ex) -> ctx.executor().execute(() -> {
+					if (ex != null) {
+						ctx.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{ CMD_ABORT }))
+							.addListener(ChannelFutureListener.CLOSE);
+						result.completeExceptionally(ex);
+						return;
+					}
+					state = STATE_ACK;
+					ctx.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{ CMD_DONE }));
+					ctx.read();
+				}));
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) throws Exception
+		{
+			if (descriptor != null) {
+				descriptor.close();
+				descriptor = null;
+			}
+			result.completeExceptionally(new IOException("Handover connection closed prematurely: "+ctx.channel()));
+			super.channelInactive(ctx);
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception
+		{
+			result.completeExceptionally(cause);
+			ctx.close();
+		}
+	}
+}
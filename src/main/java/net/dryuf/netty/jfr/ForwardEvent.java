@@ -0,0 +1,70 @@
+package net.dryuf.netty.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/**
+ * JFR event of single forwarded direction, from start of forwarding until input shutdown or close of the source,
+ * recorded by {@link net.dryuf.netty.pipeline.ForwarderHandler}.  By default, only long-lived forwards are recorded.
+ */
+@Name(ForwardEvent.NAME)
+@Label("Netty Forward")
+@Description("Forwarding one direction of connection")
+@Category({ "Dryuf", "Netty" })
+@Threshold("1 s")
+@StackTrace(false)
+public class ForwardEvent extends Event
+{
+	public static final String NAME = "net.dryuf.netty.Forward";
+
+	@Label("Source")
+	String source;
+
+	@Label("Destination")
+	String destination;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Stalls")
+	@Description("Number of times reading was suspended waiting for destination flush")
+	long stalls;
+
+	@Label("Failure")
+	String failure;
+
+	/**
+	 * Ends the event and commits it if it passes the threshold.
+	 *
+	 * @param source
+	 * 	source channel
+	 * @param destination
+	 * 	destination channel
+	 * @param bytes
+	 * 	number of forwarded bytes
+	 * @param stalls
+	 * 	number of flush stalls
+	 * @param failure
+	 * 	failure, null on success
+	 */
+	public void finish(Object source, Object destination, long bytes, long stalls, Throwable failure)
+	{
+		end();
+		if (shouldCommit()) {
+			this.source = String.valueOf(source);
+			this.destination = String.valueOf(destination);
+			this.bytes = bytes;
+			this.stalls = stalls;
+			this.failure = failure == null ? null : failure.toString();
+			commit();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package net.dryuf.netty.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/**
+ * JFR event of forwarder waiting for destination to flush the read batch before reading again, recorded by
+ * {@link net.dryuf.netty.pipeline.ForwarderHandler}.
+ */
+@Name(ForwardStallEvent.NAME)
+@Label("Netty Forward Stall")
+@Description("Forwarder waiting for destination flush before reading more data")
+@Category({ "Dryuf", "Netty" })
+@Threshold("20 ms")
+@StackTrace(false)
+public class ForwardStallEvent extends Event
+{
+	public static final String NAME = "net.dryuf.netty.ForwardStall";
+
+	@Label("Source")
+	String source;
+
+	@Label("Destination")
+	String destination;
+
+	@Label("Batch Bytes")
+	@DataAmount
+	long bytes;
+
+	/**
+	 * Ends the event and commits it if it passes the threshold.
+	 *
+	 * @param source
+	 * 	source channel
+	 * @param destination
+	 * 	destination channel
+	 * @param bytes
+	 * 	number of bytes in the flushed batch
+	 */
+	public void finish(Object source, Object destination, long bytes)
+	{
+		end();
+		if (shouldCommit()) {
+			this.source = String.valueOf(source);
+			this.destination = String.valueOf(destination);
+			this.bytes = bytes;
+			commit();
+		}
+	}
+}
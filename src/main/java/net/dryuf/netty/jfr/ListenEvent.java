@@ -0,0 +1,66 @@
+package net.dryuf.netty.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/**
+ * JFR event of listen, recorded by {@link net.dryuf.netty.core.NettyEngine#listen}.
+ */
+@Name(ListenEvent.NAME)
+@Label("Netty Listen")
+@Description("Listening on address, including resolution and bind")
+@Category({ "Dryuf", "Netty" })
+@Threshold("20 ms")
+@StackTrace(false)
+public class ListenEvent extends Event
+{
+	public static final String NAME = "net.dryuf.netty.Listen";
+
+	@Label("Protocol")
+	String proto;
+
+	@Label("Address")
+	String address;
+
+	@Label("Partition")
+	String partition;
+
+	@Label("Local Address")
+	String localAddress;
+
+	@Label("Failure")
+	String failure;
+
+	/**
+	 * Ends the event and commits it if it passes the threshold.
+	 *
+	 * @param proto
+	 * 	protocol
+	 * @param address
+	 * 	requested address
+	 * @param partition
+	 * 	worker partition, null for default
+	 * @param localAddress
+	 * 	local address of the channel, null on failure
+	 * @param failure
+	 * 	failure, null on success
+	 */
+	public void finish(String proto, Object address, String partition, Object localAddress, Throwable failure)
+	{
+		end();
+		if (shouldCommit()) {
+			this.proto = proto;
+			this.address = String.valueOf(address);
+			this.partition = partition;
+			this.localAddress = localAddress == null ? null : localAddress.toString();
+			this.failure = failure == null ? null : failure.toString();
+			commit();
+		}
+	}
+}
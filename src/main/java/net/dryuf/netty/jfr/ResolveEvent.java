@@ -0,0 +1,60 @@
+package net.dryuf.netty.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/**
+ * JFR event of DNS resolution, recorded by {@link net.dryuf.netty.core.NettyEngine#resolve}.
+ */
+@Name(ResolveEvent.NAME)
+@Label("Netty Resolve")
+@Description("Resolution of unresolved socket address")
+@Category({ "Dryuf", "Netty" })
+@Threshold("20 ms")
+@StackTrace(false)
+public class ResolveEvent extends Event
+{
+	public static final String NAME = "net.dryuf.netty.Resolve";
+
+	@Label("Protocol")
+	String proto;
+
+	@Label("Host")
+	String host;
+
+	@Label("Resolved")
+	String resolved;
+
+	@Label("Failure")
+	String failure;
+
+	/**
+	 * Ends the event and commits it if it passes the threshold.
+	 *
+	 * @param proto
+	 * 	requested protocol, null if any
+	 * @param host
+	 * 	resolved host name
+	 * @param resolved
+	 * 	resolved address, null on failure
+	 * @param failure
+	 * 	failure, null on success
+	 */
+	public void finish(String proto, String host, Object resolved, Throwable failure)
+	{
+		end();
+		if (shouldCommit()) {
+			this.proto = proto;
+			this.host = host;
+			this.resolved = resolved == null ? null : resolved.toString();
+			this.failure = failure == null ? null : failure.toString();
+			commit();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package net.dryuf.netty.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/**
+ * JFR event of flushing pending data and shutting down the output, recorded by
+ * {@link net.dryuf.netty.core.NettyEngine#writeAndShutdown}.
+ */
+@Name(WriteAndShutdownEvent.NAME)
+@Label("Netty Write And Shutdown")
+@Description("Writing final data and shutting down channel output")
+@Category({ "Dryuf", "Netty" })
+@Threshold("20 ms")
+@StackTrace(false)
+public class WriteAndShutdownEvent extends Event
+{
+	public static final String NAME = "net.dryuf.netty.WriteAndShutdown";
+
+	@Label("Channel")
+	String channel;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Failure")
+	String failure;
+
+	/**
+	 * Ends the event and commits it if it passes the threshold.
+	 *
+	 * @param channel
+	 * 	shut down channel
+	 * @param bytes
+	 * 	number of final bytes written
+	 * @param failure
+	 * 	failure, null on success
+	 */
+	public void finish(Object channel, long bytes, Throwable failure)
+	{
+		end();
+		if (shouldCommit()) {
+			this.channel = String.valueOf(channel);
+			this.bytes = bytes;
+			this.failure = failure == null ? null : failure.toString();
+			commit();
+		}
+	}
+}
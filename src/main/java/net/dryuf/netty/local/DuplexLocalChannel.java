@@ -0,0 +1,212 @@
+package net.dryuf.netty.local;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.ChannelInputShutdownReadComplete;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.socket.DuplexChannelConfig;
+import io.netty.util.ReferenceCountUtil;
+import net.dryuf.netty.core.DefaultDuplexChannelConfig;
+
+import java.nio.channels.ClosedChannelException;
+
+
+/**
+ * In-JVM channel supporting half-close, so it can be used wherever socket based {@link DuplexChannel} is expected.
+ *
+ * Output shutdown is passed to peer as in-band marker following the data written before, the peer converts it to
+ * {@link ChannelInputShutdownEvent} (or closes the channel if half closure is not allowed) in the first pipeline handler.
+ */
+public class DuplexLocalChannel extends LocalChannel implements DuplexChannel
+{
+	/** Marker of output shutdown, sent to peer. */
+	private static final Object SHUTDOWN_OUTPUT = new Object()
+	{
+		@Override
+		public String toString()
+		{
+			return "SHUTDOWN_OUTPUT";
+		}
+	};
+
+	/** Max number of write rounds in single flush, before rescheduling. */
+	private static final int MAX_WRITE_ROUNDS = 16;
+
+	/** Lazily created as LocalChannel constructor already accesses config. */
+	private DefaultDuplexChannelConfig duplexConfig;
+
+	private volatile boolean inputShutdown;
+
+	private volatile boolean outputShutdown;
+
+	public DuplexLocalChannel()
+	{
+		super();
+		pipeline().addFirst(ShutdownMarkerHandler.INSTANCE);
+	}
+
+	protected DuplexLocalChannel(LocalServerChannel parent, LocalChannel peer)
+	{
+		super(parent, peer);
+		pipeline().addFirst(ShutdownMarkerHandler.INSTANCE);
+	}
+
+	@Override
+	public DuplexChannelConfig config()
+	{
+		if (duplexConfig == null) {
+			duplexConfig = new DefaultDuplexChannelConfig(this);
+		}
+		return duplexConfig;
+	}
+
+	@Override
+	protected void doWrite(ChannelOutboundBuffer in) throws Exception
+	{
+		// Peer on the same event loop reads synchronously and its handlers may reply, causing us to write and flush
+		// again, which is ignored as we are still within flush.  Repeat for such writes, bounded to keep fairness:
+		for (int i = 0; ; ++i) {
+			super.doWrite(in);
+			if (in.isEmpty()) {
+				break;
+			}
+			if (i >= MAX_WRITE_ROUNDS) {
+				eventLoop().execute(this::flush);
+				break;
+			}
+		}
+	}
+
+	@Override
+	protected Object filterOutboundMessage(Object msg) throws Exception
+	{
+		if (outputShutdown && msg != SHUTDOWN_OUTPUT) {
+			throw new ClosedChannelException();
+		}
+		return msg;
+	}
+
+	@Override
+	public boolean isInputShutdown()
+	{
+		return inputShutdown;
+	}
+
+	@Override
+	public ChannelFuture shutdownInput()
+	{
+		return shutdownInput(newPromise());
+	}
+
+	@Override
+	public ChannelFuture shutdownInput(ChannelPromise promise)
+	{
+		inputShutdown = true;
+		return promise.setSuccess();
+	}
+
+	@Override
+	public boolean isOutputShutdown()
+	{
+		return outputShutdown;
+	}
+
+	@Override
+	public ChannelFuture shutdownOutput()
+	{
+		return shutdownOutput(newPromise());
+	}
+
+	@Override
+	public ChannelFuture shutdownOutput(ChannelPromise promise)
+	{
+		if (eventLoop().inEventLoop()) {
+			shutdownOutput0(promise);
+		}
+		else {
+			eventLoop().execute(() -> shutdownOutput0(promise));
+		}
+		return promise;
+	}
+
+	@Override
+	public boolean isShutdown()
+	{
+		return inputShutdown && outputShutdown;
+	}
+
+	@Override
+	public ChannelFuture shutdown()
+	{
+		return shutdown(newPromise());
+	}
+
+	@Override
+	public ChannelFuture shutdown(ChannelPromise promise)
+	{
+		shutdownInput();
+		return shutdownOutput(promise);
+	}
+
+	private void shutdownOutput0(ChannelPromise promise)
+	{
+		if (!isActive()) {
+			promise.setFailure(new ClosedChannelException());
+			return;
+		}
+		if (!outputShutdown) {
+			outputShutdown = true;
+			// goes after all data written so far, including not yet flushed:
+			unsafe().write(SHUTDOWN_OUTPUT, voidPromise());
+			unsafe().flush();
+		}
+		promise.setSuccess();
+	}
+
+	private void onPeerOutputShutdown()
+	{
+		if (inputShutdown) {
+			return;
+		}
+		inputShutdown = true;
+		if (config().isAllowHalfClosure()) {
+			pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+			pipeline().fireUserEventTriggered(ChannelInputShutdownReadComplete.INSTANCE);
+		}
+		else {
+			close();
+		}
+	}
+
+	/**
+	 * Handler intercepting the shutdown marker.  Handlers added before it must pass unknown messages through, as
+	 * codecs and flow control handlers do.
+	 */
+	@ChannelHandler.Sharable
+	private static class ShutdownMarkerHandler extends ChannelInboundHandlerAdapter
+	{
+		static final ShutdownMarkerHandler INSTANCE = new ShutdownMarkerHandler();
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg)
+		{
+			DuplexLocalChannel channel = (DuplexLocalChannel) ctx.channel();
+			if (msg == SHUTDOWN_OUTPUT) {
+				channel.onPeerOutputShutdown();
+			}
+			else if (channel.inputShutdown) {
+				ReferenceCountUtil.release(msg);
+			}
+			else {
+				ctx.fireChannelRead(msg);
+			}
+		}
+	}
+}
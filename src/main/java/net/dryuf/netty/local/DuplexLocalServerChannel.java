@@ -0,0 +1,17 @@
+package net.dryuf.netty.local;
+
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+
+
+/**
+ * In-JVM server channel accepting {@link DuplexLocalChannel} connections.
+ */
+public class DuplexLocalServerChannel extends LocalServerChannel
+{
+	@Override
+	protected LocalChannel newLocalChannel(LocalChannel peer)
+	{
+		return new DuplexLocalChannel(this, peer);
+	}
+}
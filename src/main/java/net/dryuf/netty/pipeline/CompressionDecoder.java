@@ -0,0 +1,106 @@
+package net.dryuf.netty.pipeline;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.DecoderException;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+
+/**
+ * Decompresses inbound data produced by {@link CompressionEncoder} on the other side of link.
+ *
+ * Raw frames are passed as slices of input, compressed frames are inflated as soon as they are complete.  Single
+ * frame cannot expand to more than max chunk of encoder, so a corrupted or hostile peer cannot exhaust memory.
+ */
+public class CompressionDecoder extends ByteToMessageDecoder
+{
+	private static final int MAX_FRAME_LENGTH = CompressionEncoder.MAX_CHUNK+CompressionEncoder.MAX_CHUNK/16+4096;
+
+	private final CompressionMetrics metrics;
+
+	private final Inflater inflater = new Inflater(true);
+
+	/**
+	 * Creates decoder.
+	 *
+	 * @param metrics
+	 * 	counters to update
+	 */
+	public CompressionDecoder(CompressionMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	@Override
+	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
+	{
+		while (in.readableBytes() >= CompressionEncoder.HEADER_LENGTH) {
+			int start = in.readerIndex();
+			byte type = in.getByte(start);
+			int length = in.getInt(start+1);
+			if (length < 0 || length > MAX_FRAME_LENGTH) {
+				throw new DecoderException("Invalid compressed frame length: "+length);
+			}
+			if (in.readableBytes() < CompressionEncoder.HEADER_LENGTH+length) {
+				return;
+			}
+			in.skipBytes(CompressionEncoder.HEADER_LENGTH);
+			switch (type) {
+			case CompressionEncoder.RAW:
+				metrics.decodedBytes.add(length);
+				out.add(in.readRetainedSlice(length));
+				break;
+
+			case CompressionEncoder.DEFLATE:
+				inflate(ctx, in.readSlice(length), out);
+				break;
+
+			default:
+				throw new DecoderException("Invalid compressed frame type: "+type);
+			}
+		}
+	}
+
+	@Override
+	protected void handlerRemoved0(ChannelHandlerContext ctx)
+	{
+		inflater.end();
+	}
+
+	private void inflate(ChannelHandlerContext ctx, ByteBuf frame, List<Object> out) throws DataFormatException
+	{
+		long started = System.nanoTime();
+		long total = 0;
+		inflater.setInput(frame.nioBuffer());
+		for (;;) {
+			ByteBuf buf = ctx.alloc().buffer(Math.min(Math.max(frame.readableBytes()*4, 4096), 65536));
+			int produced;
+			try {
+				produced = inflater.inflate(buf.nioBuffer(0, buf.writableBytes()));
+			}
+			catch (Throwable ex) {
+				buf.release();
+				throw ex;
+			}
+			if (produced == 0) {
+				buf.release();
+				if (!inflater.needsInput()) {
+					throw new DecoderException("Corrupted compressed frame");
+				}
+				break;
+			}
+			buf.writerIndex(produced);
+			out.add(buf);
+			total += produced;
+			if (total > CompressionEncoder.MAX_CHUNK) {
+				throw new DecoderException("Compressed frame exceeds max length: "+CompressionEncoder.MAX_CHUNK);
+			}
+		}
+		metrics.decompressNanos.add(System.nanoTime()-started);
+		metrics.decodedBytes.add(total);
+	}
+}
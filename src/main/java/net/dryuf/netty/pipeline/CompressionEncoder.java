@@ -0,0 +1,158 @@
+package net.dryuf.netty.pipeline;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+import java.util.zip.Deflater;
+
+
+/**
+ * Compresses outbound data for {@link CompressionDecoder} on the other side of link.
+ *
+ * Every written buffer becomes one or more frames of type (1 byte) and payload length (4 bytes) followed by payload.
+ * Compressed frames are parts of single Deflate stream, each ended by sync flush, so the peer can decode every frame
+ * immediately while the dictionary is kept across the frames.  Raw frames carry data as is, without copying.
+ *
+ * The compression ratio is evaluated over every sampleBytes of compressed data.  When it is worse than bypassRatio,
+ * the next bypassBytes are sent raw, so incompressible traffic does not pay for compression, and then compression is
+ * tried again.  Short buffers are always sent raw.
+ */
+public class CompressionEncoder extends ChannelOutboundHandlerAdapter
+{
+	static final int HEADER_LENGTH = 5;
+
+	static final byte RAW = 0;
+
+	static final byte DEFLATE = 1;
+
+	/** Max length of original data in single frame. */
+	static final int MAX_CHUNK = 1024*1024;
+
+	private final int minLength;
+
+	private final double bypassRatio;
+
+	private final long sampleBytes;
+
+	private final long bypassBytes;
+
+	private final CompressionMetrics metrics;
+
+	private final Deflater deflater;
+
+	private long sampleOriginal;
+
+	private long sampleCompressed;
+
+	private long bypassRemaining;
+
+	/**
+	 * Creates encoder.
+	 *
+	 * @param level
+	 * 	Deflate level
+	 * @param minLength
+	 * 	min length of buffer to compress, shorter are sent raw
+	 * @param bypassRatio
+	 * 	ratio of compressed to original size above which compression is bypassed
+	 * @param sampleBytes
+	 * 	number of compressed original bytes over which the ratio is evaluated
+	 * @param bypassBytes
+	 * 	number of bytes sent raw once the ratio is poor
+	 * @param metrics
+	 * 	counters to update
+	 */
+	public CompressionEncoder(int level, int minLength, double bypassRatio, long sampleBytes, long bypassBytes, CompressionMetrics metrics)
+	{
+		this.minLength = minLength;
+		this.bypassRatio = bypassRatio;
+		this.sampleBytes = sampleBytes;
+		this.bypassBytes = bypassBytes;
+		this.metrics = metrics;
+		this.deflater = new Deflater(level, true);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+	{
+		if (!(msg instanceof ByteBuf)) {
+			ctx.write(msg, promise);
+			return;
+		}
+		ByteBuf buf = (ByteBuf) msg;
+		try {
+			int length = buf.readableBytes();
+			if (length == 0) {
+				ctx.write(buf.retain(), promise);
+				return;
+			}
+			metrics.originalBytes.add(length);
+			while (buf.readableBytes() > MAX_CHUNK) {
+				writeChunk(ctx, buf.readRetainedSlice(MAX_CHUNK), ctx.voidPromise());
+			}
+			writeChunk(ctx, buf.retain(), promise);
+		}
+		finally {
+			buf.release();
+		}
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx)
+	{
+		deflater.end();
+	}
+
+	private void writeChunk(ChannelHandlerContext ctx, ByteBuf chunk, ChannelPromise promise)
+	{
+		int length = chunk.readableBytes();
+		if (length < minLength || bypassRemaining > 0) {
+			bypassRemaining -= Math.min(bypassRemaining, length);
+			metrics.bypassedBytes.add(length);
+			metrics.encodedBytes.add(HEADER_LENGTH+length);
+			ctx.write(ctx.alloc().buffer(HEADER_LENGTH).writeByte(RAW).writeInt(length), ctx.voidPromise());
+			ctx.write(chunk, promise);
+			return;
+		}
+		long started = System.nanoTime();
+		ByteBuf out = ctx.alloc().buffer(HEADER_LENGTH+length+length/16+64);
+		try {
+			out.writerIndex(HEADER_LENGTH);
+			deflater.setInput(chunk.nioBuffer());
+			for (;;) {
+				out.ensureWritable(4096);
+				int space = out.writableBytes();
+				int produced = deflater.deflate(out.nioBuffer(out.writerIndex(), space), Deflater.SYNC_FLUSH);
+				out.writerIndex(out.writerIndex()+produced);
+				if (produced < space) {
+					break;
+				}
+			}
+		}
+		catch (Throwable ex) {
+			out.release();
+			throw ex;
+		}
+		finally {
+			chunk.release();
+		}
+		int compressed = out.readableBytes()-HEADER_LENGTH;
+		out.setByte(0, DEFLATE).setInt(1, compressed);
+		metrics.compressNanos.add(System.nanoTime()-started);
+		metrics.encodedBytes.add(out.readableBytes());
+		ctx.write(out, promise);
+
+		sampleOriginal += length;
+		sampleCompressed += compressed;
+		if (sampleOriginal >= sampleBytes) {
+			if (sampleCompressed > sampleOriginal*bypassRatio) {
+				bypassRemaining = bypassBytes;
+				metrics.bypasses.increment();
+			}
+			sampleOriginal = 0;
+			sampleCompressed = 0;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package net.dryuf.netty.pipeline;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counters of {@link CompressionEncoder} and {@link CompressionDecoder}, typically shared by all connections of
+ * single forward.
+ *
+ * Time is measured on event loop thread around the deflate and inflate calls, so it approximates CPU spent by codec.
+ */
+public class CompressionMetrics
+{
+	final LongAdder originalBytes = new LongAdder();
+
+	final LongAdder encodedBytes = new LongAdder();
+
+	final LongAdder bypassedBytes = new LongAdder();
+
+	final LongAdder bypasses = new LongAdder();
+
+	final LongAdder compressNanos = new LongAdder();
+
+	final LongAdder decodedBytes = new LongAdder();
+
+	final LongAdder decompressNanos = new LongAdder();
+
+	/** Number of bytes passed to encoder. */
+	public long getOriginalBytes()
+	{
+		return originalBytes.sum();
+	}
+
+	/** Number of bytes written by encoder, including frame headers. */
+	public long getEncodedBytes()
+	{
+		return encodedBytes.sum();
+	}
+
+	/** Number of bytes passed by encoder uncompressed. */
+	public long getBypassedBytes()
+	{
+		return bypassedBytes.sum();
+	}
+
+	/** Number of times encoder switched to bypass due to poor compression ratio. */
+	public long getBypasses()
+	{
+		return bypasses.sum();
+	}
+
+	/** Number of bytes produced by decoder. */
+	public long getDecodedBytes()
+	{
+		return decodedBytes.sum();
+	}
+
+	/** Ratio of encoded to original bytes, 1 if nothing was encoded. */
+	public double getCompressionRatio()
+	{
+		long original = getOriginalBytes();
+		return original == 0 ? 1 : (double) getEncodedBytes()/original;
+	}
+
+	/** Time spent compressing per original byte, in nanoseconds. */
+	public double getCompressNanosPerByte()
+	{
+		long compressed = getOriginalBytes()-getBypassedBytes();
+		return compressed == 0 ? 0 : (double) compressNanos.sum()/compressed;
+	}
+
+	/** Time spent decompressing per decoded byte, in nanoseconds. */
+	public double getDecompressNanosPerByte()
+	{
+		long decoded = getDecodedBytes();
+		return decoded == 0 ? 0 : (double) decompressNanos.sum()/decoded;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CompressionMetrics(originalBytes="+getOriginalBytes()+", encodedBytes="+getEncodedBytes()+
+			", ratio="+getCompressionRatio()+", bypassedBytes="+getBypassedBytes()+", bypasses="+getBypasses()+
+			", compressNanosPerByte="+getCompressNanosPerByte()+", decodedBytes="+getDecodedBytes()+
+			", decompressNanosPerByte="+getDecompressNanosPerByte()+")";
+	}
+}
@@ -7,12 +7,15 @@ import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.util.ReferenceCountUtil;
 import lombok.RequiredArgsConstructor;
+import net.dryuf.netty.core.MemoryBudget;
 
 
 /**
  * Handler accumulating input data to a buffer and passing for further consumption.
  *
  * Manual alternative to {@link io.netty.handler.codec.ReplayingDecoder} .
+ *
+ * Accumulated data are accounted against {@link MemoryBudget} of the channel, if any.
  */
 @RequiredArgsConstructor
 public class CumulatingByteBufHandler extends ChannelDuplexHandler
@@ -28,20 +31,37 @@ public class CumulatingByteBufHandler extends ChannelDuplexHandler
 
 	private boolean needMore = true;
 
+	private MemoryBudget.Account account;
+
+	private boolean readPaused;
+
 	@Override
 	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
 		config = ctx.channel().config();
+		MemoryBudget budget = MemoryBudget.of(ctx.channel());
+		if (budget != null) {
+			account = budget.open(ctx.channel(), getClass().getSimpleName());
+			account.setResumeListener(() -> ctx.executor().execute(() -> resumeRead(ctx)));
+		}
 		super.handlerAdded(ctx);
 	}
 
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		if (account != null) {
+			account.close();
+		}
+		super.handlerRemoved(ctx);
+	}
+
 	@Override
 	public void read(ChannelHandlerContext ctx) throws Exception {
 		if (needMore || dequeue(ctx, 1) == 0) {
 			shouldConsume = true;
-			ctx.read();
+			readUpstream(ctx);
 		}
 		else if (config.isAutoRead()) {
-			ctx.read();
+			readUpstream(ctx);
 		}
 	}
 
@@ -50,6 +70,10 @@ public class CumulatingByteBufHandler extends ChannelDuplexHandler
 	{
 		ByteBuf input = (ByteBuf) msg;
 		try {
+			if (account != null && !account.tryAcquire(input.readableBytes())) {
+				throw new IllegalStateException("Memory budget exceeded: length=" + accumulator.readableBytes() +
+					" input=" + input.readableBytes() + " client=" + ctx.channel());
+			}
 			accumulator.writeBytes(input);
 		}
 		finally {
@@ -63,6 +87,24 @@ public class CumulatingByteBufHandler extends ChannelDuplexHandler
 		}
 	}
 
+	private void readUpstream(ChannelHandlerContext ctx)
+	{
+		if (account != null && account.isPaused()) {
+			readPaused = true;
+		}
+		else {
+			ctx.read();
+		}
+	}
+
+	private void resumeRead(ChannelHandlerContext ctx)
+	{
+		if (readPaused && !ctx.isRemoved()) {
+			readPaused = false;
+			ctx.read();
+		}
+	}
+
 	private int dequeue(ChannelHandlerContext ctx, int minConsume)
 	{
 		int consumed = 0;
@@ -82,6 +124,9 @@ public class CumulatingByteBufHandler extends ChannelDuplexHandler
 		}
 		if (consumed != 0) {
 			accumulator.discardReadBytes();
+			if (account != null) {
+				account.update(accumulator.readableBytes());
+			}
 		}
 		return consumed;
 	}
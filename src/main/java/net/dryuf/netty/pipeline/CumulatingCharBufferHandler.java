@@ -5,7 +5,7 @@ import io.netty.channel.ChannelConfig;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.util.ReferenceCountUtil;
-import lombok.RequiredArgsConstructor;
+import net.dryuf.netty.core.MemoryBudget;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -20,6 +20,8 @@ import java.nio.charset.StandardCharsets;
 
 /**
  * Handler accumulating input data to a buffer and passing for further consumption.
+ *
+ * Accumulated data are accounted against {@link MemoryBudget} of the channel, if any, two bytes per char.
  */
 public class CumulatingCharBufferHandler extends ChannelDuplexHandler
 {
@@ -38,6 +40,10 @@ public class CumulatingCharBufferHandler extends ChannelDuplexHandler
 
 	private boolean needMore = true;
 
+	private MemoryBudget.Account account;
+
+	private boolean readPaused;
+
 	public CumulatingCharBufferHandler(CharsetDecoder decoder, int maxLength)
 	{
 		this.decoder = decoder;
@@ -57,17 +63,30 @@ public class CumulatingCharBufferHandler extends ChannelDuplexHandler
 	@Override
 	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
 		config = ctx.channel().config();
+		MemoryBudget budget = MemoryBudget.of(ctx.channel());
+		if (budget != null) {
+			account = budget.open(ctx.channel(), getClass().getSimpleName());
+			account.setResumeListener(() -> ctx.executor().execute(() -> resumeRead(ctx)));
+		}
 		super.handlerAdded(ctx);
 	}
 
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		if (account != null) {
+			account.close();
+		}
+		super.handlerRemoved(ctx);
+	}
+
 	@Override
 	public void read(ChannelHandlerContext ctx) throws Exception {
 		if (needMore || dequeue(ctx, 1) == 0) {
 			shouldConsume = true;
-			ctx.read();
+			readUpstream(ctx);
 		}
 		else if (config.isAutoRead()) {
-			ctx.read();
+			readUpstream(ctx);
 		}
 	}
 
@@ -76,6 +95,11 @@ public class CumulatingCharBufferHandler extends ChannelDuplexHandler
 	{
 		ByteBuf input = (ByteBuf) msg;
 		try {
+			// decoded chars never outnumber the input bytes:
+			if (account != null && !account.tryAcquire(2L*input.readableBytes())) {
+				throw new IllegalStateException("Memory budget exceeded: length=" + accumulator.position() +
+					" input=" + input.readableBytes() + " client=" + ctx.channel());
+			}
 			for (;;) {
 				nioAccumulator.limit(Math.min(nioAccumulator.capacity(), input.readableBytes() + nioAccumulator.position()));
 				input.readBytes(nioAccumulator);
@@ -116,6 +140,24 @@ public class CumulatingCharBufferHandler extends ChannelDuplexHandler
 		}
 	}
 
+	private void readUpstream(ChannelHandlerContext ctx)
+	{
+		if (account != null && account.isPaused()) {
+			readPaused = true;
+		}
+		else {
+			ctx.read();
+		}
+	}
+
+	private void resumeRead(ChannelHandlerContext ctx)
+	{
+		if (readPaused && !ctx.isRemoved()) {
+			readPaused = false;
+			ctx.read();
+		}
+	}
+
 	private int dequeue(ChannelHandlerContext ctx, int minConsume)
 	{
 		accumulator.flip();
@@ -139,6 +181,9 @@ public class CumulatingCharBufferHandler extends ChannelDuplexHandler
 		}
 		finally {
 			accumulator.compact();
+			if (account != null) {
+				account.update(2L*accumulator.position());
+			}
 		}
 	}
 }
@@ -0,0 +1,121 @@
+package net.dryuf.netty.pipeline;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Handler waiting for first data received on connection.
+ *
+ * Once the first data arrive, the handler removes itself from pipeline and passes the data to listener.  Connection
+ * is closed if no data arrive until timeout or end of input.
+ */
+public class FirstPayloadHandler extends ChannelInboundHandlerAdapter
+{
+	/** Max time to wait for data, in milliseconds, no limit if 0. */
+	private final long timeoutMs;
+
+	private final Listener listener;
+
+	private ScheduledFuture<?> timeout;
+
+	private boolean received;
+
+	public FirstPayloadHandler(long timeoutMs, Listener listener)
+	{
+		this.timeoutMs = timeoutMs;
+		this.listener = listener;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception
+	{
+		super.handlerAdded(ctx);
+		if (timeoutMs > 0) {
+			timeout = ctx.executor().schedule(() -> {
+				ctx.close();
+			}, timeoutMs, TimeUnit.MILLISECONDS);
+		}
+		ctx.read();
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception
+	{
+		cancelTimeout();
+		super.handlerRemoved(ctx);
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception
+	{
+		if (received) {
+			ReferenceCountUtil.release(msg);
+			return;
+		}
+		ByteBuf input = (ByteBuf) msg;
+		if (!input.isReadable()) {
+			input.release();
+			ctx.read();
+			return;
+		}
+		received = true;
+		ctx.pipeline().remove(this);
+		listener.onPayload(ctx, input);
+	}
+
+	@Override
+	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception
+	{
+		if (evt instanceof ChannelInputShutdownEvent && !received) {
+			ctx.close();
+			return;
+		}
+		super.userEventTriggered(ctx, evt);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception
+	{
+		cancelTimeout();
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception
+	{
+		cancelTimeout();
+		ctx.close();
+	}
+
+	private void cancelTimeout()
+	{
+		if (timeout != null) {
+			timeout.cancel(false);
+			timeout = null;
+		}
+	}
+
+	/**
+	 * Listener of first payload.
+	 */
+	@FunctionalInterface
+	public interface Listener
+	{
+		/**
+		 * Called once the first data arrive.  The handler is already removed from pipeline at this point.
+		 *
+		 * @param ctx
+		 * 	channel context
+		 * @param payload
+		 * 	received data, to be released by callee
+		 */
+		void onPayload(ChannelHandlerContext ctx, ByteBuf payload);
+	}
+}
@@ -0,0 +1,189 @@
+package net.dryuf.netty.pipeline;
+
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.core.ForwardTimeouts;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Tracks timeouts of forwarded connection pair, shared by {@link ForwarderHandler} of both directions.
+ *
+ * The handlers only record timestamps of activity, single timeout per pair is scheduled on the shared timer wheel and
+ * rescheduled to the nearest deadline once it fires, so the cost does not grow with traffic and large number of
+ * forwarded connections does not create large number of scheduled tasks.
+ */
+@Log4j2
+public class ForwardTimeoutTracker
+{
+	private final Timer timer;
+
+	private final DuplexChannel first;
+
+	private final DuplexChannel second;
+
+	private final long readIdleNs;
+
+	private final long writeIdleNs;
+
+	private final long halfClosedLingerNs;
+
+	private final long slowConsumerNs;
+
+	private volatile long lastRead;
+
+	/** Time when data were last written to either side. */
+	private volatile long lastWrite;
+
+	/** Time when first side shut down, 0 if none. */
+	private volatile long halfClosedSince;
+
+	/** Time since the first direction is waiting for flush, 0 if not waiting. */
+	private volatile long firstStalledSince;
+
+	/** Time since the second direction is waiting for flush, 0 if not waiting. */
+	private volatile long secondStalledSince;
+
+	private Timeout timeout;
+
+	private boolean closed;
+
+	public ForwardTimeoutTracker(Timer timer, ForwardTimeouts timeouts, DuplexChannel first, DuplexChannel second)
+	{
+		this.timer = timer;
+		this.first = first;
+		this.second = second;
+		this.readIdleNs = TimeUnit.MILLISECONDS.toNanos(timeouts.getReadIdle());
+		this.writeIdleNs = TimeUnit.MILLISECONDS.toNanos(timeouts.getWriteIdle());
+		this.halfClosedLingerNs = TimeUnit.MILLISECONDS.toNanos(timeouts.getHalfClosedLinger());
+		this.slowConsumerNs = TimeUnit.MILLISECONDS.toNanos(timeouts.getSlowConsumer());
+	}
+
+	/**
+	 * Starts tracking.
+	 */
+	public synchronized void start()
+	{
+		long now = System.nanoTime();
+		lastRead = now;
+		lastWrite = now;
+		schedule(now);
+	}
+
+	/**
+	 * Stops tracking, once the pair is closed.
+	 */
+	public synchronized void stop()
+	{
+		closed = true;
+		if (timeout != null) {
+			timeout.cancel();
+		}
+	}
+
+	void onRead()
+	{
+		lastRead = System.nanoTime();
+	}
+
+	void onWrite()
+	{
+		lastWrite = System.nanoTime();
+	}
+
+	void onHalfClosed()
+	{
+		if (halfClosedSince == 0) {
+			halfClosedSince = System.nanoTime();
+		}
+	}
+
+	void onStall(DuplexChannel source, boolean stalled)
+	{
+		long since = stalled ? System.nanoTime() : 0;
+		if (source == first) {
+			firstStalledSince = since;
+		}
+		else {
+			secondStalledSince = since;
+		}
+	}
+
+	private synchronized void check()
+	{
+		if (closed) {
+			return;
+		}
+		long now = System.nanoTime();
+		String expired = null;
+		if (readIdleNs > 0 && now-lastRead >= readIdleNs) {
+			expired = "readIdle";
+		}
+		else if (writeIdleNs > 0 && now-lastWrite >= writeIdleNs) {
+			expired = "writeIdle";
+		}
+		else if (halfClosedLingerNs > 0 && halfClosedSince != 0 && now-halfClosedSince >= halfClosedLingerNs) {
+			expired = "halfClosedLinger";
+		}
+		else if (slowConsumerNs > 0 && stalledSince() != 0 && now-stalledSince() >= slowConsumerNs) {
+			expired = "slowConsumer";
+		}
+		if (expired != null) {
+			log.debug("Closing forward on timeout: timeout={} first={} second={}", expired, first, second);
+			closed = true;
+			first.close();
+			second.close();
+		}
+		else {
+			schedule(now);
+		}
+	}
+
+	private void schedule(long now)
+	{
+		if (closed) {
+			return;
+		}
+		long next = Long.MAX_VALUE;
+		if (readIdleNs > 0) {
+			next = Math.min(next, lastRead+readIdleNs-now);
+		}
+		if (writeIdleNs > 0) {
+			next = Math.min(next, lastWrite+writeIdleNs-now);
+		}
+		if (halfClosedLingerNs > 0) {
+			long since = halfClosedSince;
+			next = Math.min(next, since != 0 ? since+halfClosedLingerNs-now : halfClosedLingerNs);
+		}
+		if (slowConsumerNs > 0) {
+			long since = stalledSince();
+			next = Math.min(next, since != 0 ? since+slowConsumerNs-now : slowConsumerNs);
+		}
+		if (next == Long.MAX_VALUE) {
+			return;
+		}
+		try {
+			timeout = timer.newTimeout(
+				(t) -> first.eventLoop().execute(this::check),
+				Math.max(next, 1),
+				TimeUnit.NANOSECONDS
+			);
+		}
+		catch (IllegalStateException ex) {
+			// timer stopped, engine closing:
+			closed = true;
+		}
+	}
+
+	private long stalledSince()
+	{
+		long firstSince = firstStalledSince, secondSince = secondStalledSince;
+		if (firstSince == 0) {
+			return secondSince;
+		}
+		return secondSince == 0 ? firstSince : Math.min(firstSince, secondSince);
+	}
+}
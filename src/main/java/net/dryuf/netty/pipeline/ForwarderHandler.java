@@ -12,6 +12,8 @@ import io.netty.channel.socket.DuplexChannelConfig;
 import lombok.extern.log4j.Log4j2;
 import net.dryuf.base.concurrent.future.FutureUtil;
 import net.dryuf.netty.core.NettyEngine;
+import net.dryuf.netty.jfr.ForwardEvent;
+import net.dryuf.netty.jfr.ForwardStallEvent;
 import net.dryuf.netty.util.NettyFutures;
 
 import java.util.concurrent.CompletableFuture;
@@ -19,6 +21,9 @@ import java.util.concurrent.CompletableFuture;
 
 /**
  * Forwards one direction of connection.
+ *
+ * The lifetime of forward is recorded as {@link ForwardEvent}, waiting for destination flush as
+ * {@link ForwardStallEvent}, both only when enabled in JFR.
  */
 @Log4j2
 public class ForwarderHandler extends ChannelInboundHandlerAdapter
@@ -31,21 +36,57 @@ public class ForwarderHandler extends ChannelInboundHandlerAdapter
 
 	private final CompletableFuture<Void> finishPromise;
 
+	private final ForwardTimeoutTracker timeoutTracker;
+
 	private ChannelConfig config;
 
 	private boolean isShutdown;
 
+	private final ForwardEvent forwardEvent = new ForwardEvent();
+
+	private long bytes;
+
+	private long batchBytes;
+
+	private long stalls;
+
 	public ForwarderHandler(
 		NettyEngine nettyEngine,
 		DuplexChannel source,
 		DuplexChannel destination,
 		CompletableFuture<Void> finishPromise
 	)
+	{
+		this(nettyEngine, source, destination, finishPromise, null);
+	}
+
+	/**
+	 * Creates handler.
+	 *
+	 * @param nettyEngine
+	 * 	engine
+	 * @param source
+	 * 	channel to read from
+	 * @param destination
+	 * 	channel to write to
+	 * @param finishPromise
+	 * 	promise completed once source is shut down or closed
+	 * @param timeoutTracker
+	 * 	tracker of timeouts shared with opposite direction, null if none
+	 */
+	public ForwarderHandler(
+		NettyEngine nettyEngine,
+		DuplexChannel source,
+		DuplexChannel destination,
+		CompletableFuture<Void> finishPromise,
+		ForwardTimeoutTracker timeoutTracker
+	)
 	{
 		this.nettyEngine = nettyEngine;
 		this.source = source;
 		this.destination = destination;
 		this.finishPromise = finishPromise;
+		this.timeoutTracker = timeoutTracker;
 		this.config = source.config();
 
 		config.setAutoRead(false);
@@ -57,6 +98,11 @@ public class ForwarderHandler extends ChannelInboundHandlerAdapter
 		source.closeFuture().addListener(f -> {
 			NettyFutures.copy(source.closeFuture(), finishPromise);
 		});
+
+		forwardEvent.begin();
+		if (forwardEvent.isEnabled()) {
+			finishPromise.whenComplete((v, ex) -> forwardEvent.finish(source, destination, bytes, stalls, ex));
+		}
 	}
 
 	@Override
@@ -70,6 +116,10 @@ public class ForwarderHandler extends ChannelInboundHandlerAdapter
 	public void channelRead(ChannelHandlerContext ctx, Object msg)
 	{
 		ByteBuf input = (ByteBuf) msg;
+		batchBytes += input.readableBytes();
+		if (timeoutTracker != null) {
+			timeoutTracker.onRead();
+		}
 		destination.write(input);
 	}
 
@@ -77,7 +127,26 @@ public class ForwarderHandler extends ChannelInboundHandlerAdapter
 	public void channelReadComplete(ChannelHandlerContext ctx)
 	{
 		ChannelFuture future = destination.writeAndFlush(Unpooled.EMPTY_BUFFER);
+		long batchBytes = this.batchBytes;
+		bytes += batchBytes;
+		this.batchBytes = 0;
+		if (future.isDone()) {
+			onWritten(future.isSuccess() && batchBytes > 0);
+			ctx.read();
+			return;
+		}
+		++stalls;
+		if (timeoutTracker != null) {
+			timeoutTracker.onStall(source, true);
+		}
+		ForwardStallEvent stallEvent = new ForwardStallEvent();
+		stallEvent.begin();
 		future.addListener((f) -> {
+			stallEvent.finish(source, destination, batchBytes);
+			if (timeoutTracker != null) {
+				timeoutTracker.onStall(source, false);
+			}
+			onWritten(f.isSuccess() && batchBytes > 0);
 			ctx.read();
 		});
 	}
@@ -87,6 +156,9 @@ public class ForwarderHandler extends ChannelInboundHandlerAdapter
 	{
 		if (evt instanceof ChannelInputShutdownEvent) {
 			isShutdown = true;
+			if (timeoutTracker != null) {
+				timeoutTracker.onHalfClosed();
+			}
 			FutureUtil.copy(nettyEngine.shutdownOutput(destination), finishPromise);
 		}
 		else {
@@ -101,6 +173,13 @@ public class ForwarderHandler extends ChannelInboundHandlerAdapter
 		ctx.close();
 	}
 
+	private void onWritten(boolean written)
+	{
+		if (written && timeoutTracker != null) {
+			timeoutTracker.onWrite();
+		}
+	}
+
 	public boolean isShutdown()
 	{
 		return isShutdown;
@@ -1,5 +1,7 @@
 package net.dryuf.netty.pipeline;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
 import io.netty.channel.ChannelConfig;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -8,6 +10,7 @@ import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.ObjectPool;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.core.MemoryBudget;
 
 import java.util.ArrayDeque;
 
@@ -15,6 +18,8 @@ import java.util.ArrayDeque;
 /**
  * Controls flow based on autoRead enabled. Copy of {@link FlowControlHandler}, with additional control of user
  * triggered events.
+ *
+ * Queued buffers are accounted against {@link MemoryBudget} of the channel, if any.
  */
 @Log4j2
 public class FullFlowControlHandler extends ChannelDuplexHandler
@@ -25,6 +30,10 @@ public class FullFlowControlHandler extends ChannelDuplexHandler
 
     private boolean shouldConsume = false;
 
+    private MemoryBudget.Account account;
+
+    private boolean readPaused;
+
     public FullFlowControlHandler()
     {
     }
@@ -50,11 +59,19 @@ public class FullFlowControlHandler extends ChannelDuplexHandler
             queue.recycle();
             this.queue = null;
         }
+        if (account != null) {
+            account.update(0);
+        }
     }
 
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         config = ctx.channel().config();
+        MemoryBudget budget = MemoryBudget.of(ctx.channel());
+        if (budget != null) {
+            account = budget.open(ctx.channel(), getClass().getSimpleName());
+            account.setResumeListener(() -> ctx.executor().execute(() -> resumeRead(ctx)));
+        }
         super.handlerAdded(ctx);
     }
 
@@ -65,6 +82,9 @@ public class FullFlowControlHandler extends ChannelDuplexHandler
             dequeue(ctx, queue.size());
         }
         destroy();
+        if (account != null) {
+            account.close();
+        }
     }
 
     @Override
@@ -80,15 +100,20 @@ public class FullFlowControlHandler extends ChannelDuplexHandler
             // messages from upstream and once one arrives it needs to be
             // relayed to downstream to keep the flow going.
             shouldConsume = true;
-            ctx.read();
+            readUpstream(ctx);
         }
         else if (config.isAutoRead()) {
-            ctx.read();
+            readUpstream(ctx);
         }
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (account != null && !account.tryAcquire(messageSize(msg))) {
+            ReferenceCountUtil.release(msg);
+            throw new IllegalStateException("Memory budget exceeded: queued=" + account.getUsage() +
+                " client=" + ctx.channel());
+        }
         if (queue == null) {
             queue = RecyclableArrayDeque.newInstance();
         }
@@ -151,6 +176,9 @@ public class FullFlowControlHandler extends ChannelDuplexHandler
             }
 
             ++consumed;
+            if (account != null) {
+                account.release(messageSize(msg));
+            }
             if (msg instanceof UserEventHolder) {
                 ctx.fireUserEventTriggered(((UserEventHolder) msg).event);
             }
@@ -169,6 +197,32 @@ public class FullFlowControlHandler extends ChannelDuplexHandler
         return consumed;
     }
 
+    private void readUpstream(ChannelHandlerContext ctx) {
+        if (account != null && account.isPaused()) {
+            readPaused = true;
+        }
+        else {
+            ctx.read();
+        }
+    }
+
+    private void resumeRead(ChannelHandlerContext ctx) {
+        if (readPaused && !ctx.isRemoved()) {
+            readPaused = false;
+            ctx.read();
+        }
+    }
+
+    private static long messageSize(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        else if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        return 0;
+    }
+
     @RequiredArgsConstructor
     static class UserEventHolder
     {
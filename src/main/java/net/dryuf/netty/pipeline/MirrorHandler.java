@@ -0,0 +1,262 @@
+package net.dryuf.netty.pipeline;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.ConnectOptions;
+import net.dryuf.netty.core.NettyEngine;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Mirrors inbound data of channel to shadow connection, passing the original data unchanged to the next handler.
+ * Responses of shadow are discarded.
+ *
+ * The mirrored data are {@link ByteBuf#retainedDuplicate()} of the input, so no copy is made, and the number of bytes
+ * not yet written to shadow is bounded.  When shadow falls behind, the data are dropped or the shadow is
+ * disconnected, according to {@link OverflowPolicy}, the primary path is never slowed down.
+ */
+@Log4j2
+public class MirrorHandler extends ChannelInboundHandlerAdapter
+{
+	/**
+	 * Action when shadow falls behind.
+	 */
+	public enum OverflowPolicy
+	{
+		/** Drops data not fitting the buffer, leaving gaps in shadow stream. */
+		DROP,
+		/** Disconnects shadow and stops mirroring the connection. */
+		DISCONNECT,
+	}
+
+	private final NettyEngine nettyEngine;
+
+	private final AddressSpec shadowAddress;
+
+	private final ConnectOptions connectOptions;
+
+	private final long maxBuffered;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final MirrorMetrics metrics;
+
+	/** Bytes written but not yet flushed to shadow, decremented from shadow event loop. */
+	private final AtomicLong buffered = new AtomicLong();
+
+	private DuplexChannel shadow;
+
+	/** Data waiting for shadow connection, null once connected. */
+	private ArrayDeque<ByteBuf> pending = new ArrayDeque<>();
+
+	private boolean inputShutdown;
+
+	private boolean dirty;
+
+	private boolean closed;
+
+	/**
+	 * Creates mirror handler.
+	 *
+	 * @param nettyEngine
+	 * 	engine to connect shadow by
+	 * @param shadowAddress
+	 * 	address of shadow
+	 * @param connectOptions
+	 * 	options of shadow connection
+	 * @param maxBuffered
+	 * 	max number of bytes waiting for shadow
+	 * @param overflowPolicy
+	 * 	action once shadow falls behind
+	 * @param metrics
+	 * 	counters of mirrored traffic
+	 * @param initial
+	 * 	data already received from the channel, mirrored first, null if none, owned by this handler
+	 */
+	public MirrorHandler(NettyEngine nettyEngine, AddressSpec shadowAddress, ConnectOptions connectOptions, long maxBuffered,
+			     OverflowPolicy overflowPolicy, MirrorMetrics metrics, ByteBuf initial)
+	{
+		this.nettyEngine = nettyEngine;
+		this.shadowAddress = shadowAddress;
+		this.connectOptions = connectOptions;
+		this.maxBuffered = maxBuffered;
+		this.overflowPolicy = overflowPolicy;
+		this.metrics = metrics;
+		if (initial != null) {
+			mirror(initial);
+			initial.release();
+		}
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception
+	{
+		super.handlerAdded(ctx);
+		nettyEngine.connect(shadowAddress, connectOptions, new ChannelInboundHandlerAdapter()
+				{
+					@Override
+					public void channelActive(ChannelHandlerContext shadowCtx)
+					{
+						shadowCtx.channel().config().setAutoRead(true);
+					}
+
+					@Override
+					public void channelRead(ChannelHandlerContext shadowCtx, Object msg)
+					{
+						ReferenceCountUtil.release(msg);
+					}
+
+					@Override
+					public void exceptionCaught(ChannelHandlerContext shadowCtx, Throwable cause)
+					{
+						log.debug("Shadow connection failed: {}", shadowCtx.channel(), cause);
+						shadowCtx.close();
+					}
+				}, null)
+			.whenCompleteAsync((channel, ex) -> {
+				if (ex != null) {
+					log.warn("Failed to connect shadow: {}", shadowAddress, ex);
+					close();
+				}
+				else if (closed) {
+					channel.close();
+				}
+				else {
+					metrics.shadowConnections.increment();
+					shadow = channel;
+					for (ByteBuf data; (data = pending.poll()) != null; ) {
+						write(data);
+					}
+					pending = null;
+					shadow.flush();
+					if (inputShutdown) {
+						nettyEngine.shutdownOutput(shadow);
+					}
+				}
+			}, ctx.executor());
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg)
+	{
+		if (!closed && msg instanceof ByteBuf) {
+			mirror((ByteBuf) msg);
+		}
+		ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx)
+	{
+		if (dirty && shadow != null) {
+			dirty = false;
+			shadow.flush();
+		}
+		ctx.fireChannelReadComplete();
+	}
+
+	@Override
+	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception
+	{
+		if (evt instanceof ChannelInputShutdownEvent) {
+			inputShutdown = true;
+			if (shadow != null && !closed) {
+				nettyEngine.shutdownOutput(shadow);
+			}
+		}
+		super.userEventTriggered(ctx, evt);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception
+	{
+		close();
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception
+	{
+		close();
+		super.handlerRemoved(ctx);
+	}
+
+	private void mirror(ByteBuf input)
+	{
+		int size = input.readableBytes();
+		if (closed || size == 0) {
+			return;
+		}
+		if (buffered.get()+size > maxBuffered) {
+			metrics.droppedBytes.add(size);
+			if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+				log.debug("Shadow fell behind, disconnecting: {}", shadow);
+				metrics.shadowDisconnects.increment();
+				close(true);
+			}
+			return;
+		}
+		buffered.addAndGet(size);
+		ByteBuf copy = input.retainedDuplicate();
+		if (shadow == null) {
+			pending.add(copy);
+		}
+		else {
+			write(copy);
+		}
+	}
+
+	private void write(ByteBuf data)
+	{
+		int size = data.readableBytes();
+		dirty = true;
+		shadow.write(data).addListener((f) -> {
+			buffered.addAndGet(-size);
+			if (f.isSuccess()) {
+				metrics.mirroredBytes.add(size);
+			}
+			else {
+				metrics.droppedBytes.add(size);
+			}
+		});
+	}
+
+	private void close()
+	{
+		close(false);
+	}
+
+	/**
+	 * Stops mirroring.  The data already buffered are still delivered to shadow, unless it is disconnected.
+	 */
+	private void close(boolean disconnect)
+	{
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (pending != null) {
+			for (ByteBuf data; (data = pending.poll()) != null; ) {
+				metrics.droppedBytes.add(data.readableBytes());
+				data.release();
+			}
+		}
+		if (shadow != null) {
+			if (disconnect) {
+				shadow.close();
+			}
+			else {
+				nettyEngine.writeAndClose(shadow, Unpooled.EMPTY_BUFFER);
+			}
+		}
+	}
+}
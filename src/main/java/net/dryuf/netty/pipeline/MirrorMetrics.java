@@ -0,0 +1,49 @@
+package net.dryuf.netty.pipeline;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counters of traffic mirrored by {@link MirrorHandler}, typically shared by all connections of single forward.
+ */
+public class MirrorMetrics
+{
+	final LongAdder mirroredBytes = new LongAdder();
+
+	final LongAdder droppedBytes = new LongAdder();
+
+	final LongAdder shadowConnections = new LongAdder();
+
+	final LongAdder shadowDisconnects = new LongAdder();
+
+	/** Number of bytes written to shadow connections. */
+	public long getMirroredBytes()
+	{
+		return mirroredBytes.sum();
+	}
+
+	/** Number of bytes not mirrored because shadow was behind, failed or disconnected. */
+	public long getDroppedBytes()
+	{
+		return droppedBytes.sum();
+	}
+
+	/** Number of established shadow connections. */
+	public long getShadowConnections()
+	{
+		return shadowConnections.sum();
+	}
+
+	/** Number of shadow connections disconnected because they fell behind. */
+	public long getShadowDisconnects()
+	{
+		return shadowDisconnects.sum();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "MirrorMetrics(mirroredBytes="+getMirroredBytes()+", droppedBytes="+getDroppedBytes()+
+			", shadowConnections="+getShadowConnections()+", shadowDisconnects="+getShadowDisconnects()+")";
+	}
+}
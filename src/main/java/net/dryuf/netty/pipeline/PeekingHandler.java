@@ -0,0 +1,187 @@
+package net.dryuf.netty.pipeline;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Handler peeking at the beginning of connection until a decision can be made.
+ *
+ * The handler must directly follow {@link CumulatingByteBufHandler}, which accumulates the data.  Once decision is
+ * made, both handlers are removed from pipeline and the peeked data are passed to
+ * {@link #onDecided(ChannelHandlerContext, Object, ByteBuf)}, so they can be replayed to the final destination.
+ * Only up to max peek length is passed to {@link #decide(ByteBuf)}, reaching it finishes like timeout, before the
+ * cumulating handler would fail the connection.
+ *
+ * @param <R>
+ *      type of decision
+ */
+public abstract class PeekingHandler<R> extends ChannelInboundHandlerAdapter
+{
+	/** Max time to wait for decision, in milliseconds. */
+	private final long timeoutMs;
+
+	/** Max length of peeked data, decided by {@link #decideFinal(ByteBuf)} once reached. */
+	private final int maxLength;
+
+	private ByteBuf lastInput = Unpooled.EMPTY_BUFFER;
+
+	private ScheduledFuture<?> timeout;
+
+	private boolean decided;
+
+	public PeekingHandler(long timeoutMs)
+	{
+		this(timeoutMs, Integer.MAX_VALUE);
+	}
+
+	public PeekingHandler(long timeoutMs, int maxLength)
+	{
+		this.timeoutMs = timeoutMs;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Decides based on peeked data.
+	 *
+	 * @param input
+	 * 	data accumulated so far, must not be consumed
+	 *
+	 * @return
+	 * 	decision or null if more data are needed.
+	 */
+	protected abstract R decide(ByteBuf input);
+
+	/**
+	 * Decides when no more data can be obtained, either due to timeout, end of input or max length reached.
+	 *
+	 * @param input
+	 * 	data accumulated so far, must not be consumed
+	 *
+	 * @return
+	 * 	decision or null if the connection should be closed.
+	 */
+	protected abstract R decideFinal(ByteBuf input);
+
+	/**
+	 * Processes the decision.  The handlers are already removed from pipeline at this point.
+	 *
+	 * @param ctx
+	 * 	channel context
+	 * @param decision
+	 * 	decision
+	 * @param peeked
+	 * 	peeked data, to be released by callee
+	 */
+	protected abstract void onDecided(ChannelHandlerContext ctx, R decision, ByteBuf peeked);
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception
+	{
+		super.handlerAdded(ctx);
+		if (timeoutMs > 0) {
+			timeout = ctx.executor().schedule(() -> {
+				finishFinal(ctx);
+			}, timeoutMs, TimeUnit.MILLISECONDS);
+		}
+		ctx.read();
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception
+	{
+		cancelTimeout();
+		super.handlerRemoved(ctx);
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception
+	{
+		if (decided) {
+			return;
+		}
+		ByteBuf input = (ByteBuf) msg;
+		lastInput = input;
+		boolean limited = input.readableBytes() >= maxLength;
+		// decide only on max length, so the outcome does not depend on how the data were fragmented:
+		R decision = decide(limited ? input.slice(input.readerIndex(), maxLength) : input);
+		if (decision == null) {
+			if (limited) {
+				finishFinal(ctx);
+				return;
+			}
+			ctx.read();
+		}
+		else {
+			finish(ctx, decision, input);
+		}
+	}
+
+	@Override
+	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception
+	{
+		if (evt instanceof ChannelInputShutdownEvent && !decided) {
+			finishFinal(ctx);
+			// replay the event from the head, so it gets queued for the handlers installed by decision:
+			if (ctx.channel().isOpen()) {
+				ctx.channel().pipeline().fireUserEventTriggered(evt);
+			}
+			return;
+		}
+		super.userEventTriggered(ctx, evt);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception
+	{
+		cancelTimeout();
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception
+	{
+		cancelTimeout();
+		ctx.close();
+	}
+
+	private void finishFinal(ChannelHandlerContext ctx)
+	{
+		if (decided) {
+			return;
+		}
+		R decision = decideFinal(lastInput);
+		if (decision == null) {
+			decided = true;
+			ctx.close();
+		}
+		else {
+			finish(ctx, decision, lastInput);
+		}
+	}
+
+	private void finish(ChannelHandlerContext ctx, R decision, ByteBuf input)
+	{
+		decided = true;
+		cancelTimeout();
+		ByteBuf peeked = ctx.alloc().buffer(input.readableBytes()).writeBytes(input);
+		lastInput = Unpooled.EMPTY_BUFFER;
+		ctx.pipeline().remove(CumulatingByteBufHandler.class);
+		ctx.pipeline().remove(this);
+		onDecided(ctx, decision, peeked);
+	}
+
+	private void cancelTimeout()
+	{
+		if (timeout != null) {
+			timeout.cancel(false);
+			timeout = null;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package net.dryuf.netty.pipeline;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Well known protocol signatures, the bytes client sends at the beginning of connection.
+ */
+public class ProtocolSignatures
+{
+	/** TLS handshake record, any TLS version. */
+	public static final List<byte[]> TLS = ImmutableList.of(
+		new byte[]{ 0x16, 0x03 }
+	);
+
+	/** HTTP/1.x request methods. */
+	public static final List<byte[]> HTTP = ImmutableList.of(
+		ascii("GET "),
+		ascii("HEAD "),
+		ascii("POST "),
+		ascii("PUT "),
+		ascii("DELETE "),
+		ascii("OPTIONS "),
+		ascii("PATCH "),
+		ascii("CONNECT "),
+		ascii("TRACE ")
+	);
+
+	/** HTTP/2 prior knowledge connection preface. */
+	public static final List<byte[]> HTTP2 = ImmutableList.of(
+		ascii("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n")
+	);
+
+	/** SSH identification banner. */
+	public static final List<byte[]> SSH = ImmutableList.of(
+		ascii("SSH-")
+	);
+
+	/** PROXY protocol header, both text v1 and binary v2. */
+	public static final List<byte[]> PROXY = ImmutableList.of(
+		ascii("PROXY "),
+		new byte[]{ 0x0d, 0x0a, 0x0d, 0x0a, 0x00, 0x0d, 0x0a, 0x51, 0x55, 0x49, 0x54, 0x0a }
+	);
+
+	private static final Map<String, List<byte[]>> BY_NAME = ImmutableMap.<String, List<byte[]>>builder()
+		.put("tls", TLS)
+		.put("http", HTTP)
+		.put("http2", HTTP2)
+		.put("ssh", SSH)
+		.put("proxy", PROXY)
+		.build();
+
+	/**
+	 * Gets signatures of protocol.
+	 *
+	 * @param protocol
+	 * 	name of protocol, one of tls, http, http2, ssh, proxy
+	 *
+	 * @return
+	 * 	list of signatures.
+	 *
+	 * @throws IllegalArgumentException
+	 * 	if protocol is not known
+	 */
+	public static List<byte[]> forProtocol(String protocol)
+	{
+		List<byte[]> signatures = BY_NAME.get(protocol);
+		if (signatures == null) {
+			throw new IllegalArgumentException("Unknown protocol: "+protocol);
+		}
+		return signatures;
+	}
+
+	private static byte[] ascii(String s)
+	{
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,109 @@
+package net.dryuf.netty.pipeline;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import net.dryuf.netty.util.PrefixTrie;
+
+import java.util.Optional;
+
+
+/**
+ * Handler routing connection based on protocol signature found at the beginning of data.
+ *
+ * Must follow {@link CumulatingByteBufHandler}, which bounds the peek size.  The signatures are matched by
+ * precompiled {@link PrefixTrie}, the longest matching prefix wins.  If no data arrive until timeout, typically for
+ * server-speaks-first protocols, the timeout route is chosen.  Unmatched data result in default route.  Null route
+ * closes the connection.
+ *
+ * @param <T>
+ *      type of route
+ */
+public class ProtocolSniffingHandler<T> extends PeekingHandler<Optional<T>>
+{
+	private final PrefixTrie<T> signatures;
+
+	private final T defaultRoute;
+
+	private final T timeoutRoute;
+
+	private final Listener<T> listener;
+
+	/**
+	 * Creates handler.
+	 *
+	 * @param signatures
+	 * 	compiled signatures
+	 * @param timeoutMs
+	 * 	max time to wait for data, in milliseconds
+	 * @param defaultRoute
+	 * 	route used when no signature matches, null to close connection
+	 * @param timeoutRoute
+	 * 	route used when no data arrive until timeout, null to close connection
+	 * @param listener
+	 * 	listener receiving the route
+	 */
+	public ProtocolSniffingHandler(PrefixTrie<T> signatures, long timeoutMs, T defaultRoute, T timeoutRoute, Listener<T> listener)
+	{
+		super(timeoutMs);
+		this.signatures = signatures;
+		this.defaultRoute = defaultRoute;
+		this.timeoutRoute = timeoutRoute;
+		this.listener = listener;
+	}
+
+	@Override
+	protected Optional<T> decide(ByteBuf input)
+	{
+		int match = signatures.match(input, false);
+		if (match == PrefixTrie.NEED_MORE) {
+			return null;
+		}
+		else if (match == PrefixTrie.NO_MATCH) {
+			return Optional.ofNullable(defaultRoute);
+		}
+		return Optional.of(signatures.getValue(match));
+	}
+
+	@Override
+	protected Optional<T> decideFinal(ByteBuf input)
+	{
+		if (!input.isReadable()) {
+			return Optional.ofNullable(timeoutRoute);
+		}
+		int match = signatures.match(input, true);
+		return Optional.ofNullable(match < 0 ? defaultRoute : signatures.getValue(match));
+	}
+
+	@Override
+	protected void onDecided(ChannelHandlerContext ctx, Optional<T> decision, ByteBuf peeked)
+	{
+		if (decision.isEmpty()) {
+			peeked.release();
+			ctx.close();
+			return;
+		}
+		listener.onRoute(ctx, decision.get(), peeked);
+	}
+
+	/**
+	 * Listener of routing decision.
+	 *
+	 * @param <T>
+	 *      type of route
+	 */
+	@FunctionalInterface
+	public interface Listener<T>
+	{
+		/**
+		 * Called once the route is determined.
+		 *
+		 * @param ctx
+		 * 	channel context
+		 * @param route
+		 * 	chosen route
+		 * @param peeked
+		 * 	peeked data, to be replayed and released by callee
+		 */
+		void onRoute(ChannelHandlerContext ctx, T route, ByteBuf peeked);
+	}
+}
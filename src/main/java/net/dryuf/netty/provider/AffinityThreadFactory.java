@@ -0,0 +1,108 @@
+package net.dryuf.netty.provider;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.util.CpuAffinity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Thread factory pinning created threads to CPUs, either each thread to single CPU round-robin or all threads to the
+ * whole set.  Started threads only register their native id, the affinity is set at once for all of them by
+ * {@link #pinThreads(EventLoopGroup, AffinityThreadFactory)}, so the event loops never run the external process.
+ * Failures are logged and the threads run unpinned.
+ */
+@Log4j2
+public class AffinityThreadFactory extends DefaultThreadFactory
+{
+	private final String poolName;
+
+	private final List<Integer> cpus;
+
+	private final boolean perThread;
+
+	private final AtomicInteger counter = new AtomicInteger();
+
+	/** Affinities of started threads not pinned yet, by native thread id. */
+	private final Map<String, List<Integer>> pending = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates factory.
+	 *
+	 * @param poolName
+	 * 	prefix of thread names
+	 * @param cpus
+	 * 	CPUs to pin threads to
+	 * @param perThread
+	 * 	whether to pin each thread to single CPU, whole set otherwise
+	 */
+	public AffinityThreadFactory(String poolName, List<Integer> cpus, boolean perThread)
+	{
+		super(poolName);
+		this.poolName = poolName;
+		this.cpus = cpus;
+		this.perThread = perThread;
+	}
+
+	/**
+	 * Starts all threads of the group and pins them, if created by pinning factory.
+	 *
+	 * @param group
+	 * 	event loop group
+	 * @param threadFactory
+	 * 	factory the group was created with, nothing to pin if null
+	 *
+	 * @return
+	 * 	the group.
+	 */
+	public static EventLoopGroup pinThreads(EventLoopGroup group, AffinityThreadFactory threadFactory)
+	{
+		if (threadFactory != null) {
+			threadFactory.pinThreads(group);
+		}
+		return group;
+	}
+
+	private void pinThreads(EventLoopGroup group)
+	{
+		if (!CpuAffinity.isSupported()) {
+			return;
+		}
+		// executing a task starts the thread, which registers before running any task:
+		List<Future<?>> started = new ArrayList<>();
+		for (EventExecutor executor: group) {
+			started.add(executor.submit(() -> {}));
+		}
+		started.forEach(Future::syncUninterruptibly);
+		Map<String, List<Integer>> affinities = new LinkedHashMap<>();
+		pending.keySet().forEach(tid -> affinities.put(tid, pending.remove(tid)));
+		if (CpuAffinity.setThreadsAffinity(affinities)) {
+			log.info("Pinned threads: pool={} affinities={}", poolName, affinities);
+		}
+	}
+
+	@Override
+	protected Thread newThread(Runnable r, String name)
+	{
+		List<Integer> affinity = perThread ?
+			Collections.singletonList(cpus.get(Math.floorMod(counter.getAndIncrement(), cpus.size()))) :
+			cpus;
+		return super.newThread(() -> {
+			String tid = CpuAffinity.getCurrentThreadId();
+			if (tid != null) {
+				pending.put(tid, affinity);
+			}
+			r.run();
+		}, name);
+	}
+}
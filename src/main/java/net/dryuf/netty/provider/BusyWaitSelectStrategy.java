@@ -0,0 +1,21 @@
+package net.dryuf.netty.provider;
+
+import io.netty.channel.SelectStrategy;
+import io.netty.channel.SelectStrategyFactory;
+import io.netty.util.IntSupplier;
+
+
+/**
+ * Select strategy spinning with non-blocking poll instead of blocking wait when no tasks are pending.  Supported by
+ * Epoll event loops only, others fall back to blocking select.
+ */
+class BusyWaitSelectStrategy implements SelectStrategy
+{
+	static final SelectStrategyFactory FACTORY = BusyWaitSelectStrategy::new;
+
+	@Override
+	public int calculateStrategy(IntSupplier selectSupplier, boolean hasTasks) throws Exception
+	{
+		return hasTasks ? selectSupplier.get() : SelectStrategy.BUSY_WAIT;
+	}
+}
@@ -1,27 +1,82 @@
 package net.dryuf.netty.provider;
 
+import io.netty.bootstrap.AbstractBootstrap;
 import io.netty.channel.ChannelFactory;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
+import io.netty.channel.local.LocalAddress;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.ServerDomainSocketChannel;
+import net.dryuf.netty.core.DatagramOptions;
+import net.dryuf.netty.core.StreamOptions;
+import net.dryuf.netty.local.DuplexLocalChannel;
+import net.dryuf.netty.local.DuplexLocalServerChannel;
+import net.dryuf.netty.shm.ShmAddress;
+import net.dryuf.netty.shm.ShmChannel;
+import net.dryuf.netty.shm.ShmServerChannel;
 
 import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
 
 
 public interface ChannelProvider
 {
+	/**
+	 * Gets threading configuration of event loop groups.
+	 *
+	 * @return
+	 * 	threading configuration.
+	 */
+	default ThreadingConfig getThreadingConfig()
+	{
+		return ThreadingConfig.DEFAULT;
+	}
+
 	default EventLoopGroup createBossEventLoopGroup()
 	{
-		return createEventLoopGroup(1);
+		List<Integer> cpus = getThreadingConfig().getBossCpus();
+		AffinityThreadFactory threadFactory = cpus == null || cpus.isEmpty() ? null :
+			new AffinityThreadFactory("netty-boss", cpus, false);
+		return AffinityThreadFactory.pinThreads(
+			createEventLoopGroup(1, threadFactory, ThreadingConfig.DEFAULT),
+			threadFactory
+		);
 	}
 
 	default EventLoopGroup createWorkerEventLoopGroup()
 	{
-		return createEventLoopGroup(Runtime.getRuntime().availableProcessors());
+		ThreadingConfig config = getThreadingConfig();
+		List<Integer> cpus = config.getWorkerCpus();
+		AffinityThreadFactory threadFactory = cpus == null || cpus.isEmpty() ? null :
+			new AffinityThreadFactory("netty-worker", cpus, config.isPinPerLoop());
+		return AffinityThreadFactory.pinThreads(
+			createEventLoopGroup(config.getEffectiveWorkerThreads(), threadFactory, config),
+			threadFactory
+		);
+	}
+
+	default EventLoopGroup createEventLoopGroup(int threads)
+	{
+		return createEventLoopGroup(threads, null, getThreadingConfig());
 	}
 
-	EventLoopGroup createEventLoopGroup(int threads);
+	/**
+	 * Creates event loop group.
+	 *
+	 * @param threads
+	 * 	number of event loops
+	 * @param threadFactory
+	 * 	factory of loop threads, group default if null
+	 * @param tuning
+	 * 	configuration providing ioRatio and busyWait settings
+	 *
+	 * @return
+	 * 	new event loop group.
+	 */
+	EventLoopGroup createEventLoopGroup(int threads, ThreadFactory threadFactory, ThreadingConfig tuning);
 
 	default SocketAddress convertAddress(SocketAddress original)
 	{
@@ -30,6 +85,12 @@ public interface ChannelProvider
 
 	default ChannelFactory<? extends ServerChannel> getServerChannel(SocketAddress address)
 	{
+		if (address instanceof LocalAddress) {
+			return DuplexLocalServerChannel::new;
+		}
+		if (address instanceof ShmAddress) {
+			return () -> new ShmServerChannel(this);
+		}
 		return getServerChannel(null, address);
 	}
 
@@ -37,6 +98,12 @@ public interface ChannelProvider
 
 	default ChannelFactory<? extends DuplexChannel> getStreamChannel(SocketAddress address)
 	{
+		if (address instanceof LocalAddress) {
+			return DuplexLocalChannel::new;
+		}
+		if (address instanceof ShmAddress) {
+			return () -> new ShmChannel(this);
+		}
 		return getStreamChannel(null, address);
 	}
 
@@ -48,4 +115,159 @@ public interface ChannelProvider
 	}
 
 	ChannelFactory<? extends DatagramChannel> getDatagramChannel(String proto, SocketAddress address);
+
+	/**
+	 * Checks whether TCP Fast Open can be used for listening sockets.
+	 *
+	 * @return
+	 * 	true if TCP_FASTOPEN option is supported for server channels.
+	 */
+	default boolean isTcpFastOpenListenSupported()
+	{
+		return false;
+	}
+
+	/**
+	 * Checks whether TCP Fast Open can be used for connecting sockets, sending the data written before connect
+	 * within SYN.
+	 *
+	 * @return
+	 * 	true if TCP_FASTOPEN_CONNECT option is supported for stream channels.
+	 */
+	default boolean isTcpFastOpenConnectSupported()
+	{
+		return false;
+	}
+
+	/**
+	 * Checks whether file descriptors can be passed over domain sockets and adopted as channels.
+	 *
+	 * @return
+	 * 	true if descriptor passing and {@link #getAdoptedStreamChannel(boolean, int)} are supported.
+	 */
+	default boolean isDescriptorPassingSupported()
+	{
+		return false;
+	}
+
+	/**
+	 * Gets channel factory adopting existing connected socket.
+	 *
+	 * @param domain
+	 * 	whether the socket is domain socket, inet otherwise
+	 * @param fd
+	 * 	socket file descriptor
+	 *
+	 * @return
+	 * 	channel factory creating channel on top of the descriptor.
+	 *
+	 * @throws UnsupportedOperationException
+	 * 	if the provider does not support adopting descriptors
+	 */
+	default ChannelFactory<? extends DuplexChannel> getAdoptedStreamChannel(boolean domain, int fd)
+	{
+		throw new UnsupportedOperationException("Adopting file descriptors not supported by: "+getClass().getSimpleName());
+	}
+
+	/**
+	 * Gets channel factory adopting existing listening socket.
+	 *
+	 * @param domain
+	 * 	whether the socket is domain socket, inet otherwise
+	 * @param fd
+	 * 	socket file descriptor
+	 *
+	 * @return
+	 * 	channel factory creating server channel on top of the descriptor.
+	 *
+	 * @throws UnsupportedOperationException
+	 * 	if the provider does not support adopting descriptors
+	 */
+	default ChannelFactory<? extends ServerChannel> getAdoptedServerChannel(boolean domain, int fd)
+	{
+		throw new UnsupportedOperationException("Adopting file descriptors not supported by: "+getClass().getSimpleName());
+	}
+
+	/**
+	 * Detaches listening domain socket channel from its socket file, so closing the channel leaves the file in place,
+	 * typically still listened on by another process which took over the socket.
+	 *
+	 * @param channel
+	 * 	server channel
+	 *
+	 * @return
+	 * 	true if closing the channel does not delete any socket file, false if the file cannot be detached.
+	 */
+	default boolean detachSocketFile(ServerChannel channel)
+	{
+		return !(channel instanceof ServerDomainSocketChannel);
+	}
+
+	/**
+	 * Checks whether SO_REUSEPORT is supported, allowing multiple sockets bound to the same address with kernel
+	 * distributing the traffic.
+	 *
+	 * @return
+	 * 	true if SO_REUSEPORT is supported.
+	 */
+	default boolean isReusePortSupported()
+	{
+		return false;
+	}
+
+	/**
+	 * Checks whether datagram channels support UDP segmentation offload, sending multiple datagrams as one
+	 * SegmentedDatagramPacket.
+	 *
+	 * @return
+	 * 	true if UDP segmentation offload is supported.
+	 */
+	default boolean isDatagramSegmentationSupported()
+	{
+		return false;
+	}
+
+	/**
+	 * Checks whether datagram channels can receive multiple datagrams per syscall (recvmmsg), see
+	 * {@link DatagramOptions#getReceiveBatch()}.
+	 *
+	 * @return
+	 * 	true if batched receive is supported.
+	 */
+	default boolean isDatagramBatchReceiveSupported()
+	{
+		return false;
+	}
+
+	/**
+	 * Configures datagram channel bootstrap.  Options not supported by this provider are ignored.
+	 *
+	 * @param bootstrap
+	 * 	bootstrap to configure
+	 * @param options
+	 * 	datagram options
+	 */
+	default void configureDatagram(AbstractBootstrap<?, ?> bootstrap, DatagramOptions options)
+	{
+		if (options.getReceiveBufferSize() != null) {
+			bootstrap.option(ChannelOption.SO_RCVBUF, options.getReceiveBufferSize());
+		}
+		if (options.getSendBufferSize() != null) {
+			bootstrap.option(ChannelOption.SO_SNDBUF, options.getSendBufferSize());
+		}
+	}
+
+	/**
+	 * Configures low latency options of stream channel bootstrap, of client or accepted child channels.
+	 *
+	 * @param bootstrap
+	 * 	bootstrap of client channel or server bootstrap
+	 * @param address
+	 * 	address to connect or listen on, as converted by {@link #convertAddress(SocketAddress)}
+	 * @param options
+	 * 	stream options
+	 */
+	default void configureStream(AbstractBootstrap<?, ?> bootstrap, SocketAddress address, StreamOptions options)
+	{
+	}
 }
@@ -1,36 +1,110 @@
 package net.dryuf.netty.provider;
 
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFactory;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.DefaultSelectStrategyFactory;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollDatagramChannel;
 import io.netty.channel.epoll.EpollDomainSocketChannel;
 import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
 import io.netty.channel.epoll.EpollServerDomainSocketChannel;
 import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DuplexChannel;
 import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.channel.unix.UnixChannelOption;
+import io.netty.util.Version;
+import net.dryuf.netty.core.DatagramOptions;
 import net.dryuf.netty.core.NettyEngine;
+import net.dryuf.netty.core.StreamOptions;
 
+import java.lang.reflect.Field;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnixDomainSocketAddress;
-import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 public class EpollChannelProvider implements ChannelProvider
 {
-	static {
-		EpollEventLoopGroup events = new EpollEventLoopGroup();
-		events.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+	/**
+	 * Whether recvmmsg path reports correct datagram lengths.  Netty up to 4.1.90 sets each datagram received by
+	 * recvmmsg to the full slot size (MAX_DATAGRAM_PAYLOAD_SIZE) instead of its real length.
+	 */
+	private static final boolean BATCH_RECEIVE_SUPPORTED = isNettyVersionAfter("netty-transport-classes-epoll", 4, 1, 90);
+
+	/**
+	 * Active flag of epoll channel.  Public constructor of server domain socket channel taking descriptor assumes the
+	 * socket is not listening yet, the one taking active flag is package private.
+	 */
+	private static final Field CHANNEL_ACTIVE_FIELD = findField("io.netty.channel.epoll.AbstractEpollChannel", "active");
+
+	/**
+	 * Bound address of server domain socket channel, its file is deleted when the channel is closed.
+	 */
+	private static final Field SERVER_DOMAIN_LOCAL_FIELD = findField("io.netty.channel.epoll.EpollServerDomainSocketChannel", "local");
+
+	private final ThreadingConfig threadingConfig;
+
+	/**
+	 * Creates provider.
+	 *
+	 * @throws UnsatisfiedLinkError
+	 * 	if native transport is not available
+	 */
+	public EpollChannelProvider()
+	{
+		this(ThreadingConfig.DEFAULT);
+	}
+
+	/**
+	 * Creates provider.
+	 *
+	 * @param threadingConfig
+	 * 	threading configuration of event loop groups
+	 *
+	 * @throws UnsatisfiedLinkError
+	 * 	if native transport is not available
+	 */
+	public EpollChannelProvider(ThreadingConfig threadingConfig)
+	{
+		// loads the native library only, without starting any event loop:
+		Epoll.ensureAvailability();
+		this.threadingConfig = threadingConfig;
 	}
 
 	@Override
-	public EventLoopGroup createEventLoopGroup(int threads)
+	public ThreadingConfig getThreadingConfig()
 	{
-		return new EpollEventLoopGroup(threads);
+		return threadingConfig;
+	}
+
+	@Override
+	public EventLoopGroup createEventLoopGroup(int threads, ThreadFactory threadFactory, ThreadingConfig tuning)
+	{
+		EpollEventLoopGroup group = new EpollEventLoopGroup(threads, threadFactory,
+			tuning.isBusyWait() ? BusyWaitSelectStrategy.FACTORY : DefaultSelectStrategyFactory.INSTANCE);
+		if (tuning.getIoRatio() != null) {
+			group.setIoRatio(tuning.getIoRatio());
+		}
+		return group;
 	}
 
 	@Override
@@ -83,4 +157,221 @@ public class EpollChannelProvider implements ChannelProvider
 			EpollDatagramChannel::new :
 			() -> new EpollDatagramChannel(NettyEngine.getNettyProtocolByAddress(((InetSocketAddress) address).getAddress()));
 	}
+
+	@Override
+	public boolean isTcpFastOpenListenSupported()
+	{
+		return Epoll.isTcpFastOpenServerSideAvailable();
+	}
+
+	@Override
+	public boolean isTcpFastOpenConnectSupported()
+	{
+		return Epoll.isTcpFastOpenClientSideAvailable();
+	}
+
+	@Override
+	public boolean isDescriptorPassingSupported()
+	{
+		return true;
+	}
+
+	@Override
+	public ChannelFactory<? extends DuplexChannel> getAdoptedStreamChannel(boolean domain, int fd)
+	{
+		return domain ?
+			() -> new EpollDomainSocketChannel(fd) :
+			() -> new EpollSocketChannel(fd);
+	}
+
+	@Override
+	public ChannelFactory<? extends ServerChannel> getAdoptedServerChannel(boolean domain, int fd)
+	{
+		if (domain && CHANNEL_ACTIVE_FIELD == null) {
+			throw new UnsupportedOperationException("Adopting listening domain socket not supported by this Netty version");
+		}
+		return domain ?
+			() -> newAdoptedServerDomainSocketChannel(fd) :
+			() -> new EpollServerSocketChannel(fd);
+	}
+
+	@Override
+	public boolean detachSocketFile(ServerChannel channel)
+	{
+		if (!(channel instanceof EpollServerDomainSocketChannel)) {
+			return ChannelProvider.super.detachSocketFile(channel);
+		}
+		if (SERVER_DOMAIN_LOCAL_FIELD == null) {
+			return false;
+		}
+		try {
+			SERVER_DOMAIN_LOCAL_FIELD.set(channel, null);
+			return true;
+		}
+		catch (IllegalAccessException ex) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean isReusePortSupported()
+	{
+		return true;
+	}
+
+	@Override
+	public boolean isDatagramSegmentationSupported()
+	{
+		return EpollDatagramChannel.isSegmentedDatagramPacketSupported();
+	}
+
+	@Override
+	public boolean isDatagramBatchReceiveSupported()
+	{
+		return BATCH_RECEIVE_SUPPORTED;
+	}
+
+	@Override
+	public void configureDatagram(AbstractBootstrap<?, ?> bootstrap, DatagramOptions options)
+	{
+		ChannelProvider.super.configureDatagram(bootstrap, options);
+		if (options.isReusePort()) {
+			bootstrap.option(UnixChannelOption.SO_REUSEPORT, true);
+		}
+		if (options.isGro() && isDatagramSegmentationSupported()) {
+			bootstrap.option(EpollChannelOption.UDP_GRO, true);
+		}
+		if (options.getReceiveBatch() > 1 && isDatagramBatchReceiveSupported()) {
+			// recvmmsg reads as many datagrams as fit into receive buffer, sliced from single pooled buffer:
+			bootstrap.option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, options.getMaxDatagramSize());
+			bootstrap.option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(options.getMaxDatagramSize()*options.getReceiveBatch()));
+			bootstrap.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+		}
+	}
+
+	@Override
+	public void configureStream(AbstractBootstrap<?, ?> bootstrap, SocketAddress address, StreamOptions options)
+	{
+		ServerBootstrap server = bootstrap instanceof ServerBootstrap ? (ServerBootstrap) bootstrap : null;
+		if (options.getEdgeTriggered() != null) {
+			EpollMode mode = options.getEdgeTriggered() ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+			setStreamOption(bootstrap, EpollChannelOption.EPOLL_MODE, mode);
+		}
+		if (!(address instanceof InetSocketAddress)) {
+			return;
+		}
+		if (options.getBusyPoll() != null) {
+			setStreamOption(bootstrap, EpollChannelOption.SO_BUSY_POLL, options.getBusyPoll());
+		}
+		if (options.isQuickAck()) {
+			setStreamOption(bootstrap, EpollChannelOption.TCP_QUICKACK, true);
+			// kernel falls back to delayed ACKs after a while, re-arm it after every read:
+			addStreamHandler(bootstrap, QuickAckHandler.INSTANCE);
+		}
+		if (options.getNotSentLowAt() != null) {
+			setStreamOption(bootstrap, EpollChannelOption.TCP_NOTSENT_LOWAT, options.getNotSentLowAt());
+		}
+		if (options.getUserTimeout() != null) {
+			setStreamOption(bootstrap, EpollChannelOption.TCP_USER_TIMEOUT, options.getUserTimeout());
+		}
+		if (server != null && options.getDeferAccept() != null) {
+			server.option(EpollChannelOption.TCP_DEFER_ACCEPT, options.getDeferAccept());
+		}
+	}
+
+	/**
+	 * Sets option of client channel or of accepted child channels in case of server bootstrap.
+	 */
+	private static <T> void setStreamOption(AbstractBootstrap<?, ?> bootstrap, ChannelOption<T> option, T value)
+	{
+		if (bootstrap instanceof ServerBootstrap) {
+			((ServerBootstrap) bootstrap).childOption(option, value);
+		}
+		else {
+			bootstrap.option(option, value);
+		}
+	}
+
+	/**
+	 * Adds handler in front of client channel pipeline or of accepted child channels in case of server bootstrap.
+	 */
+	private static void addStreamHandler(AbstractBootstrap<?, ?> bootstrap, ChannelHandler handler)
+	{
+		if (bootstrap instanceof ServerBootstrap) {
+			ServerBootstrap server = (ServerBootstrap) bootstrap;
+			server.childHandler(prependHandler(handler, server.config().childHandler()));
+		}
+		else {
+			bootstrap.handler(prependHandler(handler, bootstrap.config().handler()));
+		}
+	}
+
+	private static ChannelHandler prependHandler(ChannelHandler first, ChannelHandler original)
+	{
+		return new ChannelInitializer<Channel>()
+		{
+			@Override
+			protected void initChannel(Channel ch)
+			{
+				ch.pipeline().addLast(first, original);
+			}
+		};
+	}
+
+	private static EpollServerDomainSocketChannel newAdoptedServerDomainSocketChannel(int fd)
+	{
+		EpollServerDomainSocketChannel channel = new EpollServerDomainSocketChannel(fd);
+		try {
+			CHANNEL_ACTIVE_FIELD.setBoolean(channel, true);
+		}
+		catch (IllegalAccessException ex) {
+			throw new IllegalStateException("Cannot mark adopted domain socket channel active", ex);
+		}
+		return channel;
+	}
+
+	private static Field findField(String className, String name)
+	{
+		try {
+			Field field = Class.forName(className, false, EpollChannelProvider.class.getClassLoader()).getDeclaredField(name);
+			field.setAccessible(true);
+			return field;
+		}
+		catch (ReflectiveOperationException|RuntimeException ex) {
+			return null;
+		}
+	}
+
+	private static boolean isNettyVersionAfter(String artifact, int major, int minor, int patch)
+	{
+		Version version = Version.identify(EpollChannelProvider.class.getClassLoader()).get(artifact);
+		if (version == null) {
+			return false;
+		}
+		Matcher matcher = Pattern.compile("^(\\d+)\\.(\\d+)\\.(\\d+)").matcher(version.artifactVersion());
+		if (!matcher.find()) {
+			return false;
+		}
+		return Arrays.compare(
+			new int[]{ Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)) },
+			new int[]{ major, minor, patch }
+		) > 0;
+	}
+
+	/**
+	 * Re-arms TCP_QUICKACK after every read batch.  The flag is not permanent, Linux clears it once it decides to
+	 * delay ACKs again.
+	 */
+	@ChannelHandler.Sharable
+	private static class QuickAckHandler extends ChannelInboundHandlerAdapter
+	{
+		static final QuickAckHandler INSTANCE = new QuickAckHandler();
+
+		@Override
+		public void channelReadComplete(ChannelHandlerContext ctx)
+		{
+			ctx.channel().config().setOption(EpollChannelOption.TCP_QUICKACK, true);
+			ctx.fireChannelReadComplete();
+		}
+	}
 }
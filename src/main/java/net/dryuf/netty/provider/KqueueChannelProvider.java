@@ -1,8 +1,10 @@
 package net.dryuf.netty.provider;
 
+import io.netty.bootstrap.AbstractBootstrap;
 import io.netty.channel.ChannelFactory;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
+import io.netty.channel.kqueue.KQueue;
 import io.netty.channel.kqueue.KQueueDatagramChannel;
 import io.netty.channel.kqueue.KQueueDomainSocketChannel;
 import io.netty.channel.kqueue.KQueueEventLoopGroup;
@@ -12,25 +14,61 @@ import io.netty.channel.kqueue.KQueueSocketChannel;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DuplexChannel;
 import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.channel.unix.UnixChannelOption;
+import net.dryuf.netty.core.DatagramOptions;
 import net.dryuf.netty.core.NettyEngine;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnixDomainSocketAddress;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
 
 
 public class KqueueChannelProvider implements ChannelProvider
 {
-	static {
-		KQueueEventLoopGroup events = new KQueueEventLoopGroup();
-		events.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+	private final ThreadingConfig threadingConfig;
+
+	/**
+	 * Creates provider.
+	 *
+	 * @throws UnsatisfiedLinkError
+	 * 	if native transport is not available
+	 */
+	public KqueueChannelProvider()
+	{
+		this(ThreadingConfig.DEFAULT);
+	}
+
+	/**
+	 * Creates provider.
+	 *
+	 * @param threadingConfig
+	 * 	threading configuration of event loop groups, busyWait is not supported
+	 *
+	 * @throws UnsatisfiedLinkError
+	 * 	if native transport is not available
+	 */
+	public KqueueChannelProvider(ThreadingConfig threadingConfig)
+	{
+		// loads the native library only, without starting any event loop:
+		KQueue.ensureAvailability();
+		this.threadingConfig = threadingConfig;
+	}
+
+	@Override
+	public ThreadingConfig getThreadingConfig()
+	{
+		return threadingConfig;
 	}
 
 	@Override
-	public EventLoopGroup createEventLoopGroup(int threads)
+	public EventLoopGroup createEventLoopGroup(int threads, ThreadFactory threadFactory, ThreadingConfig tuning)
 	{
-		return new KQueueEventLoopGroup(threads);
+		KQueueEventLoopGroup group = new KQueueEventLoopGroup(threads, threadFactory);
+		if (tuning.getIoRatio() != null) {
+			group.setIoRatio(tuning.getIoRatio());
+		}
+		return group;
 	}
 
 	@Override
@@ -83,4 +121,31 @@ public class KqueueChannelProvider implements ChannelProvider
 			KQueueDatagramChannel::new :
 			() -> new KQueueDatagramChannel(NettyEngine.getNettyProtocolByAddress(((InetSocketAddress) address).getAddress()));
 	}
+
+	@Override
+	public boolean isTcpFastOpenListenSupported()
+	{
+		return KQueue.isTcpFastOpenServerSideAvailable();
+	}
+
+	@Override
+	public boolean isTcpFastOpenConnectSupported()
+	{
+		return KQueue.isTcpFastOpenClientSideAvailable();
+	}
+
+	@Override
+	public boolean isReusePortSupported()
+	{
+		return true;
+	}
+
+	@Override
+	public void configureDatagram(AbstractBootstrap<?, ?> bootstrap, DatagramOptions options)
+	{
+		ChannelProvider.super.configureDatagram(bootstrap, options);
+		if (options.isReusePort()) {
+			bootstrap.option(UnixChannelOption.SO_REUSEPORT, true);
+		}
+	}
 }
@@ -24,26 +24,43 @@ import java.net.UnixDomainSocketAddress;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.concurrent.ThreadFactory;
 
 
 public class NioChannelProvider implements ChannelProvider
 {
-	@Override
-	public EventLoopGroup createBossEventLoopGroup()
+	private final ThreadingConfig threadingConfig;
+
+	public NioChannelProvider()
+	{
+		this(ThreadingConfig.DEFAULT);
+	}
+
+	/**
+	 * Creates provider.
+	 *
+	 * @param threadingConfig
+	 * 	threading configuration of event loop groups, busyWait is not supported
+	 */
+	public NioChannelProvider(ThreadingConfig threadingConfig)
 	{
-		return new NioEventLoopGroup(1);
+		this.threadingConfig = threadingConfig;
 	}
 
 	@Override
-	public EventLoopGroup createWorkerEventLoopGroup()
+	public ThreadingConfig getThreadingConfig()
 	{
-		return new NioEventLoopGroup(Runtime.getRuntime().availableProcessors());
+		return threadingConfig;
 	}
 
 	@Override
-	public EventLoopGroup createEventLoopGroup(int threads)
+	public EventLoopGroup createEventLoopGroup(int threads, ThreadFactory threadFactory, ThreadingConfig tuning)
 	{
-		return new NioEventLoopGroup(threads);
+		NioEventLoopGroup group = new NioEventLoopGroup(threads, threadFactory);
+		if (tuning.getIoRatio() != null) {
+			group.setIoRatio(tuning.getIoRatio());
+		}
+		return group;
 	}
 
 	public SocketAddress convertAddress(SocketAddress original)
@@ -0,0 +1,63 @@
+package net.dryuf.netty.provider;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+
+/**
+ * Threading of event loop groups created by {@link ChannelProvider}.
+ *
+ * CPU pinning uses {@link net.dryuf.netty.util.CpuAffinity}, the loops run unpinned if not supported.  Tuning of
+ * loops (ioRatio, busyWait) applies to worker and partition groups, not to boss group.
+ */
+@Builder(builderClassName = "Builder", toBuilder = true)
+@Value
+public class ThreadingConfig
+{
+	/** Default configuration, no pinning and default Netty settings. */
+	public static final ThreadingConfig DEFAULT = ThreadingConfig.builder().build();
+
+	/**
+	 * Number of worker event loops, by default the number of workerCpus when pinning per loop, otherwise number of
+	 * available processors.
+	 */
+	Integer workerThreads;
+
+	/** CPUs to pin worker event loops to, no pinning if null or empty. */
+	List<Integer> workerCpus;
+
+	/** Whether to pin each worker loop to single CPU from workerCpus (round-robin), whole set shared otherwise. */
+	@Builder.Default
+	boolean pinPerLoop = true;
+
+	/** CPUs to pin boss event loop to, typically separate core, no pinning if null or empty. */
+	List<Integer> bossCpus;
+
+	/** Percentage of loop time spent on I/O compared to tasks, 1-100, Netty default if null. */
+	Integer ioRatio;
+
+	/**
+	 * Whether worker loops spin polling for events instead of blocking in epoll_wait, trading CPU for latency.
+	 * Supported by Epoll provider only, ignored by others.
+	 */
+	boolean busyWait;
+
+	/**
+	 * Gets effective number of worker threads.
+	 *
+	 * @return
+	 * 	number of worker event loops.
+	 */
+	public int getEffectiveWorkerThreads()
+	{
+		if (workerThreads != null) {
+			return workerThreads;
+		}
+		if (workerCpus != null && !workerCpus.isEmpty() && pinPerLoop) {
+			return workerCpus.size();
+		}
+		return Runtime.getRuntime().availableProcessors();
+	}
+}
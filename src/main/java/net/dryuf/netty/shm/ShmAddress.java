@@ -0,0 +1,31 @@
+package net.dryuf.netty.shm;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.net.SocketAddress;
+
+
+/**
+ * Address of shared memory transport, the path is domain socket used for handshake and wakeups, the ring buffer
+ * files are created next to it.
+ */
+@EqualsAndHashCode(callSuper = false)
+public class ShmAddress extends SocketAddress
+{
+	private static final long serialVersionUID = 1L;
+
+	@Getter
+	private final String path;
+
+	public ShmAddress(String path)
+	{
+		this.path = path;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "shm:"+path;
+	}
+}
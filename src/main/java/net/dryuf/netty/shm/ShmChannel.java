@@ -0,0 +1,772 @@
+package net.dryuf.netty.shm;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoop;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.ChannelInputShutdownReadComplete;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.StringUtil;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.provider.ChannelProvider;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.UnsupportedAddressTypeException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Stream channel between processes on the same host, passing data through ring buffers in memory mapped file.
+ *
+ * The connecting side creates the file next to the listening domain socket and passes its name in handshake over
+ * the socket, the file is unlinked once mapped by both sides.  Afterwards the socket serves as doorbell only: single
+ * byte is written when the other side announced it sleeps on empty (or full) ring, so busy peers exchange data
+ * without any syscall.  With {@link ShmChannelOption#BUSY_SPIN}, the channel keeps polling the ring on its event
+ * loop and never asks for wakeup.
+ *
+ * Once the peer closes the socket, data already in ring are still delivered when read, followed by end of stream
+ * and closing the channel.
+ */
+@Log4j2
+public class ShmChannel extends AbstractChannel implements DuplexChannel
+{
+	static final int FILE_MAGIC = 0x53484d31;
+
+	/** File header size, rings follow page aligned. */
+	static final int FILE_HEADER_SIZE = 4096;
+
+	static final int HANDSHAKE_ACK = 'K';
+
+	/** Max number of read batches in single poll, before rescheduling to keep fairness. */
+	private static final int MAX_POLL_ROUNDS = 16;
+
+	private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+
+	private static final ByteBuf DOORBELL = Unpooled.unreleasableBuffer(Unpooled.directBuffer(1).writeByte(1));
+
+	private enum State { OPEN, CONNECTED, CLOSED }
+
+	private final ChannelProvider channelProvider;
+
+	private final ShmChannelConfig config = new ShmChannelConfig(this);
+
+	private final Runnable pollTask = () -> {
+		pollScheduled = false;
+		poll();
+	};
+
+	private final Runnable flushTask = () -> unsafe().flush();
+
+	private volatile State state;
+
+	private volatile boolean inputShutdown;
+
+	private volatile boolean outputShutdown;
+
+	private volatile ShmAddress localAddress;
+
+	private volatile ShmAddress remoteAddress;
+
+	private Channel doorbell;
+
+	private ShmRing input;
+
+	private ShmRing output;
+
+	/** Ring file until unlinked after handshake. */
+	private Path ringFile;
+
+	private ChannelPromise connectPromise;
+
+	private ScheduledFuture<?> connectTimeout;
+
+	private boolean readPending;
+
+	private boolean polling;
+
+	private boolean pollScheduled;
+
+	private boolean writeWaiting;
+
+	private boolean closeOutputOnFlush;
+
+	/** Doorbell closed before the channel was registered. */
+	private volatile boolean doorbellClosed;
+
+	/** Peer closed its side, data left in ring are still delivered before end of stream. */
+	private boolean peerClosed;
+
+	/** Doorbell moves to our event loop, rings are postponed until it is registered there. */
+	private boolean doorbellMoving;
+
+	private boolean doorbellPending;
+
+	/**
+	 * Creates client channel.
+	 *
+	 * @param channelProvider
+	 * 	provider of domain socket channels
+	 */
+	public ShmChannel(ChannelProvider channelProvider)
+	{
+		super(null);
+		this.channelProvider = channelProvider;
+		this.state = State.OPEN;
+	}
+
+	/**
+	 * Creates accepted channel.
+	 */
+	ShmChannel(ShmServerChannel parent, ChannelProvider channelProvider, Channel doorbell, ByteBuffer memory, int capacity,
+		   ShmAddress localAddress, ShmAddress remoteAddress)
+	{
+		super(parent);
+		this.channelProvider = channelProvider;
+		this.doorbell = doorbell;
+		this.localAddress = localAddress;
+		this.remoteAddress = remoteAddress;
+		initRings(memory, capacity, false);
+		doorbell.pipeline().addLast(new DoorbellHandler(this));
+		this.state = State.CONNECTED;
+	}
+
+	@Override
+	public ShmServerChannel parent()
+	{
+		return (ShmServerChannel) super.parent();
+	}
+
+	@Override
+	public ShmChannelConfig config()
+	{
+		return config;
+	}
+
+	@Override
+	public ChannelMetadata metadata()
+	{
+		return METADATA;
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return state != State.CLOSED;
+	}
+
+	@Override
+	public boolean isActive()
+	{
+		return state == State.CONNECTED;
+	}
+
+	@Override
+	public ShmAddress localAddress()
+	{
+		return (ShmAddress) super.localAddress();
+	}
+
+	@Override
+	public ShmAddress remoteAddress()
+	{
+		return (ShmAddress) super.remoteAddress();
+	}
+
+	@Override
+	protected ShmAddress localAddress0()
+	{
+		return localAddress;
+	}
+
+	@Override
+	protected ShmAddress remoteAddress0()
+	{
+		return remoteAddress;
+	}
+
+	@Override
+	protected AbstractUnsafe newUnsafe()
+	{
+		return new ShmUnsafe();
+	}
+
+	@Override
+	protected boolean isCompatible(EventLoop loop)
+	{
+		return true;
+	}
+
+	@Override
+	protected void doRegister() throws Exception
+	{
+		// accepted doorbell runs on server loop, move it to ours so wakeups do not hop threads:
+		if (doorbell != null && doorbell.eventLoop() != eventLoop()) {
+			doorbellMoving = true;
+			doorbell.deregister().addListener((f) -> eventLoop().register(doorbell).addListener((r) -> {
+				doorbellMoving = false;
+				if (doorbellPending) {
+					doorbellPending = false;
+					ringDoorbell();
+				}
+			}));
+		}
+		if (doorbellClosed) {
+			eventLoop().execute(this::onDoorbellClosed);
+		}
+	}
+
+	@Override
+	protected void doBind(SocketAddress localAddress) throws Exception
+	{
+		throw new UnsupportedOperationException("Binding shm client channel not supported");
+	}
+
+	@Override
+	protected void doDisconnect() throws Exception
+	{
+		doClose();
+	}
+
+	@Override
+	protected void doClose() throws Exception
+	{
+		State old = state;
+		state = State.CLOSED;
+		if (old == State.CONNECTED && !outputShutdown) {
+			output.close();
+		}
+		if (doorbell != null) {
+			doorbell.close();
+		}
+		deleteRingFile();
+		if (connectTimeout != null) {
+			connectTimeout.cancel(false);
+		}
+		if (connectPromise != null) {
+			connectPromise.tryFailure(new ClosedChannelException());
+			connectPromise = null;
+		}
+	}
+
+	@Override
+	protected void doBeginRead() throws Exception
+	{
+		readPending = true;
+		// never read synchronously, caller may not be ready for data yet, such as initializer enabling auto read:
+		if (!polling) {
+			schedulePoll();
+		}
+	}
+
+	@Override
+	protected Object filterOutboundMessage(Object msg) throws Exception
+	{
+		if (msg instanceof ByteBuf) {
+			if (outputShutdown || peerClosed) {
+				throw new ClosedChannelException();
+			}
+			return msg;
+		}
+		throw new UnsupportedOperationException("unsupported message type: "+StringUtil.simpleClassName(msg));
+	}
+
+	@Override
+	protected void doWrite(ChannelOutboundBuffer in) throws Exception
+	{
+		boolean written = false;
+		try {
+			for (;;) {
+				ByteBuf buf = (ByteBuf) in.current();
+				if (buf == null) {
+					if (closeOutputOnFlush) {
+						closeOutputOnFlush = false;
+						closeOutput();
+					}
+					break;
+				}
+				int length = output.offer(buf);
+				if (length != 0) {
+					written = true;
+					in.progress(length);
+				}
+				if (!buf.isReadable()) {
+					in.remove();
+					continue;
+				}
+				// ring full, let the consumer drain it first:
+				if (written && output.takeConsumerWaiting()) {
+					ringDoorbell();
+				}
+				written = false;
+				if (config.isBusySpin()) {
+					eventLoop().execute(flushTask);
+					break;
+				}
+				if (output.waitProducer()) {
+					writeWaiting = true;
+					break;
+				}
+			}
+		}
+		finally {
+			if (written && output.takeConsumerWaiting()) {
+				ringDoorbell();
+			}
+		}
+	}
+
+	@Override
+	public boolean isInputShutdown()
+	{
+		return inputShutdown;
+	}
+
+	@Override
+	public ChannelFuture shutdownInput()
+	{
+		return shutdownInput(newPromise());
+	}
+
+	@Override
+	public ChannelFuture shutdownInput(ChannelPromise promise)
+	{
+		inputShutdown = true;
+		return promise.setSuccess();
+	}
+
+	@Override
+	public boolean isOutputShutdown()
+	{
+		return outputShutdown;
+	}
+
+	@Override
+	public ChannelFuture shutdownOutput()
+	{
+		return shutdownOutput(newPromise());
+	}
+
+	@Override
+	public ChannelFuture shutdownOutput(ChannelPromise promise)
+	{
+		if (eventLoop().inEventLoop()) {
+			shutdownOutput0(promise);
+		}
+		else {
+			eventLoop().execute(() -> shutdownOutput0(promise));
+		}
+		return promise;
+	}
+
+	@Override
+	public boolean isShutdown()
+	{
+		return inputShutdown && outputShutdown;
+	}
+
+	@Override
+	public ChannelFuture shutdown()
+	{
+		return shutdown(newPromise());
+	}
+
+	@Override
+	public ChannelFuture shutdown(ChannelPromise promise)
+	{
+		shutdownInput();
+		return shutdownOutput(promise);
+	}
+
+	void onBusySpinChanged()
+	{
+		if (isRegistered()) {
+			eventLoop().execute(this::poll);
+		}
+	}
+
+	private void shutdownOutput0(ChannelPromise promise)
+	{
+		if (!isActive()) {
+			promise.setFailure(new ClosedChannelException());
+			return;
+		}
+		if (!outputShutdown) {
+			outputShutdown = true;
+			ChannelOutboundBuffer outboundBuffer = unsafe().outboundBuffer();
+			if (outboundBuffer == null || outboundBuffer.isEmpty()) {
+				closeOutput();
+			}
+			else {
+				// flushed data still wait for ring space, close once they are written:
+				closeOutputOnFlush = true;
+			}
+		}
+		promise.setSuccess();
+	}
+
+	private void closeOutput()
+	{
+		output.close();
+		if (output.takeConsumerWaiting()) {
+			ringDoorbell();
+		}
+	}
+
+	private void poll()
+	{
+		if (polling || input == null) {
+			return;
+		}
+		polling = true;
+		try {
+			for (int round = 0; readPending && !inputShutdown && isActive(); ++round) {
+				if (round >= MAX_POLL_ROUNDS) {
+					schedulePoll();
+					break;
+				}
+				if (input.available() == 0) {
+					if (input.isEof() || peerClosed) {
+						onPeerOutputShutdown();
+						break;
+					}
+					if (config.isBusySpin()) {
+						schedulePoll();
+						break;
+					}
+					if (input.waitConsumer()) {
+						break;
+					}
+					continue;
+				}
+				readBatch();
+			}
+		}
+		finally {
+			polling = false;
+		}
+	}
+
+	private void readBatch()
+	{
+		ChannelPipeline pipeline = pipeline();
+		RecvByteBufAllocator.ExtendedHandle handle = (RecvByteBufAllocator.ExtendedHandle) unsafe().recvBufAllocHandle();
+		handle.reset(config);
+		do {
+			ByteBuf buf = handle.allocate(alloc());
+			handle.attemptedBytesRead(buf.writableBytes());
+			handle.lastBytesRead(input.poll(buf, buf.writableBytes()));
+			if (handle.lastBytesRead() == 0) {
+				buf.release();
+				break;
+			}
+			handle.incMessagesRead(1);
+			readPending = false;
+			pipeline.fireChannelRead(buf);
+		} while (handle.continueReading(() -> handle.attemptedBytesRead() == handle.lastBytesRead()) && isActive());
+		if (input.takeProducerWaiting()) {
+			ringDoorbell();
+		}
+		handle.readComplete();
+		pipeline.fireChannelReadComplete();
+	}
+
+	private void schedulePoll()
+	{
+		if (!pollScheduled) {
+			pollScheduled = true;
+			eventLoop().execute(pollTask);
+		}
+	}
+
+	private void onPeerOutputShutdown()
+	{
+		inputShutdown = true;
+		if (config.isAllowHalfClosure()) {
+			pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+			pipeline().fireUserEventTriggered(ChannelInputShutdownReadComplete.INSTANCE);
+		}
+		if (!config.isAllowHalfClosure() || peerClosed) {
+			close();
+		}
+	}
+
+	private void onDoorbell()
+	{
+		if (!isActive()) {
+			return;
+		}
+		poll();
+		if (writeWaiting) {
+			writeWaiting = false;
+			unsafe().flush();
+		}
+	}
+
+	private void onDoorbellClosed()
+	{
+		peerClosed = true;
+		if (inputShutdown) {
+			close();
+			return;
+		}
+		// data written by peer before closing are delivered once read, end of stream and close follow:
+		poll();
+	}
+
+	private void ringDoorbell()
+	{
+		if (peerClosed) {
+			return;
+		}
+		if (doorbellMoving) {
+			// write task would be queued to previous loop and dropped there:
+			doorbellPending = true;
+			return;
+		}
+		doorbell.writeAndFlush(DOORBELL.duplicate(), doorbell.voidPromise());
+	}
+
+	private void initRings(ByteBuffer memory, int capacity, boolean client)
+	{
+		ByteBuf data = Unpooled.wrappedBuffer(memory);
+		int first = FILE_HEADER_SIZE;
+		int second = FILE_HEADER_SIZE+ShmRing.sizeOf(capacity);
+		output = new ShmRing(memory, data, client ? first : second, capacity, true);
+		input = new ShmRing(memory, data, client ? second : first, capacity, false);
+	}
+
+	private void doConnect(ShmAddress remote) throws IOException
+	{
+		Path socketPath = Paths.get(remote.getPath()).toAbsolutePath();
+		int capacity = config.getRingSize();
+		ringFile = Files.createTempFile(socketPath.getParent(), socketPath.getFileName()+"-", ".ring");
+		ByteBuffer memory = mapRingFile(ringFile, getFileSize(capacity), true);
+		memory.putInt(0, FILE_MAGIC);
+		memory.putInt(4, capacity);
+		initRings(memory, capacity, true);
+		localAddress = new ShmAddress(ringFile.toString());
+
+		SocketAddress doorbellAddress = channelProvider.convertAddress(new DomainSocketAddress(socketPath.toString()));
+		ChannelFuture future = new Bootstrap()
+			.group(eventLoop())
+			.channelFactory(channelProvider.getStreamChannel(null, doorbellAddress))
+			.handler(new DoorbellHandler(this))
+			.connect(doorbellAddress);
+		doorbell = future.channel();
+		future.addListener((f) -> {
+			if (!f.isSuccess()) {
+				failConnect(f.cause());
+				return;
+			}
+			byte[] name = ringFile.toString().getBytes(StandardCharsets.UTF_8);
+			doorbell.writeAndFlush(doorbell.alloc().buffer(4+name.length).writeInt(name.length).writeBytes(name));
+		});
+		int timeoutMs = config.getConnectTimeoutMillis();
+		if (timeoutMs > 0) {
+			connectTimeout = eventLoop().schedule(
+				() -> failConnect(new ConnectTimeoutException("connection timed out: "+remote)),
+				timeoutMs,
+				TimeUnit.MILLISECONDS
+			);
+		}
+	}
+
+	private void onConnected()
+	{
+		if (connectPromise == null) {
+			return;
+		}
+		if (connectTimeout != null) {
+			connectTimeout.cancel(false);
+		}
+		deleteRingFile();
+		state = State.CONNECTED;
+		ChannelPromise promise = connectPromise;
+		connectPromise = null;
+		if (!promise.trySuccess()) {
+			close();
+			return;
+		}
+		pipeline().fireChannelActive();
+	}
+
+	private void failConnect(Throwable cause)
+	{
+		if (connectPromise == null) {
+			return;
+		}
+		ChannelPromise promise = connectPromise;
+		connectPromise = null;
+		promise.tryFailure(cause);
+		close();
+	}
+
+	private void deleteRingFile()
+	{
+		if (ringFile != null) {
+			try {
+				Files.deleteIfExists(ringFile);
+			}
+			catch (IOException ex) {
+				log.warn("Failed to delete shm ring file: {}", ringFile, ex);
+			}
+			ringFile = null;
+		}
+	}
+
+	/**
+	 * Gets capacity of rings in use.
+	 *
+	 * @return
+	 * 	capacity of each direction ring, 0 if not connecting or connected yet.
+	 */
+	int getRingCapacity()
+	{
+		return output == null ? 0 : output.getCapacity();
+	}
+
+	static int getFileSize(int capacity)
+	{
+		if (capacity > ShmChannelConfig.MAX_RING_SIZE) {
+			throw new IllegalArgumentException("Ring size too large: "+capacity);
+		}
+		return FILE_HEADER_SIZE+2*ShmRing.sizeOf(capacity);
+	}
+
+	static MappedByteBuffer mapRingFile(Path file, int size, boolean create) throws IOException
+	{
+		// never follow links, the file name may come from the other process:
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, LinkOption.NOFOLLOW_LINKS)) {
+			if (create) {
+				channel.write(ByteBuffer.allocate(1), size-1);
+			}
+			else if (channel.size() != size) {
+				throw new IOException("Unexpected size of shm ring file, expected="+size+" actual="+channel.size()+": "+file);
+			}
+			// the mapping stays valid after closing the file:
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	private class ShmUnsafe extends AbstractUnsafe
+	{
+		@Override
+		public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise)
+		{
+			if (!promise.setUncancellable() || !ensureOpen(promise)) {
+				return;
+			}
+			if (state == State.CONNECTED) {
+				promise.setFailure(new AlreadyConnectedException());
+				return;
+			}
+			if (connectPromise != null) {
+				promise.setFailure(new ConnectionPendingException());
+				return;
+			}
+			if (!(remoteAddress instanceof ShmAddress)) {
+				promise.setFailure(new UnsupportedAddressTypeException());
+				return;
+			}
+			connectPromise = promise;
+			ShmChannel.this.remoteAddress = (ShmAddress) remoteAddress;
+			try {
+				doConnect((ShmAddress) remoteAddress);
+			}
+			catch (Throwable ex) {
+				failConnect(ex);
+			}
+		}
+	}
+
+	/**
+	 * Handler of doorbell socket, passing wakeups and close to the channel.  Before connection is established on
+	 * client side, the first byte is handshake acknowledgement.
+	 */
+	private static class DoorbellHandler extends ChannelInboundHandlerAdapter
+	{
+		private final ShmChannel channel;
+
+		DoorbellHandler(ShmChannel channel)
+		{
+			this.channel = channel;
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg)
+		{
+			((ByteBuf) msg).release();
+			if (!channel.isRegistered()) {
+				// accepted channel not registered yet, it polls the ring once it starts reading:
+				return;
+			}
+			run(() -> {
+				if (channel.connectPromise != null) {
+					channel.onConnected();
+				}
+				channel.onDoorbell();
+			});
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx)
+		{
+			if (!channel.isRegistered()) {
+				channel.doorbellClosed = true;
+				return;
+			}
+			run(() -> {
+				if (channel.connectPromise != null) {
+					channel.failConnect(new ClosedChannelException());
+				}
+				else {
+					channel.onDoorbellClosed();
+				}
+			});
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+		{
+			log.debug("Error on shm doorbell: {}", channel, cause);
+			ctx.close();
+		}
+
+		private void run(Runnable task)
+		{
+			if (channel.eventLoop().inEventLoop()) {
+				task.run();
+			}
+			else {
+				channel.eventLoop().execute(task);
+			}
+		}
+	}
+}
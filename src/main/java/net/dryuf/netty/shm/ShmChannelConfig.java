@@ -0,0 +1,107 @@
+package net.dryuf.netty.shm;
+
+import io.netty.channel.ChannelOption;
+import net.dryuf.netty.core.DefaultDuplexChannelConfig;
+
+import java.util.Map;
+
+
+/**
+ * Config of {@link ShmChannel}.
+ */
+public class ShmChannelConfig extends DefaultDuplexChannelConfig
+{
+	/** Default ring capacity per direction. */
+	public static final int DEFAULT_RING_SIZE = 1024*1024;
+
+	public static final int MAX_RING_SIZE = 1<<29;
+
+	private volatile int ringSize = DEFAULT_RING_SIZE;
+
+	private volatile boolean busySpin;
+
+	public ShmChannelConfig(ShmChannel channel)
+	{
+		super(channel);
+	}
+
+	@Override
+	public Map<ChannelOption<?>, Object> getOptions()
+	{
+		return getOptions(super.getOptions(), ShmChannelOption.RING_SIZE, ShmChannelOption.BUSY_SPIN);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T getOption(ChannelOption<T> option)
+	{
+		if (option == ShmChannelOption.RING_SIZE) {
+			return (T) Integer.valueOf(getRingSize());
+		}
+		if (option == ShmChannelOption.BUSY_SPIN) {
+			return (T) Boolean.valueOf(isBusySpin());
+		}
+		return super.getOption(option);
+	}
+
+	@Override
+	public <T> boolean setOption(ChannelOption<T> option, T value)
+	{
+		validate(option, value);
+		if (option == ShmChannelOption.RING_SIZE) {
+			setRingSize((Integer) value);
+			return true;
+		}
+		if (option == ShmChannelOption.BUSY_SPIN) {
+			setBusySpin((Boolean) value);
+			return true;
+		}
+		return super.setOption(option, value);
+	}
+
+	public int getRingSize()
+	{
+		return ringSize;
+	}
+
+	/**
+	 * Sets ring capacity, effective for connecting channel only.
+	 *
+	 * @param ringSize
+	 * 	capacity per direction, rounded up to power of two
+	 *
+	 * @return
+	 * 	this config.
+	 */
+	public ShmChannelConfig setRingSize(int ringSize)
+	{
+		// both rings and header must fit into single int addressed mapping:
+		if (ringSize < 4096 || ringSize > MAX_RING_SIZE) {
+			throw new IllegalArgumentException("Ring size must be between 4 KiB and 512 MiB: "+ringSize);
+		}
+		this.ringSize = Integer.highestOneBit(ringSize-1)<<1;
+		return this;
+	}
+
+	public boolean isBusySpin()
+	{
+		return busySpin;
+	}
+
+	/**
+	 * Sets busy spinning, polling the ring on event loop instead of waiting for doorbell.  This saves wakeup
+	 * syscalls on both sides at the cost of fully occupying the event loop thread.
+	 *
+	 * @param busySpin
+	 * 	whether to busy spin
+	 *
+	 * @return
+	 * 	this config.
+	 */
+	public ShmChannelConfig setBusySpin(boolean busySpin)
+	{
+		this.busySpin = busySpin;
+		((ShmChannel) channel).onBusySpinChanged();
+		return this;
+	}
+}
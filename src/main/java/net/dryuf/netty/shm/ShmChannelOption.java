@@ -0,0 +1,22 @@
+package net.dryuf.netty.shm;
+
+import io.netty.channel.ChannelOption;
+
+
+/**
+ * Options specific to {@link ShmChannel}.
+ */
+public final class ShmChannelOption<T> extends ChannelOption<T>
+{
+	/** Capacity of ring buffer per direction, rounded up to power of two, applied by connecting side. */
+	public static final ChannelOption<Integer> RING_SIZE = valueOf(ShmChannelOption.class, "RING_SIZE");
+
+	/** Whether to poll the ring continuously instead of sleeping and waiting for doorbell. */
+	public static final ChannelOption<Boolean> BUSY_SPIN = valueOf(ShmChannelOption.class, "BUSY_SPIN");
+
+	@SuppressWarnings({ "unused", "deprecation" })
+	private ShmChannelOption()
+	{
+		super(null);
+	}
+}
@@ -0,0 +1,267 @@
+package net.dryuf.netty.shm;
+
+import io.netty.buffer.ByteBuf;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * Single producer, single consumer byte ring in shared memory.
+ *
+ * The positions grow monotonically and are masked on access.  Each of the header fields is written by one side only
+ * (except for waiting flags, which the other side clears) and sits on separate pair of cache lines, so the sides do
+ * not invalidate each other's lines with unrelated updates.
+ *
+ * Waiting flags avoid lost wakeups: the waiting side sets its flag and re-checks the ring, the other side checks the
+ * flag after publishing its position and clears it when it sends the wakeup.
+ */
+public class ShmRing
+{
+	/** Header size, two cache lines per field to defeat adjacent line prefetch. */
+	public static final int HEADER_SIZE = 640;
+
+	private static final int PRODUCER_POSITION = 0;
+	private static final int CONSUMER_POSITION = 128;
+	private static final int CONSUMER_WAITING = 256;
+	private static final int PRODUCER_WAITING = 384;
+	private static final int PRODUCER_CLOSED = 512;
+
+	private static final VarHandle LONG_HANDLE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	private static final VarHandle INT_HANDLE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+	private final ByteBuffer memory;
+
+	private final ByteBuf data;
+
+	private final int base;
+
+	private final int capacity;
+
+	private final int mask;
+
+	/** Local copy of own position, the shared one is only written. */
+	private long position;
+
+	/** Last seen position of the other side, refreshed only when needed. */
+	private long otherPosition;
+
+	/**
+	 * Creates ring view.
+	 *
+	 * @param memory
+	 * 	shared memory buffer
+	 * @param data
+	 * 	the same memory as ByteBuf, for bulk copies
+	 * @param offset
+	 * 	offset of ring header, must be cache line aligned
+	 * @param capacity
+	 * 	data capacity, must be power of two
+	 * @param producer
+	 * 	whether this side is producer
+	 */
+	public ShmRing(ByteBuffer memory, ByteBuf data, int offset, int capacity, boolean producer)
+	{
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Ring capacity must be power of two: "+capacity);
+		}
+		this.memory = memory;
+		this.data = data;
+		this.base = offset;
+		this.capacity = capacity;
+		this.mask = capacity-1;
+		this.position = (long) LONG_HANDLE.getVolatile(memory, base+(producer ? PRODUCER_POSITION : CONSUMER_POSITION));
+		this.otherPosition = (long) LONG_HANDLE.getVolatile(memory, base+(producer ? CONSUMER_POSITION : PRODUCER_POSITION));
+	}
+
+	/**
+	 * Computes size of ring including header.
+	 *
+	 * @param capacity
+	 * 	data capacity
+	 *
+	 * @return
+	 * 	total size of ring.
+	 */
+	public static int sizeOf(int capacity)
+	{
+		return HEADER_SIZE+capacity;
+	}
+
+	/**
+	 * Gets data capacity.
+	 *
+	 * @return
+	 * 	data capacity.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Copies data to ring, as much as fits, and publishes them.
+	 *
+	 * @param src
+	 * 	source buffer, its reader index is advanced
+	 *
+	 * @return
+	 * 	number of bytes written.
+	 */
+	public int offer(ByteBuf src)
+	{
+		int free = capacity-(int) (position-otherPosition);
+		if (free < src.readableBytes()) {
+			otherPosition = (long) LONG_HANDLE.getAcquire(memory, base+CONSUMER_POSITION);
+			free = capacity-(int) (position-otherPosition);
+		}
+		int length = Math.min(free, src.readableBytes());
+		if (length == 0) {
+			return 0;
+		}
+		int start = (int) position&mask;
+		int first = Math.min(length, capacity-start);
+		src.readBytes(data, base+HEADER_SIZE+start, first);
+		if (first < length) {
+			src.readBytes(data, base+HEADER_SIZE, length-first);
+		}
+		position += length;
+		// volatile so the following check of consumer waiting flag cannot be reordered before it:
+		LONG_HANDLE.setVolatile(memory, base+PRODUCER_POSITION, position);
+		return length;
+	}
+
+	/**
+	 * Copies available data from ring.
+	 *
+	 * @param dst
+	 * 	target buffer, its writer index is advanced
+	 * @param max
+	 * 	max number of bytes to copy
+	 *
+	 * @return
+	 * 	number of bytes read.
+	 */
+	public int poll(ByteBuf dst, int max)
+	{
+		int length = Math.min(available(), max);
+		if (length == 0) {
+			return 0;
+		}
+		int start = (int) position&mask;
+		int first = Math.min(length, capacity-start);
+		dst.writeBytes(data, base+HEADER_SIZE+start, first);
+		if (first < length) {
+			dst.writeBytes(data, base+HEADER_SIZE, length-first);
+		}
+		position += length;
+		LONG_HANDLE.setVolatile(memory, base+CONSUMER_POSITION, position);
+		return length;
+	}
+
+	/**
+	 * Gets number of bytes available to consumer.
+	 *
+	 * @return
+	 * 	number of available bytes.
+	 */
+	public int available()
+	{
+		if (otherPosition == position) {
+			otherPosition = (long) LONG_HANDLE.getAcquire(memory, base+PRODUCER_POSITION);
+		}
+		return (int) (otherPosition-position);
+	}
+
+	/**
+	 * Marks consumer as waiting for wakeup.
+	 *
+	 * @return
+	 * 	true if consumer should wait, false if data or close arrived meanwhile and the flag was cleared.
+	 */
+	public boolean waitConsumer()
+	{
+		INT_HANDLE.setVolatile(memory, base+CONSUMER_WAITING, 1);
+		if (available() != 0 || isClosed()) {
+			INT_HANDLE.setVolatile(memory, base+CONSUMER_WAITING, 0);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Marks producer as waiting for free space.
+	 *
+	 * @return
+	 * 	true if producer should wait, false if space was freed meanwhile and the flag was cleared.
+	 */
+	public boolean waitProducer()
+	{
+		INT_HANDLE.setVolatile(memory, base+PRODUCER_WAITING, 1);
+		otherPosition = (long) LONG_HANDLE.getVolatile(memory, base+CONSUMER_POSITION);
+		if (position-otherPosition < capacity) {
+			INT_HANDLE.setVolatile(memory, base+PRODUCER_WAITING, 0);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether consumer waits for wakeup, clearing the flag.  To be called by producer after publishing.
+	 *
+	 * @return
+	 * 	true if consumer needs to be woken up.
+	 */
+	public boolean takeConsumerWaiting()
+	{
+		return (int) INT_HANDLE.getVolatile(memory, base+CONSUMER_WAITING) != 0 &&
+			INT_HANDLE.compareAndSet(memory, base+CONSUMER_WAITING, 1, 0);
+	}
+
+	/**
+	 * Checks whether producer waits for free space, clearing the flag.  To be called by consumer after consuming.
+	 *
+	 * @return
+	 * 	true if producer needs to be woken up.
+	 */
+	public boolean takeProducerWaiting()
+	{
+		return (int) INT_HANDLE.getVolatile(memory, base+PRODUCER_WAITING) != 0 &&
+			INT_HANDLE.compareAndSet(memory, base+PRODUCER_WAITING, 1, 0);
+	}
+
+	/**
+	 * Marks the ring as closed by producer, no more data will be written.
+	 */
+	public void close()
+	{
+		INT_HANDLE.setVolatile(memory, base+PRODUCER_CLOSED, 1);
+	}
+
+	/**
+	 * Checks whether producer closed the ring.  The data published before close are available once this returns
+	 * true.
+	 *
+	 * @return
+	 * 	true if producer closed the ring.
+	 */
+	public boolean isClosed()
+	{
+		return (int) INT_HANDLE.getVolatile(memory, base+PRODUCER_CLOSED) != 0;
+	}
+
+	/**
+	 * Checks whether consumer read everything and producer closed the ring.
+	 *
+	 * @return
+	 * 	true if end of stream was reached.
+	 */
+	public boolean isEof()
+	{
+		// check closed first, the data published before are visible then:
+		return isClosed() && available() == 0;
+	}
+}
@@ -0,0 +1,215 @@
+package net.dryuf.netty.shm;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AbstractServerChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.EventLoop;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.provider.ChannelProvider;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+
+/**
+ * Server channel of shared memory transport, listening on domain socket and accepting {@link ShmChannel} once the
+ * client passes its ring file.
+ */
+@Log4j2
+public class ShmServerChannel extends AbstractServerChannel
+{
+	/** Max length of ring file name in handshake. */
+	private static final int MAX_HANDSHAKE_PATH = 4096;
+
+	private final ChannelProvider channelProvider;
+
+	private final ChannelConfig config = new DefaultChannelConfig(this);
+
+	private volatile boolean closed;
+
+	private volatile ShmAddress localAddress;
+
+	private volatile ServerChannel listener;
+
+	/**
+	 * Creates server channel.
+	 *
+	 * @param channelProvider
+	 * 	provider of domain socket channels
+	 */
+	public ShmServerChannel(ChannelProvider channelProvider)
+	{
+		this.channelProvider = channelProvider;
+	}
+
+	@Override
+	public ChannelConfig config()
+	{
+		return config;
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return !closed;
+	}
+
+	@Override
+	public boolean isActive()
+	{
+		ServerChannel listener = this.listener;
+		return !closed && listener != null && listener.isActive();
+	}
+
+	@Override
+	public ShmAddress localAddress()
+	{
+		return (ShmAddress) super.localAddress();
+	}
+
+	@Override
+	protected ShmAddress localAddress0()
+	{
+		return localAddress;
+	}
+
+	@Override
+	protected boolean isCompatible(EventLoop loop)
+	{
+		return true;
+	}
+
+	@Override
+	protected void doBind(SocketAddress localAddress) throws Exception
+	{
+		if (!(localAddress instanceof ShmAddress)) {
+			throw new IllegalArgumentException("Expected ShmAddress, got: "+localAddress.getClass().getName());
+		}
+		Path socketPath = Paths.get(((ShmAddress) localAddress).getPath()).toAbsolutePath();
+		SocketAddress listenAddress = channelProvider.convertAddress(new DomainSocketAddress(socketPath.toString()));
+		// running in our event loop, registration and bind complete synchronously:
+		ChannelFuture future = new ServerBootstrap()
+			.group(eventLoop())
+			.channelFactory(channelProvider.getServerChannel(null, listenAddress))
+			.childHandler(new ChannelInitializer<Channel>()
+			{
+				@Override
+				protected void initChannel(Channel ch)
+				{
+					ch.pipeline().addLast(new HandshakeHandler(socketPath));
+				}
+			})
+			.register();
+		if (future.isDone() && future.isSuccess()) {
+			future = future.channel().bind(listenAddress);
+		}
+		if (!future.isDone()) {
+			future.channel().close();
+			throw new IllegalStateException("Binding shm listener did not complete synchronously: "+socketPath);
+		}
+		if (!future.isSuccess()) {
+			future.channel().close();
+			throw future.cause() instanceof Exception ? (Exception) future.cause() : new IOException(future.cause());
+		}
+		this.listener = (ServerChannel) future.channel();
+		this.localAddress = new ShmAddress(socketPath.toString());
+	}
+
+	@Override
+	protected void doClose() throws Exception
+	{
+		closed = true;
+		if (listener != null) {
+			listener.close();
+		}
+	}
+
+	@Override
+	protected void doBeginRead() throws Exception
+	{
+		// connections are accepted by the listener and pushed to pipeline once handshake completes
+	}
+
+	private ShmChannel createChannel(Channel doorbell, Path file) throws IOException
+	{
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		if (!attributes.isRegularFile()) {
+			throw new IOException("Shm ring file not regular file: "+file);
+		}
+		int size = (int) Math.min(attributes.size(), Integer.MAX_VALUE);
+		if (size < ShmChannel.FILE_HEADER_SIZE) {
+			throw new IOException("Shm ring file too short: "+file);
+		}
+		ByteBuffer memory = ShmChannel.mapRingFile(file, size, false);
+		int capacity = memory.getInt(4);
+		if (memory.getInt(0) != ShmChannel.FILE_MAGIC || Integer.bitCount(capacity) != 1 ||
+			capacity > ShmChannelConfig.MAX_RING_SIZE || ShmChannel.getFileSize(capacity) != size) {
+			throw new IOException("Invalid shm ring file header: "+file);
+		}
+		return new ShmChannel(this, channelProvider, doorbell, memory, capacity, localAddress, new ShmAddress(file.toString()));
+	}
+
+	/**
+	 * Reads ring file name from client, maps it and creates the {@link ShmChannel}, passing the socket to it as
+	 * doorbell.
+	 */
+	private class HandshakeHandler extends ByteToMessageDecoder
+	{
+		private final Path socketPath;
+
+		HandshakeHandler(Path socketPath)
+		{
+			this.socketPath = socketPath;
+		}
+
+		@Override
+		protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
+		{
+			if (in.readableBytes() < 4) {
+				return;
+			}
+			int length = in.getInt(in.readerIndex());
+			if (length <= 0 || length > MAX_HANDSHAKE_PATH) {
+				throw new IOException("Invalid shm handshake length: "+length);
+			}
+			if (in.readableBytes() < 4+length) {
+				return;
+			}
+			Path file = Paths.get(in.toString(in.readerIndex()+4, length, StandardCharsets.UTF_8));
+			in.skipBytes(4+length);
+			// accept only files next to socket, so client cannot make us map arbitrary file:
+			if (!socketPath.getParent().equals(file.getParent()) || !file.getFileName().toString().startsWith(socketPath.getFileName()+"-")) {
+				throw new IOException("Invalid shm ring file location: "+file);
+			}
+			ShmChannel channel = createChannel(ctx.channel(), file);
+			ctx.writeAndFlush(ctx.alloc().buffer(1).writeByte(ShmChannel.HANDSHAKE_ACK));
+			ctx.pipeline().remove(this);
+			pipeline().fireChannelRead(channel);
+			pipeline().fireChannelReadComplete();
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+		{
+			log.warn("Failed shm handshake on: {}", socketPath, cause);
+			ctx.close();
+		}
+	}
+}
@@ -9,6 +9,7 @@ import lombok.Value;
 import lombok.experimental.Accessors;
 import lombok.extern.log4j.Log4j2;
 import net.dryuf.netty.core.NettyEngine;
+import net.dryuf.netty.core.NettyEngineRegistry;
 import net.dryuf.netty.core.Server;
 
 import java.net.SocketAddress;
@@ -37,17 +38,32 @@ public class ClientServerTester implements AutoCloseable
 
 	private final List<Server> servers = new ArrayList<>();
 
+	private final NettyEngineRegistry.Handle engineHandle;
+
 	/**
-	 * Creates the tester.
+	 * Creates the tester, using shared default engine from {@link NettyEngineRegistry}.
 	 */
 	public ClientServerTester()
 	{
-		this(new NettyEngine());
+		this(NettyEngineRegistry.getDefault().acquire(ClientServerTester.class.getSimpleName()));
 	}
 
+	/**
+	 * Creates the tester with engine owned by caller.
+	 *
+	 * @param nettyEngine
+	 * 	engine to use
+	 */
 	public ClientServerTester(NettyEngine nettyEngine)
 	{
 		this.nettyEngine = nettyEngine;
+		this.engineHandle = null;
+	}
+
+	private ClientServerTester(NettyEngineRegistry.Handle engineHandle)
+	{
+		this.nettyEngine = engineHandle.engine();
+		this.engineHandle = engineHandle;
 	}
 
 	/**
@@ -147,6 +163,9 @@ public class ClientServerTester implements AutoCloseable
 	public void close()
 	{
 		servers.forEach(s -> s.close());
+		if (engineHandle != null) {
+			engineHandle.close();
+		}
 	}
 
 	/**
@@ -0,0 +1,160 @@
+package net.dryuf.netty.tls;
+
+import io.netty.buffer.ByteBuf;
+
+
+/**
+ * Allocation-free parser of TLS ClientHello, extracting the SNI server name.
+ *
+ * The parser works on absolute indexes of buffer and does not modify the buffer.  The ClientHello is expected to fit
+ * into first TLS record, which is the case of all common clients.
+ */
+public class ClientHelloParser
+{
+	/** More data are needed to make a decision. */
+	public static final long NEED_MORE = -1;
+
+	/** The data are valid ClientHello but do not contain server name. */
+	public static final long NOT_FOUND = -2;
+
+	/** The data are not TLS ClientHello. */
+	public static final long INVALID = -3;
+
+	private static final int RECORD_HANDSHAKE = 22;
+
+	private static final int HANDSHAKE_CLIENT_HELLO = 1;
+
+	private static final int EXTENSION_SERVER_NAME = 0;
+
+	private static final int NAME_TYPE_HOST_NAME = 0;
+
+	/**
+	 * Finds SNI server name in TLS ClientHello.
+	 *
+	 * @param buf
+	 * 	buffer containing beginning of TLS connection, starting at readerIndex
+	 *
+	 * @return
+	 * 	encoded position of server name, see {@link #getOffset(long)} and {@link #getLength(long)}, or one of
+	 * 	{@link #NEED_MORE}, {@link #NOT_FOUND} or {@link #INVALID}.
+	 */
+	public static long findServerName(ByteBuf buf)
+	{
+		int start = buf.readerIndex();
+		int available = buf.readableBytes();
+		if (available < 5) {
+			return available >= 1 && buf.getUnsignedByte(start) != RECORD_HANDSHAKE ? INVALID : NEED_MORE;
+		}
+		if (buf.getUnsignedByte(start) != RECORD_HANDSHAKE || buf.getUnsignedByte(start+1) != 3) {
+			return INVALID;
+		}
+		int recordLength = buf.getUnsignedShort(start+3);
+		if (available < 5+recordLength) {
+			return NEED_MORE;
+		}
+		int end = start+5+recordLength;
+		int pos = start+5;
+		if (recordLength < 4 || buf.getUnsignedByte(pos) != HANDSHAKE_CLIENT_HELLO) {
+			return INVALID;
+		}
+		int helloEnd = pos+4+buf.getUnsignedMedium(pos+1);
+		if (helloEnd > end) {
+			// ClientHello fragmented over multiple records, not supported:
+			return NOT_FOUND;
+		}
+		// version and random:
+		pos += 4+2+32;
+		if (pos+1 > helloEnd) {
+			return INVALID;
+		}
+		// session id:
+		pos += 1+buf.getUnsignedByte(pos);
+		if (pos+2 > helloEnd) {
+			return INVALID;
+		}
+		// cipher suites:
+		pos += 2+buf.getUnsignedShort(pos);
+		if (pos+1 > helloEnd) {
+			return INVALID;
+		}
+		// compression methods:
+		pos += 1+buf.getUnsignedByte(pos);
+		if (pos == helloEnd) {
+			return NOT_FOUND;
+		}
+		if (pos+2 > helloEnd) {
+			return INVALID;
+		}
+		int extensionsEnd = pos+2+buf.getUnsignedShort(pos);
+		if (extensionsEnd > helloEnd) {
+			return INVALID;
+		}
+		pos += 2;
+		while (pos+4 <= extensionsEnd) {
+			int type = buf.getUnsignedShort(pos);
+			int length = buf.getUnsignedShort(pos+2);
+			pos += 4;
+			if (pos+length > extensionsEnd) {
+				return INVALID;
+			}
+			if (type == EXTENSION_SERVER_NAME) {
+				return parseServerNameList(buf, pos, pos+length);
+			}
+			pos += length;
+		}
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Gets offset of server name from encoded result.
+	 *
+	 * @param result
+	 * 	result of {@link #findServerName(ByteBuf)}
+	 *
+	 * @return
+	 * 	absolute offset of server name in buffer.
+	 */
+	public static int getOffset(long result)
+	{
+		return (int) (result >>> 32);
+	}
+
+	/**
+	 * Gets length of server name from encoded result.
+	 *
+	 * @param result
+	 * 	result of {@link #findServerName(ByteBuf)}
+	 *
+	 * @return
+	 * 	length of server name in buffer.
+	 */
+	public static int getLength(long result)
+	{
+		return (int) result;
+	}
+
+	private static long parseServerNameList(ByteBuf buf, int pos, int end)
+	{
+		if (pos+2 > end) {
+			return INVALID;
+		}
+		int listEnd = pos+2+buf.getUnsignedShort(pos);
+		if (listEnd > end) {
+			return INVALID;
+		}
+		pos += 2;
+		while (pos+3 <= listEnd) {
+			int nameType = buf.getUnsignedByte(pos);
+			int length = buf.getUnsignedShort(pos+1);
+			pos += 3;
+			if (pos+length > listEnd) {
+				return INVALID;
+			}
+			if (nameType == NAME_TYPE_HOST_NAME) {
+				return ((long) pos << 32) | length;
+			}
+			pos += length;
+		}
+		return NOT_FOUND;
+	}
+}
@@ -0,0 +1,92 @@
+package net.dryuf.netty.tls;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import net.dryuf.netty.pipeline.PeekingHandler;
+import net.dryuf.netty.util.ServerNameMatcher;
+
+import java.util.Optional;
+
+
+/**
+ * Handler peeking TLS ClientHello for SNI server name, without terminating TLS, and routing by the name.
+ *
+ * Must follow {@link net.dryuf.netty.pipeline.CumulatingByteBufHandler}.  The name is matched directly in the peeked
+ * data.  Non-TLS data, missing or unknown SNI, timeout, reaching max peek length or premature end of input result in
+ * no route.
+ *
+ * @param <T>
+ *      type of route
+ */
+public class SniPeekHandler<T> extends PeekingHandler<Optional<T>>
+{
+	private final ServerNameMatcher<T> routes;
+
+	private final Listener<T> listener;
+
+	/**
+	 * Creates handler.
+	 *
+	 * @param routes
+	 * 	compiled routes by server name
+	 * @param timeoutMs
+	 * 	max time to wait for ClientHello, in milliseconds
+	 * @param maxLength
+	 * 	max length of peeked data
+	 * @param listener
+	 * 	listener receiving the route
+	 */
+	public SniPeekHandler(ServerNameMatcher<T> routes, long timeoutMs, int maxLength, Listener<T> listener)
+	{
+		super(timeoutMs, maxLength);
+		this.routes = routes;
+		this.listener = listener;
+	}
+
+	@Override
+	protected Optional<T> decide(ByteBuf input)
+	{
+		long result = ClientHelloParser.findServerName(input);
+		if (result == ClientHelloParser.NEED_MORE) {
+			return null;
+		}
+		else if (result < 0) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(routes.match(input, ClientHelloParser.getOffset(result), ClientHelloParser.getLength(result)));
+	}
+
+	@Override
+	protected Optional<T> decideFinal(ByteBuf input)
+	{
+		return Optional.empty();
+	}
+
+	@Override
+	protected void onDecided(ChannelHandlerContext ctx, Optional<T> decision, ByteBuf peeked)
+	{
+		listener.onRoute(ctx, decision.orElse(null), peeked);
+	}
+
+	/**
+	 * Listener of SNI decision.
+	 *
+	 * @param <T>
+	 *      type of route
+	 */
+	@FunctionalInterface
+	public interface Listener<T>
+	{
+		/**
+		 * Called once the route is determined.
+		 *
+		 * @param ctx
+		 * 	channel context
+		 * @param route
+		 * 	route matching the server name or null if not available
+		 * @param peeked
+		 * 	peeked data, to be replayed and released by callee
+		 */
+		void onRoute(ChannelHandlerContext ctx, T route, ByteBuf peeked);
+	}
+}
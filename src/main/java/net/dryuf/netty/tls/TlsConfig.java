@@ -0,0 +1,58 @@
+package net.dryuf.netty.tls;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.io.File;
+import java.util.List;
+
+
+/**
+ * TLS configuration, used for both server (terminating) and client (originating) side.
+ */
+@Builder(builderClassName = "Builder", toBuilder = true)
+@Value
+public class TlsConfig
+{
+	/**
+	 * Certificate chain file in PEM format.  Required for server side, optional client certificate for client side.
+	 */
+	File certificateChain;
+	/**
+	 * Private key file in PEM format.
+	 */
+	File privateKey;
+	/**
+	 * Private key password, if any.
+	 */
+	String privateKeyPassword;
+	/**
+	 * Trusted certificates in PEM format.  If not specified, system default trust store is used.
+	 */
+	File trustCertificates;
+	/**
+	 * Disables peer certificate verification.  For testing only.
+	 */
+	boolean insecure;
+	/**
+	 * Server name sent in SNI and verified against certificate.  Defaults to host of connect address.
+	 */
+	String serverName;
+	/**
+	 * Application protocols offered or accepted via ALPN.
+	 */
+	List<String> applicationProtocols;
+	/**
+	 * Enables client session reuse per backend.  Server side session cache and tickets are always enabled.
+	 */
+	@Builder.Default
+	boolean sessionResumption = true;
+	/**
+	 * Size of session cache, 0 for provider default.
+	 */
+	long sessionCacheSize;
+	/**
+	 * Session timeout in seconds, 0 for provider default.
+	 */
+	long sessionTimeout;
+}
@@ -0,0 +1,201 @@
+package net.dryuf.netty.tls;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.NetUtil;
+import net.dryuf.netty.address.AddressSpec;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Factory and cache of {@link SslContext} instances.
+ *
+ * Contexts are cached per configuration so the session caches are shared across connections, which enables session
+ * resumption.  OpenSSL provider is used when available on classpath, JDK provider otherwise.
+ */
+public class TlsContextFactory
+{
+	private final ConcurrentMap<List<Object>, SslContext> contexts = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets SSL provider, OpenSSL if available, JDK otherwise.
+	 *
+	 * @return
+	 * 	preferred SSL provider.
+	 */
+	public static SslProvider getSslProvider()
+	{
+		return OpenSsl.isAvailable() ? SslProvider.OPENSSL : SslProvider.JDK;
+	}
+
+	/**
+	 * Gets server context for configuration.
+	 *
+	 * @param config
+	 * 	TLS configuration
+	 *
+	 * @return
+	 * 	server SslContext.
+	 */
+	public SslContext getServerContext(TlsConfig config)
+	{
+		return contexts.computeIfAbsent(Arrays.asList("server", config), (key) -> createServerContext(config));
+	}
+
+	/**
+	 * Gets client context for configuration.
+	 *
+	 * @param config
+	 * 	TLS configuration
+	 * @param applicationProtocol
+	 * 	ALPN protocol overriding the configured ones, typically passed through from client, null to use configured
+	 *
+	 * @return
+	 * 	client SslContext.
+	 */
+	public SslContext getClientContext(TlsConfig config, String applicationProtocol)
+	{
+		return contexts.computeIfAbsent(
+			Arrays.asList("client", config, applicationProtocol),
+			(key) -> createClientContext(config, applicationProtocol)
+		);
+	}
+
+	/**
+	 * Creates server side handler.
+	 *
+	 * @param config
+	 * 	TLS configuration
+	 * @param alloc
+	 * 	buffer allocator
+	 *
+	 * @return
+	 * 	new SslHandler.
+	 */
+	public SslHandler newServerHandler(TlsConfig config, ByteBufAllocator alloc)
+	{
+		return getServerContext(config).newHandler(alloc);
+	}
+
+	/**
+	 * Creates client side handler.  With session resumption enabled, the session is reused per backend.
+	 *
+	 * @param config
+	 * 	TLS configuration
+	 * @param applicationProtocol
+	 * 	ALPN protocol overriding the configured ones, null to use configured
+	 * @param alloc
+	 * 	buffer allocator
+	 * @param peer
+	 * 	backend address
+	 *
+	 * @return
+	 * 	new SslHandler.
+	 */
+	public SslHandler newClientHandler(TlsConfig config, String applicationProtocol, ByteBufAllocator alloc, AddressSpec peer)
+	{
+		SslContext context = getClientContext(config, applicationProtocol);
+		String peerHost = Optional.ofNullable(config.getServerName()).orElse(peer.getHost());
+		if (peerHost == null) {
+			return context.newHandler(alloc);
+		}
+		// JDK caches client sessions by peer host and port, without them the engine never resumes:
+		SslHandler handler = config.isSessionResumption() ?
+			context.newHandler(alloc, peerHost, peer.getPort()) :
+			context.newHandler(alloc);
+		SSLEngine engine = handler.engine();
+		SSLParameters parameters = engine.getSSLParameters();
+		if (!config.isSessionResumption() && !NetUtil.isValidIpV4Address(peerHost) && !NetUtil.isValidIpV6Address(peerHost)) {
+			parameters.setServerNames(Collections.singletonList(new SNIHostName(peerHost)));
+		}
+		if (!config.isInsecure()) {
+			parameters.setEndpointIdentificationAlgorithm("HTTPS");
+		}
+		engine.setSSLParameters(parameters);
+		return handler;
+	}
+
+	private SslContext createServerContext(TlsConfig config)
+	{
+		try {
+			SslContextBuilder builder = SslContextBuilder.forServer(config.getCertificateChain(), config.getPrivateKey(), config.getPrivateKeyPassword())
+				.sslProvider(getSslProvider());
+			if (config.getTrustCertificates() != null) {
+				builder.trustManager(config.getTrustCertificates());
+			}
+			if (config.getApplicationProtocols() != null) {
+				builder.applicationProtocolConfig(new ApplicationProtocolConfig(
+					ApplicationProtocolConfig.Protocol.ALPN,
+					ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+					ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+					config.getApplicationProtocols()
+				));
+			}
+			if (config.getSessionCacheSize() != 0) {
+				builder.sessionCacheSize(config.getSessionCacheSize());
+			}
+			if (config.getSessionTimeout() != 0) {
+				builder.sessionTimeout(config.getSessionTimeout());
+			}
+			return builder.build();
+		}
+		catch (SSLException ex) {
+			throw new UncheckedIOException("Failed to create server TLS context: "+ex.getMessage(), ex);
+		}
+	}
+
+	private SslContext createClientContext(TlsConfig config, String applicationProtocol)
+	{
+		try {
+			SslContextBuilder builder = SslContextBuilder.forClient()
+				.sslProvider(getSslProvider());
+			if (config.getCertificateChain() != null) {
+				builder.keyManager(config.getCertificateChain(), config.getPrivateKey(), config.getPrivateKeyPassword());
+			}
+			if (config.isInsecure()) {
+				builder.trustManager(InsecureTrustManagerFactory.INSTANCE);
+			}
+			else if (config.getTrustCertificates() != null) {
+				builder.trustManager(config.getTrustCertificates());
+			}
+			List<String> protocols = applicationProtocol != null ?
+				Collections.singletonList(applicationProtocol) :
+				config.getApplicationProtocols();
+			if (protocols != null) {
+				builder.applicationProtocolConfig(new ApplicationProtocolConfig(
+					ApplicationProtocolConfig.Protocol.ALPN,
+					ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+					ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+					protocols
+				));
+			}
+			if (config.getSessionCacheSize() != 0) {
+				builder.sessionCacheSize(config.getSessionCacheSize());
+			}
+			if (config.getSessionTimeout() != 0) {
+				builder.sessionTimeout(config.getSessionTimeout());
+			}
+			return builder.build();
+		}
+		catch (SSLException ex) {
+			throw new UncheckedIOException("Failed to create client TLS context: "+ex.getMessage(), ex);
+		}
+	}
+}
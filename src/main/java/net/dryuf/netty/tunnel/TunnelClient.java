@@ -0,0 +1,179 @@
+package net.dryuf.netty.tunnel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.base.concurrent.future.FutureUtil;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.ConnectOptions;
+import net.dryuf.netty.core.NettyEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Entry side of tunnel, spreading streams across pool of persistent tunnel connections.
+ *
+ * Connections are established lazily, up to {@link TunnelOptions#getConnections()}, and reestablished once they
+ * fail.
+ */
+@Log4j2
+public class TunnelClient implements AutoCloseable
+{
+	private final NettyEngine nettyEngine;
+
+	private final AddressSpec address;
+
+	private final ConnectOptions connectOptions;
+
+	private final TunnelOptions options;
+
+	private final List<CompletableFuture<TunnelSession>> sessions = new ArrayList<>();
+
+	private int next;
+
+	/** Number of streams opened and not finished yet. */
+	private int openStreams;
+
+	private boolean closed;
+
+	/**
+	 * Creates client.
+	 *
+	 * @param nettyEngine
+	 * 	engine
+	 * @param address
+	 * 	address of tunnel exit
+	 * @param connectOptions
+	 * 	options of tunnel connections
+	 * @param options
+	 * 	tunnel options
+	 */
+	public TunnelClient(NettyEngine nettyEngine, AddressSpec address, ConnectOptions connectOptions, TunnelOptions options)
+	{
+		this.nettyEngine = nettyEngine;
+		this.address = address;
+		this.connectOptions = connectOptions;
+		this.options = options;
+	}
+
+	/**
+	 * Opens new stream, forwarding local channel through one of tunnel connections.
+	 *
+	 * @param local
+	 * 	local channel, with auto read disabled
+	 * @param initial
+	 * 	data already read from local channel, ownership is transferred, null if none
+	 *
+	 * @return
+	 * 	future completed once stream is finished, local channel is closed at that time.
+	 */
+	public CompletableFuture<Void> openStream(DuplexChannel local, ByteBuf initial)
+	{
+		CompletableFuture<TunnelSession> session;
+		try {
+			session = pickSession();
+		}
+		catch (Throwable ex) {
+			ReferenceCountUtil.release(initial);
+			return FutureUtil.exception(ex);
+		}
+		return session.handle((s, ex) -> {
+			if (ex != null) {
+				ReferenceCountUtil.release(initial);
+				return FutureUtil.<Void>exception(ex);
+			}
+			return s.openStream(local, initial);
+		})
+			.thenCompose(f -> f)
+			.whenComplete((v, ex) -> streamFinished());
+	}
+
+	/**
+	 * Gets number of active tunnel connections.
+	 *
+	 * @return
+	 * 	number of connections.
+	 */
+	public synchronized int getConnectionCount()
+	{
+		return (int) sessions.stream()
+			.filter(f -> f.isDone() && !f.isCompletedExceptionally() && f.join().isActive())
+			.count();
+	}
+
+	/**
+	 * Closes the client, including all tunnel connections and their streams.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		closed = true;
+		closeSessions();
+	}
+
+	/**
+	 * Closes the client once currently open streams finish.  New streams are rejected immediately.
+	 */
+	public synchronized void closeGracefully()
+	{
+		closed = true;
+		if (openStreams == 0) {
+			closeSessions();
+		}
+	}
+
+	private void closeSessions()
+	{
+		sessions.forEach(f -> f.thenAccept(TunnelSession::close));
+		sessions.clear();
+	}
+
+	private synchronized void streamFinished()
+	{
+		if (--openStreams == 0 && closed) {
+			closeSessions();
+		}
+	}
+
+	private synchronized CompletableFuture<TunnelSession> pickSession()
+	{
+		if (closed) {
+			throw new IllegalStateException("Tunnel client closed");
+		}
+		sessions.removeIf(f -> f.isCompletedExceptionally() || (f.isDone() && !f.join().isActive()));
+		++openStreams;
+		if (sessions.size() < options.getConnections()) {
+			CompletableFuture<TunnelSession> session = connect();
+			sessions.add(session);
+			return session;
+		}
+		next = (next+1)%sessions.size();
+		return sessions.get(next);
+	}
+
+	private CompletableFuture<TunnelSession> connect()
+	{
+		TunnelSession session = new TunnelSession(nettyEngine, options, null);
+		return nettyEngine.connect(address, connectOptions, new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch)
+				{
+					session.install(ch);
+				}
+			},
+			null
+		)
+			.whenComplete((channel, ex) -> {
+				if (ex != null) {
+					log.warn("Failed to connect tunnel: address={}", address, ex);
+				}
+			})
+			.thenApply(channel -> session);
+	}
+}
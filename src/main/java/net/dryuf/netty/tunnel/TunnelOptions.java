@@ -0,0 +1,28 @@
+package net.dryuf.netty.tunnel;
+
+import lombok.Builder;
+import lombok.Value;
+
+
+/**
+ * Options of stream multiplexing tunnel, see {@link TunnelClient} and {@link TunnelSession}.
+ */
+@Builder(builderClassName = "Builder", toBuilder = true)
+@Value
+public class TunnelOptions
+{
+	/** Default options. */
+	public static final TunnelOptions DEFAULT = TunnelOptions.builder().build();
+
+	/** Number of persistent tunnel connections the streams are spread across. */
+	@Builder.Default
+	int connections = 2;
+
+	/** Number of bytes sender may send on stream before receiver confirms they were consumed. */
+	@Builder.Default
+	int streamWindow = 256*1024;
+
+	/** Max length of frame payload, longer data are split. */
+	@Builder.Default
+	int maxFrameLength = 64*1024;
+}
@@ -0,0 +1,43 @@
+package net.dryuf.netty.tunnel;
+
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+
+/**
+ * Framing of tunnel protocol.
+ *
+ * Each frame starts with header of stream id (4 bytes), type (1 byte) and payload length (4 bytes), all big endian,
+ * followed by payload:
+ * <ul>
+ * <li>{@link #OPEN} opens stream, sent by the side which accepted the client, with empty payload</li>
+ * <li>{@link #DATA} carries stream data</li>
+ * <li>{@link #WINDOW_UPDATE} confirms the payload number of bytes (4 bytes integer) was consumed by receiver</li>
+ * <li>{@link #SHUTDOWN} signals sender shut down its input, same as {@link
+ * io.netty.channel.socket.ChannelInputShutdownEvent}</li>
+ * <li>{@link #CLOSE} aborts stream, after its local channel was closed or failed</li>
+ * </ul>
+ * Stream is finished once both sides sent SHUTDOWN or either of them sent CLOSE.
+ */
+final class TunnelProtocol
+{
+	static final int HEADER_LENGTH = 9;
+
+	static final byte OPEN = 1;
+
+	static final byte DATA = 2;
+
+	static final byte WINDOW_UPDATE = 3;
+
+	static final byte SHUTDOWN = 4;
+
+	static final byte CLOSE = 5;
+
+	private TunnelProtocol()
+	{
+	}
+
+	static LengthFieldBasedFrameDecoder newDecoder(int maxFrameLength)
+	{
+		return new LengthFieldBasedFrameDecoder(HEADER_LENGTH+maxFrameLength, 5, 4, 0, 0);
+	}
+}
@@ -0,0 +1,562 @@
+package net.dryuf.netty.tunnel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.core.NettyEngine;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+
+/**
+ * Tunnel connection multiplexing streams, see {@link TunnelProtocol} for framing.
+ *
+ * Streams are opened by the side which accepts clients, using {@link #openStream(DuplexChannel, ByteBuf)}, the
+ * other side connects each stream to its target using the opener.  The state of all streams is confined to event
+ * loop of tunnel channel, events of local channels are passed to it.
+ *
+ * Each stream direction has its own window, sender reads its local channel only while the window is open and
+ * receiver reopens it once the data are written to its local channel, so a stream with slow consumer does not block
+ * the other streams.  Frames produced within single loop iteration are flushed together.
+ */
+@Log4j2
+public class TunnelSession extends ChannelInboundHandlerAdapter
+{
+	private final NettyEngine nettyEngine;
+
+	private final TunnelOptions options;
+
+	private final Function<ChannelHandler, CompletableFuture<DuplexChannel>> opener;
+
+	private final Map<Integer, Stream> streams = new HashMap<>();
+
+	private final List<Stream> dirty = new ArrayList<>();
+
+	private final CompletableFuture<Void> closedFuture = new CompletableFuture<>();
+
+	private Channel tunnel;
+
+	private EventLoop loop;
+
+	private int nextStreamId = 1;
+
+	private boolean flushScheduled;
+
+	private volatile boolean closed;
+
+	private volatile int streamCount;
+
+	/**
+	 * Creates session.
+	 *
+	 * @param nettyEngine
+	 * 	engine
+	 * @param options
+	 * 	tunnel options
+	 * @param opener
+	 * 	function connecting stream to its target, given the handler to install into the target channel, null if
+	 * 	this side does not accept streams
+	 */
+	public TunnelSession(NettyEngine nettyEngine, TunnelOptions options, Function<ChannelHandler, CompletableFuture<DuplexChannel>> opener)
+	{
+		this.nettyEngine = nettyEngine;
+		this.options = options;
+		this.opener = opener;
+	}
+
+	/**
+	 * Installs session into tunnel channel, together with frame decoder.
+	 *
+	 * @param tunnel
+	 * 	tunnel channel
+	 *
+	 * @return
+	 * 	this session.
+	 */
+	public TunnelSession install(Channel tunnel)
+	{
+		tunnel.pipeline().addLast(TunnelProtocol.newDecoder(options.getMaxFrameLength()), this);
+		return this;
+	}
+
+	/**
+	 * Checks whether the tunnel can still carry new streams.
+	 *
+	 * @return
+	 * 	true if tunnel is active.
+	 */
+	public boolean isActive()
+	{
+		return !closed && tunnel != null && tunnel.isActive();
+	}
+
+	/**
+	 * Gets number of currently open streams.
+	 *
+	 * @return
+	 * 	number of streams.
+	 */
+	public int getStreamCount()
+	{
+		return streamCount;
+	}
+
+	/**
+	 * Gets future completed once tunnel is closed.
+	 *
+	 * @return
+	 * 	future completed at close.
+	 */
+	public CompletableFuture<Void> closedFuture()
+	{
+		return closedFuture;
+	}
+
+	/**
+	 * Closes the tunnel, including all its streams.
+	 */
+	public void close()
+	{
+		tunnel.close();
+	}
+
+	/**
+	 * Opens new stream, forwarding local channel through the tunnel.
+	 *
+	 * @param local
+	 * 	local channel, with auto read disabled
+	 * @param initial
+	 * 	data already read from local channel, ownership is transferred, null if none
+	 *
+	 * @return
+	 * 	future completed once stream is finished, local channel is closed at that time.
+	 */
+	public CompletableFuture<Void> openStream(DuplexChannel local, ByteBuf initial)
+	{
+		CompletableFuture<Void> finished = new CompletableFuture<>();
+		loop.execute(() -> {
+			if (closed) {
+				ReferenceCountUtil.release(initial);
+				local.close();
+				finished.completeExceptionally(new ClosedChannelException());
+				return;
+			}
+			Stream stream = new Stream(allocateStreamId(), finished);
+			writeFrame(stream.id, TunnelProtocol.OPEN, null);
+			if (initial != null && initial.isReadable()) {
+				stream.sendData(initial);
+			}
+			else {
+				ReferenceCountUtil.release(initial);
+			}
+			local.pipeline().addLast(new LocalHandler(stream));
+			stream.attach(local);
+		});
+		return finished;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx)
+	{
+		tunnel = ctx.channel();
+		loop = tunnel.eventLoop();
+		tunnel.config().setAutoRead(true);
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg)
+	{
+		ByteBuf frame = (ByteBuf) msg;
+		int id = frame.readInt();
+		byte type = frame.readByte();
+		frame.skipBytes(4);
+		if (type == TunnelProtocol.DATA) {
+			Stream stream = streams.get(id);
+			if (stream != null) {
+				stream.receive(frame);
+			}
+			else {
+				frame.release();
+			}
+			return;
+		}
+		int increment = type == TunnelProtocol.WINDOW_UPDATE ? frame.readInt() : 0;
+		frame.release();
+		Stream stream = streams.get(id);
+		switch (type) {
+		case TunnelProtocol.OPEN:
+			if (opener == null || stream != null) {
+				throw new IllegalStateException("Unexpected stream open: stream="+id);
+			}
+			openRemote(id);
+			break;
+
+		case TunnelProtocol.WINDOW_UPDATE:
+			if (stream != null) {
+				stream.windowUpdate(increment);
+			}
+			break;
+
+		case TunnelProtocol.SHUTDOWN:
+			if (stream != null) {
+				stream.remoteShutdown();
+			}
+			break;
+
+		case TunnelProtocol.CLOSE:
+			if (stream != null) {
+				stream.terminate();
+			}
+			break;
+
+		default:
+			throw new IllegalStateException("Unexpected tunnel frame: type="+type);
+		}
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx)
+	{
+		for (Stream stream: dirty) {
+			stream.dirty = false;
+			if (stream.local != null) {
+				stream.local.flush();
+			}
+		}
+		dirty.clear();
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx)
+	{
+		if (ctx.channel().isWritable()) {
+			new ArrayList<>(streams.values()).forEach(Stream::read);
+		}
+		ctx.fireChannelWritabilityChanged();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx)
+	{
+		closed = true;
+		new ArrayList<>(streams.values()).forEach(Stream::terminate);
+		closedFuture.complete(null);
+		ctx.fireChannelInactive();
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+	{
+		log.error("Tunnel failed, closing: channel={}", ctx.channel(), cause);
+		ctx.close();
+	}
+
+	private int allocateStreamId()
+	{
+		int id;
+		do {
+			id = nextStreamId;
+			nextStreamId = nextStreamId+2 > 0 ? nextStreamId+2 : 1;
+		} while (streams.containsKey(id));
+		return id;
+	}
+
+	private void openRemote(int id)
+	{
+		Stream stream = new Stream(id, new CompletableFuture<>());
+		stream.pending = new ArrayDeque<>();
+		CompletableFuture<DuplexChannel> future;
+		try {
+			future = opener.apply(new LocalHandler(stream));
+		}
+		catch (Throwable ex) {
+			future = CompletableFuture.failedFuture(ex);
+		}
+		future.whenComplete((local, ex) -> execute(() -> {
+			if (ex != null) {
+				log.info("Failed to connect tunnel stream: stream={} tunnel={}", id, tunnel, ex);
+				stream.abort();
+			}
+			else {
+				stream.attach(local);
+			}
+		}));
+	}
+
+	private void writeFrame(int id, byte type, ByteBuf payload)
+	{
+		int length = payload == null ? 0 : payload.readableBytes();
+		tunnel.write(tunnel.alloc().buffer(TunnelProtocol.HEADER_LENGTH).writeInt(id).writeByte(type).writeInt(length),
+			tunnel.voidPromise());
+		if (payload != null) {
+			tunnel.write(payload, tunnel.voidPromise());
+		}
+		if (!flushScheduled) {
+			flushScheduled = true;
+			loop.execute(() -> {
+				flushScheduled = false;
+				tunnel.flush();
+			});
+		}
+	}
+
+	private void execute(Runnable task)
+	{
+		if (loop.inEventLoop()) {
+			task.run();
+		}
+		else {
+			loop.execute(task);
+		}
+	}
+
+	/**
+	 * Single stream, accessed from tunnel event loop only.
+	 */
+	private class Stream
+	{
+		final int id;
+
+		final CompletableFuture<Void> finished;
+
+		DuplexChannel local;
+
+		/** Data received before local channel was connected. */
+		ArrayDeque<ByteBuf> pending;
+
+		long sendWindow = options.getStreamWindow();
+
+		int consumed;
+
+		boolean localShutdown;
+
+		boolean remoteShutdown;
+
+		boolean outputShutdown;
+
+		boolean dirty;
+
+		boolean closed;
+
+		Stream(int id, CompletableFuture<Void> finished)
+		{
+			this.id = id;
+			this.finished = finished;
+			streams.put(id, this);
+			streamCount = streams.size();
+		}
+
+		void attach(DuplexChannel local)
+		{
+			if (closed) {
+				local.close();
+				return;
+			}
+			this.local = local;
+			local.closeFuture().addListener(f -> execute(this::localClosed));
+			if (pending != null) {
+				pending.forEach(this::write);
+				pending = null;
+				local.flush();
+			}
+			if (remoteShutdown) {
+				shutdownOutput();
+			}
+			read();
+		}
+
+		void read()
+		{
+			if (closed || localShutdown || local == null) {
+				return;
+			}
+			if (sendWindow > 0 && tunnel.isWritable()) {
+				local.read();
+			}
+		}
+
+		void sendData(ByteBuf data)
+		{
+			if (closed || localShutdown) {
+				data.release();
+				return;
+			}
+			sendWindow -= data.readableBytes();
+			while (data.readableBytes() > options.getMaxFrameLength()) {
+				writeFrame(id, TunnelProtocol.DATA, data.readRetainedSlice(options.getMaxFrameLength()));
+			}
+			writeFrame(id, TunnelProtocol.DATA, data);
+		}
+
+		void sendShutdown()
+		{
+			if (closed || localShutdown) {
+				return;
+			}
+			localShutdown = true;
+			writeFrame(id, TunnelProtocol.SHUTDOWN, null);
+			checkFinished();
+		}
+
+		void receive(ByteBuf data)
+		{
+			if (closed) {
+				data.release();
+			}
+			else if (local == null) {
+				pending.add(data);
+			}
+			else {
+				write(data);
+				if (!dirty) {
+					dirty = true;
+					TunnelSession.this.dirty.add(this);
+				}
+			}
+		}
+
+		void write(ByteBuf data)
+		{
+			int length = data.readableBytes();
+			local.write(data).addListener(f -> {
+				if (f.isSuccess()) {
+					execute(() -> consumed(length));
+				}
+			});
+		}
+
+		void consumed(int length)
+		{
+			if (closed) {
+				return;
+			}
+			consumed += length;
+			if (consumed >= options.getStreamWindow()/2) {
+				writeFrame(id, TunnelProtocol.WINDOW_UPDATE, tunnel.alloc().buffer(4).writeInt(consumed));
+				consumed = 0;
+			}
+		}
+
+		void windowUpdate(int increment)
+		{
+			boolean wasClosed = sendWindow <= 0;
+			sendWindow += increment;
+			if (wasClosed) {
+				read();
+			}
+		}
+
+		void remoteShutdown()
+		{
+			remoteShutdown = true;
+			if (local != null) {
+				shutdownOutput();
+			}
+		}
+
+		void shutdownOutput()
+		{
+			nettyEngine.shutdownOutput(local)
+				.whenComplete((v, ex) -> execute(() -> {
+					outputShutdown = true;
+					checkFinished();
+				}));
+		}
+
+		void checkFinished()
+		{
+			if (localShutdown && outputShutdown) {
+				terminate();
+			}
+		}
+
+		void localClosed()
+		{
+			if (!closed) {
+				abort();
+			}
+		}
+
+		void abort()
+		{
+			if (!closed) {
+				writeFrame(id, TunnelProtocol.CLOSE, null);
+				terminate();
+			}
+		}
+
+		void terminate()
+		{
+			if (closed) {
+				return;
+			}
+			closed = true;
+			streams.remove(id);
+			streamCount = streams.size();
+			if (pending != null) {
+				pending.forEach(ByteBuf::release);
+				pending = null;
+			}
+			if (local != null) {
+				local.flush();
+				local.close();
+			}
+			finished.complete(null);
+		}
+	}
+
+	/**
+	 * Handler of local channel, passing its events to tunnel loop.
+	 */
+	private class LocalHandler extends ChannelInboundHandlerAdapter
+	{
+		private final Stream stream;
+
+		LocalHandler(Stream stream)
+		{
+			this.stream = stream;
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg)
+		{
+			execute(() -> stream.sendData((ByteBuf) msg));
+		}
+
+		@Override
+		public void channelReadComplete(ChannelHandlerContext ctx)
+		{
+			execute(stream::read);
+		}
+
+		@Override
+		public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception
+		{
+			if (evt instanceof ChannelInputShutdownEvent) {
+				execute(stream::sendShutdown);
+			}
+			super.userEventTriggered(ctx, evt);
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+		{
+			log.debug("Tunnel stream failed: stream={} channel={}", stream.id, ctx.channel(), cause);
+			ctx.close();
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package net.dryuf.netty.util;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.lang3.SystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * CPU affinity of threads, Linux only.
+ *
+ * The affinity is set by sched_setaffinity, performed by taskset utility on the native thread id found via
+ * /proc/thread-self, so neither native library nor privileges are needed.  The utility is looked up only at fixed
+ * system locations, never via PATH.  Starting the process is expensive, so callers should pin threads from outside of
+ * event loops, see {@link #setThreadsAffinity(Map)}.  On other systems or if taskset is not available, the calls do
+ * nothing and report failure.
+ */
+@Log4j2
+public class CpuAffinity
+{
+	private static final Path THREAD_SELF = Paths.get("/proc/thread-self");
+
+	private static final List<String> TASKSET_PATHS = Arrays.asList("/usr/bin/taskset", "/bin/taskset");
+
+	private static final String TASKSET = findTaskset();
+
+	/**
+	 * Checks whether setting affinity is supported.
+	 *
+	 * @return
+	 * 	true if affinity can be set.
+	 */
+	public static boolean isSupported()
+	{
+		return TASKSET != null;
+	}
+
+	/**
+	 * Gets native id of current thread.
+	 *
+	 * @return
+	 * 	native thread id or null if not supported.
+	 */
+	public static String getCurrentThreadId()
+	{
+		if (TASKSET == null) {
+			return null;
+		}
+		try {
+			return Files.readSymbolicLink(THREAD_SELF).getFileName().toString();
+		}
+		catch (IOException ex) {
+			log.warn("Failed to get native thread id: thread={}", Thread.currentThread().getName(), ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Sets affinity of current thread.  Runs external process, so should not be called from event loop.
+	 *
+	 * @param cpus
+	 * 	CPUs the thread may run on
+	 *
+	 * @return
+	 * 	true if the affinity was set, false if not supported or failed.
+	 */
+	public static boolean setCurrentThreadAffinity(Collection<Integer> cpus)
+	{
+		String tid = getCurrentThreadId();
+		return tid != null && setThreadsAffinity(Collections.singletonMap(tid, cpus));
+	}
+
+	/**
+	 * Sets affinity of multiple threads at once.  Runs external processes, so should not be called from event loop.
+	 *
+	 * @param affinities
+	 * 	CPUs the threads may run on, by native thread id as returned by {@link #getCurrentThreadId()}
+	 *
+	 * @return
+	 * 	true if the affinity was set for all threads, false if not supported or any failed.
+	 */
+	public static boolean setThreadsAffinity(Map<String, ? extends Collection<Integer>> affinities)
+	{
+		if (TASKSET == null) {
+			return false;
+		}
+		boolean result = true;
+		for (Map.Entry<String, ? extends Collection<Integer>> entry: affinities.entrySet()) {
+			String cpuList = entry.getValue().stream().map(String::valueOf).collect(Collectors.joining(","));
+			try {
+				Process process = new ProcessBuilder(TASKSET, "-p", "-c", cpuList, entry.getKey())
+					.redirectErrorStream(true)
+					.start();
+				String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+				if (process.waitFor() != 0) {
+					log.warn("Failed to set CPU affinity: tid={} cpus={} : {}", entry.getKey(), cpuList, output);
+					result = false;
+				}
+			}
+			catch (IOException ex) {
+				log.warn("Failed to set CPU affinity: tid={} cpus={}", entry.getKey(), cpuList, ex);
+				result = false;
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets affinity of current thread.
+	 *
+	 * @return
+	 * 	CPU list of current thread, such as 0-3,6, null if not supported.
+	 */
+	public static String getCurrentThreadAffinity()
+	{
+		if (TASKSET == null) {
+			return null;
+		}
+		try (Stream<String> lines = Files.lines(THREAD_SELF.resolve("status"))) {
+			return lines.filter(line -> line.startsWith("Cpus_allowed_list:"))
+				.map(line -> line.substring(line.indexOf(':')+1).trim())
+				.findFirst()
+				.orElse(null);
+		}
+		catch (IOException ex) {
+			return null;
+		}
+	}
+
+	private static String findTaskset()
+	{
+		if (!SystemUtils.IS_OS_LINUX || !Files.exists(THREAD_SELF)) {
+			log.warn("CPU affinity not supported, threads run unpinned: {} not available", THREAD_SELF);
+			return null;
+		}
+		for (String path: TASKSET_PATHS) {
+			if (new File(path).canExecute()) {
+				return path;
+			}
+		}
+		log.warn("CPU affinity not supported, threads run unpinned: taskset not found at {}", TASKSET_PATHS);
+		return null;
+	}
+}
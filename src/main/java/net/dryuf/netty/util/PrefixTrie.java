@@ -0,0 +1,162 @@
+package net.dryuf.netty.util;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Precompiled byte prefix trie, matching the longest registered prefix.
+ *
+ * The trie is compiled into flat transition table, so the matching cost depends only on length of prefix, not on
+ * number of rules.
+ *
+ * @param <T>
+ *      type of value
+ */
+public class PrefixTrie<T>
+{
+	/** More data are needed to make a decision. */
+	public static final int NEED_MORE = -1;
+
+	/** No prefix matches. */
+	public static final int NO_MATCH = -2;
+
+	/** Transitions, indexed by node*256+byte, containing target node or 0 if none. */
+	private final int[] transitions;
+
+	/** Values of nodes, null if node is not end of prefix. */
+	private final T[] values;
+
+	/** Whether node has any transition. */
+	private final boolean[] hasChildren;
+
+	private PrefixTrie(int[] transitions, T[] values, boolean[] hasChildren)
+	{
+		this.transitions = transitions;
+		this.values = values;
+		this.hasChildren = hasChildren;
+	}
+
+	/**
+	 * Matches the data against the trie.
+	 *
+	 * @param buf
+	 * 	data to match, starting at readerIndex
+	 * @param complete
+	 * 	whether no more data can arrive, in which case shorter prefix is accepted even if longer might match
+	 *
+	 * @return
+	 * 	matched result, see {@link #getValue(int)}, or one of {@link #NEED_MORE} or {@link #NO_MATCH}.
+	 */
+	public int match(ByteBuf buf, boolean complete)
+	{
+		int best = NO_MATCH;
+		int node = 0;
+		for (int i = buf.readerIndex(), end = buf.writerIndex(); ; ++i) {
+			if (values[node] != null) {
+				best = node;
+			}
+			if (i == end) {
+				return hasChildren[node] && !complete ? NEED_MORE : best;
+			}
+			int next = transitions[(node<<8)+buf.getUnsignedByte(i)];
+			if (next == 0) {
+				return best;
+			}
+			node = next;
+		}
+	}
+
+	/**
+	 * Gets value of match.
+	 *
+	 * @param match
+	 * 	result of {@link #match(ByteBuf, boolean)}
+	 *
+	 * @return
+	 * 	value associated with the matched prefix.
+	 */
+	public T getValue(int match)
+	{
+		return values[match];
+	}
+
+	public static <T> Builder<T> builder()
+	{
+		return new Builder<>();
+	}
+
+	/**
+	 * Builder of {@link PrefixTrie}.
+	 *
+	 * @param <T>
+	 *      type of value
+	 */
+	public static class Builder<T>
+	{
+		private final List<int[]> nodes = new ArrayList<>();
+
+		private final List<T> values = new ArrayList<>();
+
+		public Builder()
+		{
+			nodes.add(new int[256]);
+			values.add(null);
+		}
+
+		/**
+		 * Adds prefix.
+		 *
+		 * @param prefix
+		 * 	bytes of prefix, must not be empty
+		 * @param value
+		 * 	associated value
+		 *
+		 * @return
+		 * 	this builder.
+		 *
+		 * @throws IllegalArgumentException
+		 * 	if prefix is empty or already registered
+		 */
+		public Builder<T> add(byte[] prefix, T value)
+		{
+			if (prefix.length == 0) {
+				throw new IllegalArgumentException("Prefix must not be empty");
+			}
+			int node = 0;
+			for (byte b: prefix) {
+				int next = nodes.get(node)[b&0xff];
+				if (next == 0) {
+					next = nodes.size();
+					nodes.add(new int[256]);
+					values.add(null);
+					nodes.get(node)[b&0xff] = next;
+				}
+				node = next;
+			}
+			if (values.get(node) != null) {
+				throw new IllegalArgumentException("Prefix already registered: value="+values.get(node));
+			}
+			values.set(node, value);
+			return this;
+		}
+
+		public PrefixTrie<T> build()
+		{
+			int[] transitions = new int[nodes.size()*256];
+			boolean[] hasChildren = new boolean[nodes.size()];
+			for (int i = 0; i < nodes.size(); ++i) {
+				int[] node = nodes.get(i);
+				System.arraycopy(node, 0, transitions, i*256, 256);
+				for (int t: node) {
+					hasChildren[i] |= t != 0;
+				}
+			}
+			@SuppressWarnings("unchecked")
+			T[] valuesArray = (T[]) values.toArray();
+			return new PrefixTrie<>(transitions, valuesArray, hasChildren);
+		}
+	}
+}
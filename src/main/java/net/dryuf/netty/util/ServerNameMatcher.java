@@ -0,0 +1,192 @@
+package net.dryuf.netty.util;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * Precompiled matcher of server names, either exact host or wildcard *.domain matching any of its subdomains.
+ *
+ * Names are matched case-insensitively directly in the buffer, without decoding them.  Wildcards are stored by their
+ * suffix including the dot, the suffix hash is computed incrementally from the end of name, so every label costs
+ * single table probe.  Exact match is preferred, then the most specific wildcard.
+ *
+ * @param <T>
+ *      type of value
+ */
+public class ServerNameMatcher<T>
+{
+	/** Open addressing table, indexed by hash&mask, containing entry index+1 or 0 if empty. */
+	private final int[] table;
+
+	private final int mask;
+
+	private final int[] hashes;
+
+	/** Lower case names, wildcards stored as suffix starting with dot. */
+	private final byte[][] names;
+
+	private final T[] values;
+
+	private ServerNameMatcher(int[] table, int[] hashes, byte[][] names, T[] values)
+	{
+		this.table = table;
+		this.mask = table.length-1;
+		this.hashes = hashes;
+		this.names = names;
+		this.values = values;
+	}
+
+	/**
+	 * Matches the server name.
+	 *
+	 * @param buf
+	 * 	buffer containing the name
+	 * @param offset
+	 * 	offset of name within buffer
+	 * @param length
+	 * 	length of name
+	 *
+	 * @return
+	 * 	matching value or null if not found.
+	 */
+	public T match(ByteBuf buf, int offset, int length)
+	{
+		T wildcard = null;
+		int hash = 0;
+		int factor = 1;
+		for (int i = offset+length; --i >= offset; ) {
+			int c = toLower(buf.getByte(i));
+			hash += c*factor;
+			factor *= 31;
+			if (c == '.') {
+				// later found suffix is longer, hence more specific:
+				T found = find(hash, buf, i, offset+length-i);
+				if (found != null) {
+					wildcard = found;
+				}
+			}
+		}
+		T exact = find(hash, buf, offset, length);
+		return exact != null ? exact : wildcard;
+	}
+
+	private T find(int hash, ByteBuf buf, int offset, int length)
+	{
+		for (int slot = mix(hash)&mask; table[slot] != 0; slot = (slot+1)&mask) {
+			int entry = table[slot]-1;
+			if (hashes[entry] == hash && equalsLower(names[entry], buf, offset, length)) {
+				return values[entry];
+			}
+		}
+		return null;
+	}
+
+	private static boolean equalsLower(byte[] name, ByteBuf buf, int offset, int length)
+	{
+		if (name.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; ++i) {
+			if (name[i] != toLower(buf.getByte(offset+i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int toLower(byte b)
+	{
+		return b >= 'A' && b <= 'Z' ? b+('a'-'A') : b;
+	}
+
+	private static int hash(byte[] name)
+	{
+		int hash = 0;
+		int factor = 1;
+		for (int i = name.length; --i >= 0; ) {
+			hash += name[i]*factor;
+			factor *= 31;
+		}
+		return hash;
+	}
+
+	private static int mix(int hash)
+	{
+		return hash^(hash>>>16);
+	}
+
+	public static <T> Builder<T> builder()
+	{
+		return new Builder<>();
+	}
+
+	/**
+	 * Builder of {@link ServerNameMatcher}.
+	 *
+	 * @param <T>
+	 *      type of value
+	 */
+	public static class Builder<T>
+	{
+		private final List<byte[]> names = new ArrayList<>();
+
+		private final List<T> values = new ArrayList<>();
+
+		/**
+		 * Adds server name.
+		 *
+		 * @param name
+		 * 	exact host name or wildcard *.domain
+		 * @param value
+		 * 	associated value
+		 *
+		 * @return
+		 * 	this builder.
+		 *
+		 * @throws IllegalArgumentException
+		 * 	if name is empty or already registered
+		 */
+		public Builder<T> add(String name, T value)
+		{
+			String key = name.toLowerCase(Locale.ROOT);
+			if (key.startsWith("*.")) {
+				key = key.substring(1);
+			}
+			if (key.isEmpty() || key.equals(".")) {
+				throw new IllegalArgumentException("Server name must not be empty: "+name);
+			}
+			byte[] bytes = key.getBytes(StandardCharsets.US_ASCII);
+			for (byte[] existing: names) {
+				if (Arrays.equals(existing, bytes)) {
+					throw new IllegalArgumentException("Server name already registered: "+name);
+				}
+			}
+			names.add(bytes);
+			values.add(value);
+			return this;
+		}
+
+		public ServerNameMatcher<T> build()
+		{
+			int[] table = new int[Integer.highestOneBit(Math.max(names.size(), 1)*2)*2];
+			int[] hashes = new int[names.size()];
+			for (int i = 0; i < names.size(); ++i) {
+				hashes[i] = hash(names.get(i));
+				int slot = mix(hashes[i])&(table.length-1);
+				while (table[slot] != 0) {
+					slot = (slot+1)&(table.length-1);
+				}
+				table[slot] = i+1;
+			}
+			@SuppressWarnings("unchecked")
+			T[] valuesArray = (T[]) values.toArray();
+			return new ServerNameMatcher<>(table, hashes, names.toArray(new byte[0][]), valuesArray);
+		}
+	}
+}
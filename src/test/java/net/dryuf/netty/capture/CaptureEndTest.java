@@ -0,0 +1,120 @@
+package net.dryuf.netty.capture;
+
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.forward.ForwardEndTester;
+import net.dryuf.netty.forward.NettyPortForwarderFactory;
+import net.dryuf.netty.forward.PortForwarderFactory;
+import net.dryuf.netty.local.LocalTransportEndTest;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+@Log4j2
+public class CaptureEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void forward_captured_readAndReplayed() throws Exception
+	{
+		Path path = Files.createTempFile("capture", ".cap");
+		try (ClientServerTester tester = new ClientServerTester();
+		     CaptureFile file = new CaptureFile(path, 1024*1024)) {
+			SocketAddress echo = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			Server server = new NettyPortForwarderFactory(tester.nettyEngine()).runForward(PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.connect(AddressSpec.fromSocketAddress(echo))
+				.capture(CaptureConfig.builder()
+					.file(file)
+					.build())
+				.build()
+			).join();
+			tester.addServer(server);
+
+			LocalTransportEndTest.runPingPong(tester, "captured", server.listenAddress(), 100);
+
+			List<CaptureRecord> records;
+			while (!(records = CaptureReader.read(path)).stream().anyMatch(r -> r.getType() == CaptureRecord.Type.CLIENT_SHUTDOWN)) {
+				Thread.sleep(10);
+			}
+			assertEquals(records.get(0).getType(), CaptureRecord.Type.OPEN);
+			assertTrue(records.get(0).getText().contains("connect="), records.get(0).getText());
+			assertEquals(sumLength(records, CaptureRecord.Type.CLIENT_DATA), 6400L);
+			assertEquals(sumLength(records, CaptureRecord.Type.SERVER_DATA), 6400L);
+
+			CaptureReplay.Result result = CaptureReplay.replay(tester, records, AddressSpec.fromSocketAddress(echo)).join();
+			log.info("Replayed capture: {}", result);
+			assertEquals(result.getConnections(), 1);
+			assertEquals(result.getSentBytes(), 6400L);
+			assertEquals(result.getReceivedBytes(), 6400L);
+		}
+		finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test(timeOut = 30_000L)
+	public void forward_sampledAndCapped_limited() throws Exception
+	{
+		Path path = Files.createTempFile("capture", ".cap");
+		try (ClientServerTester tester = new ClientServerTester();
+		     CaptureFile file = new CaptureFile(path, 1024*1024)) {
+			SocketAddress echo = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			Server server = ForwardEndTester.runForward(tester, PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.connect(AddressSpec.fromSocketAddress(echo))
+				.capture(CaptureConfig.builder()
+					.file(file)
+					.sampleRatio(0.5)
+					.maxConnectionBytes(1000)
+					.build())
+				.build()
+			);
+
+			for (int i = 0; i < 40; ++i) {
+				LocalTransportEndTest.runPingPong(tester, "sampled", server.listenAddress(), 100);
+			}
+
+			List<CaptureRecord> records;
+			while ((records = CaptureReader.read(path)).stream().filter(r -> r.getType() == CaptureRecord.Type.CLIENT_SHUTDOWN).count() !=
+				records.stream().filter(r -> r.getType() == CaptureRecord.Type.OPEN).count()) {
+				Thread.sleep(10);
+			}
+			Map<Long, List<CaptureRecord>> connections = records.stream()
+				.collect(Collectors.groupingBy(CaptureRecord::getConnectionId));
+			log.info("Sampled connections: {}", connections.size());
+			assertTrue(connections.size() > 0 && connections.size() < 40, "connections="+connections.size());
+			for (List<CaptureRecord> connection: connections.values()) {
+				assertEquals(sumLength(connection, CaptureRecord.Type.CLIENT_DATA), 6400L);
+				assertEquals(sumLength(connection, CaptureRecord.Type.SERVER_DATA), 6400L);
+				List<CaptureRecord> data = connection.stream()
+					.filter(r -> r.getType() == CaptureRecord.Type.CLIENT_DATA || r.getType() == CaptureRecord.Type.SERVER_DATA)
+					.collect(Collectors.toList());
+				assertTrue(data.stream().mapToLong(r -> r.getPayload().length).sum() <= 1000L);
+				assertTrue(data.get(data.size()-1).isTruncated());
+			}
+		}
+		finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	private static long sumLength(List<CaptureRecord> records, CaptureRecord.Type type)
+	{
+		return records.stream()
+			.filter(r -> r.getType() == type)
+			.mapToLong(CaptureRecord::getOriginalLength)
+			.sum();
+	}
+}
@@ -0,0 +1,82 @@
+package net.dryuf.netty.capture;
+
+import io.netty.buffer.Unpooled;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class CaptureFileTest
+{
+	@Test
+	public void append_wrapped_keepsNewestInOrder() throws Exception
+	{
+		Path path = Files.createTempFile("capture", ".cap");
+		try {
+			try (CaptureFile file = new CaptureFile(path, 4096)) {
+				for (int i = 0; i < 1000; ++i) {
+					file.append(CaptureRecord.Type.CLIENT_DATA, i, Unpooled.wrappedBuffer(new byte[i%50+10]), 20+i%7);
+				}
+			}
+			List<CaptureRecord> records = CaptureReader.read(path);
+			assertTrue(records.size() > 10 && records.size() < 1000, "size="+records.size());
+			assertEquals(records.get(records.size()-1).getConnectionId(), 999L);
+			for (int i = 0; i < records.size(); ++i) {
+				CaptureRecord record = records.get(i);
+				long id = record.getConnectionId();
+				assertEquals(id, 1000-records.size()+i);
+				assertEquals(record.getOriginalLength(), id%50+10);
+				assertEquals(record.getPayload().length, Math.min(id%50+10, 20+id%7));
+				assertEquals(record.isTruncated(), record.getPayload().length < record.getOriginalLength());
+			}
+		}
+		finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void append_concurrent_recordsIntact() throws Exception
+	{
+		Path path = Files.createTempFile("capture", ".cap");
+		try {
+			try (CaptureFile file = new CaptureFile(path, 64*1024)) {
+				Thread[] threads = new Thread[4];
+				for (int t = 0; t < threads.length; ++t) {
+					int id = t;
+					threads[t] = new Thread(() -> {
+						for (int i = 0; i < 20_000; ++i) {
+							byte[] payload = new byte[i%100+1];
+							Arrays.fill(payload, (byte) (id*64+i%64));
+							file.append(CaptureRecord.Type.CLIENT_DATA, id, Unpooled.wrappedBuffer(payload), 64);
+						}
+					});
+					threads[t].start();
+				}
+				for (Thread thread: threads) {
+					thread.join();
+				}
+			}
+			List<CaptureRecord> records = CaptureReader.read(path);
+			assertTrue(records.size() > 100, "size="+records.size());
+			for (CaptureRecord record: records) {
+				int id = (int) record.getConnectionId();
+				byte[] payload = record.getPayload();
+				assertEquals(payload.length, Math.min(record.getOriginalLength(), 64));
+				for (byte b: payload) {
+					assertEquals(b, payload[0]);
+				}
+				assertEquals((payload[0]&0xff)/64, id);
+			}
+		}
+		finally {
+			Files.deleteIfExists(path);
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package net.dryuf.netty.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.expectThrows;
+
+
+@Log4j2
+public class DatagramEndTest
+{
+	public static final AddressSpec LOCALHOST_UDP = AddressSpec.builder()
+		.proto(AddressSpec.PROTO_UDP4)
+		.host("localhost")
+		.port(0)
+		.build();
+
+	@Test(timeOut = 10_000L)
+	public void bindConnect_echo_received() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			DatagramChannel server = runEchoServer(tester.nettyEngine(), DatagramOptions.DEFAULT);
+			try {
+				CompletableFuture<String> response = new CompletableFuture<>();
+				DatagramChannel client = tester.nettyEngine().connectDatagram(
+					AddressSpec.fromDatagramSocketAddress(server.localAddress()),
+					new SimpleChannelInboundHandler<DatagramPacket>()
+					{
+						@Override
+						protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg)
+						{
+							response.complete(msg.content().toString(StandardCharsets.UTF_8));
+						}
+					}
+				).join();
+				client.writeAndFlush(Unpooled.wrappedBuffer("hello".getBytes(StandardCharsets.UTF_8)));
+				assertEquals(response.join(), "hello");
+				client.close();
+			}
+			finally {
+				server.close();
+			}
+		}
+	}
+
+	@Test(timeOut = 10_000L)
+	public void bindFanOut_reusePort_sharedPort() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			List<DatagramChannel> servers = tester.nettyEngine().bindDatagramFanOut(
+				LOCALHOST_UDP,
+				DatagramOptions.builder().receiveBufferSize(4*1024*1024).build(),
+				2,
+				new SimpleChannelInboundHandler<DatagramPacket>()
+				{
+					@Override
+					protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg)
+					{
+					}
+
+					@Override
+					public boolean isSharable()
+					{
+						return true;
+					}
+				}
+			).join();
+			try {
+				if (NettyEngine.createChannelProvider().isReusePortSupported()) {
+					assertEquals(servers.size(), 2);
+					assertEquals(servers.get(1).localAddress().getPort(), servers.get(0).localAddress().getPort());
+				}
+			}
+			finally {
+				servers.forEach(DatagramChannel::close);
+			}
+		}
+	}
+
+	@Test(timeOut = 10_000L)
+	public void bindDatagram_tcp_rejected() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			CompletableFuture<DatagramChannel> future = tester.nettyEngine().bindDatagram(
+				AddressSpec.builder().proto(AddressSpec.PROTO_TCP4).host("localhost").port(0).build(),
+				new SimpleChannelInboundHandler<DatagramPacket>()
+				{
+					@Override
+					protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg)
+					{
+					}
+				}
+			);
+			expectThrows(Exception.class, future::join);
+		}
+	}
+
+	@Test(timeOut = 10_000L)
+	public void writeDatagrams_batch_allReceived() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			LinkedBlockingQueue<Integer> sizes = new LinkedBlockingQueue<>();
+			DatagramChannel server = tester.nettyEngine().bindDatagram(LOCALHOST_UDP, DatagramOptions.builder().receiveBatch(16).build(),
+				new SimpleChannelInboundHandler<DatagramPacket>()
+				{
+					@Override
+					protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg)
+					{
+						sizes.add(msg.content().readableBytes());
+					}
+				}
+			).join();
+			DatagramChannel client = tester.nettyEngine().connectDatagram(AddressSpec.fromDatagramSocketAddress(server.localAddress()),
+				new SimpleChannelInboundHandler<DatagramPacket>()
+				{
+					@Override
+					protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg)
+					{
+					}
+				}
+			).join();
+			try {
+				List<ByteBuf> payloads = new ArrayList<>();
+				for (int i = 0; i < 9; ++i) {
+					payloads.add(Unpooled.buffer(100).writeZero(100));
+				}
+				payloads.add(Unpooled.buffer(50).writeZero(50));
+				payloads.add(Unpooled.buffer(70).writeZero(70));
+				tester.nettyEngine().writeDatagrams(client, null, payloads).sync();
+				List<Integer> received = new ArrayList<>();
+				for (int i = 0; i < 11; ++i) {
+					received.add(sizes.poll(5, TimeUnit.SECONDS));
+				}
+				assertEquals(received, Arrays.asList(100, 100, 100, 100, 100, 100, 100, 100, 100, 50, 70));
+			}
+			finally {
+				client.close();
+				server.close();
+			}
+		}
+	}
+
+	@Test(timeOut = 120_000L)
+	public void benchmarkPps() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			NettyEngine engine = tester.nettyEngine();
+			DatagramOptions batched = DatagramOptions.builder().receiveBatch(64).build();
+			log.info("UDP batching: segmentation={} batchReceive={}", engine.isDatagramSegmentationSupported(),
+				engine.isDatagramBatchReceiveSupported());
+			runPps(engine, "warmup", DatagramOptions.DEFAULT, SendMode.BATCH, 100_000);
+			runPps(engine, "default", DatagramOptions.DEFAULT, SendMode.SINGLE, 200_000);
+			runPps(engine, "large-buffers", DatagramOptions.builder()
+				.receiveBufferSize(8*1024*1024)
+				.sendBufferSize(8*1024*1024)
+				.build(), SendMode.SINGLE, 200_000);
+			runPps(engine, "sendmmsg", DatagramOptions.DEFAULT, SendMode.BATCH, 200_000);
+			runPps(engine, "sendmmsg+recvmmsg", batched, SendMode.BATCH, 200_000);
+			if (engine.isDatagramSegmentationSupported()) {
+				runPps(engine, "segmented+recvmmsg", batched, SendMode.SEGMENTED, 200_000);
+			}
+		}
+	}
+
+	private static void runPps(NettyEngine engine, String name, DatagramOptions options, SendMode mode, int count) throws Exception
+	{
+		AtomicLong received = new AtomicLong();
+		AtomicLong lastReceived = new AtomicLong();
+		DatagramChannel server = engine.bindDatagram(LOCALHOST_UDP, options, new SimpleChannelInboundHandler<DatagramPacket>()
+		{
+			@Override
+			protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg)
+			{
+				received.incrementAndGet();
+				lastReceived.set(System.nanoTime());
+			}
+		}).join();
+		DatagramChannel client = engine.connectDatagram(AddressSpec.fromDatagramSocketAddress(server.localAddress()), options,
+			new SimpleChannelInboundHandler<DatagramPacket>()
+			{
+				@Override
+				protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg)
+				{
+				}
+			}
+		).join();
+		try {
+			long startedCpu = getProcessCpuTime();
+			long started = System.nanoTime();
+			sendPackets(engine, client, count, 64, mode).join();
+			long sendElapsed = System.nanoTime()-started;
+			Thread.sleep(200);
+			long elapsed = lastReceived.get()-started;
+			long cpu = getProcessCpuTime()-startedCpu;
+			log.info("UDP datagrams: options={} sent={} received={} sendPps={} receivePps={} cpuNs/packet={}",
+				name, count, received.get(), count*1_000_000_000.0/sendElapsed, received.get()*1_000_000_000.0/elapsed,
+				(double) cpu/(count+received.get()));
+		}
+		finally {
+			client.close();
+			server.close();
+		}
+	}
+
+	enum SendMode
+	{
+		/** Flush every datagram. */
+		SINGLE,
+		/** Flush batch of datagrams at once, sendmmsg with native transport. */
+		BATCH,
+		/** Send batch as segmented datagrams. */
+		SEGMENTED,
+	}
+
+	/**
+	 * Sends packets from the event loop, flushing in batches.
+	 */
+	private static CompletableFuture<Void> sendPackets(NettyEngine engine, DatagramChannel channel, int count, int size, SendMode mode)
+	{
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		ByteBuf payload = Unpooled.unreleasableBuffer(Unpooled.directBuffer(size).writeZero(size));
+		channel.eventLoop().execute(new Runnable()
+		{
+			int sent = 0;
+
+			@Override
+			public void run()
+			{
+				int end = Math.min(count, sent+64);
+				if (mode == SendMode.SEGMENTED) {
+					List<ByteBuf> batch = new ArrayList<>(end-sent);
+					for (; sent < end; ++sent) {
+						batch.add(payload.duplicate());
+					}
+					engine.writeDatagrams(channel, null, batch);
+				}
+				else {
+					for (; sent < end; ++sent) {
+						channel.write(payload.duplicate(), channel.voidPromise());
+						if (mode == SendMode.SINGLE) {
+							channel.flush();
+						}
+					}
+					channel.flush();
+				}
+				if (sent < count) {
+					channel.eventLoop().execute(this);
+				}
+				else {
+					result.complete(null);
+				}
+			}
+		});
+		return result;
+	}
+
+	private static long getProcessCpuTime()
+	{
+		return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+	}
+
+	private static DatagramChannel runEchoServer(NettyEngine engine, DatagramOptions options)
+	{
+		return engine.bindDatagram(LOCALHOST_UDP, options, new SimpleChannelInboundHandler<DatagramPacket>()
+		{
+			@Override
+			protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg)
+			{
+				ctx.write(new DatagramPacket(msg.content().retain(), msg.sender()));
+			}
+
+			@Override
+			public void channelReadComplete(ChannelHandlerContext ctx)
+			{
+				ctx.flush();
+			}
+		}).join();
+	}
+}
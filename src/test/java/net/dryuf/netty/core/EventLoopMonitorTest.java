@@ -0,0 +1,77 @@
+package net.dryuf.netty.core;
+
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.socket.DuplexChannel;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+
+@Log4j2
+public class EventLoopMonitorTest
+{
+	@Test(timeOut = 20_000L)
+	public void blockedLoop_lagReported() throws Exception
+	{
+		try (NettyEngine engine = new NettyEngine()) {
+			assertNull(engine.getEventLoopMonitor());
+			EventLoopMonitor monitor = engine.startEventLoopMonitor(EventLoopMonitor.Config.builder()
+				.interval(100)
+				.lagThreshold(100)
+				.build());
+			expectThrows(IllegalStateException.class, () -> engine.startEventLoopMonitor(EventLoopMonitor.Config.DEFAULT));
+			assertEquals(monitor.getStats().size(), 0);
+
+			ServerChannel server = engine.listen(AddressSpec.builder().proto(AddressSpec.PROTO_TCP4).host("localhost").port(0).build(),
+				new ChannelInitializer<DuplexChannel>()
+				{
+					@Override
+					protected void initChannel(DuplexChannel ch)
+					{
+					}
+				}
+			).join();
+			try {
+				EventLoop blocked = engine.getWorkerGroup().next();
+				blocked.execute(() -> sleep(500));
+				sleep(1000);
+
+				List<EventLoopStats> stats = monitor.getStats();
+				stats.forEach(s -> log.info("Event loop stats: {}", s));
+				EventLoopStats boss = stats.get(0);
+				assertEquals(boss.getGroup(), NettyEngine.BOSS_GROUP);
+				assertEquals(boss.getRegisteredChannels(), 1);
+				assertNotNull(boss.getThread());
+				EventLoopStats worker = stats.stream()
+					.filter(s -> s.getGroup().equals(NettyEngine.DEFAULT_PARTITION))
+					.max((a, b) -> Long.compare(a.getMaxLagNanos(), b.getMaxLagNanos()))
+					.get();
+				assertTrue(worker.getMaxLagNanos() >= TimeUnit.MILLISECONDS.toNanos(200), worker.toString());
+			}
+			finally {
+				server.close().syncUninterruptibly();
+			}
+		}
+	}
+
+	private static void sleep(long ms)
+	{
+		try {
+			Thread.sleep(ms);
+		}
+		catch (InterruptedException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+}
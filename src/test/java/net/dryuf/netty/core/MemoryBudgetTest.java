@@ -0,0 +1,101 @@
+package net.dryuf.netty.core;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.dryuf.netty.pipeline.CumulatingByteBufHandler;
+import net.dryuf.netty.pipeline.FullFlowControlHandler;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+
+public class MemoryBudgetTest
+{
+	@Test
+	public void acquire_overWatermark_pausesLargest()
+	{
+		MemoryBudget budget = new MemoryBudget(MemoryBudget.Config.builder().limit(100).build());
+		MemoryBudget.Account large = budget.open(new EmbeddedChannel(), "large");
+		MemoryBudget.Account small = budget.open(new EmbeddedChannel(), "small");
+		AtomicInteger resumed = new AtomicInteger();
+		large.setResumeListener(resumed::incrementAndGet);
+
+		assertTrue(large.tryAcquire(60));
+		assertTrue(small.tryAcquire(20));
+		assertEquals(budget.getUsage(), 80L);
+		assertTrue(large.isPaused());
+		assertFalse(small.isPaused());
+
+		assertFalse(small.tryAcquire(30));
+		assertEquals(budget.getRejectedCount(), 1L);
+
+		List<MemoryConsumer> top = budget.getTopConsumers(1);
+		assertEquals(top.size(), 1);
+		assertEquals(top.get(0).getOwner(), "large");
+		assertEquals(top.get(0).getUsage(), 60L);
+		assertTrue(top.get(0).isPaused());
+
+		large.update(40);
+		assertTrue(large.isPaused());
+		assertEquals(resumed.get(), 0);
+		large.release(15);
+		assertFalse(large.isPaused());
+		assertEquals(resumed.get(), 1);
+
+		large.close();
+		small.close();
+		assertEquals(budget.getUsage(), 0L);
+		assertEquals(budget.getTopConsumers(10).size(), 0);
+	}
+
+	@Test
+	public void isLimited_defaultConfig_unlimited()
+	{
+		MemoryBudget budget = new MemoryBudget(MemoryBudget.Config.DEFAULT);
+		assertFalse(budget.isLimited());
+		budget.configure(MemoryBudget.Config.builder().limit(100).build());
+		assertTrue(budget.isLimited());
+	}
+
+	@Test
+	public void cumulating_overBudget_rejected()
+	{
+		MemoryBudget budget = new MemoryBudget(MemoryBudget.Config.builder().limit(100).build());
+		EmbeddedChannel channel = new EmbeddedChannel();
+		channel.attr(MemoryBudget.ATTRIBUTE).set(budget);
+		channel.pipeline().addLast(new CumulatingByteBufHandler(1_000), new ChannelInboundHandlerAdapter());
+
+		channel.writeInbound(Unpooled.wrappedBuffer(new byte[60]));
+		assertEquals(budget.getUsage(), 60L);
+		expectThrows(IllegalStateException.class, () -> channel.writeInbound(Unpooled.wrappedBuffer(new byte[60])));
+		assertEquals(budget.getUsage(), 60L);
+
+		channel.finishAndReleaseAll();
+		assertEquals(budget.getUsage(), 0L);
+	}
+
+	@Test
+	public void flowControl_queued_accounted()
+	{
+		MemoryBudget budget = new MemoryBudget(MemoryBudget.Config.builder().limit(100).build());
+		EmbeddedChannel channel = new EmbeddedChannel();
+		channel.attr(MemoryBudget.ATTRIBUTE).set(budget);
+		channel.config().setAutoRead(false);
+		channel.pipeline().addLast(new FullFlowControlHandler());
+
+		channel.writeInbound(Unpooled.wrappedBuffer(new byte[40]));
+		assertEquals(budget.getUsage(), 40L);
+		assertEquals(budget.getTopConsumers(1).get(0).getOwner(), "FullFlowControlHandler");
+
+		channel.read();
+		assertEquals(budget.getUsage(), 0L);
+		channel.finishAndReleaseAll();
+	}
+}
@@ -0,0 +1,146 @@
+package net.dryuf.netty.core;
+
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.socket.DuplexChannel;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.forward.ForwarderRegistryEndTest;
+import net.dryuf.netty.forward.NettyPortForwarderFactory;
+import net.dryuf.netty.forward.PortForwarderFactory;
+import net.dryuf.netty.local.LocalTransportEndTest;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+
+@Log4j2
+public class NettyEnginePartitionEndTest
+{
+	private static final AddressSpec LOCALHOST_TCP = AddressSpec.builder()
+		.proto(AddressSpec.PROTO_TCP4)
+		.host("localhost")
+		.port(0)
+		.build();
+
+	@Test(timeOut = 20_000L)
+	public void listenConnect_partition_servedByPartition() throws Exception
+	{
+		try (NettyEngine engine = new NettyEngine()) {
+			engine.definePartition("latency", 1);
+			EventLoop partitionLoop = engine.getPartitionGroup("latency").next();
+			CompletableFuture<EventLoop> accepted = new CompletableFuture<>();
+			ServerChannel server = engine.listen(LOCALHOST_TCP, ListenOptions.builder().partition("latency").build(),
+				new ChannelInitializer<DuplexChannel>()
+				{
+					@Override
+					protected void initChannel(DuplexChannel ch)
+					{
+						accepted.complete(ch.eventLoop());
+					}
+				}
+			).join();
+			try {
+				DuplexChannel client = engine.connect(AddressSpec.fromSocketAddress(server.localAddress()),
+					ConnectOptions.builder().partition("latency").build(),
+					new ChannelInboundHandlerAdapter(),
+					null
+				).join();
+				assertEquals(accepted.join(), partitionLoop);
+				assertEquals(client.eventLoop(), partitionLoop);
+
+				Map<String, PartitionMetrics> metrics = getMetrics(engine);
+				assertEquals(metrics.get("latency").getEventLoopCount(), 1);
+				assertEquals(metrics.get("latency").getChannelCount(), 2L);
+				assertEquals(metrics.get(NettyEngine.DEFAULT_PARTITION).getChannelCount(), 0L);
+
+				client.close().syncUninterruptibly();
+				assertEquals(getMetrics(engine).get("latency").getTotalChannelCount(), 2L);
+			}
+			finally {
+				server.close().syncUninterruptibly();
+			}
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void listen_unknownPartition_rejected() throws Exception
+	{
+		try (NettyEngine engine = new NettyEngine()) {
+			CompletableFuture<ServerChannel> future = engine.listen(LOCALHOST_TCP, ListenOptions.builder().partition("unknown").build(),
+				new ChannelInitializer<DuplexChannel>()
+				{
+					@Override
+					protected void initChannel(DuplexChannel ch)
+					{
+					}
+				}
+			);
+			CompletionException ex = expectThrows(CompletionException.class, future::join);
+			assertTrue(ex.getCause() instanceof IllegalArgumentException, ex.toString());
+			expectThrows(IllegalArgumentException.class, () -> engine.definePartition(NettyEngine.DEFAULT_PARTITION, 1));
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void forward_partition_servedByPartition() throws Exception
+	{
+		try (NettyEngine engine = new NettyEngine(); ClientServerTester tester = new ClientServerTester(engine)) {
+			engine.definePartition("forward", 1);
+			InetSocketAddress backend = ForwarderRegistryEndTest.runGreetingServer(tester, "partition\n");
+			Server server = new NettyPortForwarderFactory(engine).runForward(PortForwarderFactory.ForwardConfig.builder()
+				.bind(LOCALHOST_TCP)
+				.connect(AddressSpec.fromSocketAddress(backend))
+				.partition("forward")
+				.build()
+			).join();
+			tester.addServer(server);
+
+			ForwarderRegistryEndTest.expectGreeting(tester, server.listenAddress(), "partition\n");
+			// accepted client and backend connection:
+			assertEquals(getMetrics(engine).get("forward").getTotalChannelCount(), 2L);
+		}
+	}
+
+	@Test(timeOut = 120_000L)
+	public void benchmarkIsolation() throws Exception
+	{
+		try (NettyEngine engine = new NettyEngine(); ClientServerTester tester = new ClientServerTester(engine)) {
+			engine.definePartition("latency", 1);
+			SocketAddress bulk = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			SocketAddress shared = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			SocketAddress isolated = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0),
+				ListenOptions.builder().partition("latency").build(), (channel) -> {});
+
+			LocalTransportEndTest.runPingPong(tester, "warmup", shared, 10_000);
+			LocalTransportEndTest.runPingPong(tester, "shared-idle", shared, 20_000);
+			LocalTransportEndTest.runPingPong(tester, "isolated-idle", isolated, 20_000);
+			for (String name: new String[]{ "shared-loaded", "isolated-loaded" }) {
+				CompletableFuture<Void> load = CompletableFuture.runAsync(() ->
+					LocalTransportEndTest.runThroughput(tester, "bulk", bulk, 1024));
+				LocalTransportEndTest.runPingPong(tester, name, name.startsWith("shared") ? shared : isolated, 20_000);
+				load.join();
+			}
+			getMetrics(engine).values().forEach(m -> log.info("Partition metrics: {}", m));
+		}
+	}
+
+	private static Map<String, PartitionMetrics> getMetrics(NettyEngine engine)
+	{
+		return engine.getPartitionMetrics().stream()
+			.collect(Collectors.toMap(PartitionMetrics::getName, Function.identity()));
+	}
+}
@@ -0,0 +1,62 @@
+package net.dryuf.netty.core;
+
+import lombok.extern.log4j.Log4j2;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+@Log4j2
+public class NettyEngineRegistryTest
+{
+	@Test(timeOut = 20_000L)
+	public void acquire_sameName_sharedUntilLastRelease() throws Exception
+	{
+		NettyEngineRegistry registry = new NettyEngineRegistry();
+		NettyEngineRegistry.Handle first = registry.acquire("shared", "first", NettyEngine::new);
+		NettyEngineRegistry.Handle second = registry.acquire("shared", "second", NettyEngine::new);
+		assertSame(second.engine(), first.engine());
+		assertEquals(registry.getEngines().get(0).getOwners(), Arrays.asList("first", "second"));
+
+		first.engine().getWorkerGroup();
+		assertEquals(registry.getEventLoopCount(), Runtime.getRuntime().availableProcessors());
+
+		first.release().join();
+		first.release().join();
+		assertEquals(registry.getEngines().get(0).getOwners(), Collections.singletonList("second"));
+		second.engine().getWorkerGroup();
+
+		second.release().join();
+		assertEquals(registry.getEngines(), Collections.emptyList());
+		assertTrue(second.engine().getWorkerGroup().isTerminated());
+
+		try (NettyEngineRegistry.Handle third = registry.acquire("shared", "third", NettyEngine::new)) {
+			assertNotSame(third.engine(), first.engine());
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void acquire_differentName_isolated() throws Exception
+	{
+		NettyEngineRegistry registry = new NettyEngineRegistry();
+		try (
+			NettyEngineRegistry.Handle first = registry.acquire("first", "component", NettyEngine::new);
+			NettyEngineRegistry.Handle second = registry.acquire("second", "component", NettyEngine::new)
+		) {
+			assertNotSame(second.engine(), first.engine());
+			first.engine().getWorkerGroup();
+			List<NettyEngineRegistry.EngineInfo> engines = registry.getEngines();
+			assertEquals(engines.size(), 2);
+			assertEquals(engines.get(0).getEventLoopCount(), Runtime.getRuntime().availableProcessors());
+			assertEquals(engines.get(1).getEventLoopCount(), 0);
+		}
+		assertTrue(registry.getEngines().isEmpty());
+	}
+}
@@ -0,0 +1,73 @@
+package net.dryuf.netty.core;
+
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.socket.DuplexChannel;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import org.testng.annotations.Test;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.expectThrows;
+
+
+@Log4j2
+public class NettyEngineStartupTest
+{
+	private static final AddressSpec LOCALHOST_TCP = AddressSpec.builder()
+		.proto(AddressSpec.PROTO_TCP4)
+		.host("localhost")
+		.port(0)
+		.build();
+
+	@Test(timeOut = 10_000L)
+	public void construct_unused_noThreadsStarted() throws Exception
+	{
+		Set<Long> before = getThreadIds();
+		NettyEngine engine = new NettyEngine();
+		assertEquals(getThreadIds().stream().filter(id -> !before.contains(id)).count(), 0L);
+		engine.close();
+		expectThrows(IllegalStateException.class, engine::getWorkerGroup);
+	}
+
+	@Test(timeOut = 60_000L)
+	public void benchmarkStartup() throws Exception
+	{
+		runStartup("warmup", 20, false);
+		runStartup("construct", 200, false);
+		runStartup("construct+listen", 5, true);
+	}
+
+	private static void runStartup(String name, int count, boolean listen) throws Exception
+	{
+		long elapsed = 0;
+		for (int i = 0; i < count; ++i) {
+			long started = System.nanoTime();
+			// close is excluded, graceful shutdown of event loops waits for quiet period:
+			try (NettyEngine engine = new NettyEngine()) {
+				if (listen) {
+					ServerChannel server = engine.listen(LOCALHOST_TCP, new ChannelInitializer<DuplexChannel>()
+					{
+						@Override
+						protected void initChannel(DuplexChannel ch)
+						{
+						}
+					}).join();
+					server.close().syncUninterruptibly();
+				}
+				elapsed += System.nanoTime()-started;
+			}
+		}
+		log.info("NettyEngine startup: mode={} count={} ms/engine={}", name, count, elapsed/1_000_000.0/count);
+	}
+
+	private static Set<Long> getThreadIds()
+	{
+		return Thread.getAllStackTraces().keySet().stream()
+			.map(Thread::getId)
+			.collect(Collectors.toSet());
+	}
+}
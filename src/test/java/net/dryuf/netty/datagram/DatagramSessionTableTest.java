@@ -0,0 +1,84 @@
+package net.dryuf.netty.datagram;
+
+import lombok.extern.log4j.Log4j2;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+
+@Log4j2
+public class DatagramSessionTableTest
+{
+	@Test
+	public void putGetRemove_random_matchesHashMap() throws Exception
+	{
+		DatagramSessionTable<Integer> table = new DatagramSessionTable<>();
+		Map<InetSocketAddress, Integer> expected = new HashMap<>();
+		Random random = new Random(0);
+		for (int i = 0; i < 200_000; ++i) {
+			InetSocketAddress key = address(random.nextInt(256), 1000+random.nextInt(64));
+			switch (random.nextInt(3)) {
+			case 0:
+				assertEquals(table.put(key, i), expected.put(key, i));
+				break;
+
+			case 1:
+				assertEquals(table.remove(key), expected.remove(key));
+				break;
+
+			default:
+				assertEquals(table.get(key), expected.get(key));
+			}
+			assertEquals(table.size(), expected.size());
+		}
+		for (Map.Entry<InetSocketAddress, Integer> entry: expected.entrySet()) {
+			assertEquals(table.get(entry.getKey()), entry.getValue());
+		}
+		assertEquals(table.values().size(), expected.size());
+	}
+
+	@Test
+	public void get_missing_null() throws Exception
+	{
+		DatagramSessionTable<String> table = new DatagramSessionTable<>();
+		table.put(address(1, 1000), "one");
+		assertNull(table.get(address(1, 1001)));
+		assertEquals(table.get(address(1, 1000)), "one");
+	}
+
+	@Test
+	public void benchmarkLookup() throws Exception
+	{
+		int sessions = 200_000;
+		DatagramSessionTable<Integer> table = new DatagramSessionTable<>(sessions);
+		InetSocketAddress[] keys = new InetSocketAddress[sessions];
+		for (int i = 0; i < sessions; ++i) {
+			keys[i] = address(i>>>16, i&0xffff);
+			table.put(keys[i], i);
+		}
+		long sum = 0;
+		for (int i = 0; i < 2_000_000; ++i) {
+			sum += table.get(keys[i%sessions]);
+		}
+		int count = 10_000_000;
+		long started = System.nanoTime();
+		for (int i = 0; i < count; ++i) {
+			sum += table.get(keys[(int) ((long) i*7919%sessions)]);
+		}
+		long elapsed = System.nanoTime()-started;
+		log.info("Datagram session lookup: sessions={} ns/op={} ops/s={} checksum={}",
+			sessions, (double) elapsed/count, count*1_000_000_000.0/elapsed, sum);
+	}
+
+	private static InetSocketAddress address(int host, int port) throws Exception
+	{
+		return new InetSocketAddress(InetAddress.getByAddress(new byte[]{ 10, 0, (byte) (host>>8), (byte) host }), port);
+	}
+}
@@ -0,0 +1,184 @@
+package net.dryuf.netty.forward;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.DuplexChannel;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.forward.test.PortForwarderRunner;
+import net.dryuf.netty.local.LocalTransportEndTest;
+import net.dryuf.netty.pipeline.CompressionMetrics;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+@Log4j2
+public class CompressionForwardEndTest
+{
+	@Test(timeOut = 30_000L)
+	public void compression_text_compressed() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			SocketAddress backend = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			CompressionMetrics metrics = new CompressionMetrics();
+			SocketAddress chain = runChain(tester, "text", backend, metrics);
+
+			runVerifiedEcho(tester, "compressed-text", chain, textData(), 32);
+			log.info("Text compression: {}", metrics);
+			assertEquals(metrics.getBypasses(), 0L);
+			assertTrue(metrics.getCompressionRatio() < 0.5, metrics.toString());
+			// both directions of both forwarders on the compressed link:
+			assertEquals(metrics.getDecodedBytes(), metrics.getOriginalBytes());
+		}
+	}
+
+	@Test(timeOut = 30_000L)
+	public void compression_random_bypassed() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			SocketAddress backend = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			CompressionMetrics metrics = new CompressionMetrics();
+			SocketAddress chain = runChain(tester, "random", backend, metrics);
+
+			runVerifiedEcho(tester, "compressed-random", chain, randomData(), 32);
+			log.info("Random compression: {}", metrics);
+			assertTrue(metrics.getBypasses() > 0, metrics.toString());
+			assertTrue(metrics.getBypassedBytes() > metrics.getOriginalBytes()/2, metrics.toString());
+			assertTrue(metrics.getCompressionRatio() < 1.01, metrics.toString());
+		}
+	}
+
+	@Test(timeOut = 300_000L)
+	public void benchmarkCompression() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			SocketAddress backend = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			SocketAddress plain = runChain(tester, "plain", backend, null);
+			for (String name: new String[]{ "warmup", "text", "random" }) {
+				byte[] data = name.equals("random") ? randomData() : textData();
+				CompressionMetrics metrics = new CompressionMetrics();
+				SocketAddress chain = runChain(tester, "benchmark-"+name, backend, metrics);
+				runVerifiedEcho(tester, "plain-"+name, plain, data, 256);
+				runVerifiedEcho(tester, "compressed-"+name, chain, data, 256);
+				log.info("Compression: data={} ratio={} compressNsPerByte={} decompressNsPerByte={} bypassedBytes={}",
+					name, metrics.getCompressionRatio(), metrics.getCompressNanosPerByte(),
+					metrics.getDecompressNanosPerByte(), metrics.getBypassedBytes());
+			}
+		}
+	}
+
+	/**
+	 * Runs chain of {@link PortForwarderRunner}, compressing the unix link when metrics are provided.
+	 */
+	private static SocketAddress runChain(ClientServerTester tester, String name, SocketAddress backend, CompressionMetrics metrics)
+	{
+		new File("target/compression").mkdirs();
+		new File("target/compression/"+name+".socket").delete();
+		NettyPortForwarderFactory factory = new NettyPortForwarderFactory(tester.nettyEngine());
+		return PortForwarderRunner.runChain(
+			(config) -> ForwardEndTester.runForward(tester, factory, config),
+			AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)),
+			AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)),
+			AddressSpec.builder().proto("unix").path("target/compression/"+name+".socket").build(),
+			AddressSpec.fromSocketAddress(backend),
+			metrics == null ? null : PortForwarderFactory.CompressionConfig.builder().metrics(metrics).build()
+		);
+	}
+
+	/**
+	 * Streams data repeatedly through echo, verifying every received byte and measuring throughput.
+	 */
+	private static void runVerifiedEcho(ClientServerTester tester, String name, SocketAddress address, byte[] data, int megabytes)
+	{
+		long total = (long) megabytes*1024*1024;
+		ByteBuf chunk = Unpooled.unreleasableBuffer(Unpooled.directBuffer(data.length).writeBytes(data));
+		CompletableFuture<Long> finished = new CompletableFuture<>();
+		DuplexChannel channel = tester.nettyEngine().connect(AddressSpec.fromSocketAddress(address), new ChannelInboundHandlerAdapter()
+		{
+			long sent;
+			long received;
+			long started;
+
+			@Override
+			public void channelActive(ChannelHandlerContext ctx)
+			{
+				ctx.channel().config().setAutoRead(true);
+				started = System.nanoTime();
+				for (int i = 0; i < 16; ++i) {
+					send(ctx);
+				}
+				ctx.flush();
+			}
+
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg)
+			{
+				ByteBuf buf = (ByteBuf) msg;
+				try {
+					long before = received;
+					for (int i = buf.readerIndex(); i < buf.writerIndex(); ++i, ++received) {
+						if (buf.getByte(i) != data[(int) (received%data.length)]) {
+							finished.completeExceptionally(new AssertionError("Data differ at: "+received));
+							return;
+						}
+					}
+					for (long i = before/data.length; i < received/data.length; ++i) {
+						send(ctx);
+					}
+					if (received >= total) {
+						finished.complete(System.nanoTime()-started);
+					}
+				}
+				finally {
+					buf.release();
+				}
+			}
+
+			@Override
+			public void channelReadComplete(ChannelHandlerContext ctx)
+			{
+				ctx.flush();
+			}
+
+			private void send(ChannelHandlerContext ctx)
+			{
+				if (sent < total) {
+					sent += data.length;
+					ctx.write(chunk.duplicate(), ctx.voidPromise());
+				}
+			}
+		}).join();
+		long elapsed = finished.join();
+		channel.close();
+		log.info("Echo throughput: transport={} MiB={} MiB/s={}",
+			name, megabytes, megabytes*1_000_000_000.0/elapsed);
+	}
+
+	private static byte[] textData()
+	{
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; text.length() < 64*1024; ++i) {
+			text.append("GET /api/items/").append(i%97).append(" HTTP/1.1\r\nHost: example.com\r\nAccept: application/json\r\n\r\n");
+		}
+		return text.substring(0, 64*1024).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] randomData()
+	{
+		byte[] data = new byte[64*1024];
+		new Random(0).nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,205 @@
+package net.dryuf.netty.forward;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.DatagramEndTest;
+import net.dryuf.netty.core.DatagramOptions;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.testng.Assert.assertEquals;
+
+
+@Log4j2
+public class DatagramForwardEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void forward_twoClients_repliesRouted() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			Set<SocketAddress> senders = ConcurrentHashMap.newKeySet();
+			DatagramChannel backend = runEchoServer(tester, senders);
+			Server server = ForwardEndTester.runForward(tester, datagramConfig(backend.localAddress(), 60_000));
+
+			Client one = new Client(tester, server.listenAddress());
+			Client two = new Client(tester, server.listenAddress());
+			one.send("one");
+			two.send("two");
+			assertEquals(one.receive(), "one");
+			assertEquals(two.receive(), "two");
+			one.send("one-again");
+			assertEquals(one.receive(), "one-again");
+			assertEquals(senders.size(), 2);
+			one.channel.close();
+			two.channel.close();
+			backend.close();
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void forward_idle_sessionEvicted() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			Set<SocketAddress> senders = ConcurrentHashMap.newKeySet();
+			DatagramChannel backend = runEchoServer(tester, senders);
+			Server server = ForwardEndTester.runForward(tester, datagramConfig(backend.localAddress(), 300));
+
+			Client client = new Client(tester, server.listenAddress());
+			client.send("first");
+			assertEquals(client.receive(), "first");
+			Thread.sleep(1_000);
+			client.send("second");
+			assertEquals(client.receive(), "second");
+			assertEquals(senders.size(), 2);
+			client.channel.close();
+			backend.close();
+		}
+	}
+
+	/**
+	 * Blasts packets through forwarder to echo server, keeping fixed window of packets in flight per client, so the
+	 * result is not dominated by drops when sender outpaces receiver.
+	 */
+	@Test(timeOut = 60_000L)
+	public void benchmarkForward() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			DatagramChannel backend = runEchoServer(tester, ConcurrentHashMap.newKeySet());
+			Server server = ForwardEndTester.runForward(tester, datagramConfig(backend.localAddress(), 60_000));
+
+			runBlaster(tester, server.listenAddress(), "warmup", 4, 20_000);
+			runBlaster(tester, server.listenAddress(), "single", 1, 100_000);
+			runBlaster(tester, server.listenAddress(), "multi", 64, 2_000);
+			backend.close();
+		}
+	}
+
+	private static void runBlaster(ClientServerTester tester, SocketAddress address, String name, int clients, int count) throws Exception
+	{
+		int window = 32;
+		List<CompletableFuture<Void>> finished = new ArrayList<>();
+		List<DatagramChannel> channels = new ArrayList<>();
+		for (int i = 0; i < clients; ++i) {
+			CompletableFuture<Void> done = new CompletableFuture<>();
+			finished.add(done);
+			channels.add(tester.nettyEngine().connectDatagram(
+				AddressSpec.fromDatagramSocketAddress((InetSocketAddress) address),
+				new SimpleChannelInboundHandler<DatagramPacket>()
+				{
+					int sent = window;
+					int received = 0;
+
+					@Override
+					protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg)
+					{
+						if (++received == count) {
+							done.complete(null);
+						}
+						else if (sent < count) {
+							++sent;
+							ctx.write(msg.content().retain(), ctx.voidPromise());
+						}
+					}
+
+					@Override
+					public void channelReadComplete(ChannelHandlerContext ctx)
+					{
+						ctx.flush();
+					}
+				}
+			).join());
+		}
+		long started = System.nanoTime();
+		for (DatagramChannel channel: channels) {
+			for (int i = 0; i < window; ++i) {
+				channel.write(Unpooled.wrappedBuffer(new byte[64]));
+			}
+			channel.flush();
+		}
+		try {
+			CompletableFuture.allOf(finished.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+			long elapsed = System.nanoTime()-started;
+			log.info("UDP forward round trip: name={} clients={} count={} pps={}",
+				name, clients, clients*count, clients*count*1_000_000_000.0/elapsed);
+		}
+		catch (TimeoutException ex) {
+			log.info("UDP forward round trip: name={} lost packets, window stalled", name);
+		}
+		finally {
+			channels.forEach(DatagramChannel::close);
+		}
+	}
+
+	private static PortForwarderFactory.ForwardConfig datagramConfig(InetSocketAddress backend, long idleTimeout)
+	{
+		return PortForwarderFactory.ForwardConfig.builder()
+			.bind(DatagramEndTest.LOCALHOST_UDP)
+			.connect(AddressSpec.fromDatagramSocketAddress(backend))
+			.datagramIdleTimeout(idleTimeout)
+			.datagramOptions(DatagramOptions.builder().receiveBufferSize(8*1024*1024).build())
+			.build();
+	}
+
+	private static DatagramChannel runEchoServer(ClientServerTester tester, Set<SocketAddress> senders)
+	{
+		return tester.nettyEngine().bindDatagram(DatagramEndTest.LOCALHOST_UDP, new SimpleChannelInboundHandler<DatagramPacket>()
+		{
+			@Override
+			protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg)
+			{
+				senders.add(msg.sender());
+				ctx.writeAndFlush(new DatagramPacket(msg.content().retain(), msg.sender()));
+			}
+		}).join();
+	}
+
+	private static class Client
+	{
+		final LinkedBlockingQueue<String> responses = new LinkedBlockingQueue<>();
+
+		final DatagramChannel channel;
+
+		Client(ClientServerTester tester, SocketAddress address)
+		{
+			channel = tester.nettyEngine().connectDatagram(
+				AddressSpec.fromDatagramSocketAddress((InetSocketAddress) address),
+				new SimpleChannelInboundHandler<DatagramPacket>()
+				{
+					@Override
+					protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg)
+					{
+						responses.add(msg.content().toString(StandardCharsets.UTF_8));
+					}
+				}
+			).join();
+		}
+
+		void send(String message)
+		{
+			channel.writeAndFlush(Unpooled.wrappedBuffer(message.getBytes(StandardCharsets.UTF_8)));
+		}
+
+		String receive() throws InterruptedException
+		{
+			return responses.poll(5, TimeUnit.SECONDS);
+		}
+	}
+}
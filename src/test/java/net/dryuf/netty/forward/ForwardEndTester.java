@@ -0,0 +1,26 @@
+package net.dryuf.netty.forward;
+
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.test.ClientServerTester;
+
+
+/**
+ * Runs forwards for end tests, closed together with the tester.
+ */
+@Log4j2
+public class ForwardEndTester
+{
+	public static Server runForward(ClientServerTester tester, PortForwarderFactory.ForwardConfig config)
+	{
+		return runForward(tester, new NettyPortForwarderFactory(tester.nettyEngine()), config);
+	}
+
+	public static Server runForward(ClientServerTester tester, NettyPortForwarderFactory factory, PortForwarderFactory.ForwardConfig config)
+	{
+		Server server = factory.runForward(config).join();
+		tester.addServer(server);
+		log.info("Forwarder listening: {}", server.listenAddress());
+		return server;
+	}
+}
@@ -0,0 +1,209 @@
+package net.dryuf.netty.forward;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.ForwardTimeouts;
+import net.dryuf.netty.core.NettyServer;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+@Log4j2
+public class ForwardTimeoutsEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void readIdle_silentPair_closed() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			CompletableFuture<Void> backendClosed = new CompletableFuture<>();
+			SocketAddress backend = runBackend(tester, ctx -> {}, backendClosed);
+			SocketAddress forward = ForwardEndTester.runForward(tester, timeoutsConfig(backend, ForwardTimeouts.builder().readIdle(300).build())).listenAddress();
+
+			long start = System.nanoTime();
+			DuplexChannel client = connectClient(tester, forward, true);
+			backendClosed.join();
+			long elapsedMs = (System.nanoTime()-start)/1_000_000;
+			assertTrue(elapsedMs >= 250, "elapsedMs="+elapsedMs);
+			client.close();
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void writeIdle_oneWayTraffic_kept() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			CompletableFuture<Void> backendClosed = new CompletableFuture<>();
+			SocketAddress backend = runBackend(tester, ctx -> {}, backendClosed);
+			SocketAddress forward = ForwardEndTester.runForward(tester, timeoutsConfig(backend, ForwardTimeouts.builder().writeIdle(300).build())).listenAddress();
+
+			DuplexChannel client = connectClient(tester, forward, true);
+			// client keeps sending, never receiving anything back, like upload:
+			ScheduledFuture<?> sender = client.eventLoop().scheduleAtFixedRate(
+				() -> client.writeAndFlush(client.alloc().buffer(1).writeByte(0)),
+				0, 50, TimeUnit.MILLISECONDS
+			);
+			Thread.sleep(1_000);
+			assertFalse(backendClosed.isDone());
+			assertTrue(client.isActive());
+			sender.cancel(false);
+			client.close();
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void writeIdle_silentPair_closed() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			CompletableFuture<Void> backendClosed = new CompletableFuture<>();
+			SocketAddress backend = runBackend(tester, ctx -> {}, backendClosed);
+			SocketAddress forward = ForwardEndTester.runForward(tester, timeoutsConfig(backend, ForwardTimeouts.builder().writeIdle(300).build())).listenAddress();
+
+			long start = System.nanoTime();
+			DuplexChannel client = connectClient(tester, forward, true);
+			backendClosed.join();
+			long elapsedMs = (System.nanoTime()-start)/1_000_000;
+			assertTrue(elapsedMs >= 250, "elapsedMs="+elapsedMs);
+			client.close();
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void halfClosedLinger_backendShutdown_closed() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			CompletableFuture<Void> backendClosed = new CompletableFuture<>();
+			SocketAddress backend = runBackend(tester, ctx -> tester.nettyEngine().writeAndShutdown(
+				(DuplexChannel) ctx.channel(), Unpooled.wrappedBuffer("bye\n".getBytes(StandardCharsets.UTF_8))),
+				backendClosed);
+			SocketAddress forward = ForwardEndTester.runForward(tester, timeoutsConfig(backend, ForwardTimeouts.builder().halfClosedLinger(300).build())).listenAddress();
+
+			long start = System.nanoTime();
+			connectClient(tester, forward, true);
+			backendClosed.join();
+			long elapsedMs = (System.nanoTime()-start)/1_000_000;
+			assertTrue(elapsedMs >= 250, "elapsedMs="+elapsedMs);
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void slowConsumer_clientNotReading_closed() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			CompletableFuture<Void> backendClosed = new CompletableFuture<>();
+			SocketAddress backend = runBackend(tester, ctx -> {
+				for (int i = 0; i < 64; ++i) {
+					ctx.write(Unpooled.wrappedBuffer(new byte[1024*1024]));
+				}
+				ctx.flush();
+			}, backendClosed);
+			SocketAddress forward = ForwardEndTester.runForward(tester, timeoutsConfig(backend, ForwardTimeouts.builder().slowConsumer(300).build())).listenAddress();
+
+			DuplexChannel client = connectClient(tester, forward, false);
+			backendClosed.join();
+			client.close();
+		}
+	}
+
+	private static PortForwarderFactory.ForwardConfig timeoutsConfig(SocketAddress backend, ForwardTimeouts timeouts)
+	{
+		return PortForwarderFactory.ForwardConfig.builder()
+			.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+			.connect(AddressSpec.fromSocketAddress(backend))
+			.timeouts(timeouts)
+			.build();
+	}
+
+	/**
+	 * Runs backend calling onActive for accepted connection and completing closed once the connection is closed or
+	 * shut down by peer.
+	 */
+	private static SocketAddress runBackend(ClientServerTester tester, Consumer<ChannelHandlerContext> onActive,
+						CompletableFuture<Void> closed)
+	{
+		Server server = new NettyServer(
+			tester.nettyEngine().listen(
+				AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)),
+				new ChannelInitializer<DuplexChannel>()
+				{
+					@Override
+					protected void initChannel(DuplexChannel ch) throws Exception
+					{
+						ch.closeFuture().addListener(f -> closed.complete(null));
+						ch.pipeline().addLast(new ChannelInboundHandlerAdapter()
+						{
+							@Override
+							public void channelActive(ChannelHandlerContext ctx)
+							{
+								ctx.channel().config().setAutoRead(true);
+								onActive.accept(ctx);
+							}
+
+							@Override
+							public void channelRead(ChannelHandlerContext ctx, Object msg)
+							{
+								ReferenceCountUtil.release(msg);
+							}
+
+							@Override
+							public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+							{
+								if (evt instanceof ChannelInputShutdownEvent) {
+									closed.complete(null);
+								}
+							}
+
+							@Override
+							public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+							{
+								ctx.close();
+							}
+						});
+					}
+				}
+			).join());
+		tester.addServer(server);
+		return server.listenAddress();
+	}
+
+	private static DuplexChannel connectClient(ClientServerTester tester, SocketAddress address, boolean reading)
+	{
+		return tester.nettyEngine().connect(
+			AddressSpec.fromSocketAddress(address),
+			new ChannelInboundHandlerAdapter()
+			{
+				@Override
+				public void channelActive(ChannelHandlerContext ctx)
+				{
+					ctx.channel().config().setAutoRead(reading);
+				}
+
+				@Override
+				public void channelRead(ChannelHandlerContext ctx, Object msg)
+				{
+					((ByteBuf) msg).release();
+				}
+			},
+			null
+		).join();
+	}
+}
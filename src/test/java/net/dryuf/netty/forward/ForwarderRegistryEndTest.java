@@ -0,0 +1,306 @@
+package net.dryuf.netty.forward;
+
+import com.google.common.base.Stopwatch;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.NettyServer;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.core.StreamOptions;
+import net.dryuf.netty.pipeline.CumulatingByteBufHandler;
+import net.dryuf.netty.test.ClientServerTester;
+import net.dryuf.netty.test.pipeline.ExpectDataHandler;
+import net.dryuf.netty.tunnel.TunnelOptions;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+@Log4j2
+public class ForwarderRegistryEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void update_changedConnect_keepsListenerAndSwitchesBackend() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester();
+		     ForwarderRegistry registry = new ForwarderRegistry(tester.nettyEngine())) {
+			InetSocketAddress one = runGreetingServer(tester, "one\n");
+			InetSocketAddress two = runGreetingServer(tester, "two\n");
+
+			Server server = registry.update(PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.connect(AddressSpec.fromSocketAddress(one))
+				.build()
+			).join();
+			SocketAddress forwardAddress = server.listenAddress();
+			expectGreeting(tester, forwardAddress, "one\n");
+
+			Server updated = registry.update(PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.connect(AddressSpec.fromSocketAddress(two))
+				.build()
+			).join();
+			assertSame(updated, server);
+			assertEquals(updated.listenAddress(), forwardAddress);
+			expectGreeting(tester, forwardAddress, "two\n");
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void update_changedListenerOptions_rebinds() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester();
+		     ForwarderRegistry registry = new ForwarderRegistry(tester.nettyEngine())) {
+			InetSocketAddress one = runGreetingServer(tester, "one\n");
+			InetSocketAddress two = runGreetingServer(tester, "two\n");
+
+			new File("target/registry").mkdirs();
+			new File("target/registry/rebind.socket").delete();
+			AddressSpec bind = AddressSpec.builder().proto("unix").path("target/registry/rebind.socket").build();
+			Server server = registry.update(PortForwarderFactory.ForwardConfig.builder()
+				.bind(bind)
+				.connect(AddressSpec.fromSocketAddress(one))
+				.build()
+			).join();
+			expectGreeting(tester, server.listenAddress(), "one\n");
+
+			Server updated = registry.update(PortForwarderFactory.ForwardConfig.builder()
+				.bind(bind)
+				.connect(AddressSpec.fromSocketAddress(two))
+				.streamOptions(StreamOptions.builder().edgeTriggered(false).build())
+				.build()
+			).join();
+			assertNotSame(updated, server);
+			assertTrue(((NettyServer) server).getChannel().closeFuture().isDone());
+			expectGreeting(tester, updated.listenAddress(), "two\n");
+		}
+	}
+
+	@Test(timeOut = 30_000L)
+	public void apply_manyForwards_fast() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester();
+		     ForwarderRegistry registry = new ForwarderRegistry(tester.nettyEngine())) {
+			InetSocketAddress one = runReplyingServer(tester, "one\n");
+			InetSocketAddress two = runReplyingServer(tester, "two\n");
+
+			new File("target/registry").mkdirs();
+			List<PortForwarderFactory.ForwardConfig> configs = new ArrayList<>();
+			for (int i = 0; i < 300; ++i) {
+				new File("target/registry/forward-"+i+".socket").delete();
+				configs.add(PortForwarderFactory.ForwardConfig.builder()
+					.bind(AddressSpec.builder().proto("unix").path("target/registry/forward-"+i+".socket").build())
+					.connect(AddressSpec.fromSocketAddress(i%2 == 0 ? one : two))
+					.build());
+			}
+			Stopwatch addWatch = Stopwatch.createStarted();
+			registry.apply(configs).join();
+			log.info("Applied new forwards: count={} time={}", configs.size(), addWatch);
+
+			BlockingQueue<String> established0 = new LinkedBlockingQueue<>();
+			BlockingQueue<String> established1 = new LinkedBlockingQueue<>();
+			DuplexChannel channel0 = connectRecording(tester, forwardAddress(0), established0);
+			DuplexChannel channel1 = connectRecording(tester, forwardAddress(1), established1);
+			assertEquals(established0.take(), "one\n");
+			assertEquals(established1.take(), "two\n");
+
+			List<PortForwarderFactory.ForwardConfig> swapped = new ArrayList<>();
+			for (PortForwarderFactory.ForwardConfig config: configs.subList(0, configs.size()-1)) {
+				swapped.add(config.toBuilder()
+					.connect(config.getConnect().getPort() == one.getPort() ?
+						AddressSpec.fromSocketAddress(two) : AddressSpec.fromSocketAddress(one))
+					.build());
+			}
+			Stopwatch swapWatch = Stopwatch.createStarted();
+			registry.apply(swapped).join();
+			log.info("Applied swapped forwards: count={} time={}", swapped.size(), swapWatch);
+
+			assertEquals(registry.getForwards(), swapped);
+			// established connections keep their backend, new ones use the swapped one:
+			channel0.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{ 'x' }));
+			channel1.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{ 'x' }));
+			assertEquals(established0.take(), "one\n");
+			assertEquals(established1.take(), "two\n");
+			expectGreeting(tester, forwardAddress(0), "two\n");
+			channel0.close();
+			channel1.close();
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void update_tunnelForward_evictsTunnelClient() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester();
+		     NettyPortForwarderFactory factory = new NettyPortForwarderFactory(tester.nettyEngine());
+		     ForwarderRegistry registry = new ForwarderRegistry(factory)) {
+			InetSocketAddress one = runReplyingServer(tester, "one\n");
+			SocketAddress exit = ForwardEndTester.runForward(tester, factory, PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.connect(AddressSpec.fromSocketAddress(one))
+				.tunnel(PortForwarderFactory.TunnelConfig.builder().mode(PortForwarderFactory.TunnelConfig.Mode.EXIT).build())
+				.build()
+			).listenAddress();
+			PortForwarderFactory.ForwardConfig entry = PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.connect(AddressSpec.fromSocketAddress(exit))
+				.tunnel(PortForwarderFactory.TunnelConfig.builder().mode(PortForwarderFactory.TunnelConfig.Mode.ENTRY).build())
+				.build();
+			SocketAddress entryAddress = registry.update(entry).join().listenAddress();
+
+			BlockingQueue<String> established = new LinkedBlockingQueue<>();
+			DuplexChannel channel = connectRecording(tester, entryAddress, established);
+			assertEquals(established.take(), "one\n");
+			assertEquals(factory.getTunnelClientCount(), 1);
+
+			// unchanged tunnel keeps the client:
+			registry.update(entry.toBuilder().lazyConnectTimeout(10_000).build()).join();
+			assertEquals(factory.getTunnelClientCount(), 1);
+
+			registry.update(entry.toBuilder()
+				.tunnel(entry.getTunnel().toBuilder().options(TunnelOptions.builder().connections(3).build()).build())
+				.build()
+			).join();
+			assertEquals(factory.getTunnelClientCount(), 0);
+			channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{ 'x' }));
+			assertEquals(established.take(), "one\n");
+			expectGreeting(tester, entryAddress, "one\n");
+			assertEquals(factory.getTunnelClientCount(), 1);
+
+			registry.remove(entry.getBind()).join();
+			assertEquals(factory.getTunnelClientCount(), 0);
+			channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{ 'x' }));
+			assertEquals(established.take(), "one\n");
+			channel.close();
+		}
+	}
+
+	public static InetSocketAddress runGreetingServer(ClientServerTester tester, String greeting)
+	{
+		Server server = new NettyServer(
+			tester.nettyEngine().listen(
+				AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)),
+				new ChannelInitializer<DuplexChannel>()
+				{
+					@Override
+					protected void initChannel(DuplexChannel ch) throws Exception
+					{
+						ch.pipeline().addLast(new ChannelInboundHandlerAdapter()
+						{
+							@Override
+							public void channelActive(ChannelHandlerContext ctx)
+							{
+								ctx.writeAndFlush(Unpooled.wrappedBuffer(greeting.getBytes(StandardCharsets.UTF_8)))
+									.addListener(ChannelFutureListener.CLOSE);
+							}
+						});
+					}
+				}
+			).join());
+		tester.addServer(server);
+		return (InetSocketAddress) server.listenAddress();
+	}
+
+	public static void expectGreeting(ClientServerTester tester, SocketAddress address, String greeting)
+	{
+		CompletableFuture<Object> finished = new CompletableFuture<>();
+		tester.nettyEngine().connect(
+			AddressSpec.fromSocketAddress(address),
+			new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch) throws Exception
+				{
+					ch.pipeline().addLast(
+						new CumulatingByteBufHandler(1_000),
+						new ExpectDataHandler(finished, Unpooled.wrappedBuffer(greeting.getBytes(StandardCharsets.UTF_8)))
+					);
+				}
+			}
+		).join();
+		finished.join();
+	}
+
+	/**
+	 * Runs server sending greeting when connected and again for every received data, keeping connection open.
+	 */
+	public static InetSocketAddress runReplyingServer(ClientServerTester tester, String greeting)
+	{
+		Server server = new NettyServer(
+			tester.nettyEngine().listen(
+				AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)),
+				new ChannelInitializer<DuplexChannel>()
+				{
+					@Override
+					protected void initChannel(DuplexChannel ch) throws Exception
+					{
+						ch.config().setAutoRead(true);
+						ch.pipeline().addLast(new ChannelInboundHandlerAdapter()
+						{
+							@Override
+							public void channelActive(ChannelHandlerContext ctx)
+							{
+								ctx.writeAndFlush(Unpooled.wrappedBuffer(greeting.getBytes(StandardCharsets.UTF_8)));
+							}
+
+							@Override
+							public void channelRead(ChannelHandlerContext ctx, Object msg)
+							{
+								ReferenceCountUtil.release(msg);
+								ctx.writeAndFlush(Unpooled.wrappedBuffer(greeting.getBytes(StandardCharsets.UTF_8)));
+							}
+						});
+					}
+				}
+			).join());
+		tester.addServer(server);
+		return (InetSocketAddress) server.listenAddress();
+	}
+
+	/**
+	 * Connects client passing every received message as string to the queue.
+	 */
+	private static DuplexChannel connectRecording(ClientServerTester tester, SocketAddress address, BlockingQueue<String> received)
+	{
+		return tester.nettyEngine().connect(AddressSpec.fromSocketAddress(address), new ChannelInboundHandlerAdapter()
+		{
+			@Override
+			public void channelActive(ChannelHandlerContext ctx)
+			{
+				ctx.channel().config().setAutoRead(true);
+			}
+
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg)
+			{
+				received.add(((ByteBuf) msg).toString(StandardCharsets.UTF_8));
+				ReferenceCountUtil.release(msg);
+			}
+		}, null).join();
+	}
+
+	private static SocketAddress forwardAddress(int index)
+	{
+		return new DomainSocketAddress("target/registry/forward-"+index+".socket");
+	}
+}
@@ -0,0 +1,122 @@
+package net.dryuf.netty.forward;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.DuplexChannel;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.NettyEngine;
+import net.dryuf.netty.core.NettyServer;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.handoff.HandoffProtocol;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class HandoffForwardEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void testHandoff() throws Exception
+	{
+		// separate engines, like two processes:
+		try (NettyEngine forwarderEngine = new NettyEngine();
+		     NettyEngine receiverEngine = new NettyEngine();
+		     ClientServerTester forwarderTester = new ClientServerTester(forwarderEngine);
+		     ClientServerTester receiverTester = new ClientServerTester(receiverEngine)) {
+			new File("target/handoff").mkdirs();
+			new File("target/handoff/receiver.socket").delete();
+			new File("target/handoff/forward.socket").delete();
+			Queue<Optional<SocketAddress>> remotes = new ConcurrentLinkedQueue<>();
+			AddressSpec receiver = runReceiver(receiverTester, "target/handoff/receiver.socket", remotes);
+
+			NettyPortForwarderFactory factory = new NettyPortForwarderFactory(forwarderTester.nettyEngine());
+			Server eager = ForwardEndTester.runForward(forwarderTester, factory, PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.connect(receiver)
+				.handoff(true)
+				.handoffHeader("eager".getBytes(StandardCharsets.UTF_8))
+				.build());
+			Server lazy = ForwardEndTester.runForward(forwarderTester, factory, PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.connect(receiver)
+				.handoff(true)
+				.lazyConnect(true)
+				.handoffHeader("lazy".getBytes(StandardCharsets.UTF_8))
+				.build());
+			Server domain = ForwardEndTester.runForward(forwarderTester, factory, PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.builder().proto("unix").path("target/handoff/forward.socket").build())
+				.connect(receiver)
+				.handoff(true)
+				.build());
+
+			SniForwardEndTest.expectGreeting(forwarderTester, eager.listenAddress(), ascii("ping\n"), "eager:ping\n");
+			// the receiver talks directly to the original client socket, not to the forwarder domain socket:
+			assertTrue(remotes.poll().get() instanceof InetSocketAddress);
+			SniForwardEndTest.expectGreeting(forwarderTester, lazy.listenAddress(), ascii("ping\n"), "lazy:ping\n");
+			assertTrue(remotes.poll().get() instanceof InetSocketAddress);
+			SniForwardEndTest.expectGreeting(forwarderTester, domain.listenAddress(), ascii("ping\n"), ":ping\n");
+			assertEquals(remotes.size(), 1);
+			// handoff connections and adopted sockets:
+			assertEquals(receiverEngine.getPartitionMetrics().stream()
+				.filter(metrics -> metrics.getName().equals(NettyEngine.DEFAULT_PARTITION))
+				.findFirst()
+				.orElseThrow()
+				.getTotalChannelCount(), 6L);
+		}
+	}
+
+	private static AddressSpec runReceiver(ClientServerTester tester, String path, Queue<Optional<SocketAddress>> remotes)
+	{
+		AddressSpec address = AddressSpec.builder().proto("unix").path(path).build();
+		Server server = new NettyServer(
+			tester.nettyEngine().listenHandoff(
+				address,
+				new ChannelInitializer<DuplexChannel>()
+				{
+					@Override
+					protected void initChannel(DuplexChannel ch) throws Exception
+					{
+						remotes.add(Optional.ofNullable(ch.remoteAddress()));
+						String header = new String(ch.attr(HandoffProtocol.HEADER).get(), StandardCharsets.UTF_8);
+						ch.pipeline().addLast(new ChannelInboundHandlerAdapter()
+						{
+							@Override
+							public void channelActive(ChannelHandlerContext ctx)
+							{
+								ctx.read();
+							}
+
+							@Override
+							public void channelRead(ChannelHandlerContext ctx, Object msg)
+							{
+								ctx.write(Unpooled.wrappedBuffer((header+":").getBytes(StandardCharsets.UTF_8)));
+								ctx.writeAndFlush(msg)
+									.addListener(ChannelFutureListener.CLOSE);
+							}
+						});
+					}
+				}
+			).join());
+		tester.addServer(server);
+		return address;
+	}
+
+	private static ByteBuf ascii(String s)
+	{
+		return Unpooled.wrappedBuffer(s.getBytes(StandardCharsets.US_ASCII));
+	}
+}
@@ -0,0 +1,126 @@
+package net.dryuf.netty.forward;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.DuplexChannel;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.NettyEngine;
+import net.dryuf.netty.core.NettyServer;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.provider.ChannelProvider;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+
+
+@Log4j2
+public class LazyConnectForwardEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void testLazyConnect() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			AtomicInteger accepted = new AtomicInteger();
+			InetSocketAddress backend = runRequestResponseServer(tester, accepted);
+
+			Server server = ForwardEndTester.runForward(tester, lazyConfig(backend, true));
+
+			DuplexChannel idle = tester.nettyEngine().connect(
+				AddressSpec.fromSocketAddress(server.listenAddress()),
+				new ChannelInboundHandlerAdapter()
+			).join();
+			Thread.sleep(300);
+			assertEquals(accepted.get(), 0);
+			idle.close().sync();
+
+			SniForwardEndTest.expectGreeting(tester, server.listenAddress(), ascii("ping\n"), "ping\n");
+			assertEquals(accepted.get(), 1);
+		}
+	}
+
+	@Test(timeOut = 60_000L)
+	public void benchmarkLazyConnect() throws Exception
+	{
+		ChannelProvider provider = NettyEngine.createChannelProvider();
+		log.info("TCP Fast Open: listen={} connect={}", provider.isTcpFastOpenListenSupported(), provider.isTcpFastOpenConnectSupported());
+		try (ClientServerTester tester = new ClientServerTester()) {
+			InetSocketAddress backend = runRequestResponseServer(tester, new AtomicInteger());
+			Server eager = ForwardEndTester.runForward(tester, lazyConfig(backend, false));
+			Server lazy = ForwardEndTester.runForward(tester, lazyConfig(backend, true));
+
+			runRequests(tester, "warmup", eager.listenAddress(), 500);
+			runRequests(tester, "warmup", lazy.listenAddress(), 500);
+			runRequests(tester, "eager", eager.listenAddress(), 1000);
+			runRequests(tester, "lazy", lazy.listenAddress(), 1000);
+		}
+	}
+
+	private static void runRequests(ClientServerTester tester, String name, SocketAddress address, int count)
+	{
+		long started = System.nanoTime();
+		for (int i = 0; i < count; ++i) {
+			SniForwardEndTest.expectGreeting(tester, address, ascii("ping\n"), "ping\n");
+		}
+		long elapsed = System.nanoTime()-started;
+		log.info("Request/response over new connection: connect={} count={} us/op={} ops/s={}",
+			name, count, elapsed/1000.0/count, count*1_000_000_000.0/elapsed);
+	}
+
+	private static PortForwarderFactory.ForwardConfig lazyConfig(InetSocketAddress backend, boolean lazyConnect)
+	{
+		return PortForwarderFactory.ForwardConfig.builder()
+			.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+			.connect(AddressSpec.fromSocketAddress(backend))
+			.lazyConnect(lazyConnect)
+			.build();
+	}
+
+	private static InetSocketAddress runRequestResponseServer(ClientServerTester tester, AtomicInteger accepted)
+	{
+		Server server = new NettyServer(
+			tester.nettyEngine().listen(
+				AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)),
+				new ChannelInitializer<DuplexChannel>()
+				{
+					@Override
+					protected void initChannel(DuplexChannel ch) throws Exception
+					{
+						accepted.incrementAndGet();
+						ch.pipeline().addLast(new ChannelInboundHandlerAdapter()
+						{
+							@Override
+							public void channelActive(ChannelHandlerContext ctx)
+							{
+								ctx.read();
+							}
+
+							@Override
+							public void channelRead(ChannelHandlerContext ctx, Object msg)
+							{
+								ctx.writeAndFlush(msg)
+									.addListener(ChannelFutureListener.CLOSE);
+							}
+						});
+					}
+				}
+			).join());
+		tester.addServer(server);
+		return (InetSocketAddress) server.listenAddress();
+	}
+
+	private static ByteBuf ascii(String s)
+	{
+		return Unpooled.wrappedBuffer(s.getBytes(StandardCharsets.US_ASCII));
+	}
+}
@@ -0,0 +1,191 @@
+package net.dryuf.netty.forward;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.NettyEngine;
+import net.dryuf.netty.core.NettyServer;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+@Log4j2
+public class ListenerHandoverEndTest
+{
+	@Test(timeOut = 30_000L)
+	public void takeOver_runningForwards_noConnectionRefused() throws Exception
+	{
+		// separate engines, like two processes:
+		try (NettyEngine oldEngine = new NettyEngine();
+		     NettyEngine newEngine = new NettyEngine();
+		     ClientServerTester oldTester = new ClientServerTester(oldEngine);
+		     ClientServerTester newTester = new ClientServerTester(newEngine);
+		     ForwarderRegistry oldRegistry = new ForwarderRegistry(oldTester.nettyEngine());
+		     ForwarderRegistry newRegistry = new ForwarderRegistry(newTester.nettyEngine())) {
+			newEngine.definePartition("handover", 1);
+			InetSocketAddress one = ForwarderRegistryEndTest.runGreetingServer(oldTester, "one\n");
+			InetSocketAddress two = ForwarderRegistryEndTest.runGreetingServer(newTester, "two\n");
+
+			new File("target/handover").mkdirs();
+			new File("target/handover/control.socket").delete();
+			new File("target/handover/forward.socket").delete();
+			AddressSpec control = AddressSpec.builder().proto("unix").path("target/handover/control.socket").build();
+			AddressSpec tcpBind = AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0));
+			AddressSpec unixBind = AddressSpec.builder().proto("unix").path("target/handover/forward.socket").build();
+
+			Server tcpServer = oldRegistry.update(PortForwarderFactory.ForwardConfig.builder()
+				.bind(tcpBind)
+				.connect(AddressSpec.fromSocketAddress(one))
+				.build()
+			).join();
+			Server unixServer = oldRegistry.update(PortForwarderFactory.ForwardConfig.builder()
+				.bind(unixBind)
+				.connect(AddressSpec.fromSocketAddress(one))
+				.build()
+			).join();
+			oldRegistry.serveHandover(control).join();
+			SocketAddress tcpAddress = tcpServer.listenAddress();
+			SocketAddress unixAddress = new DomainSocketAddress("target/handover/forward.socket");
+			assertEquals(readGreeting(oldTester, tcpAddress), "one\n");
+			assertEquals(readGreeting(oldTester, unixAddress), "one\n");
+
+			AtomicBoolean stop = new AtomicBoolean();
+			AtomicInteger failures = new AtomicInteger();
+			AtomicInteger successes = new AtomicInteger();
+			CompletableFuture<Void> hammer = CompletableFuture.runAsync(() -> {
+				while (!stop.get()) {
+					for (SocketAddress address : List.of(tcpAddress, unixAddress)) {
+						try {
+							String greeting = readGreeting(oldTester, address);
+							if (!greeting.equals("one\n") && !greeting.equals("two\n")) {
+								throw new IllegalStateException("Unexpected greeting: "+greeting);
+							}
+							successes.incrementAndGet();
+						}
+						catch (Throwable ex) {
+							log.error("Connection failed during handover: {}", address, ex);
+							failures.incrementAndGet();
+						}
+					}
+				}
+			});
+			Thread.sleep(200);
+
+			List<PortForwarderFactory.ForwardConfig> newConfigs = Stream.of(tcpBind, unixBind)
+				.map(bind -> PortForwarderFactory.ForwardConfig.builder()
+					.bind(bind)
+					.connect(AddressSpec.fromSocketAddress(two))
+					.partition("handover")
+					.build())
+				.collect(Collectors.toList());
+			newRegistry.takeOver(control, newConfigs).join();
+			assertEquals(oldRegistry.getForwards().size(), 0);
+			assertTrue(((NettyServer) tcpServer).getChannel().closeFuture().isDone());
+			assertTrue(((NettyServer) unixServer).getChannel().closeFuture().isDone());
+			assertEquals(newRegistry.getForwards(), newConfigs);
+
+			Thread.sleep(200);
+			stop.set(true);
+			hammer.join();
+			log.info("Connections during handover: successes={} failures={}", successes.get(), failures.get());
+			assertEquals(failures.get(), 0);
+
+			long partitionChannels = getTotalChannelCount(newEngine, "handover");
+			assertEquals(readGreeting(newTester, tcpAddress), "two\n");
+			assertTrue(new File("target/handover/forward.socket").exists());
+			assertEquals(readGreeting(newTester, unixAddress), "two\n");
+			// adopted listeners serve accepted connections in the forward's partition, along with backend ones:
+			assertEquals(getTotalChannelCount(newEngine, "handover")-partitionChannels, 4L);
+		}
+	}
+
+	private static long getTotalChannelCount(NettyEngine engine, String partition)
+	{
+		return engine.getPartitionMetrics().stream()
+			.filter(metrics -> metrics.getName().equals(partition))
+			.findFirst()
+			.orElseThrow()
+			.getTotalChannelCount();
+	}
+
+	private static String readGreeting(ClientServerTester tester, SocketAddress address)
+	{
+		CompletableFuture<String> result = new CompletableFuture<>();
+		tester.nettyEngine().connect(
+			AddressSpec.fromSocketAddress(address),
+			new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch) throws Exception
+				{
+					ch.pipeline().addLast(new ChannelInboundHandlerAdapter()
+					{
+						private final StringBuilder content = new StringBuilder();
+
+						@Override
+						public void channelActive(ChannelHandlerContext ctx)
+						{
+							ctx.channel().config().setAutoRead(true);
+						}
+
+						@Override
+						public void channelRead(ChannelHandlerContext ctx, Object msg)
+						{
+							ByteBuf buf = (ByteBuf) msg;
+							content.append(buf.toString(StandardCharsets.UTF_8));
+							buf.release();
+						}
+
+						@Override
+						public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+						{
+							if (evt instanceof ChannelInputShutdownEvent) {
+								result.complete(content.toString());
+								ctx.close();
+							}
+						}
+
+						@Override
+						public void channelInactive(ChannelHandlerContext ctx)
+						{
+							result.complete(content.toString());
+						}
+
+						@Override
+						public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+						{
+							result.completeExceptionally(cause);
+							ctx.close();
+						}
+					});
+				}
+			}
+		).whenComplete((v, ex) -> {
+			if (ex != null) {
+				result.completeExceptionally(ex);
+			}
+		});
+		return result.join();
+	}
+}
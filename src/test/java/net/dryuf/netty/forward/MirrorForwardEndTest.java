@@ -0,0 +1,115 @@
+package net.dryuf.netty.forward;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.DuplexChannel;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.NettyServer;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.local.LocalTransportEndTest;
+import net.dryuf.netty.pipeline.MirrorHandler;
+import net.dryuf.netty.pipeline.MirrorMetrics;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+@Log4j2
+public class MirrorForwardEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void mirror_echo_shadowReceivesCopy() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			SocketAddress primary = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			AtomicLong shadowReceived = new AtomicLong();
+			SocketAddress shadow = runShadowServer(tester, true, shadowReceived);
+			MirrorMetrics metrics = new MirrorMetrics();
+			SocketAddress forward = ForwardEndTester.runForward(tester, mirrorConfig(primary, shadow, 1024*1024, metrics)).listenAddress();
+
+			// shadow echoes too, its responses must not reach client, otherwise the count would not match:
+			LocalTransportEndTest.runPingPong(tester, "mirrored", forward, 100);
+			while (metrics.getMirroredBytes() < 6400 || shadowReceived.get() < 6400) {
+				Thread.sleep(10);
+			}
+			assertEquals(shadowReceived.get(), 6400L);
+			assertEquals(metrics.getDroppedBytes(), 0L);
+			assertEquals(metrics.getShadowConnections(), 1L);
+		}
+	}
+
+	@Test(timeOut = 60_000L)
+	public void mirror_slowShadow_disconnectedPrimaryUnaffected() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			SocketAddress primary = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			SocketAddress shadow = runShadowServer(tester, false, new AtomicLong());
+			MirrorMetrics metrics = new MirrorMetrics();
+			SocketAddress forward = ForwardEndTester.runForward(tester, mirrorConfig(primary, shadow, 256*1024, metrics)).listenAddress();
+
+			LocalTransportEndTest.runThroughput(tester, "mirrored-slow", forward, 64);
+			log.info("Slow shadow: {}", metrics);
+			assertEquals(metrics.getShadowDisconnects(), 1L);
+			assertTrue(metrics.getDroppedBytes() > 0, metrics.toString());
+		}
+	}
+
+	private static PortForwarderFactory.ForwardConfig mirrorConfig(SocketAddress primary, SocketAddress shadow, long maxBuffered,
+									MirrorMetrics metrics)
+	{
+		return PortForwarderFactory.ForwardConfig.builder()
+			.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+			.connect(AddressSpec.fromSocketAddress(primary))
+			.mirror(PortForwarderFactory.MirrorConfig.builder()
+				.connect(AddressSpec.fromSocketAddress(shadow))
+				.maxBuffered(maxBuffered)
+				.overflowPolicy(MirrorHandler.OverflowPolicy.DISCONNECT)
+				.metrics(metrics)
+				.build())
+			.build();
+	}
+
+	/**
+	 * Runs shadow server, either echoing and counting received data or not reading at all.
+	 */
+	private static SocketAddress runShadowServer(ClientServerTester tester, boolean reading, AtomicLong received)
+	{
+		Server server = new NettyServer(tester.nettyEngine().listen(
+			AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)),
+			new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch) throws Exception
+				{
+					ch.config().setAutoRead(reading);
+					ch.pipeline().addLast(new ChannelInboundHandlerAdapter()
+					{
+						@Override
+						public void channelRead(ChannelHandlerContext ctx, Object msg)
+						{
+							received.addAndGet(((ByteBuf) msg).readableBytes());
+							ctx.write(msg, ctx.voidPromise());
+						}
+
+						@Override
+						public void channelReadComplete(ChannelHandlerContext ctx)
+						{
+							ctx.flush();
+						}
+					});
+				}
+			}
+		).join());
+		tester.addServer(server);
+		return server.listenAddress();
+	}
+}
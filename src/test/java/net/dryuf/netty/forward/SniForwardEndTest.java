@@ -0,0 +1,126 @@
+package net.dryuf.netty.forward;
+
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.DuplexChannel;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.local.LocalTransportEndTest;
+import net.dryuf.netty.pipeline.CumulatingByteBufHandler;
+import net.dryuf.netty.test.ClientServerTester;
+import net.dryuf.netty.test.pipeline.ExpectDataHandler;
+import net.dryuf.netty.tls.ClientHelloParserTest;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+
+public class SniForwardEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void testSniRouting() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			InetSocketAddress one = ForwarderRegistryEndTest.runGreetingServer(tester, "one\n");
+			InetSocketAddress two = ForwarderRegistryEndTest.runGreetingServer(tester, "two\n");
+			SocketAddress echo = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			InetSocketAddress fallback = ForwarderRegistryEndTest.runGreetingServer(tester, "fallback\n");
+
+			Server server = ForwardEndTester.runForward(tester, sniConfig(fallback, PortForwarderFactory.SniConfig.builder()
+				.routes(ImmutableMap.of(
+					"one.example.com", AddressSpec.fromSocketAddress(one),
+					"*.example.org", AddressSpec.fromSocketAddress(two),
+					"echo.example.com", AddressSpec.fromSocketAddress(echo)
+				))
+				.build()
+			));
+
+			expectGreeting(tester, server.listenAddress(), ClientHelloParserTest.createClientHello("one.example.com"), "one\n");
+			expectGreeting(tester, server.listenAddress(), ClientHelloParserTest.createClientHello("ONE.Example.com"), "one\n");
+			expectGreeting(tester, server.listenAddress(), ClientHelloParserTest.createClientHello("a.b.example.org"), "two\n");
+			expectGreeting(tester, server.listenAddress(), ClientHelloParserTest.createClientHello("example.net"), "fallback\n");
+			expectGreeting(tester, server.listenAddress(), Unpooled.wrappedBuffer("GET / HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8)), "fallback\n");
+			// peeked ClientHello is replayed to backend intact:
+			ByteBuf hello = ClientHelloParserTest.createClientHello("echo.example.com");
+			expectResponse(tester, server.listenAddress(), hello.copy(), hello);
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void testSniStalledClient() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			InetSocketAddress one = ForwarderRegistryEndTest.runGreetingServer(tester, "one\n");
+			SocketAddress echo = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+
+			Server server = ForwardEndTester.runForward(tester, sniConfig(echo, PortForwarderFactory.SniConfig.builder()
+				.routes(ImmutableMap.of("one.example.com", AddressSpec.fromSocketAddress(one)))
+				.peekTimeout(200)
+				.build()
+			));
+
+			// incomplete ClientHello goes to default connect once peek times out, with the partial data:
+			ByteBuf partial = ClientHelloParserTest.createClientHello("one.example.com").slice(0, 20);
+			expectResponse(tester, server.listenAddress(), partial.copy(), partial);
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void testSniOverMaxPeekLength() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			InetSocketAddress one = ForwarderRegistryEndTest.runGreetingServer(tester, "one\n");
+			SocketAddress echo = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+
+			Server server = ForwardEndTester.runForward(tester, sniConfig(echo, PortForwarderFactory.SniConfig.builder()
+				.routes(ImmutableMap.of("one.example.com", AddressSpec.fromSocketAddress(one)))
+				.maxPeekLength(64)
+				.build()
+			));
+
+			// ClientHello longer than peek limit goes to default connect instead of failing the connection:
+			ByteBuf hello = ClientHelloParserTest.createClientHello("one.example.com");
+			expectResponse(tester, server.listenAddress(), hello.copy(), hello);
+		}
+	}
+
+	public static void expectGreeting(ClientServerTester tester, SocketAddress address, ByteBuf request, String greeting)
+	{
+		expectResponse(tester, address, request, Unpooled.wrappedBuffer(greeting.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	public static void expectResponse(ClientServerTester tester, SocketAddress address, ByteBuf request, ByteBuf response)
+	{
+		CompletableFuture<Object> finished = new CompletableFuture<>();
+		DuplexChannel channel = tester.nettyEngine().connect(
+			AddressSpec.fromSocketAddress(address),
+			new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch) throws Exception
+				{
+					ch.pipeline().addLast(
+						new CumulatingByteBufHandler(response.readableBytes()+1_000),
+						new ExpectDataHandler(finished, response)
+					);
+				}
+			}
+		).join();
+		channel.writeAndFlush(request);
+		finished.join();
+	}
+
+	private static PortForwarderFactory.ForwardConfig sniConfig(SocketAddress fallback, PortForwarderFactory.SniConfig sni)
+	{
+		return PortForwarderFactory.ForwardConfig.builder()
+			.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+			.connect(AddressSpec.fromSocketAddress(fallback))
+			.sni(sni)
+			.build();
+	}
+}
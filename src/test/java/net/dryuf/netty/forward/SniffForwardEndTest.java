@@ -0,0 +1,83 @@
+package net.dryuf.netty.forward;
+
+import com.google.common.collect.ImmutableList;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.test.ClientServerTester;
+import net.dryuf.netty.tls.ClientHelloParserTest;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+
+public class SniffForwardEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void testSniffRouting() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			InetSocketAddress tls = ForwarderRegistryEndTest.runGreetingServer(tester, "tls\n");
+			InetSocketAddress http = ForwarderRegistryEndTest.runGreetingServer(tester, "http\n");
+			InetSocketAddress ssh = ForwarderRegistryEndTest.runGreetingServer(tester, "ssh\n");
+			InetSocketAddress magic = ForwarderRegistryEndTest.runGreetingServer(tester, "magic\n");
+			InetSocketAddress timeout = ForwarderRegistryEndTest.runGreetingServer(tester, "timeout\n");
+			InetSocketAddress fallback = ForwarderRegistryEndTest.runGreetingServer(tester, "fallback\n");
+
+			Server server = ForwardEndTester.runForward(tester, PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.connect(AddressSpec.fromSocketAddress(fallback))
+				.sniff(PortForwarderFactory.SniffConfig.builder()
+					.routes(ImmutableList.of(
+						PortForwarderFactory.SniffRoute.builder().protocol("tls").connect(AddressSpec.fromSocketAddress(tls)).build(),
+						PortForwarderFactory.SniffRoute.builder().protocol("http").connect(AddressSpec.fromSocketAddress(http)).build(),
+						PortForwarderFactory.SniffRoute.builder().protocol("ssh").connect(AddressSpec.fromSocketAddress(ssh)).build(),
+						PortForwarderFactory.SniffRoute.builder().magic(new byte[]{ 0x7f, 'D', 'R' }).connect(AddressSpec.fromSocketAddress(magic)).build()
+					))
+					.timeoutConnect(AddressSpec.fromSocketAddress(timeout))
+					.peekTimeout(200)
+					.build())
+				.build()
+			);
+
+			SniForwardEndTest.expectGreeting(tester, server.listenAddress(), ClientHelloParserTest.createClientHello("example.com"), "tls\n");
+			SniForwardEndTest.expectGreeting(tester, server.listenAddress(), ascii("GET / HTTP/1.0\r\n\r\n"), "http\n");
+			SniForwardEndTest.expectGreeting(tester, server.listenAddress(), ascii("SSH-2.0-Test\r\n"), "ssh\n");
+			SniForwardEndTest.expectGreeting(tester, server.listenAddress(), Unpooled.wrappedBuffer(new byte[]{ 0x7f, 'D', 'R', 0 }), "magic\n");
+			SniForwardEndTest.expectGreeting(tester, server.listenAddress(), ascii("HELLO\n"), "fallback\n");
+			SniForwardEndTest.expectGreeting(tester, server.listenAddress(), Unpooled.EMPTY_BUFFER, "timeout\n");
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void testSniffMaxPeekLengthShorterThanSignature_rejected() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			CompletableFuture<Server> future = new NettyPortForwarderFactory(tester.nettyEngine()).runForward(PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.connect(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 1)))
+				.sniff(PortForwarderFactory.SniffConfig.builder()
+					.routes(ImmutableList.of(
+						PortForwarderFactory.SniffRoute.builder().magic(new byte[]{ 0x7f, 'D', 'R' }).connect(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 1))).build()
+					))
+					.maxPeekLength(2)
+					.build())
+				.build()
+			);
+			CompletionException ex = expectThrows(CompletionException.class, future::join);
+			assertTrue(ex.getCause() instanceof IllegalArgumentException, String.valueOf(ex.getCause()));
+		}
+	}
+
+	private static ByteBuf ascii(String s)
+	{
+		return Unpooled.wrappedBuffer(s.getBytes(StandardCharsets.US_ASCII));
+	}
+}
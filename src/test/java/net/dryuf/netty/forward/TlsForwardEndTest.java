@@ -0,0 +1,306 @@
+package net.dryuf.netty.forward;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.NettyServer;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.echo.EchoEndTester;
+import net.dryuf.netty.test.ClientServerTester;
+import net.dryuf.netty.tls.TlsConfig;
+import net.dryuf.netty.tls.TlsContextFactory;
+import net.dryuf.netty.util.NettyFutures;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.net.ssl.SSLSession;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+
+@Log4j2
+public class TlsForwardEndTest
+{
+	private SelfSignedCertificate certificate;
+
+	@BeforeClass
+	public void setup() throws Exception
+	{
+		certificate = new SelfSignedCertificate("localhost");
+	}
+
+	@AfterClass
+	public void teardown()
+	{
+		certificate.delete();
+	}
+
+	@Test(timeOut = 30_000L)
+	public void testTerminateOriginate() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			InetSocketAddress serverAddress = EchoEndTester.runEchoServer(tester);
+
+			SocketAddress terminating = ForwardEndTester.runForward(tester, PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.bindTls(serverTls())
+				.connect(AddressSpec.fromSocketAddress(serverAddress))
+				.build()
+			).listenAddress();
+			SocketAddress originating = ForwardEndTester.runForward(tester, PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.connect(AddressSpec.fromSocketAddress(terminating))
+				.connectTls(clientTls(true))
+				.build()
+			).listenAddress();
+
+			EchoEndTester.runEchoClient(tester, originating, 1);
+		}
+	}
+
+	@Test(timeOut = 30_000L)
+	public void benchmarkHandshake() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			InetSocketAddress serverAddress = ForwarderRegistryEndTest.runGreetingServer(tester, "hello\n");
+
+			SocketAddress terminating = ForwardEndTester.runForward(tester, PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.bindTls(serverTls())
+				.connect(AddressSpec.fromSocketAddress(serverAddress))
+				.build()
+			).listenAddress();
+
+			// warm up first, to not penalize the first measured variant:
+			runHandshakes(tester, terminating, clientTls(false));
+			double full = runHandshakes(tester, terminating, clientTls(false));
+			double resumed = runHandshakes(tester, terminating, clientTls(true));
+			log.info("TLS handshakes: resumed={}/s full={}/s provider={}", resumed, full, TlsContextFactory.getSslProvider());
+		}
+	}
+
+	@Test(timeOut = 30_000L)
+	public void testSessionResumption() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			InetSocketAddress serverAddress = ForwarderRegistryEndTest.runGreetingServer(tester, "hello\n");
+
+			SocketAddress terminating = ForwardEndTester.runForward(tester, PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.bindTls(serverTls())
+				.connect(AddressSpec.fromSocketAddress(serverAddress))
+				.build()
+			).listenAddress();
+
+			TlsContextFactory contextFactory = new TlsContextFactory();
+			SSLSession first = runHandshake(tester, terminating, contextFactory, clientTls(true));
+			// TLS 1.3 assigns new id to every connection, resumed session keeps creation time of the original one:
+			Thread.sleep(10);
+			SSLSession resumed = runHandshake(tester, terminating, contextFactory, clientTls(true));
+			assertEquals(resumed.getCreationTime(), first.getCreationTime());
+			Thread.sleep(10);
+			SSLSession full = runHandshake(tester, terminating, contextFactory, clientTls(false));
+			assertNotEquals(full.getCreationTime(), first.getCreationTime());
+		}
+	}
+
+	@Test(timeOut = 30_000L)
+	public void testAlpnPassthrough() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			InetSocketAddress backend = runProtocolServer(tester);
+
+			SocketAddress forwarding = ForwardEndTester.runForward(tester, PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+				.bindTls(serverTls().toBuilder().applicationProtocols(Arrays.asList("h2", "http/1.1")).build())
+				.connect(AddressSpec.fromSocketAddress(backend))
+				.connectTls(clientTls(true))
+				.alpnPassthrough(true)
+				.build()
+			).listenAddress();
+
+			TlsContextFactory contextFactory = new TlsContextFactory();
+			for (String protocol: new String[]{ "h2", "http/1.1" }) {
+				TlsConfig tls = clientTls(true).toBuilder().applicationProtocols(Collections.singletonList(protocol)).build();
+				assertEquals(readProtocol(tester, forwarding, contextFactory, tls), protocol);
+			}
+		}
+	}
+
+	private double runHandshakes(ClientServerTester tester, SocketAddress address, TlsConfig tls)
+	{
+		TlsContextFactory contextFactory = new TlsContextFactory();
+		AddressSpec peer = AddressSpec.fromSocketAddress(address);
+		return tester.runClientLoop(
+			ClientServerTester.TestConfig.DEFAULT,
+			(engine) -> engine.connect(
+					peer,
+					new ChannelInitializer<DuplexChannel>()
+					{
+						@Override
+						protected void initChannel(DuplexChannel ch)
+						{
+							ch.config().setAutoRead(true);
+							ch.pipeline().addLast(contextFactory.newClientHandler(tls, null, ch.alloc(), peer));
+						}
+					}
+				)
+				.thenCompose(channel -> NettyFutures.toCompletable(channel.pipeline().get(SslHandler.class).handshakeFuture())
+					.thenCompose(v -> NettyFutures.toCompletable(channel.close()))
+				)
+		);
+	}
+
+	/**
+	 * Connects to address and returns TLS session once first data are received, which is after session tickets.
+	 */
+	private static SSLSession runHandshake(ClientServerTester tester, SocketAddress address, TlsContextFactory contextFactory, TlsConfig tls)
+	{
+		AddressSpec peer = AddressSpec.fromSocketAddress(address);
+		CompletableFuture<SSLSession> session = new CompletableFuture<>();
+		DuplexChannel channel = tester.nettyEngine().connect(
+			peer,
+			new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch)
+				{
+					ch.config().setAutoRead(true);
+					ch.pipeline().addLast(
+						contextFactory.newClientHandler(tls, null, ch.alloc(), peer),
+						new ChannelInboundHandlerAdapter()
+						{
+							@Override
+							public void channelRead(ChannelHandlerContext ctx, Object msg)
+							{
+								ReferenceCountUtil.release(msg);
+								session.complete(ctx.pipeline().get(SslHandler.class).engine().getSession());
+							}
+						}
+					);
+				}
+			}
+		).join();
+		try {
+			return session.join();
+		}
+		finally {
+			channel.close().syncUninterruptibly();
+		}
+	}
+
+	/**
+	 * Connects to address and reads the whole response.
+	 */
+	private static String readProtocol(ClientServerTester tester, SocketAddress address, TlsContextFactory contextFactory, TlsConfig tls)
+	{
+		AddressSpec peer = AddressSpec.fromSocketAddress(address);
+		CompletableFuture<String> result = new CompletableFuture<>();
+		tester.nettyEngine().connect(
+			peer,
+			new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch)
+				{
+					ch.config().setAutoRead(true);
+					ch.pipeline().addLast(
+						contextFactory.newClientHandler(tls, null, ch.alloc(), peer),
+						new ChannelInboundHandlerAdapter()
+						{
+							private final StringBuilder content = new StringBuilder();
+
+							@Override
+							public void channelRead(ChannelHandlerContext ctx, Object msg)
+							{
+								content.append(((ByteBuf) msg).toString(StandardCharsets.UTF_8));
+								((ByteBuf) msg).release();
+							}
+
+							@Override
+							public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+							{
+								if (evt instanceof ChannelInputShutdownEvent) {
+									result.complete(content.toString());
+									ctx.close();
+								}
+							}
+
+							@Override
+							public void channelInactive(ChannelHandlerContext ctx)
+							{
+								result.complete(content.toString());
+							}
+						}
+					);
+				}
+			}
+		).join();
+		return result.join();
+	}
+
+	/**
+	 * Runs TLS server responding with ALPN protocol negotiated with client.
+	 */
+	private InetSocketAddress runProtocolServer(ClientServerTester tester)
+	{
+		TlsContextFactory contextFactory = new TlsContextFactory();
+		TlsConfig tls = serverTls().toBuilder().applicationProtocols(Arrays.asList("h2", "http/1.1")).build();
+		Server server = new NettyServer(tester.nettyEngine().listen(
+			AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)),
+			new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch)
+				{
+					ch.config().setAutoRead(true);
+					SslHandler sslHandler = contextFactory.newServerHandler(tls, ch.alloc());
+					ch.pipeline().addLast(sslHandler);
+					sslHandler.handshakeFuture().addListener((f) -> {
+						if (f.isSuccess()) {
+							ch.writeAndFlush(Unpooled.copiedBuffer(String.valueOf(sslHandler.applicationProtocol()), StandardCharsets.UTF_8))
+								.addListener(ChannelFutureListener.CLOSE);
+						}
+					});
+				}
+			}
+		).join());
+		tester.addServer(server);
+		return (InetSocketAddress) server.listenAddress();
+	}
+
+	private TlsConfig serverTls()
+	{
+		return TlsConfig.builder()
+			.certificateChain(certificate.certificate())
+			.privateKey(certificate.privateKey())
+			.build();
+	}
+
+	private TlsConfig clientTls(boolean resumption)
+	{
+		return TlsConfig.builder()
+			.trustCertificates(certificate.certificate())
+			.serverName("localhost")
+			.sessionResumption(resumption)
+			.build();
+	}
+}
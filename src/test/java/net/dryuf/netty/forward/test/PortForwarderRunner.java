@@ -1,60 +1,90 @@
 package net.dryuf.netty.forward.test;
 
-import com.google.common.collect.ImmutableList;
-import net.dryuf.base.concurrent.future.FutureUtil;
 import net.dryuf.netty.address.AddressSpec;
 import net.dryuf.netty.core.NettyEngine;
 import net.dryuf.netty.core.Server;
 import net.dryuf.netty.forward.NettyPortForwarderFactory;
 import net.dryuf.netty.forward.PortForwarderFactory;
 
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
 
 /**
  * Proxy runner
+ *
+ * Runs tcp to unix to tcp chain of forwarders, compressing the unix link when started with --compress .
  */
 public class PortForwarderRunner
 {
 	public static void main(String[] args) throws Exception
 	{
+		boolean compress = Arrays.asList(args).contains("--compress");
 		try (NettyEngine nettyEngine = new NettyEngine()) {
-			Server.waitOneAndClose(FutureUtil.nestedAllOrCancel(new NettyPortForwarderFactory(nettyEngine)
-				.runForwards(ImmutableList.of(
-					PortForwarderFactory.ForwardConfig.builder()
-						.bind(AddressSpec.builder()
-							.proto("tcp4")
-							.host("localhost")
-							.port(3300)
-							.build())
-						.connect(AddressSpec.builder()
-							.proto("tcp4")
-							.host("localhost")
-							.port(3301)
-							.build())
-						.build(),
-					PortForwarderFactory.ForwardConfig.builder()
-						.bind(AddressSpec.builder()
-							.proto("tcp4")
-							.host("localhost")
-							.port(3301)
-							.build())
-						.connect(AddressSpec.builder()
-							.proto("unix")
-							.path("target/forward.socket")
-							.build())
-						.build(),
-					PortForwarderFactory.ForwardConfig.builder()
-						.bind(AddressSpec.builder()
-							.proto("unix")
-							.path("target/forward.socket")
-							.build())
-						.connect(AddressSpec.builder()
-							.proto("tcp4")
-							.host("localhost")
-							.port(3302)
-							.build())
-						.build()
-				))).get()).get();
+			NettyPortForwarderFactory factory = new NettyPortForwarderFactory(nettyEngine);
+			List<Server> servers = new ArrayList<>();
+			runChain(
+				(config) -> {
+					Server server = factory.runForward(config).join();
+					servers.add(server);
+					return server;
+				},
+				AddressSpec.builder().proto("tcp4").host("localhost").port(3300).build(),
+				AddressSpec.builder().proto("tcp4").host("localhost").port(3301).build(),
+				AddressSpec.builder().proto("unix").path("target/forward.socket").build(),
+				AddressSpec.builder().proto("tcp4").host("localhost").port(3302).build(),
+				compress ? PortForwarderFactory.CompressionConfig.builder().build() : null
+			);
+			Server.waitOneAndClose(servers).get();
 			throw new IllegalStateException("Unreachable");
 		}
 	}
+
+	/**
+	 * Runs chain of forwarders bind to middle to unix to connect, starting from the backend side, so the listen
+	 * address of each hop is known to the previous one.
+	 *
+	 * @param runner
+	 * 	runs single forward
+	 * @param bind
+	 * 	address of chain entry
+	 * @param middle
+	 * 	address of middle forwarder
+	 * @param unix
+	 * 	address of link between middle and last forwarder
+	 * @param connect
+	 * 	backend address
+	 * @param compression
+	 * 	compression of the unix link, side is set for each end, none if null
+	 *
+	 * @return
+	 * 	listen address of chain entry.
+	 */
+	public static SocketAddress runChain(Function<PortForwarderFactory.ForwardConfig, Server> runner, AddressSpec bind,
+					     AddressSpec middle, AddressSpec unix, AddressSpec connect,
+					     PortForwarderFactory.CompressionConfig compression)
+	{
+		runner.apply(PortForwarderFactory.ForwardConfig.builder()
+			.bind(unix)
+			.connect(connect)
+			.compression(compression == null ? null : compression.toBuilder()
+				.side(PortForwarderFactory.CompressionConfig.Side.BIND)
+				.build())
+			.build());
+		Server middleServer = runner.apply(PortForwarderFactory.ForwardConfig.builder()
+			.bind(middle)
+			.connect(unix)
+			.compression(compression == null ? null : compression.toBuilder()
+				.side(PortForwarderFactory.CompressionConfig.Side.CONNECT)
+				.build())
+			.build());
+		return runner.apply(PortForwarderFactory.ForwardConfig.builder()
+			.bind(bind)
+			.connect(AddressSpec.fromSocketAddress(middleServer.listenAddress()))
+			.build()
+		).listenAddress();
+	}
 }
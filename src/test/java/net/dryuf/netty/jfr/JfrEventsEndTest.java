@@ -0,0 +1,69 @@
+package net.dryuf.netty.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.forward.ForwarderRegistryEndTest;
+import net.dryuf.netty.forward.NettyPortForwarderFactory;
+import net.dryuf.netty.forward.PortForwarderFactory;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class JfrEventsEndTest
+{
+	@Test(timeOut = 30_000L)
+	public void forward_recording_eventsRecorded() throws Exception
+	{
+		Path file = Files.createTempFile("netty-jfr", ".jfr");
+		try (Recording recording = new Recording()) {
+			for (String name: new String[]{ ResolveEvent.NAME, ListenEvent.NAME, ConnectEvent.NAME,
+				WriteAndShutdownEvent.NAME, ForwardEvent.NAME, ForwardStallEvent.NAME }) {
+				recording.enable(name).withThreshold(Duration.ZERO);
+			}
+			recording.start();
+
+			try (ClientServerTester tester = new ClientServerTester()) {
+				InetSocketAddress backend = ForwarderRegistryEndTest.runGreetingServer(tester, "jfr\n");
+				Server server = new NettyPortForwarderFactory(tester.nettyEngine()).runForward(PortForwarderFactory.ForwardConfig.builder()
+					.bind(AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0)))
+					.connect(AddressSpec.fromSocketAddress(backend))
+					.build()
+				).join();
+				tester.addServer(server);
+
+				ForwarderRegistryEndTest.expectGreeting(tester, server.listenAddress(), "jfr\n");
+			}
+
+			recording.stop();
+			recording.dump(file);
+			Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(file).stream()
+				.collect(Collectors.groupingBy(e -> e.getEventType().getName()));
+
+			assertTrue(events.containsKey(ResolveEvent.NAME), events.keySet().toString());
+			assertTrue(events.get(ResolveEvent.NAME).stream().anyMatch(e -> "localhost".equals(e.getString("host"))));
+			assertTrue(events.containsKey(ListenEvent.NAME), events.keySet().toString());
+			assertTrue(events.containsKey(ConnectEvent.NAME), events.keySet().toString());
+			assertTrue(events.containsKey(WriteAndShutdownEvent.NAME), events.keySet().toString());
+			assertTrue(events.get(ForwardEvent.NAME).stream()
+				.anyMatch(e -> e.getLong("bytes") == 4), events.get(ForwardEvent.NAME).toString());
+			assertEquals(events.get(ConnectEvent.NAME).stream().filter(e -> e.getString("failure") != null).count(), 0L);
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
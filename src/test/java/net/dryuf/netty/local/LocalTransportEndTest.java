@@ -0,0 +1,264 @@
+package net.dryuf.netty.local;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.ListenOptions;
+import net.dryuf.netty.core.NettyServer;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.echo.EchoEndTester;
+import net.dryuf.netty.forward.ForwarderRegistryEndTest;
+import net.dryuf.netty.forward.NettyPortForwarderFactory;
+import net.dryuf.netty.forward.PortForwarderFactory;
+import net.dryuf.netty.forward.SniForwardEndTest;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.testng.Assert.assertEquals;
+
+
+@Log4j2
+public class LocalTransportEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void echo_halfClose_completed() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			LocalAddress address = EchoEndTester.runEchoServer(tester, new LocalAddress("echo-halfClose"));
+			EchoEndTester.runEchoClient(tester, address, 1);
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void forward_localBind_forwarded() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			InetSocketAddress backend = ForwarderRegistryEndTest.runGreetingServer(tester, "local\n");
+			Server server = new NettyPortForwarderFactory(tester.nettyEngine()).runForward(PortForwarderFactory.ForwardConfig.builder()
+				.bind(AddressSpec.builder().proto(AddressSpec.PROTO_LOCAL).path("forward-local").build())
+				.connect(AddressSpec.fromSocketAddress(backend))
+				.build()
+			).join();
+			tester.addServer(server);
+			assertEquals(AddressSpec.fromSocketAddress(server.listenAddress()).toString(), "local://forward-local");
+
+			SniForwardEndTest.expectGreeting(tester, server.listenAddress(), Unpooled.wrappedBuffer("hi\n".getBytes(StandardCharsets.UTF_8)), "local\n");
+		}
+	}
+
+	@Test(timeOut = 120_000L)
+	public void benchmarkEcho() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			new File("target/local-test").mkdirs();
+			new File("target/local-test/echo.socket").delete();
+			SocketAddress tcp = runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			SocketAddress domain = runEchoServer(tester, new DomainSocketAddress("target/local-test/echo.socket"));
+			SocketAddress local = runEchoServer(tester, new LocalAddress("echo-benchmark"));
+
+			runPingPong(tester, "warmup", tcp, 20_000);
+			runPingPong(tester, "warmup", local, 20_000);
+			runPingPong(tester, "tcp", tcp, 50_000);
+			runPingPong(tester, "domain", domain, 50_000);
+			runPingPong(tester, "local", local, 50_000);
+
+			runThroughput(tester, "tcp", tcp, 512);
+			runThroughput(tester, "domain", domain, 512);
+			runThroughput(tester, "local", local, 512);
+		}
+	}
+
+	public static void runPingPong(ClientServerTester tester, String name, SocketAddress address, int count)
+	{
+		runPingPong(tester, name, address, count, (channel) -> {});
+	}
+
+	/**
+	 * Measures round trip latency of small message over single connection.
+	 */
+	public static void runPingPong(ClientServerTester tester, String name, SocketAddress address, int count, Consumer<Channel> setup)
+	{
+		CompletableFuture<Long> finished = new CompletableFuture<>();
+		DuplexChannel channel = tester.nettyEngine().connect(AddressSpec.fromSocketAddress(address), new ChannelInboundHandlerAdapter()
+		{
+			int remaining = count;
+			long started;
+
+			@Override
+			public void handlerAdded(ChannelHandlerContext ctx)
+			{
+				// before connecting, so the setup may configure connection itself:
+				setup.accept(ctx.channel());
+			}
+
+			@Override
+			public void channelActive(ChannelHandlerContext ctx)
+			{
+				ctx.channel().config().setAutoRead(true);
+				started = System.nanoTime();
+				ctx.writeAndFlush(ctx.alloc().buffer(64).writeZero(64));
+			}
+
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg)
+			{
+				// 64 bytes may arrive in pieces over sockets, wait for complete message:
+				ByteBuf buf = (ByteBuf) msg;
+				received += buf.readableBytes();
+				buf.release();
+				if (received < 64) {
+					return;
+				}
+				received -= 64;
+				if (--remaining == 0) {
+					finished.complete(System.nanoTime()-started);
+				}
+				else {
+					ctx.writeAndFlush(ctx.alloc().buffer(64).writeZero(64));
+				}
+			}
+
+			int received;
+		}).join();
+		long elapsed = finished.join();
+		channel.close();
+		log.info("Echo ping-pong: transport={} count={} us/roundtrip={} ops/s={}",
+			name, count, elapsed/1000.0/count, count*1_000_000_000.0/elapsed);
+	}
+
+	public static void runThroughput(ClientServerTester tester, String name, SocketAddress address, int megabytes)
+	{
+		runThroughput(tester, name, address, megabytes, (channel) -> {});
+	}
+
+	/**
+	 * Measures echo throughput of streamed data, keeping 1 MiB in flight.
+	 */
+	public static void runThroughput(ClientServerTester tester, String name, SocketAddress address, int megabytes, Consumer<Channel> setup)
+	{
+		int chunk = 64*1024;
+		long total = (long) megabytes*1024*1024;
+		ByteBuf data = Unpooled.unreleasableBuffer(Unpooled.directBuffer(chunk).writeZero(chunk));
+		CompletableFuture<Long> finished = new CompletableFuture<>();
+		DuplexChannel channel = tester.nettyEngine().connect(AddressSpec.fromSocketAddress(address), new ChannelInboundHandlerAdapter()
+		{
+			long sent;
+			long received;
+			long started;
+
+			@Override
+			public void handlerAdded(ChannelHandlerContext ctx)
+			{
+				// before connecting, so the setup may configure connection itself:
+				setup.accept(ctx.channel());
+			}
+
+			@Override
+			public void channelActive(ChannelHandlerContext ctx)
+			{
+				ctx.channel().config().setAutoRead(true);
+				started = System.nanoTime();
+				for (int i = 0; i < 16; ++i) {
+					send(ctx);
+				}
+				ctx.flush();
+			}
+
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg)
+			{
+				long before = received;
+				received += ((ByteBuf) msg).readableBytes();
+				((ByteBuf) msg).release();
+				for (long i = before/chunk; i < received/chunk; ++i) {
+					send(ctx);
+				}
+				if (received >= total) {
+					finished.complete(System.nanoTime()-started);
+				}
+			}
+
+			@Override
+			public void channelReadComplete(ChannelHandlerContext ctx)
+			{
+				ctx.flush();
+			}
+
+			private void send(ChannelHandlerContext ctx)
+			{
+				if (sent < total) {
+					sent += chunk;
+					ctx.write(data.duplicate(), ctx.voidPromise());
+				}
+			}
+		}).join();
+		long elapsed = finished.join();
+		channel.close();
+		log.info("Echo throughput: transport={} MiB={} MiB/s={}",
+			name, megabytes, megabytes*1_000_000_000.0/elapsed);
+	}
+
+	public static SocketAddress runEchoServer(ClientServerTester tester, SocketAddress listenAddress)
+	{
+		return runEchoServer(tester, listenAddress, (channel) -> {});
+	}
+
+	/**
+	 * Runs echo server for benchmarks, without any framing.
+	 */
+	public static SocketAddress runEchoServer(ClientServerTester tester, SocketAddress listenAddress, Consumer<Channel> setup)
+	{
+		return runEchoServer(tester, listenAddress, ListenOptions.DEFAULT, setup);
+	}
+
+	/**
+	 * Runs echo server for benchmarks, without any framing, with specific listen options.
+	 */
+	public static SocketAddress runEchoServer(ClientServerTester tester, SocketAddress listenAddress, ListenOptions options, Consumer<Channel> setup)
+	{
+		Server server = new NettyServer(tester.nettyEngine().listen(
+			AddressSpec.fromSocketAddress(listenAddress),
+			options,
+			new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch) throws Exception
+				{
+					setup.accept(ch);
+					ch.config().setAutoRead(true);
+					ch.pipeline().addLast(new ChannelInboundHandlerAdapter()
+					{
+						@Override
+						public void channelRead(ChannelHandlerContext ctx, Object msg)
+						{
+							ctx.write(msg, ctx.voidPromise());
+						}
+
+						@Override
+						public void channelReadComplete(ChannelHandlerContext ctx)
+						{
+							ctx.flush();
+						}
+					});
+				}
+			}
+		).join());
+		tester.addServer(server);
+		return server.listenAddress();
+	}
+}
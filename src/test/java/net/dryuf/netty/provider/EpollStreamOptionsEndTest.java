@@ -0,0 +1,118 @@
+package net.dryuf.netty.provider;
+
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.socket.DuplexChannel;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.ConnectOptions;
+import net.dryuf.netty.core.ListenOptions;
+import net.dryuf.netty.core.NettyEngine;
+import net.dryuf.netty.core.StreamOptions;
+import net.dryuf.netty.local.LocalTransportEndTest;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.testng.Assert.assertEquals;
+
+
+@Log4j2
+public class EpollStreamOptionsEndTest
+{
+	private static final AddressSpec LOCALHOST_TCP = AddressSpec.builder()
+		.proto(AddressSpec.PROTO_TCP4)
+		.host("localhost")
+		.port(0)
+		.build();
+
+	@Test(timeOut = 20_000L)
+	public void listenConnect_options_applied() throws Exception
+	{
+		try (NettyEngine engine = createEngine()) {
+			StreamOptions options = StreamOptions.builder()
+				.quickAck(true)
+				.notSentLowAt(16384L)
+				.userTimeout(5000)
+				.deferAccept(1)
+				.edgeTriggered(false)
+				.build();
+			CompletableFuture<DuplexChannel> accepted = new CompletableFuture<>();
+			ServerChannel server = engine.listen(LOCALHOST_TCP, ListenOptions.builder().streamOptions(options).build(),
+				new ChannelInitializer<DuplexChannel>()
+				{
+					@Override
+					protected void initChannel(DuplexChannel ch)
+					{
+						accepted.complete(ch);
+					}
+				}
+			).join();
+			try {
+				assertEquals(server.config().getOption(EpollChannelOption.TCP_DEFER_ACCEPT), (Integer) 1);
+				DuplexChannel client = engine.connect(AddressSpec.fromSocketAddress(server.localAddress()),
+					ConnectOptions.builder().streamOptions(options).build(),
+					new ChannelInboundHandlerAdapter(),
+					null
+				).join();
+				// deferred accept completes only once data arrive:
+				client.writeAndFlush(client.alloc().buffer(1).writeByte(0));
+				for (DuplexChannel channel: new DuplexChannel[]{ client, accepted.join() }) {
+					assertEquals(channel.config().getOption(EpollChannelOption.TCP_USER_TIMEOUT), (Integer) 5000);
+					assertEquals(channel.config().getOption(EpollChannelOption.TCP_NOTSENT_LOWAT), (Long) 16384L);
+					assertEquals(channel.config().getOption(EpollChannelOption.EPOLL_MODE), EpollMode.LEVEL_TRIGGERED);
+				}
+				client.close();
+			}
+			finally {
+				server.close().syncUninterruptibly();
+			}
+		}
+	}
+
+	@Test(timeOut = 300_000L)
+	public void benchmarkLatencyOptions() throws Exception
+	{
+		Map<String, StreamOptions> combinations = new LinkedHashMap<>();
+		combinations.put("warmup", StreamOptions.DEFAULT);
+		combinations.put("default", StreamOptions.DEFAULT);
+		combinations.put("quickAck", StreamOptions.builder().quickAck(true).build());
+		combinations.put("busyPoll", StreamOptions.builder().busyPoll(50).build());
+		combinations.put("notSentLowAt", StreamOptions.builder().notSentLowAt(16384L).build());
+		combinations.put("levelTriggered", StreamOptions.builder().edgeTriggered(false).build());
+		combinations.put("quickAck+busyPoll", StreamOptions.builder().quickAck(true).busyPoll(50).build());
+		combinations.put("all", StreamOptions.builder()
+			.quickAck(true)
+			.busyPoll(50)
+			.notSentLowAt(16384L)
+			.userTimeout(5000)
+			.edgeTriggered(false)
+			.build());
+		try (NettyEngine engine = createEngine(); ClientServerTester tester = new ClientServerTester(engine)) {
+			for (Map.Entry<String, StreamOptions> combination: combinations.entrySet()) {
+				SocketAddress address = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0),
+					ListenOptions.builder().streamOptions(combination.getValue()).build(), (channel) -> {});
+				ThreadingConfigEndTest.runLatency(tester, combination.getKey(), address,
+					ConnectOptions.builder().streamOptions(combination.getValue()).build(), 20_000);
+			}
+		}
+	}
+
+	private static NettyEngine createEngine()
+	{
+		ChannelProvider provider = NettyEngine.createChannelProvider();
+		if (!(provider instanceof EpollChannelProvider)) {
+			throw new SkipException("Epoll not available");
+		}
+		return new NettyEngine(provider);
+	}
+}
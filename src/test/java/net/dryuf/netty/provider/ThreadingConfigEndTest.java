@@ -0,0 +1,152 @@
+package net.dryuf.netty.provider;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.DuplexChannel;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.ConnectOptions;
+import net.dryuf.netty.core.NettyEngine;
+import net.dryuf.netty.local.LocalTransportEndTest;
+import net.dryuf.netty.test.ClientServerTester;
+import net.dryuf.netty.util.CpuAffinity;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+
+@Log4j2
+public class ThreadingConfigEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void workerCpus_pinned_affinitySet() throws Exception
+	{
+		if (!CpuAffinity.isSupported()) {
+			throw new SkipException("CPU affinity not supported");
+		}
+		ThreadingConfig config = ThreadingConfig.builder()
+			.workerCpus(Collections.singletonList(0))
+			.bossCpus(Collections.singletonList(0))
+			.ioRatio(80)
+			.build();
+		try (NettyEngine engine = new NettyEngine(NettyEngine.createChannelProvider(config))) {
+			assertEquals(engine.getWorkerGroup().submit(CpuAffinity::getCurrentThreadAffinity).get(), "0");
+			assertEquals(engine.getBossGroup().submit(CpuAffinity::getCurrentThreadAffinity).get(), "0");
+			assertEquals(engine.getEventLoopCount(), 2);
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void workerCpus_invalid_runsUnpinned() throws Exception
+	{
+		ThreadingConfig config = ThreadingConfig.builder()
+			.workerCpus(Arrays.asList(4095, 4094))
+			.pinPerLoop(false)
+			.workerThreads(1)
+			.build();
+		try (NettyEngine engine = new NettyEngine(NettyEngine.createChannelProvider(config))) {
+			assertNotEquals(engine.getWorkerGroup().submit(CpuAffinity::getCurrentThreadAffinity).get(), "4094,4095");
+		}
+	}
+
+	@Test(timeOut = 120_000L)
+	public void benchmarkTailLatency() throws Exception
+	{
+		runTailLatency("warmup", ThreadingConfig.DEFAULT);
+		runTailLatency("default", ThreadingConfig.DEFAULT);
+		if (CpuAffinity.isSupported()) {
+			runTailLatency("pinned", ThreadingConfig.builder()
+				.workerCpus(Collections.singletonList(0))
+				.build());
+		}
+		runTailLatency("busyWait", ThreadingConfig.builder()
+			.workerThreads(1)
+			.busyWait(true)
+			.build());
+	}
+
+	private static void runTailLatency(String name, ThreadingConfig config) throws Exception
+	{
+		try (NettyEngine engine = new NettyEngine(NettyEngine.createChannelProvider(config));
+		     ClientServerTester tester = new ClientServerTester(engine)) {
+			SocketAddress address = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			runLatency(tester, name, address, 20_000);
+		}
+	}
+
+	public static long[] runLatency(ClientServerTester tester, String name, SocketAddress address, int count)
+	{
+		return runLatency(tester, name, address, ConnectOptions.DEFAULT, count);
+	}
+
+	/**
+	 * Measures round trip latency of small message over single connection, reporting percentiles.
+	 */
+	public static long[] runLatency(ClientServerTester tester, String name, SocketAddress address, ConnectOptions options, int count)
+	{
+		long[] latencies = new long[count];
+		CompletableFuture<Void> finished = new CompletableFuture<>();
+		DuplexChannel channel = tester.nettyEngine().connect(AddressSpec.fromSocketAddress(address), options, new ChannelInboundHandlerAdapter()
+		{
+			int done;
+			int received;
+			long sent;
+
+			@Override
+			public void channelActive(ChannelHandlerContext ctx)
+			{
+				ctx.channel().config().setAutoRead(true);
+				send(ctx);
+			}
+
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg)
+			{
+				ByteBuf buf = (ByteBuf) msg;
+				received += buf.readableBytes();
+				buf.release();
+				if (received < 64) {
+					return;
+				}
+				received -= 64;
+				latencies[done] = System.nanoTime()-sent;
+				if (++done == count) {
+					finished.complete(null);
+				}
+				else {
+					send(ctx);
+				}
+			}
+
+			private void send(ChannelHandlerContext ctx)
+			{
+				sent = System.nanoTime();
+				ctx.writeAndFlush(ctx.alloc().buffer(64).writeZero(64));
+			}
+		}, null).join();
+		finished.join();
+		channel.close();
+		Arrays.sort(latencies);
+		log.info("Echo latency: config={} count={} p50us={} p99us={} p999us={} maxus={}",
+			name, count, percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999),
+			latencies[count-1]/1000.0);
+		return latencies;
+	}
+
+	/**
+	 * Gets percentile of sorted latencies, in microseconds.
+	 */
+	public static double percentile(long[] sorted, double fraction)
+	{
+		return sorted[Math.min(sorted.length-1, (int) (sorted.length*fraction))]/1000.0;
+	}
+}
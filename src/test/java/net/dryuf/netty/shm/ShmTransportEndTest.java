@@ -0,0 +1,144 @@
+package net.dryuf.netty.shm;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.NettyServer;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.echo.EchoEndTester;
+import net.dryuf.netty.local.LocalTransportEndTest;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.SocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+@Log4j2
+public class ShmTransportEndTest
+{
+	@Test(timeOut = 20_000L)
+	public void echo_halfClose_completed() throws Exception
+	{
+		String path = socketPath("echo");
+		try (ClientServerTester tester = new ClientServerTester()) {
+			ShmAddress address = EchoEndTester.runEchoServer(tester, new ShmAddress(path));
+			assertEquals(AddressSpec.fromSocketAddress(address).toString(), "shm://"+new File(path).getAbsolutePath());
+			EchoEndTester.runEchoClient(tester, address, 1);
+		}
+		// ring files are unlinked once both sides mapped them:
+		assertEquals(new File(path).getParentFile().list((dir, name) -> name.startsWith("echo.socket-")).length, 0);
+	}
+
+	@Test(timeOut = 20_000L)
+	public void read_afterPeerClosed_delivered() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			int length = 256*1024;
+			Server server = new NettyServer(tester.nettyEngine().listen(
+				AddressSpec.fromSocketAddress(new ShmAddress(socketPath("closing"))),
+				new ChannelInitializer<DuplexChannel>()
+				{
+					@Override
+					protected void initChannel(DuplexChannel ch)
+					{
+						ch.writeAndFlush(ch.alloc().buffer(length).writeZero(length))
+							.addListener(ChannelFutureListener.CLOSE);
+					}
+				}
+			).join());
+			tester.addServer(server);
+
+			CompletableFuture<Long> received = new CompletableFuture<>();
+			DuplexChannel client = tester.nettyEngine().connect(AddressSpec.fromSocketAddress(server.listenAddress()), new ChannelInboundHandlerAdapter()
+			{
+				long count;
+
+				@Override
+				public void channelRead(ChannelHandlerContext ctx, Object msg)
+				{
+					count += ((ByteBuf) msg).readableBytes();
+					((ByteBuf) msg).release();
+				}
+
+				@Override
+				public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+				{
+					if (evt instanceof ChannelInputShutdownEvent) {
+						received.complete(count);
+					}
+				}
+
+				@Override
+				public void channelInactive(ChannelHandlerContext ctx)
+				{
+					received.complete(count);
+				}
+			}).join();
+			// peer writes and closes while nothing reads:
+			Thread.sleep(500);
+			assertTrue(client.isOpen());
+			client.config().setAutoRead(true);
+			assertEquals((long) received.join(), length);
+			client.closeFuture().syncUninterruptibly();
+		}
+	}
+
+	@Test(timeOut = 30_000L)
+	public void throughput_smallRing_flowControlled() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			SocketAddress address = LocalTransportEndTest.runEchoServer(tester, new ShmAddress(socketPath("small")));
+			AtomicReference<ShmChannel> client = new AtomicReference<>();
+			// ring much smaller than in-flight data, exercises waiting for space on both sides:
+			LocalTransportEndTest.runThroughput(tester, "shm-small-ring", address, 16, (channel) -> {
+				channel.config().setOption(ShmChannelOption.RING_SIZE, 4096);
+				client.set((ShmChannel) channel);
+			});
+			assertEquals(client.get().getRingCapacity(), 4096);
+		}
+	}
+
+	@Test(timeOut = 120_000L)
+	public void benchmarkEcho() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester()) {
+			Consumer<Channel> busySpin = (channel) -> channel.config().setOption(ShmChannelOption.BUSY_SPIN, true);
+			SocketAddress domain = LocalTransportEndTest.runEchoServer(tester, new DomainSocketAddress(socketPath("domain")));
+			SocketAddress shm = LocalTransportEndTest.runEchoServer(tester, new ShmAddress(socketPath("shm")));
+			SocketAddress shmSpin = LocalTransportEndTest.runEchoServer(tester, new ShmAddress(socketPath("shm-spin")), busySpin);
+
+			LocalTransportEndTest.runPingPong(tester, "warmup", shm, 20_000);
+			LocalTransportEndTest.runPingPong(tester, "domain", domain, 50_000);
+			LocalTransportEndTest.runPingPong(tester, "shm", shm, 50_000);
+			LocalTransportEndTest.runPingPong(tester, "shm-busy-spin", shmSpin, 50_000, busySpin);
+
+			LocalTransportEndTest.runThroughput(tester, "domain", domain, 512);
+			LocalTransportEndTest.runThroughput(tester, "shm", shm, 512);
+			LocalTransportEndTest.runThroughput(tester, "shm-busy-spin", shmSpin, 512, busySpin);
+		}
+	}
+
+	private static String socketPath(String name)
+	{
+		File dir = new File("target/shm-test");
+		dir.mkdirs();
+		File socket = new File(dir, name+".socket");
+		socket.delete();
+		return socket.getPath();
+	}
+}
@@ -0,0 +1,81 @@
+package net.dryuf.netty.tls;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.extern.log4j.Log4j2;
+import org.testng.annotations.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+
+
+@Log4j2
+public class ClientHelloParserTest
+{
+	@Test
+	public void findServerName_complete_found() throws Exception
+	{
+		ByteBuf hello = createClientHello("www.example.com");
+		long result = ClientHelloParser.findServerName(hello);
+		assertEquals(hello.toString(ClientHelloParser.getOffset(result), ClientHelloParser.getLength(result), StandardCharsets.US_ASCII),
+			"www.example.com");
+	}
+
+	@Test
+	public void findServerName_truncated_needMore() throws Exception
+	{
+		ByteBuf hello = createClientHello("www.example.com");
+		for (int i = 0; i < hello.readableBytes(); ++i) {
+			assertEquals(ClientHelloParser.findServerName(hello.slice(0, i)), ClientHelloParser.NEED_MORE);
+		}
+	}
+
+	@Test
+	public void findServerName_noSni_notFound() throws Exception
+	{
+		ByteBuf hello = createClientHello(null);
+		assertEquals(ClientHelloParser.findServerName(hello), ClientHelloParser.NOT_FOUND);
+	}
+
+	@Test
+	public void findServerName_http_invalid() throws Exception
+	{
+		ByteBuf request = Unpooled.wrappedBuffer("GET / HTTP/1.1\r\n".getBytes(StandardCharsets.US_ASCII));
+		assertEquals(ClientHelloParser.findServerName(request), ClientHelloParser.INVALID);
+		assertEquals(ClientHelloParser.findServerName(request.slice(0, 1)), ClientHelloParser.INVALID);
+	}
+
+	@Test
+	public void benchmarkParse() throws Exception
+	{
+		ByteBuf hello = createClientHello("www.example.com");
+		long sum = 0;
+		for (int i = 0; i < 1_000_000; ++i) {
+			sum += ClientHelloParser.findServerName(hello);
+		}
+		int count = 5_000_000;
+		long started = System.nanoTime();
+		for (int i = 0; i < count; ++i) {
+			sum += ClientHelloParser.findServerName(hello);
+		}
+		long elapsed = System.nanoTime()-started;
+		log.info("ClientHello parsing: length={} ns/op={} ops/s={} checksum={}",
+			hello.readableBytes(), (double) elapsed/count, count*1_000_000_000.0/elapsed, sum);
+	}
+
+	public static ByteBuf createClientHello(String serverName) throws Exception
+	{
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(null, null, null);
+		SSLEngine engine = serverName == null ? context.createSSLEngine() : context.createSSLEngine(serverName, 443);
+		engine.setUseClientMode(true);
+		ByteBuffer out = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+		engine.wrap(ByteBuffer.allocate(0), out);
+		out.flip();
+		return Unpooled.wrappedBuffer(out);
+	}
+}
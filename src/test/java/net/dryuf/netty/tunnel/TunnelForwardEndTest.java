@@ -0,0 +1,243 @@
+package net.dryuf.netty.tunnel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import lombok.extern.log4j.Log4j2;
+import net.dryuf.netty.address.AddressSpec;
+import net.dryuf.netty.core.NettyServer;
+import net.dryuf.netty.core.Server;
+import net.dryuf.netty.forward.ForwarderRegistryEndTest;
+import net.dryuf.netty.forward.NettyPortForwarderFactory;
+import net.dryuf.netty.forward.PortForwarderFactory;
+import net.dryuf.netty.forward.ForwardEndTester;
+import net.dryuf.netty.local.LocalTransportEndTest;
+import net.dryuf.netty.test.ClientServerTester;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.testng.Assert.assertEquals;
+
+
+@Log4j2
+public class TunnelForwardEndTest
+{
+	private static final AddressSpec LOCALHOST_TCP = AddressSpec.fromSocketAddress(InetSocketAddress.createUnresolved("localhost", 0));
+
+	@Test(timeOut = 20_000L)
+	public void tunnel_echo_forwarded() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester();
+		     NettyPortForwarderFactory factory = new NettyPortForwarderFactory(tester.nettyEngine())) {
+			SocketAddress backend = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			SocketAddress entry = runTunnel(tester, factory, backend, TunnelOptions.DEFAULT);
+
+			LocalTransportEndTest.runPingPong(tester, "tunnel", entry, 100);
+			LocalTransportEndTest.runThroughput(tester, "tunnel", entry, 16);
+		}
+	}
+
+	@Test(timeOut = 20_000L)
+	public void tunnel_halfClose_propagated() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester();
+		     NettyPortForwarderFactory factory = new NettyPortForwarderFactory(tester.nettyEngine())) {
+			InetSocketAddress greeting = ForwarderRegistryEndTest.runGreetingServer(tester, "tunnel\n");
+			ForwarderRegistryEndTest.expectGreeting(tester, runTunnel(tester, factory, greeting, TunnelOptions.DEFAULT), "tunnel\n");
+
+			SocketAddress counting = runCountingServer(tester);
+			SocketAddress entry = runTunnel(tester, factory, counting, TunnelOptions.DEFAULT);
+			for (int i = 0; i < 3; ++i) {
+				assertEquals(sendAndShutdown(tester, entry, 100_000*i), String.valueOf(100_000*i));
+			}
+		}
+	}
+
+	@Test(timeOut = 60_000L)
+	public void tunnel_stalledStream_otherStreamsProgress() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester();
+		     NettyPortForwarderFactory factory = new NettyPortForwarderFactory(tester.nettyEngine())) {
+			SocketAddress backend = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0));
+			SocketAddress entry = runTunnel(tester, factory, backend, TunnelOptions.builder().connections(1).build());
+
+			// client sending data but never reading the echo exhausts its stream window:
+			DuplexChannel stalled = tester.nettyEngine().connect(AddressSpec.fromSocketAddress(entry), new ChannelInboundHandlerAdapter(), null).join();
+			ByteBuf data = Unpooled.unreleasableBuffer(Unpooled.directBuffer(64*1024).writeZero(64*1024));
+			for (int i = 0; i < 256; ++i) {
+				stalled.write(data.duplicate());
+			}
+			stalled.flush();
+
+			LocalTransportEndTest.runPingPong(tester, "tunnel-stalled-neighbour", entry, 1000);
+			stalled.close();
+		}
+	}
+
+	@Test(timeOut = 300_000L)
+	public void benchmarkTunnel() throws Exception
+	{
+		try (ClientServerTester tester = new ClientServerTester();
+		     NettyPortForwarderFactory factory = new NettyPortForwarderFactory(tester.nettyEngine())) {
+			// short connections must be closed by backend, otherwise they stay half closed:
+			SocketAddress backend = LocalTransportEndTest.runEchoServer(tester, InetSocketAddress.createUnresolved("localhost", 0),
+				(channel) -> channel.config().setOption(ChannelOption.ALLOW_HALF_CLOSURE, false));
+			SocketAddress tunnel = runTunnel(tester, factory, backend, TunnelOptions.DEFAULT);
+			SocketAddress direct = ForwardEndTester.runForward(tester, factory, tunnelConfig(
+				ForwardEndTester.runForward(tester, factory, tunnelConfig(backend, null)).listenAddress(),
+				null
+			)).listenAddress();
+
+			for (String name: new String[]{ "warmup-direct", "warmup-tunnel", "direct", "tunnel" }) {
+				SocketAddress address = name.endsWith("tunnel") ? tunnel : direct;
+				runConnectionRate(tester, name, address, 2000);
+				LocalTransportEndTest.runPingPong(tester, name, address, 10_000);
+				LocalTransportEndTest.runThroughput(tester, name, address, 256);
+			}
+		}
+	}
+
+	private static SocketAddress runTunnel(ClientServerTester tester, NettyPortForwarderFactory factory, SocketAddress backend, TunnelOptions options)
+	{
+		SocketAddress exit = ForwardEndTester.runForward(tester, factory, tunnelConfig(backend, PortForwarderFactory.TunnelConfig.builder()
+			.mode(PortForwarderFactory.TunnelConfig.Mode.EXIT)
+			.options(options)
+			.build())
+		).listenAddress();
+		return ForwardEndTester.runForward(tester, factory, tunnelConfig(exit, PortForwarderFactory.TunnelConfig.builder()
+			.mode(PortForwarderFactory.TunnelConfig.Mode.ENTRY)
+			.options(options)
+			.build())
+		).listenAddress();
+	}
+
+	private static PortForwarderFactory.ForwardConfig tunnelConfig(SocketAddress connect, PortForwarderFactory.TunnelConfig tunnel)
+	{
+		return PortForwarderFactory.ForwardConfig.builder()
+			.bind(LOCALHOST_TCP)
+			.connect(AddressSpec.fromSocketAddress(connect))
+			.tunnel(tunnel)
+			.build();
+	}
+
+	/**
+	 * Measures rate of short connections, each sending single message and waiting for its echo.
+	 */
+	private static void runConnectionRate(ClientServerTester tester, String name, SocketAddress address, int count)
+	{
+		long started = System.nanoTime();
+		for (int i = 0; i < count; ++i) {
+			CompletableFuture<Void> finished = new CompletableFuture<>();
+			DuplexChannel channel = tester.nettyEngine().connect(AddressSpec.fromSocketAddress(address), new ChannelInboundHandlerAdapter()
+			{
+				int received;
+
+				@Override
+				public void channelActive(ChannelHandlerContext ctx)
+				{
+					ctx.channel().config().setAutoRead(true);
+					ctx.writeAndFlush(ctx.alloc().buffer(64).writeZero(64));
+				}
+
+				@Override
+				public void channelRead(ChannelHandlerContext ctx, Object msg)
+				{
+					received += ((ByteBuf) msg).readableBytes();
+					((ByteBuf) msg).release();
+					if (received >= 64) {
+						finished.complete(null);
+					}
+				}
+			}).join();
+			finished.join();
+			channel.close().syncUninterruptibly();
+		}
+		long elapsed = System.nanoTime()-started;
+		log.info("Connection rate: transport={} count={} us/connection={} connections/s={}",
+			name, count, elapsed/1000.0/count, count*1_000_000_000.0/elapsed);
+	}
+
+	/**
+	 * Sends data, shuts down output and reads response until input is shut down.
+	 */
+	private static String sendAndShutdown(ClientServerTester tester, SocketAddress address, int length)
+	{
+		CompletableFuture<String> finished = new CompletableFuture<>();
+		tester.nettyEngine().connect(AddressSpec.fromSocketAddress(address), new ChannelInboundHandlerAdapter()
+		{
+			final StringBuilder response = new StringBuilder();
+
+			@Override
+			public void channelActive(ChannelHandlerContext ctx)
+			{
+				ctx.channel().config().setAutoRead(true);
+				tester.nettyEngine().writeAndShutdown((DuplexChannel) ctx.channel(), ctx.alloc().buffer(length).writeZero(length));
+			}
+
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg)
+			{
+				response.append(((ByteBuf) msg).toString(StandardCharsets.UTF_8));
+				((ByteBuf) msg).release();
+			}
+
+			@Override
+			public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+			{
+				if (evt instanceof ChannelInputShutdownEvent) {
+					finished.complete(response.toString());
+					ctx.close();
+				}
+			}
+		}, null).join();
+		return finished.join();
+	}
+
+	/**
+	 * Runs server counting received bytes until input shutdown, then sending the count and shutting down output.
+	 */
+	private static SocketAddress runCountingServer(ClientServerTester tester)
+	{
+		Server server = new NettyServer(tester.nettyEngine().listen(
+			LOCALHOST_TCP,
+			new ChannelInitializer<DuplexChannel>()
+			{
+				@Override
+				protected void initChannel(DuplexChannel ch)
+				{
+					ch.config().setAutoRead(true);
+					ch.pipeline().addLast(new ChannelInboundHandlerAdapter()
+					{
+						long count;
+
+						@Override
+						public void channelRead(ChannelHandlerContext ctx, Object msg)
+						{
+							count += ((ByteBuf) msg).readableBytes();
+							((ByteBuf) msg).release();
+						}
+
+						@Override
+						public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+						{
+							if (evt instanceof ChannelInputShutdownEvent) {
+								tester.nettyEngine().writeAndShutdown(ch, Unpooled.copiedBuffer(String.valueOf(count), StandardCharsets.UTF_8));
+							}
+						}
+					});
+				}
+			}
+		).join());
+		tester.addServer(server);
+		return server.listenAddress();
+	}
+}
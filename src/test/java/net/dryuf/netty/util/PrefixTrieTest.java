@@ -0,0 +1,97 @@
+package net.dryuf.netty.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.extern.log4j.Log4j2;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.expectThrows;
+
+
+@Log4j2
+public class PrefixTrieTest
+{
+	@Test
+	public void match_longest_matched()
+	{
+		PrefixTrie<String> trie = PrefixTrie.<String>builder()
+			.add(bytes("GET "), "http")
+			.add(bytes("GET /special"), "special")
+			.add(bytes("SSH-"), "ssh")
+			.build();
+
+		assertEquals(trie.getValue(trie.match(buf("GET / HTTP/1.1"), false)), "http");
+		assertEquals(trie.getValue(trie.match(buf("GET /special HTTP/1.1"), false)), "special");
+		assertEquals(trie.getValue(trie.match(buf("SSH-2.0-OpenSSH"), false)), "ssh");
+	}
+
+	@Test
+	public void match_partial_needMore()
+	{
+		PrefixTrie<String> trie = PrefixTrie.<String>builder()
+			.add(bytes("GET "), "http")
+			.add(bytes("GET /special"), "special")
+			.build();
+
+		assertEquals(trie.match(buf(""), false), PrefixTrie.NEED_MORE);
+		assertEquals(trie.match(buf("GE"), false), PrefixTrie.NEED_MORE);
+		assertEquals(trie.match(buf("GET /spe"), false), PrefixTrie.NEED_MORE);
+		assertEquals(trie.getValue(trie.match(buf("GET /spe"), true)), "http");
+		assertEquals(trie.match(buf("GE"), true), PrefixTrie.NO_MATCH);
+	}
+
+	@Test
+	public void match_different_noMatch()
+	{
+		PrefixTrie<String> trie = PrefixTrie.<String>builder()
+			.add(bytes("GET "), "http")
+			.build();
+
+		assertEquals(trie.match(buf("POST "), false), PrefixTrie.NO_MATCH);
+		assertEquals(trie.match(buf("GEX"), false), PrefixTrie.NO_MATCH);
+	}
+
+	@Test
+	public void add_duplicate_rejected()
+	{
+		PrefixTrie.Builder<String> builder = PrefixTrie.<String>builder()
+			.add(bytes("GET "), "http");
+		expectThrows(IllegalArgumentException.class, () -> builder.add(bytes("GET "), "other"));
+		expectThrows(IllegalArgumentException.class, () -> builder.add(new byte[0], "empty"));
+	}
+
+	@Test
+	public void benchmarkMatch()
+	{
+		for (int rules: new int[]{ 4, 4, 64, 1024 }) {
+			PrefixTrie.Builder<Integer> builder = PrefixTrie.builder();
+			for (int i = 0; i < rules; ++i) {
+				builder.add(bytes("MAGIC-"+i+"-"), i);
+			}
+			PrefixTrie<Integer> trie = builder.build();
+			ByteBuf input = buf("MAGIC-3-payload");
+			long sum = 0;
+			int count = 5_000_000;
+			long started = System.nanoTime();
+			for (int i = 0; i < count; ++i) {
+				sum += trie.match(input, false);
+			}
+			long elapsed = System.nanoTime()-started;
+			log.info("PrefixTrie matching: rules={} ns/op={} ops/s={} checksum={}",
+				rules, (double) elapsed/count, count*1_000_000_000.0/elapsed, sum);
+		}
+	}
+
+	private static byte[] bytes(String s)
+	{
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static ByteBuf buf(String s)
+	{
+		return Unpooled.wrappedBuffer(bytes(s));
+	}
+}
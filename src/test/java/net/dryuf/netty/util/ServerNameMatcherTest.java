@@ -0,0 +1,96 @@
+package net.dryuf.netty.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.extern.log4j.Log4j2;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.expectThrows;
+
+
+@Log4j2
+public class ServerNameMatcherTest
+{
+	@Test
+	public void match_exactAndWildcard_mostSpecific()
+	{
+		ServerNameMatcher<String> matcher = ServerNameMatcher.<String>builder()
+			.add("one.example.com", "one")
+			.add("*.example.com", "wildcard")
+			.add("*.deep.example.com", "deep")
+			.build();
+
+		assertEquals(match(matcher, "one.example.com"), "one");
+		assertEquals(match(matcher, "two.example.com"), "wildcard");
+		assertEquals(match(matcher, "a.deep.example.com"), "deep");
+		assertEquals(match(matcher, "deep.example.com"), "wildcard");
+		assertNull(match(matcher, "example.com"));
+		assertNull(match(matcher, "example.org"));
+	}
+
+	@Test
+	public void match_differentCase_matched()
+	{
+		ServerNameMatcher<String> matcher = ServerNameMatcher.<String>builder()
+			.add("One.Example.com", "one")
+			.add("*.EXAMPLE.org", "wildcard")
+			.build();
+
+		assertEquals(match(matcher, "ONE.example.COM"), "one");
+		assertEquals(match(matcher, "A.b.Example.Org"), "wildcard");
+	}
+
+	@Test
+	public void match_slice_matchedWithinBuffer()
+	{
+		ServerNameMatcher<String> matcher = ServerNameMatcher.<String>builder()
+			.add("one.example.com", "one")
+			.build();
+
+		ByteBuf buf = Unpooled.wrappedBuffer("xxone.example.comyy".getBytes(StandardCharsets.US_ASCII));
+		assertEquals(matcher.match(buf, 2, 15), "one");
+		assertNull(matcher.match(buf, 2, 16));
+	}
+
+	@Test
+	public void add_duplicate_rejected()
+	{
+		expectThrows(IllegalArgumentException.class, () -> ServerNameMatcher.<String>builder()
+			.add("one.example.com", "one")
+			.add("ONE.example.com", "two"));
+	}
+
+	@Test
+	public void benchmarkMatch()
+	{
+		ServerNameMatcher.Builder<String> builder = ServerNameMatcher.builder();
+		for (int i = 0; i < 1000; ++i) {
+			builder.add("host"+i+".example.com", "exact");
+			builder.add("*.domain"+i+".example.org", "wildcard");
+		}
+		ServerNameMatcher<String> matcher = builder.build();
+		ByteBuf name = Unpooled.wrappedBuffer("www.Domain500.example.org".getBytes(StandardCharsets.US_ASCII));
+		long sum = 0;
+		for (int i = 0; i < 1_000_000; ++i) {
+			sum += matcher.match(name, 0, name.readableBytes()).length();
+		}
+		int count = 5_000_000;
+		long started = System.nanoTime();
+		for (int i = 0; i < count; ++i) {
+			sum += matcher.match(name, 0, name.readableBytes()).length();
+		}
+		long elapsed = System.nanoTime()-started;
+		log.info("Server name matching: ns/op={} ops/s={} checksum={}",
+			(double) elapsed/count, count*1_000_000_000.0/elapsed, sum);
+	}
+
+	private static String match(ServerNameMatcher<String> matcher, String name)
+	{
+		ByteBuf buf = Unpooled.wrappedBuffer(name.getBytes(StandardCharsets.US_ASCII));
+		return matcher.match(buf, buf.readerIndex(), buf.readableBytes());
+	}
+}